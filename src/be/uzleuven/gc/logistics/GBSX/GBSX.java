@@ -22,6 +22,7 @@
 package be.uzleuven.gc.logistics.GBSX;
 
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.DNAComplement;
+import be.uzleuven.gc.logistics.GBSX.barcodeCorrector.BarcodeCorrector;
 import be.uzleuven.gc.logistics.GBSX.barcodeDiscovery.BarcodeDiscovery;
 import be.uzleuven.gc.logistics.GBSX.barcodeGenerator.BarcodeGenerator;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.GBSdemultiplex;
@@ -87,6 +88,7 @@ public class GBSX {
                 System.out.println("\t BarcodeDiscovery \t\t --BarcodeDiscovery \n\t\t a quick search for possible barcodes in a fastq file \n\t\t " + BarcodeDiscovery.VERSION);
                 System.out.println("\t DNAComplement \t\t --DNAComplement \n\t\t a tool to make the complement of a given DNA sequence \n\t\t " + DNAComplement.VERSION);
                 System.out.println("\t BarcodeGenerator \t\t --BarcodeGenerator \n\t\t a tool to generate random self-correcting barcodes (the barcodes has a hammings distance of at least 3)\n\t\t " + BarcodeGenerator.VERSION);
+                System.out.println("\t BarcodeCorrector \t\t --BarcodeCorrector \n\t\t a tool to correct the self-correcting barcodes in a fastq file (before demultiplexing without barcode mismatches)\n\t\t " + BarcodeCorrector.VERSION);
                 System.out.println("\t GBSsimulator \t\t --GBSsimulator \n\t\t a tool to simulate GBS data (only purpose is testing)\n\t\t " + BarcodeGenerator.VERSION);
                 System.out.println();
                 System.out.println("For tool specific help use --tool -help");
@@ -127,6 +129,8 @@ public class GBSX {
                 DNAComplement.main(newArgs);
             }else if (args[0].toLowerCase().equals("--BarcodeGenerator".toLowerCase())){
                 BarcodeGenerator.main(newArgs);
+            }else if (args[0].toLowerCase().equals("--BarcodeCorrector".toLowerCase())){
+                BarcodeCorrector.main(newArgs);
             }else if (args[0].toLowerCase().equals("--GBSsimulator".toLowerCase())){
                 GBSsimulate.main(newArgs);
             }else if (args[0].toLowerCase().equals("--DEBUG".toLowerCase())){
@@ -135,6 +139,7 @@ public class GBSX {
                 System.out.println("BarcodeDiscovery: \t" + BarcodeDiscovery.DEBUG);
                 System.out.println("DNAComplement: \t" + DNAComplement.DEBUG);
                 System.out.println("BarcodeGenerator: \t" + BarcodeGenerator.DEBUG);
+                System.out.println("BarcodeCorrector: \t" + BarcodeCorrector.DEBUG);
                 System.out.println("GBSsimulator: \t" + GBSsimulate.DEBUG);
             }else{
                 System.out.println("No valid tool found.");
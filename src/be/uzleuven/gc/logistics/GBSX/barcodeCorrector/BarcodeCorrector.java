@@ -0,0 +1,282 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.barcodeCorrector;
+
+import be.uzleuven.gc.logistics.GBSX.GBSX;
+import be.uzleuven.gc.logistics.GBSX.barcodeCorrector.application.BarcodeCorrectingAlgorithm;
+import be.uzleuven.gc.logistics.GBSX.barcodeCorrector.application.BarcodeCorrectorStats;
+import be.uzleuven.gc.logistics.GBSX.barcodeCorrector.application.BarcodeCorrectorThread;
+import be.uzleuven.gc.logistics.GBSX.barcodeCorrector.model.BarcodeCorrectorArguments;
+import be.uzleuven.gc.logistics.GBSX.barcodeCorrector.model.BarcodeCorrectorParameters;
+import be.uzleuven.gc.logistics.GBSX.utils.enzyme.infrastructure.EnzymeFileParser;
+import be.uzleuven.gc.logistics.GBSX.utils.enzyme.model.Enzyme;
+import be.uzleuven.gc.logistics.GBSX.utils.exceptions.StopExcecutionException;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqBufferedWriter;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqOrderedWriter;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqPipelinedReader;
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.infrastructure.InfoFileParser;
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.Sample;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * corrects the self correcting barcodes at the start of the reads of a fastq file, and writes the reads to a new fastq file.
+ * <br> the reads keep the order of the input, so the file can still be used together with its pair end file.
+ * <br> after the correction the demultiplexer can be used without mismatches in the barcodes.
+ * @author Koen Herten for the KU Leuven
+ */
+public class BarcodeCorrector {
+    
+    public static final boolean DEBUG = false;
+    public final static String VERSION = "Barcode Corrector v1.0";
+    public final static String LICENCE = "GPLv3";
+    
+    private BarcodeCorrectorParameters parameters;
+    /**
+     * the packed self correcting barcodes of the info file, sorted
+     */
+    private int[] sampleBarcodes;
+    
+    public static void main (String[] args){
+        try{
+            if (BarcodeCorrector.DEBUG){
+                String input = "-help";
+                args = input.split(" ");
+            }
+            BarcodeCorrector barcodeCorrector = new BarcodeCorrector(args);
+            barcodeCorrector.runBarcodeCorrector();
+        } catch (StopExcecutionException ex){
+            //End excecution as help of version is given
+            if (BarcodeCorrector.DEBUG){
+                ex.printStackTrace();
+            }
+        }
+    }
+    
+    public BarcodeCorrector(String[] args) throws StopExcecutionException{
+        this.parseParameters(args);
+    }
+    
+    private void parseParameters(String[] args) throws StopExcecutionException{
+        this.parameters = new BarcodeCorrectorParameters();
+        if (args.length == 0) {
+            throw new IllegalArgumentException("\n\nNo arguments given.\n\n");
+        }
+        if (args[0].equals("version") || args[0].equals("-version") || args[0].equals("-v")){
+            System.out.println(BarcodeCorrector.VERSION);
+            System.out.println("This is " + GBSX.VERSION + ". A toolkit for experimental design and demultiplexing genotyping by \n" +
+"sequencing experiments.");
+            throw new StopExcecutionException();
+        }
+        if (args[0].equals("help") || args[0].equals("-help") || args[0].equals("-h")){
+            BarcodeCorrector.getHelp();
+            throw new StopExcecutionException();
+        }
+        
+        if (args[0].equals("licence") || args[0].equals("-licence") || args[0].equals("-l")){
+            System.out.println("This file is part of GBSX.\n" +
+                "\n" +
+                "GBSX is free software: you can redistribute it and/or modify\n" +
+                "it under the terms of the GNU General Public License as published by\n" +
+                "the Free Software Foundation, either version 3 of the License, or\n" +
+                "(at your option) any later version.\n" +
+                "\n" +
+                "GBSX is distributed in the hope that it will be useful,\n" +
+                "but WITHOUT ANY WARRANTY; without even the implied warranty of\n" +
+                "MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the\n" +
+                "GNU General Public License for more details.\n" +
+                "\n" +
+                "You should have received a copy of the GNU General Public License\n" +
+                "along with GBSX.  If not, see <http://www.gnu.org/licenses/>.");
+            throw new StopExcecutionException();
+        }
+        //parse parameters
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+
+            // An option.
+            if (arg.startsWith("--") || arg.startsWith("-")) {
+                //check if the option is invalid
+                if (i + 1 >= args.length || args[i + 1].startsWith("-")) {
+                    //invalid option
+                    throw new RuntimeException("Value required for option "
+                            + arg);
+                }else{
+                    //get the argument
+                    BarcodeCorrectorArguments argument = BarcodeCorrectorArguments.INVALID_ARGUMENT.getArgument(arg);
+                    this.parameters.setParameter(argument, args[++i]);
+                }
+            }
+        }
+        //check all parameters
+        if (! this.parameters.areRequiredParametersSet()){
+            throw new RuntimeException(this.parameters.getErrorRequiredParametersSet());
+        }
+        //parse possible enzyme files
+        if (this.parameters.mustAddEnzymes()){
+            String fileName = this.parameters.getEnzymeFile();
+            try {
+                EnzymeFileParser enzymeFileParser = new EnzymeFileParser();
+                ArrayList<Enzyme> enzymeList = new ArrayList();
+                enzymeList.addAll(enzymeFileParser.parseEnzymeFile(fileName));
+                if (enzymeList.isEmpty()){
+                    throw new RuntimeException("No valid enzymes found in the enzyme file");
+                }
+                this.parameters.getEnzymeCollection().addEnzymes(enzymeList);
+            } catch (FileNotFoundException ex) {
+                Logger.getLogger(BarcodeCorrector.class.getName()).log(Level.SEVERE, null, ex);
+                throw new RuntimeException("Couldn't open the Enzyme file.", ex);
+            } catch (IOException ex) {
+                Logger.getLogger(BarcodeCorrector.class.getName()).log(Level.SEVERE, null, ex);
+                throw new RuntimeException("Couldn't open the Enzyme file", ex);
+            }
+        }
+        //parse the info file, only the barcodes of 15 bases can be corrected
+        try {
+            InfoFileParser infoFileParser = new InfoFileParser(this.parameters.getEnzymeCollection());
+            TreeSet<Integer> barcodes = new TreeSet();
+            for (Sample sample : infoFileParser.parseInfoFile(this.parameters.getInfoFile())){
+                if (sample.getBarcode().length() == BarcodeCorrectingAlgorithm.BARCODE_LENGTH
+                        && BarcodeCorrectingAlgorithm.isCorrectBarcode(sample.getBarcode())){
+                    barcodes.add(BarcodeCorrectingAlgorithm.pack(sample.getBarcode(), 0));
+                }
+            }
+            if (barcodes.isEmpty()){
+                throw new RuntimeException("No self correcting barcodes of " + BarcodeCorrectingAlgorithm.BARCODE_LENGTH + " bases found in the info file");
+            }
+            this.sampleBarcodes = new int[barcodes.size()];
+            int index = 0;
+            for (int barcode : barcodes){
+                this.sampleBarcodes[index] = barcode;
+                index++;
+            }
+        } catch (FileNotFoundException ex) {
+            Logger.getLogger(BarcodeCorrector.class.getName()).log(Level.SEVERE, null, ex);
+            throw new RuntimeException("Couldn't open the info file.", ex);
+        } catch (IOException ex) {
+            Logger.getLogger(BarcodeCorrector.class.getName()).log(Level.SEVERE, null, ex);
+            throw new RuntimeException("Couldn't open the info file", ex);
+        }
+        File outDir = new File(this.parameters.getOutputDirectory());
+        if (! outDir.exists()){
+            outDir.mkdirs();
+        }
+    }
+    
+    /**
+     * print help to standard output
+     */
+    public static void getHelp(){
+        System.out.println("");
+        System.out.println("");
+        System.out.println("This is the help of the BarcodeCorrector.");
+        System.out.println();
+        System.out.println("KU Leuven");
+        System.out.println("Licenced under " + BarcodeCorrector.LICENCE);
+        System.out.println(BarcodeCorrector.VERSION);
+        System.out.println();
+        System.out.println("This program corrects the self correcting barcodes (of the BarcodeGenerator) at the start of the reads.");
+        System.out.println("A barcode with 1 error is corrected to the barcode of the info file, other reads are written unchanged.");
+        System.out.println("The output can be demultiplexed without mismatches in the barcode (-mb 0).");
+        System.out.println();
+        System.out.println(new BarcodeCorrectorParameters().getParametersHelp());
+        System.out.println();
+        System.out.println();
+        System.out.println("Developed by the KU Leuven 2014");
+        System.out.println("Licenced under " + BarcodeCorrector.LICENCE);
+        System.out.println("For licence information use -licence");
+        System.out.println();
+    }
+    
+    /**
+     * corrects the barcodes of the fastq file
+     * <br> the reads are read and parsed by the pipelined reader, the threads correct the batches of reads,
+     * and the batches are written in the order of the input.
+     * <br> the counts are written to standard output and to barcodeCorrector.stats in the output directory
+     */
+    public void runBarcodeCorrector(){
+        File fastqFile = new File(this.parameters.getFastqFile());
+        File outputFile = new File(this.parameters.getOutputDirectory() + System.getProperty("file.separator") 
+                + BarcodeCorrector.getFileBaseName(fastqFile) + ".corrected" + this.parameters.getFileExtension());
+        int threads = this.parameters.getThreadNumber();
+        try {
+            FastqPipelinedReader fastqReader = new FastqPipelinedReader(fastqFile, this.parameters.mustBeZipped(), BarcodeCorrectorThread.READ_BATCH_SIZE, threads, 2 * threads);
+            FastqBufferedWriter fastqWriter = new FastqBufferedWriter(outputFile, this.parameters.mustBeZipped());
+            FastqOrderedWriter orderedWriter = new FastqOrderedWriter(4 * threads);
+            BarcodeCorrectorStats stats = new BarcodeCorrectorStats();
+            
+            ExecutorService service = Executors.newFixedThreadPool(threads);
+            List<Future<Runnable>> futures = new ArrayList<Future<Runnable>>();
+            for (int i = 0; i < threads; i++){
+                Future f = service.submit(new BarcodeCorrectorThread(fastqReader, fastqWriter, orderedWriter, this.sampleBarcodes, stats));
+                futures.add(f);
+            }
+            for (Future<Runnable> f : futures){
+                try {
+                    f.get();
+                } catch (InterruptedException ex) {
+                    Logger.getLogger(BarcodeCorrector.class.getName()).log(Level.SEVERE, null, ex);
+                } catch (ExecutionException ex) {
+                    Logger.getLogger(BarcodeCorrector.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+            service.shutdownNow();
+            
+            //all batches are committed => check if all are written, and close the files
+            orderedWriter.close();
+            fastqReader.close();
+            fastqWriter.close();
+            
+            System.out.println(this.parameters.getParametersLogString());
+            System.out.println(stats.getStatsString());
+            stats.saveStats(this.parameters.getOutputDirectory());
+        } catch (IOException ex) {
+            Logger.getLogger(BarcodeCorrector.class.getName()).log(Level.SEVERE, null, ex);
+            throw new RuntimeException("ERROR in correcting the fastq file: " + ex.getMessage(), ex);
+        }
+    }
+    
+    /**
+     * 
+     * @param file File | a fastq file
+     * @return String | the name of the file without the .gz, .fastq and .fq extensions
+     */
+    private static String getFileBaseName(File file){
+        String name = file.getName();
+        for (String extension : Arrays.asList(".gz", ".fastq", ".fq")){
+            if (name.endsWith(extension)){
+                name = name.substring(0, name.length() - extension.length());
+            }
+        }
+        return name;
+    }
+    
+}
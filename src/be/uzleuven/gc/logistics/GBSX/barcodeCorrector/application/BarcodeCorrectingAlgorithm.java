@@ -19,64 +19,188 @@
  */
 package be.uzleuven.gc.logistics.GBSX.barcodeCorrector.application;
 
-import java.util.HashMap;
-
 /**
- *
+ * corrects the self correcting barcodes (the quaternary Hamming code of the barcodeGenerator).
+ * <br> a barcode has 15 bases: the parity bases on position 1, 2, 4 and 8 (first is 1) and 11 data bases.
+ * <br> the parity base on position 2^i makes the sum (A=0, C=1, G=2, T=3) of all bases on a position with bit i set a multiple of 4.
+ * <br> the barcode is packed in an int (2 bits for every base), the syndrome is the 4 sums modulo 4 (2 bits for every sum).
+ * <br> one error of size e on position p gives e as sum for every bit of p, so the table with the correction
+ * of all 256 syndromes is made once, and a barcode is corrected with one lookup.
  * @author Koen Herten for the KU Leuven
  */
 public class BarcodeCorrectingAlgorithm {
     
+    /**
+     * the length of a self correcting barcode
+     */
+    public static final int BARCODE_LENGTH = 15;
+    private static final char[] BASES = {'A', 'C', 'G', 'T'};
+    /**
+     * the syndrome of a barcode that can't be corrected (more than 1 error)
+     */
+    private static final int UNCORRECTABLE = -1;
+    /**
+     * the correction of every syndrome: 0 for a correct barcode, UNCORRECTABLE, or the position * 4 + the size of the error
+     */
+    private static final int[] CORRECTIONS = BarcodeCorrectingAlgorithm.createCorrections();
     
     /**
      * 
-     * @param barcode String | the barcode to check
-     * @return true if the hamming code is correct, false otherwise
+     * @return int[] | the correction of every syndrome
      */
-    public boolean isCorrectBarcode(String barcode){
-        char[] charArray = barcode.toCharArray();
-        char d1 = charArray[2];
-        char d2 = charArray[4];
-        char d3 = charArray[5];
-        char d4 = charArray[6];
-        char d5 = charArray[8];
-        char d6 = charArray[9];
-        char d7 = charArray[10];
-        char d8 = charArray[11];
-        char d9 = charArray[12];
-        char d10 = charArray[13];
-        char d11 = charArray[14];
-        char p1 = charArray[0];
-        char p2 = charArray[1];
-        char p3 = charArray[3];
-        char p4 = charArray[7];
-        HashMap<Character, Integer> basesIntMap = new HashMap();
-        basesIntMap.put('A', 0);
-        basesIntMap.put('C', 1);
-        basesIntMap.put('G', 2);
-        basesIntMap.put('T', 3);
-        int predictedP1 = (4 - (basesIntMap.get(d1) + basesIntMap.get(d2) + basesIntMap.get(d4) + basesIntMap.get(d5) 
-                + basesIntMap.get(d7) + basesIntMap.get(d9) + basesIntMap.get(d11)) % 4) % 4;
-        int predictedP2 = (4 - (basesIntMap.get(d1) + basesIntMap.get(d3) + basesIntMap.get(d4) + basesIntMap.get(d6) 
-                + basesIntMap.get(d7) + basesIntMap.get(d10) + basesIntMap.get(d11)) % 4) % 4;
-        int predictedP3 = (4 - (basesIntMap.get(d2) + basesIntMap.get(d3) + basesIntMap.get(d4) + basesIntMap.get(d8) 
-                + basesIntMap.get(d9) + basesIntMap.get(d10) + basesIntMap.get(d11)) % 4) % 4;
-        int predictedP4 = (4 - (basesIntMap.get(d5) + basesIntMap.get(d6) + basesIntMap.get(d7) + basesIntMap.get(d8) 
-                + basesIntMap.get(d9) + basesIntMap.get(d10) + basesIntMap.get(d11)) % 4) % 4;
-        char base1 = 'N';
-        char base2 = 'N';
-        char base3 = 'N';
-        char base4 = 'N';
-        for (char base : basesIntMap.keySet()){
-            if (basesIntMap.get(base) == predictedP1) base1 = base;
-            if (basesIntMap.get(base) == predictedP2) base2 = base;
-            if (basesIntMap.get(base) == predictedP3) base3 = base;
-            if (basesIntMap.get(base) == predictedP4) base4 = base;
+    private static int[] createCorrections(){
+        int[] corrections = new int[256];
+        for (int syndrome = 1; syndrome < corrections.length; syndrome++){
+            corrections[syndrome] = BarcodeCorrectingAlgorithm.UNCORRECTABLE;
         }
-        if (base1 == p1 && base2 == p2 && base3 == p3 && base4 == p4){
-            return true;
+        for (int position = 0; position < BarcodeCorrectingAlgorithm.BARCODE_LENGTH; position++){
+            for (int error = 1; error < 4; error++){
+                int syndrome = 0;
+                for (int bit = 0; bit < 4; bit++){
+                    if (((position + 1) & (1 << bit)) != 0){
+                        syndrome |= error << (2 * bit);
+                    }
+                }
+                corrections[syndrome] = position * 4 + error;
+            }
         }
-        return false;
+        return corrections;
+    }
+    
+    /**
+     * packs the barcode at the given location of the sequence
+     * @param sequence String | the sequence
+     * @param start int | the location of the barcode in the sequence
+     * @return int | the packed barcode (2 bits for every base, the first base in the lowest bits),
+     * or -1 if the sequence is to short or the barcode has other bases than A, C, G and T
+     */
+    public static int pack(String sequence, int start){
+        if (start < 0 || start + BarcodeCorrectingAlgorithm.BARCODE_LENGTH > sequence.length()){
+            return -1;
+        }
+        int packed = 0;
+        for (int i = 0; i < BarcodeCorrectingAlgorithm.BARCODE_LENGTH; i++){
+            int value = BarcodeCorrectingAlgorithm.getBaseValue(sequence.charAt(start + i));
+            if (value == -1){
+                return -1;
+            }
+            packed |= value << (2 * i);
+        }
+        return packed;
+    }
+    
+    /**
+     * packs the barcode at the given location of the bases, without making a String of them
+     * @param bases byte[] | the bases (for example the data of a fastq read)
+     * @param start int | the location of the barcode in the bases
+     * @param end int | the end of the bases that can be used (exclusive)
+     * @return int | the packed barcode (2 bits for every base, the first base in the lowest bits),
+     * or -1 if there are not enough bases or the barcode has other bases than A, C, G and T
+     */
+    public static int pack(byte[] bases, int start, int end){
+        if (start < 0 || start + BarcodeCorrectingAlgorithm.BARCODE_LENGTH > end || end > bases.length){
+            return -1;
+        }
+        int packed = 0;
+        for (int i = 0; i < BarcodeCorrectingAlgorithm.BARCODE_LENGTH; i++){
+            int value = BarcodeCorrectingAlgorithm.getBaseValue(bases[start + i]);
+            if (value == -1){
+                return -1;
+            }
+            packed |= value << (2 * i);
+        }
+        return packed;
+    }
+    
+    /**
+     * 
+     * @param base int | the base
+     * @return int | the value of the base (A=0, C=1, G=2, T=3), or -1 for any other base
+     */
+    private static int getBaseValue(int base){
+        switch (base){
+            case 'A': return 0;
+            case 'C': return 1;
+            case 'G': return 2;
+            case 'T': return 3;
+            default: return -1;
+        }
+    }
+    
+    /**
+     * 
+     * @param packedBarcode int | a packed barcode
+     * @param position int | the position of the base in the barcode (first is 0)
+     * @return char | the base on the given position
+     */
+    public static char getBase(int packedBarcode, int position){
+        return BarcodeCorrectingAlgorithm.BASES[(packedBarcode >>> (2 * position)) & 3];
+    }
+    
+    /**
+     * 
+     * @param packedBarcode int | a packed barcode
+     * @return String | the barcode
+     */
+    public static String unpack(int packedBarcode){
+        char[] barcode = new char[BarcodeCorrectingAlgorithm.BARCODE_LENGTH];
+        for (int i = 0; i < barcode.length; i++){
+            barcode[i] = BarcodeCorrectingAlgorithm.BASES[(packedBarcode >>> (2 * i)) & 3];
+        }
+        return new String(barcode);
+    }
+    
+    /**
+     * 
+     * @param packedBarcode int | a packed barcode
+     * @return int | the syndrome (the sum of parity base 2^i with its bases modulo 4 in bits 2i and 2i+1), 0 for a correct barcode
+     */
+    public static int getSyndrome(int packedBarcode){
+        int sum1 = 0;
+        int sum2 = 0;
+        int sum4 = 0;
+        int sum8 = 0;
+        for (int i = 0; i < BarcodeCorrectingAlgorithm.BARCODE_LENGTH; i++){
+            int value = (packedBarcode >>> (2 * i)) & 3;
+            int position = i + 1;
+            if ((position & 1) != 0) sum1 += value;
+            if ((position & 2) != 0) sum2 += value;
+            if ((position & 4) != 0) sum4 += value;
+            if ((position & 8) != 0) sum8 += value;
+        }
+        return (sum1 & 3) | ((sum2 & 3) << 2) | ((sum4 & 3) << 4) | ((sum8 & 3) << 6);
+    }
+    
+    /**
+     * corrects a packed barcode with the table of the syndromes
+     * @param packedBarcode int | a packed barcode
+     * @return int | the packed barcode (with 1 error corrected), or -1 if the barcode can't be corrected (more than 1 error)
+     */
+    public static int decode(int packedBarcode){
+        int correction = BarcodeCorrectingAlgorithm.CORRECTIONS[BarcodeCorrectingAlgorithm.getSyndrome(packedBarcode)];
+        if (correction == 0){
+            //correct barcode
+            return packedBarcode;
+        }
+        if (correction == BarcodeCorrectingAlgorithm.UNCORRECTABLE){
+            return -1;
+        }
+        int shift = 2 * (correction >>> 2);
+        int value = ((packedBarcode >>> shift) - (correction & 3)) & 3;
+        return (packedBarcode & ~(3 << shift)) | (value << shift);
+    }
+    
+    /**
+     * 
+     * @param barcode String | the barcode to check
+     * @return true if the hamming code is correct, false otherwise (also for barcodes that are not 15 bases of A, C, G and T)
+     */
+    public static boolean isCorrectBarcode(String barcode){
+        int packedBarcode = BarcodeCorrectingAlgorithm.pack(barcode, 0);
+        if (barcode.length() != BarcodeCorrectingAlgorithm.BARCODE_LENGTH || packedBarcode == -1){
+            return false;
+        }
+        return BarcodeCorrectingAlgorithm.getSyndrome(packedBarcode) == 0;
     }
     
     /**
@@ -84,84 +208,45 @@ public class BarcodeCorrectingAlgorithm {
      * <br> if the barcode is correct, the barcode is returned
      * <br> if an error is found, this is tried to be fixed
      * <br> barcodes with 1 error are fixed correctly
-     * <br> barcodes with more then 1 errors can't be fixed (a wrong fix is returned)
+     * <br> barcodes with more then 1 errors are fixed wrong, or can't be fixed (then the barcode is returned)
+     * <br> barcodes that are not 15 bases of A, C, G and T can't be fixed, and are returned
      * @param barcode String
      * @return String | the corrected barcode
      */
-    public String correctBarcode(String barcode){
-        char[] charArray = barcode.toCharArray();
-        char d1 = charArray[2];
-        char d2 = charArray[4];
-        char d3 = charArray[5];
-        char d4 = charArray[6];
-        char d5 = charArray[8];
-        char d6 = charArray[9];
-        char d7 = charArray[10];
-        char d8 = charArray[11];
-        char d9 = charArray[12];
-        char d10 = charArray[13];
-        char d11 = charArray[14];
-        char p1 = charArray[0];
-        char p2 = charArray[1];
-        char p3 = charArray[3];
-        char p4 = charArray[7];
-        HashMap<Character, Integer> basesIntMap = new HashMap();
-        basesIntMap.put('A', 0);
-        basesIntMap.put('C', 1);
-        basesIntMap.put('G', 2);
-        basesIntMap.put('T', 3);
-        int predictedP1 = (4 - (basesIntMap.get(d1) + basesIntMap.get(d2) + basesIntMap.get(d4) + basesIntMap.get(d5) 
-                + basesIntMap.get(d7) + basesIntMap.get(d9) + basesIntMap.get(d11)) % 4) % 4;
-        int predictedP2 = (4 - (basesIntMap.get(d1) + basesIntMap.get(d3) + basesIntMap.get(d4) + basesIntMap.get(d6) 
-                + basesIntMap.get(d7) + basesIntMap.get(d10) + basesIntMap.get(d11)) % 4) % 4;
-        int predictedP3 = (4 - (basesIntMap.get(d2) + basesIntMap.get(d3) + basesIntMap.get(d4) + basesIntMap.get(d8) 
-                + basesIntMap.get(d9) + basesIntMap.get(d10) + basesIntMap.get(d11)) % 4) % 4;
-        int predictedP4 = (4 - (basesIntMap.get(d5) + basesIntMap.get(d6) + basesIntMap.get(d7) + basesIntMap.get(d8) 
-                + basesIntMap.get(d9) + basesIntMap.get(d10) + basesIntMap.get(d11)) % 4) % 4;
-        char base1 = 'N';
-        char base2 = 'N';
-        char base3 = 'N';
-        char base4 = 'N';
-        for (char base : basesIntMap.keySet()){
-            if (basesIntMap.get(base) == predictedP1) base1 = base;
-            if (basesIntMap.get(base) == predictedP2) base2 = base;
-            if (basesIntMap.get(base) == predictedP3) base3 = base;
-            if (basesIntMap.get(base) == predictedP4) base4 = base;
+    public static String correctBarcode(String barcode){
+        int packedBarcode = BarcodeCorrectingAlgorithm.pack(barcode, 0);
+        if (barcode.length() != BarcodeCorrectingAlgorithm.BARCODE_LENGTH || packedBarcode == -1){
+            return barcode;
         }
-        if (base1 == p1 && base2 == p2 && base3 == p3 && base4 == p4){
+        int correctedBarcode = BarcodeCorrectingAlgorithm.decode(packedBarcode);
+        if (correctedBarcode == -1 || correctedBarcode == packedBarcode){
             return barcode;
-        }else{
-            //calculates the position of the error
-            int place = 0;
-            if (predictedP4 != 0){
-                place += 8;
-            }
-            if (predictedP3 != 0){
-                place += 4;
-            }
-            if (predictedP2 != 0){
-                place += 2;
-            }
-            if (predictedP1 != 0){
-                place += 1;
-            }
-            //calculates the right value at that position
-            int errorType = Math.max(Math.max(predictedP1, predictedP2), Math.max(predictedP3, predictedP4));
-            int correcting = (basesIntMap.get(charArray[place - 1]) - errorType) % 4;
-            if (correcting < 0){
-                correcting = 4 + correcting;
-            }
-            char correctBase = 'N';
-            for (char base : basesIntMap.keySet()){
-                if (basesIntMap.get(base) == correcting) correctBase = base;
-            }
-            charArray[place - 1] = correctBase;
-            String newBarcode = "";
-            for (int i = 0; i < charArray.length; i++){
-                newBarcode += charArray[i];
+        }
+        return BarcodeCorrectingAlgorithm.unpack(correctedBarcode);
+    }
+    
+    /**
+     * returns true if the corrected barcode at the given location of the sequence is the given barcode
+     * <br> the same as correctBarcode(sequence.substring(start, start + barcode.length())).equals(barcode),
+     * but without substrings (false if the sequence is to short)
+     * @param sequence String | the sequence
+     * @param start int | the location of the barcode in the sequence
+     * @param barcode String | the barcode (of a sample)
+     * @return true if the (corrected) barcode in the sequence is the given barcode
+     * @see BarcodeCorrectingAlgorithm#correctBarcode(java.lang.String) 
+     */
+    public static boolean isCorrectedBarcode(String sequence, int start, String barcode){
+        if (barcode.length() == BarcodeCorrectingAlgorithm.BARCODE_LENGTH){
+            int packedSequence = BarcodeCorrectingAlgorithm.pack(sequence, start);
+            if (packedSequence != -1){
+                int correctedSequence = BarcodeCorrectingAlgorithm.decode(packedSequence);
+                if (correctedSequence != -1){
+                    return correctedSequence == BarcodeCorrectingAlgorithm.pack(barcode, 0);
+                }
             }
-            barcode = newBarcode;
         }
-        return barcode;
+        //not corrected
+        return sequence.regionMatches(start, barcode, 0, barcode.length());
     }
+    
 }
@@ -0,0 +1,135 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.barcodeCorrector.application;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * the counts of the barcode corrector, shared by all correcting threads.
+ * <br> every thread counts its own reads, and adds them once when it is finished.
+ * @author Koen Herten for the KU Leuven
+ */
+public class BarcodeCorrectorStats {
+    
+    private long correctReads;
+    private long correctedReads;
+    private long uncorrectableReads;
+    private ReentrantLock lock = new ReentrantLock();
+    
+    public BarcodeCorrectorStats(){
+        this.correctReads = 0;
+        this.correctedReads = 0;
+        this.uncorrectableReads = 0;
+    }
+    
+    /**
+     * adds the counts of a thread
+     * @param correctReads long | the number of reads with a correct barcode
+     * @param correctedReads long | the number of reads where 1 error in the barcode is corrected
+     * @param uncorrectableReads long | the number of reads where the barcode can't be corrected
+     */
+    public void addCounts(long correctReads, long correctedReads, long uncorrectableReads){
+        try{
+            lock.lock();
+            this.correctReads += correctReads;
+            this.correctedReads += correctedReads;
+            this.uncorrectableReads += uncorrectableReads;
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 
+     * @return long | the number of reads with a correct barcode
+     */
+    public long getCorrectReads(){
+        try{
+            lock.lock();
+            return this.correctReads;
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 
+     * @return long | the number of reads where 1 error in the barcode is corrected
+     */
+    public long getCorrectedReads(){
+        try{
+            lock.lock();
+            return this.correctedReads;
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 
+     * @return long | the number of reads where the barcode can't be corrected
+     */
+    public long getUncorrectableReads(){
+        try{
+            lock.lock();
+            return this.uncorrectableReads;
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 
+     * @return String | the counts, 1 count on every line
+     */
+    public String getStatsString(){
+        try{
+            lock.lock();
+            String stats = "";
+            stats += "correct\t" + this.correctReads + "\n";
+            stats += "corrected\t" + this.correctedReads + "\n";
+            stats += "uncorrectable\t" + this.uncorrectableReads + "\n";
+            stats += "total\t" + (this.correctReads + this.correctedReads + this.uncorrectableReads) + "\n";
+            return stats;
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * writes the counts to the file barcodeCorrector.stats in the given directory
+     * @param outputDirectory String | the output directory
+     * @throws IOException | if an error occures while writing the file
+     */
+    public void saveStats(String outputDirectory) throws IOException{
+        File statsFile = new File(outputDirectory + System.getProperty("file.separator") + "barcodeCorrector.stats");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(statsFile));
+        try{
+            writer.write(this.getStatsString());
+        }finally{
+            writer.close();
+        }
+    }
+    
+}
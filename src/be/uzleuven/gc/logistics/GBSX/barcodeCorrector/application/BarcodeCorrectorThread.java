@@ -0,0 +1,140 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.barcodeCorrector.application;
+
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqBatchReader;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqBufferedWriter;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqOrderedWriter;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqWriteBuffer;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqWriterPool;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadBatch;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * takes batches of reads from the reader, corrects the self correcting barcode at the start of every read,
+ * and writes the batch to the output in the order of the input.
+ * <br> a barcode is only corrected to a barcode of the info file, the other reads are written unchanged.
+ * @author Koen Herten for the KU Leuven
+ */
+public class BarcodeCorrectorThread implements Runnable{
+    
+    /**
+     * the number of reads taken from the reader at once
+     */
+    public static final int READ_BATCH_SIZE = 4096;
+    
+    private final FastqBatchReader fastqReader;
+    private final FastqBufferedWriter fastqWriter;
+    private final FastqOrderedWriter orderedWriter;
+    /**
+     * the packed barcodes of the samples, sorted
+     */
+    private final int[] sampleBarcodes;
+    private final BarcodeCorrectorStats stats;
+    /**
+     * the buffer of this thread, holds the reads of 1 batch
+     */
+    private final FastqWriteBuffer buffer;
+    private long correctReads;
+    private long correctedReads;
+    private long uncorrectableReads;
+    
+    /**
+     * 
+     * @param fastqReader FastqBatchReader | the reader of the fastq file
+     * @param fastqWriter FastqBufferedWriter | the writer of the corrected fastq file
+     * @param orderedWriter FastqOrderedWriter | writes the batches in the order of the input
+     * @param sampleBarcodes int[] | the packed barcodes of the samples, sorted
+     * @param stats BarcodeCorrectorStats | the stats where the counts of this thread are added to
+     */
+    public BarcodeCorrectorThread(FastqBatchReader fastqReader, FastqBufferedWriter fastqWriter, FastqOrderedWriter orderedWriter, 
+            int[] sampleBarcodes, BarcodeCorrectorStats stats){
+        this.fastqReader = fastqReader;
+        this.fastqWriter = fastqWriter;
+        this.orderedWriter = orderedWriter;
+        this.sampleBarcodes = sampleBarcodes;
+        this.stats = stats;
+        this.buffer = new FastqWriteBuffer(FastqWriterPool.getFlushSize(1));
+        this.correctReads = 0;
+        this.correctedReads = 0;
+        this.uncorrectableReads = 0;
+    }
+
+    @Override
+    public void run() {
+        try{
+            FastqReadBatch batch = new FastqReadBatch(READ_BATCH_SIZE);
+            while (this.fastqReader.nextBatch(batch)){
+                try{
+                    for (int i = 0; i < batch.size(); i++){
+                        FastqRead read = batch.get(i);
+                        this.correctRead(read);
+                        this.buffer.write(read);
+                    }
+                }finally{
+                    FastqOrderedWriter.OrderedBatch orderedBatch = this.orderedWriter.createBatch(batch.getSequenceNumber());
+                    orderedBatch.add(this.fastqWriter, this.buffer);
+                    this.orderedWriter.commit(orderedBatch);
+                }
+            }
+        }catch(IOException ex){
+            Logger.getLogger(BarcodeCorrectorThread.class.getName()).log(Level.SEVERE, null, ex);
+        }finally{
+            this.stats.addCounts(this.correctReads, this.correctedReads, this.uncorrectableReads);
+        }
+    }
+    
+    /**
+     * corrects the barcode at the start of the read, the bases are changed in the read self
+     * <br> the barcode is corrected if it has 1 error, and the corrected barcode is a barcode of a sample
+     * @param read FastqRead | the read
+     */
+    private void correctRead(FastqRead read){
+        int start = read.getSequenceStart();
+        int packedBarcode = BarcodeCorrectingAlgorithm.pack(read.getData(), start, start + read.getSequenceLength());
+        if (packedBarcode == -1){
+            //to short, or other bases than A, C, G and T
+            this.uncorrectableReads++;
+            return;
+        }
+        if (Arrays.binarySearch(this.sampleBarcodes, packedBarcode) >= 0){
+            this.correctReads++;
+            return;
+        }
+        int correctedBarcode = BarcodeCorrectingAlgorithm.decode(packedBarcode);
+        if (correctedBarcode == -1 || Arrays.binarySearch(this.sampleBarcodes, correctedBarcode) < 0){
+            this.uncorrectableReads++;
+            return;
+        }
+        //only 1 base is different
+        for (int i = 0; i < BarcodeCorrectingAlgorithm.BARCODE_LENGTH; i++){
+            char base = BarcodeCorrectingAlgorithm.getBase(correctedBarcode, i);
+            if (base != BarcodeCorrectingAlgorithm.getBase(packedBarcode, i)){
+                read.setBase(i, (byte) base);
+            }
+        }
+        this.correctedReads++;
+    }
+    
+}
@@ -51,6 +51,10 @@ public enum BarcodeCorrectorArguments implements Arguments{
      * the file with extra enzymes
      */
     ENZYME_FILE ("-ef"),
+    /**
+     * the number of threads
+     */
+    THREADS ("-t"),
     /**
      * invalid argument
      */
@@ -38,6 +38,8 @@ public class BarcodeCorrectorParameters implements Parameters{
         this.arguments = new HashMap();
         this.enzymeCollection = new EnzymeCollection();
         this.arguments.put(BarcodeCorrectorArguments.IS_ZIPPED, "true");
+        this.arguments.put(BarcodeCorrectorArguments.OUTPUT_DIRECTORY, System.getProperty("user.dir"));
+        this.arguments.put(BarcodeCorrectorArguments.THREADS, "1");
     }
 
     @Override
@@ -177,6 +179,26 @@ public class BarcodeCorrectorParameters implements Parameters{
         }
     }
 
+    /**
+     * 
+     * @return String | the extension of the output file (.fastq.gz if zipped, else .fastq)
+     */
+    public String getFileExtension(){
+        if (this.mustBeZipped()){
+            return ".fastq.gz";
+        }else{
+            return ".fastq";
+        }
+    }
+    
+    /**
+     * 
+     * @return int | the number of threads that correct the barcodes
+     */
+    public int getThreadNumber(){
+        return Integer.parseInt(this.getParameter(BarcodeCorrectorArguments.THREADS));
+    }
+    
     /**
      * 
      * @return true if the parameters contains an enzyme file
@@ -201,6 +223,7 @@ public class BarcodeCorrectorParameters implements Parameters{
         if (this.mustAddEnzymes()){
             toLog += "Used enzyme file: " + this.getEnzymeFile() + "\n";
         }
+        toLog += "Used threads: " + this.getThreadNumber() + "\n";
         return toLog;
     }
 
@@ -214,6 +237,7 @@ public class BarcodeCorrectorParameters implements Parameters{
         toHelp += "\t -e \t The used enzyme (no standard multiple enzyme support, solution: execute twice or use custom enzyme) \n";
         toHelp += "\t -ef \t An extra enzyme file, with custom enzymes (tab delimited file with as the first column the enzyme names, the second"
                 + " column comma seperated enzyme cutsites remains. \n";
+        toHelp += "\t -t \t The number of threads to use (standard 1) \n";
         return toHelp;
     }
     
@@ -28,6 +28,7 @@ import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqBufferedRea
 import be.uzleuven.gc.logistics.GBSX.utils.enzyme.model.Enzyme;
 import be.uzleuven.gc.logistics.GBSX.utils.enzyme.model.EnzymeComparator;
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadBatch;
 import java.io.BufferedWriter;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -48,7 +49,10 @@ import java.util.logging.Logger;
  */
 public class BarcodeDiscovery {
     
-    
+    /**
+     * the number of reads that are read at once
+     */
+    private static final int READ_BATCH_SIZE = 4096;
     
     /**
      * 
@@ -215,21 +219,27 @@ public class BarcodeDiscovery {
             }
             
             //init vars needed in the loop to go furter
-            FastqRead fastq1;
-            while ((fastq1 = fastq1Reader.next()) != null) {
-                //read the next fastq line
-                //go over every possible barcode length
-                for (int index = shortestBarcode; index <= (longestBarcode + longestEnzymeSite); index++){
-                    HashMap<String, Integer> sequenceCountMap = barcodeMap.get(index);
-                    //put into the map
-                    if (sequenceCountMap.containsKey(fastq1.getSequence().substring(0, index))){
-                        sequenceCountMap.put(fastq1.getSequence().substring(0, index), sequenceCountMap.get(fastq1.getSequence().substring(0, index)) + 1);
-                    }else{
-                        sequenceCountMap.put(fastq1.getSequence().substring(0, index), 1);
+            //the reads are read in batches, the bytes of the file are not decoded
+            FastqReadBatch batch = new FastqReadBatch(BarcodeDiscovery.READ_BATCH_SIZE);
+            while (fastq1Reader.nextBatch(batch)) {
+                for (int read = 0; read < batch.size(); read++){
+                    FastqRead fastq1 = batch.get(read);
+                    String sequence = fastq1.getSequence();
+                    //go over every possible barcode length
+                    for (int index = shortestBarcode; index <= (longestBarcode + longestEnzymeSite); index++){
+                        HashMap<String, Integer> sequenceCountMap = barcodeMap.get(index);
+                        String start = sequence.substring(0, index);
+                        //put into the map
+                        Integer count = sequenceCountMap.get(start);
+                        if (count != null){
+                            sequenceCountMap.put(start, count + 1);
+                        }else{
+                            sequenceCountMap.put(start, 1);
+                        }
                     }
                 }
-                 
             }
+            fastq1Reader.close();
             System.out.println("All sequences run");
             //go over every map
             //and write to file
@@ -0,0 +1,323 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.demultiplexer.application;
+
+import be.uzleuven.gc.logistics.GBSX.barcodeCorrector.application.BarcodeCorrectingAlgorithm;
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.DemultiplexParameters;
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.FindingsAlgorithms;
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.Sample;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * an index of all barcodes of the samples, and all sequences within the allowed mismatches of these barcodes.
+ * <br> instead of comparing a read with the barcode of every sample, the start of the read is looked up
+ * in the index, which gives the samples whose barcode is within the allowed mismatches.
+ * <br> the index can only be used when the barcodes are compared with the hammings distance (hammings, knuth and packed),
+ * or with self correcting barcodes. The barcodes must only contain A, C, G and T.
+ * <br> reads with other bases (like N) at the barcode location can't be looked up, for these reads all samples must be checked.
+ * <br> with self correcting barcodes only the barcodes are in the index, the barcode of the read is corrected (once for every barcode length)
+ * and then looked up, so every read can be looked up.
+ * @author Koen Herten for the KU Leuven
+ */
+public class BarcodeIndex {
+    
+    /**
+     * the maximum number of sequences in the index, if more sequences are needed, no index is made
+     */
+    public static final int MAXIMUM_INDEX_SIZE = 4000000;
+    private static final char[] BASES = {'A', 'C', 'G', 'T'};
+    
+    /**
+     * all different barcode lengths, from short to long
+     */
+    private final int[] barcodeLengths;
+    /**
+     * the sequences (of all barcode lengths) and the samples whose barcode is within the allowed mismatches
+     */
+    private final HashMap<String, ArrayList<Sample>> index;
+    private final boolean selfCorrecting;
+    
+    /**
+     * creates the index of the barcodes of the given samples
+     * @param sampleList List of Sample | all samples
+     * @param parameters DemultiplexParameters | the parameters, for the allowed mismatches per sample
+     * @param indexSize int | the expected number of sequences in the index
+     * @param selfCorrecting boolean | true if the barcodes are self correcting (no mismatches in the index)
+     */
+    private BarcodeIndex(List<Sample> sampleList, DemultiplexParameters parameters, int indexSize, boolean selfCorrecting){
+        TreeSet<Integer> lengths = new TreeSet<Integer>();
+        for (Sample sample : sampleList){
+            lengths.add(sample.getBarcode().length());
+        }
+        this.barcodeLengths = new int[lengths.size()];
+        int i = 0;
+        for (int length : lengths){
+            this.barcodeLengths[i] = length;
+            i++;
+        }
+        this.selfCorrecting = selfCorrecting;
+        this.index = new HashMap<String, ArrayList<Sample>>(indexSize * 4 / 3 + 1);
+        for (Sample sample : sampleList){
+            char[] barcode = sample.getBarcode().toCharArray();
+            if (selfCorrecting){
+                this.addNeighbours(barcode, 0, 0, sample);
+            }else{
+                this.addNeighbours(barcode, 0, parameters.getAllowedMismatchesBarcode(sample), sample);
+            }
+        }
+    }
+    
+    /**
+     * creates the index of the barcodes of the given samples, if the index can be used with the given parameters
+     * @param sampleList List of Sample | all samples
+     * @param parameters DemultiplexParameters | the parameters of the demultiplexing
+     * @return BarcodeIndex | the index, or null if the index can't be used (not a hammings based algorithm without self correcting barcodes,
+     * barcodes with other bases than ACGT, negative mismatches, or too many sequences within the allowed mismatches)
+     */
+    public static BarcodeIndex createIndex(List<Sample> sampleList, DemultiplexParameters parameters){
+        if (parameters.useSelfCorrectingBarcodes()){
+            //the mismatches and the algorithm are not used, only the barcodes are in the index
+            for (Sample sample : sampleList){
+                if (! BarcodeIndex.isIndexable(sample.getBarcode())){
+                    return null;
+                }
+            }
+            return new BarcodeIndex(sampleList, parameters, sampleList.size(), true);
+        }
+        FindingsAlgorithms algorithm = parameters.getFindingsAlgorithm();
+        if (algorithm != FindingsAlgorithms.HAMMINGS_DISTANCE && algorithm != FindingsAlgorithms.KNUTH_MORRIS_PRATT_DISTANCE
+                && algorithm != FindingsAlgorithms.PACKED_HAMMINGS_DISTANCE){
+            return null;
+        }
+        long indexSize = 0;
+        for (Sample sample : sampleList){
+            String barcode = sample.getBarcode();
+            if (parameters.getAllowedMismatchesBarcode(sample) < 0){
+                return null;
+            }
+            if (! BarcodeIndex.isIndexable(barcode)){
+                return null;
+            }
+            indexSize += BarcodeIndex.neighbourhoodSize(barcode.length(), parameters.getAllowedMismatchesBarcode(sample));
+            if (indexSize > MAXIMUM_INDEX_SIZE){
+                return null;
+            }
+        }
+        return new BarcodeIndex(sampleList, parameters, (int) indexSize, false);
+    }
+    
+    /**
+     * gives all samples that have a barcode within their allowed mismatches of the sequence at the given location
+     * <br> the returned list may not be changed
+     * @param sequence String | the sequence of the read
+     * @param start int | the location of the barcode in the sequence
+     * @return List of Sample | all samples with a barcode within the allowed mismatches (per barcode length in the order of the sample list),
+     * or null if the sequence can't be looked up (other bases than ACGT, or too short), then all samples must be checked
+     * (never null with self correcting barcodes)
+     */
+    public List<Sample> getCandidates(String sequence, int start){
+        if (this.barcodeLengths.length == 1){
+            return this.getCandidates(sequence, start, this.barcodeLengths[0]);
+        }
+        ArrayList<Sample> candidates = null;
+        for (int length : this.barcodeLengths){
+            List<Sample> lengthCandidates = this.getCandidates(sequence, start, length);
+            if (lengthCandidates == null){
+                return null;
+            }
+            if (! lengthCandidates.isEmpty()){
+                if (candidates == null){
+                    candidates = new ArrayList<Sample>();
+                }
+                candidates.addAll(lengthCandidates);
+            }
+        }
+        if (candidates == null){
+            return Collections.emptyList();
+        }
+        return candidates;
+    }
+    
+    /**
+     * 
+     * @param sequence String | the sequence of the read
+     * @param start int | the location of the barcode in the sequence
+     * @param length int | the length of the barcodes
+     * @return List of Sample | the samples with a barcode of the given length within the allowed mismatches
+     * (or the corrected barcode with self correcting barcodes), or null if the sequence can't be looked up
+     */
+    private List<Sample> getCandidates(String sequence, int start, int length){
+        if (this.selfCorrecting){
+            return this.getCorrectedCandidates(sequence, start, length);
+        }
+        if (start + length > sequence.length()){
+            return null;
+        }
+        for (int i = start; i < start + length; i++){
+            if (BarcodeIndex.baseIndex(sequence.charAt(i)) == -1){
+                return null;
+            }
+        }
+        ArrayList<Sample> candidates = this.index.get(sequence.substring(start, start + length));
+        if (candidates == null){
+            return Collections.emptyList();
+        }
+        return candidates;
+    }
+    
+    /**
+     * with self correcting barcodes: corrects the barcode of the read and looks it up
+     * <br> barcodes of 15 bases are corrected with the syndrome table, other barcodes (and reads that can't be corrected) are looked up as they are
+     * @param sequence String | the sequence of the read
+     * @param start int | the location of the barcode in the sequence
+     * @param length int | the length of the barcodes
+     * @return List of Sample | the samples with the (corrected) barcode, empty if the sequence is to short
+     * @see BarcodeCorrectingAlgorithm#correctBarcode(java.lang.String) 
+     */
+    private List<Sample> getCorrectedCandidates(String sequence, int start, int length){
+        if (start + length > sequence.length()){
+            return Collections.emptyList();
+        }
+        String barcode = null;
+        if (length == BarcodeCorrectingAlgorithm.BARCODE_LENGTH){
+            int packedBarcode = BarcodeCorrectingAlgorithm.pack(sequence, start);
+            if (packedBarcode != -1){
+                int correctedBarcode = BarcodeCorrectingAlgorithm.decode(packedBarcode);
+                if (correctedBarcode != -1 && correctedBarcode != packedBarcode){
+                    barcode = BarcodeCorrectingAlgorithm.unpack(correctedBarcode);
+                }
+            }
+        }
+        if (barcode == null){
+            //not corrected
+            barcode = sequence.substring(start, start + length);
+        }
+        ArrayList<Sample> candidates = this.index.get(barcode);
+        if (candidates == null){
+            return Collections.emptyList();
+        }
+        return candidates;
+    }
+    
+    /**
+     * adds the given sequence and all sequences with extra mismatches after the given position to the index
+     * @param sequence char[] | the (changed) barcode
+     * @param position int | the first position that may still be changed
+     * @param mismatches int | the number of mismatches that may still be added
+     * @param sample Sample | the sample of the barcode
+     */
+    private void addNeighbours(char[] sequence, int position, int mismatches, Sample sample){
+        if (position == 0){
+            this.add(new String(sequence), sample);
+        }
+        if (mismatches == 0){
+            return;
+        }
+        for (int i = position; i < sequence.length; i++){
+            char original = sequence[i];
+            for (char base : BASES){
+                if (base != original){
+                    sequence[i] = base;
+                    this.add(new String(sequence), sample);
+                    this.addNeighbours(sequence, i + 1, mismatches - 1, sample);
+                }
+            }
+            sequence[i] = original;
+        }
+    }
+    
+    /**
+     * adds the sample to the given sequence in the index (only once)
+     * @param sequence String | the sequence
+     * @param sample Sample | the sample
+     */
+    private void add(String sequence, Sample sample){
+        ArrayList<Sample> samples = this.index.get(sequence);
+        if (samples == null){
+            samples = new ArrayList<Sample>(1);
+            this.index.put(sequence, samples);
+        }
+        if (samples.isEmpty() || samples.get(samples.size() - 1) != sample){
+            samples.add(sample);
+        }
+    }
+    
+    /**
+     * 
+     * @return int | the number of sequences in the index
+     */
+    public int size(){
+        return this.index.size();
+    }
+    
+    /**
+     * the number of sequences within the given mismatches of a barcode (sum of (length over i) * 3^i for i up to mismatches)
+     * @param length int | the length of the barcode
+     * @param mismatches int | the allowed mismatches
+     * @return long | the number of sequences, or more than MAXIMUM_INDEX_SIZE if too big
+     */
+    private static long neighbourhoodSize(int length, int mismatches){
+        long size = 0;
+        long combinations = 1;
+        for (int i = 0; i <= mismatches && i <= length; i++){
+            size += combinations;
+            if (size > MAXIMUM_INDEX_SIZE){
+                return MAXIMUM_INDEX_SIZE + 1;
+            }
+            //next: (length over i+1) * 3^(i+1)
+            combinations = combinations * (length - i) / (i + 1) * 3;
+        }
+        return size;
+    }
+    
+    /**
+     * 
+     * @param barcode String | a barcode
+     * @return true if the barcode only contains A, C, G and T
+     */
+    private static boolean isIndexable(String barcode){
+        for (int i = 0; i < barcode.length(); i++){
+            if (BarcodeIndex.baseIndex(barcode.charAt(i)) == -1){
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 
+     * @param base char | the base
+     * @return int | 0 to 3 for A, C, G and T, -1 for all other bases
+     */
+    private static int baseIndex(char base){
+        switch (base){
+            case 'A': return 0;
+            case 'C': return 1;
+            case 'G': return 2;
+            case 'T': return 3;
+            default: return -1;
+        }
+    }
+    
+}
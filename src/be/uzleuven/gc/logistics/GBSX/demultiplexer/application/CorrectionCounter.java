@@ -0,0 +1,88 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.demultiplexer.application;
+
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.CorrectionCategory;
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.Sample;
+
+/**
+ * The corrections of one demultiplex thread.
+ * <br> the counts are kept in an array (per category and index of the sample), without locks or boxing.
+ * <br> at the end of the thread, the counts are added to the CorrectionLog.
+ * <br> a counter may only be used by 1 thread.
+ * @author Koen Herten for the KU Leuven
+ * @see CorrectionLog#createCounter() 
+ * @see CorrectionLog#addCounter(be.uzleuven.gc.logistics.GBSX.demultiplexer.application.CorrectionCounter) 
+ */
+public class CorrectionCounter {
+    
+    private final CorrectionLog correctionLog;
+    private final Sample[] indexedSamples;
+    /**
+     * the counts, per sample all categories
+     */
+    private final long[] counts;
+    
+    /**
+     * creates a new counter for the given samples
+     * @param correctionLog CorrectionLog | the log that created the counter (used for unknown samples)
+     * @param indexedSamples Sample[] | the samples of the counter, on their index
+     * @see Sample#indexSamples(java.util.Collection) 
+     */
+    CorrectionCounter(CorrectionLog correctionLog, Sample[] indexedSamples){
+        this.correctionLog = correctionLog;
+        this.indexedSamples = indexedSamples;
+        this.counts = new long[indexedSamples.length * CorrectionCategory.values().length];
+    }
+    
+    /**
+     * adds 1 to the given category of the sample
+     * <br> if the sample isn't known by this counter, it is added directly to the correction log
+     * @param category CorrectionCategory | the category
+     * @param sample Sample | the sample
+     */
+    public void add(CorrectionCategory category, Sample sample){
+        int index = sample.getIndex();
+        if (index < 0 || index >= this.indexedSamples.length || this.indexedSamples[index] != sample){
+            this.correctionLog.add(category, sample, 1);
+        }else{
+            this.counts[index * CorrectionCategory.values().length + category.ordinal()]++;
+        }
+    }
+    
+    /**
+     * 
+     * @return Sample[] | the samples of this counter, on their index (null if no sample has that index)
+     */
+    Sample[] getSamples(){
+        return this.indexedSamples;
+    }
+    
+    /**
+     * 
+     * @param index int | the index of the sample
+     * @param category CorrectionCategory | the category
+     * @return long | the count of the category for the sample
+     */
+    long getCount(int index, CorrectionCategory category){
+        return this.counts[index * CorrectionCategory.values().length + category.ordinal()];
+    }
+    
+}
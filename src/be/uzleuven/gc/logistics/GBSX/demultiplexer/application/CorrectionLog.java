@@ -20,6 +20,7 @@
 package be.uzleuven.gc.logistics.GBSX.demultiplexer.application;
 
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.exceptions.ErrorInLogException;
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.CorrectionCategory;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.infrastructure.fileInteractors.LoggerFile;
 import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.Sample;
 import java.io.BufferedWriter;
@@ -47,19 +48,10 @@ public class CorrectionLog {
      * the used samples
      */
     private HashSet<Sample> sampleSet;
-    private HashMap<Sample, Integer> correctMapTrimOk;
-    private HashMap<Sample, Integer> correctMapR1Corrected;
-    private HashMap<Sample, Integer> correctMapR2Corrected;
-    private HashMap<Sample, Integer> correctMapR1Not;
-    private HashMap<Sample, Integer> correctMapR2Not;
-    
-    private HashMap<Sample, Integer> trimMapNotR1NotR2;
-    private HashMap<Sample, Integer> trimMapNotR1TrimR2butOK;
-    private HashMap<Sample, Integer> trimMapNotR1TrimR2butFail;
-    private HashMap<Sample, Integer> trimMapTrimR1NotR2Fail;
-    private HashMap<Sample, Integer> trimMapTrimR1trimR2longR1;
-    private HashMap<Sample, Integer> trimMapTrimR1trimR2longR2;
-    private HashMap<Sample, Integer> trimMapTrimR1trimR2ok;
+    /**
+     * the counts of each sample, indexed by the ordinal of the CorrectionCategory
+     */
+    private HashMap<Sample, long[]> countMap;
     
     private ReentrantLock lock = new ReentrantLock();
     
@@ -70,18 +62,7 @@ public class CorrectionLog {
     public CorrectionLog(LoggerFile logFile){
         this.logFile = logFile;
         this.sampleSet = new HashSet();
-        this.correctMapTrimOk = new HashMap();
-        this.correctMapR1Corrected = new HashMap();
-        this.correctMapR2Corrected = new HashMap();
-        this.correctMapR1Not = new HashMap();
-        this.correctMapR2Not = new HashMap();
-        this.trimMapNotR1NotR2 = new HashMap();
-        this.trimMapNotR1TrimR2butFail = new HashMap();
-        this.trimMapNotR1TrimR2butOK = new HashMap();
-        this.trimMapTrimR1NotR2Fail = new HashMap();
-        this.trimMapTrimR1trimR2longR1 = new HashMap();
-        this.trimMapTrimR1trimR2longR2 = new HashMap();
-        this.trimMapTrimR1trimR2ok = new HashMap();
+        this.countMap = new HashMap();
     }
     
     /**
@@ -92,18 +73,7 @@ public class CorrectionLog {
     public CorrectionLog(Collection<Sample> samples, LoggerFile logFile){
         this.logFile = logFile;
         this.sampleSet = new HashSet(samples);
-        this.correctMapTrimOk = new HashMap();
-        this.correctMapR1Corrected = new HashMap();
-        this.correctMapR2Corrected = new HashMap();
-        this.correctMapR1Not = new HashMap();
-        this.correctMapR2Not = new HashMap();
-        this.trimMapNotR1NotR2 = new HashMap();
-        this.trimMapNotR1TrimR2butFail = new HashMap();
-        this.trimMapNotR1TrimR2butOK = new HashMap();
-        this.trimMapTrimR1NotR2Fail = new HashMap();
-        this.trimMapTrimR1trimR2longR1 = new HashMap();
-        this.trimMapTrimR1trimR2longR2 = new HashMap();
-        this.trimMapTrimR1trimR2ok = new HashMap();
+        this.countMap = new HashMap();
     }
     
     /**
@@ -111,87 +81,118 @@ public class CorrectionLog {
      * @param samples 
      */
     public void addSamples(Collection<Sample> samples){
-        this.sampleSet.addAll(samples);
+        try{
+            lock.lock();
+            this.sampleSet.addAll(samples);
+        }finally{
+            lock.unlock();
+        }
     }
     
     /**
-     * adds a correct trim for the sample
-     * @param sample 
+     * adds the given number to the category of the sample
+     * @param category CorrectionCategory | the category
+     * @param sample Sample | the sample
+     * @param number long | the number to add
      */
-    public void addCorrecterTrimOk(Sample sample){
+    public void add(CorrectionCategory category, Sample sample, long number){
         try{
             lock.lock();
-            if (! this.sampleSet.contains(sample)){
-                this.sampleSet.add(sample);
-            }
-            if (this.correctMapTrimOk.containsKey(sample)){
-                this.correctMapTrimOk.put(sample, this.correctMapTrimOk.get(sample) + 1);
-            }else{
-                this.correctMapTrimOk.put(sample, 1);
-            }
+            this.getCounts(sample)[category.ordinal()] += number;
         }finally{
             lock.unlock();
         }
     }
     
     /**
-     * adds a corrected R1 for the sample
-     * @param sample 
+     * must be called with the lock
+     * @param sample Sample | the sample
+     * @return long[] | the counts of the sample, indexed by the ordinal of the CorrectionCategory
      */
-    public void addCorrecterR1Corrected(Sample sample){
+    private long[] getCounts(Sample sample){
+        if (! this.sampleSet.contains(sample)){
+            this.sampleSet.add(sample);
+        }
+        long[] counts = this.countMap.get(sample);
+        if (counts == null){
+            counts = new long[CorrectionCategory.values().length];
+            this.countMap.put(sample, counts);
+        }
+        return counts;
+    }
+    
+    /**
+     * creates a new counter for 1 thread, with all samples known at this moment
+     * <br> the counter must be added with addCounter when the thread is finished
+     * @return CorrectionCounter | a new counter
+     */
+    public CorrectionCounter createCounter(){
         try{
             lock.lock();
-            if (! this.sampleSet.contains(sample)){
-                this.sampleSet.add(sample);
-            }
-            if (this.correctMapR1Corrected.containsKey(sample)){
-                this.correctMapR1Corrected.put(sample, this.correctMapR1Corrected.get(sample) + 1);
-            }else{
-                this.correctMapR1Corrected.put(sample, 1);
-            }
+            return new CorrectionCounter(this, Sample.indexSamples(this.sampleSet));
         }finally{
             lock.unlock();
         }
     }
     
     /**
-     * adds a corrected R2 for the sample
-     * @param sample 
+     * adds all counts of the given counter to this log
+     * @param counter CorrectionCounter | the counter of a finished thread
      */
-    public void addCorrecterR2Corrected(Sample sample){
+    public void addCounter(CorrectionCounter counter){
         try{
             lock.lock();
-            if (! this.sampleSet.contains(sample)){
-                this.sampleSet.add(sample);
-            }
-            if (this.correctMapR2Corrected.containsKey(sample)){
-                this.correctMapR2Corrected.put(sample, this.correctMapR2Corrected.get(sample) + 1);
-            }else{
-                this.correctMapR2Corrected.put(sample, 1);
+            Sample[] samples = counter.getSamples();
+            for (int i = 0; i < samples.length; i++){
+                if (samples[i] == null){
+                    continue;
+                }
+                long[] counts = null;
+                for (CorrectionCategory category : CorrectionCategory.values()){
+                    long count = counter.getCount(i, category);
+                    if (count != 0){
+                        if (counts == null){
+                            counts = this.getCounts(samples[i]);
+                        }
+                        counts[category.ordinal()] += count;
+                    }
+                }
             }
         }finally{
             lock.unlock();
         }
     }
     
+    /**
+     * adds a correct trim for the sample
+     * @param sample 
+     */
+    public void addCorrecterTrimOk(Sample sample){
+        this.add(CorrectionCategory.CORRECT_TRIM_OK, sample, 1);
+    }
+    
+    /**
+     * adds a corrected R1 for the sample
+     * @param sample 
+     */
+    public void addCorrecterR1Corrected(Sample sample){
+        this.add(CorrectionCategory.CORRECTED_R1, sample, 1);
+    }
+    
+    /**
+     * adds a corrected R2 for the sample
+     * @param sample 
+     */
+    public void addCorrecterR2Corrected(Sample sample){
+        this.add(CorrectionCategory.CORRECTED_R2, sample, 1);
+    }
+    
     /**
      * adds a R1 that isn't corrected for the sample
      * @param sample 
      */
     public void addCorrecterR1NotCorrected(Sample sample){
-        try{
-            lock.lock();
-            if (! this.sampleSet.contains(sample)){
-                this.sampleSet.add(sample);
-            }
-            if (this.correctMapR1Not.containsKey(sample)){
-                this.correctMapR1Not.put(sample, this.correctMapR1Not.get(sample) + 1);
-            }else{
-                this.correctMapR1Not.put(sample, 1);
-            }
-        }finally{
-            lock.unlock();
-        }
+        this.add(CorrectionCategory.NOT_CORRECTED_R1, sample, 1);
     }
     
     /**
@@ -199,19 +200,7 @@ public class CorrectionLog {
      * @param sample 
      */
     public void addCorrecterR2NotCorrected(Sample sample){
-        try{
-            lock.lock();
-            if (! this.sampleSet.contains(sample)){
-                this.sampleSet.add(sample);
-            }
-            if (this.correctMapR2Not.containsKey(sample)){
-                this.correctMapR2Not.put(sample, this.correctMapR2Not.get(sample) + 1);
-            }else{
-                this.correctMapR2Not.put(sample, 1);
-            }
-        }finally{
-            lock.unlock();
-        }
+        this.add(CorrectionCategory.NOT_CORRECTED_R2, sample, 1);
     }
     
     /**
@@ -219,19 +208,7 @@ public class CorrectionLog {
      * @param sample 
      */
     public void addTrimNotR1NotR2(Sample sample){
-        try{
-            lock.lock();
-            if (! this.sampleSet.contains(sample)){
-                this.sampleSet.add(sample);
-            }
-            if (this.trimMapNotR1NotR2.containsKey(sample)){
-                this.trimMapNotR1NotR2.put(sample, this.trimMapNotR1NotR2.get(sample) + 1);
-            }else{
-                this.trimMapNotR1NotR2.put(sample, 1);
-            }
-        }finally{
-            lock.unlock();
-        }
+        this.add(CorrectionCategory.TRIM_NOT_R1_NOT_R2, sample, 1);
     }
     
     /**
@@ -239,19 +216,7 @@ public class CorrectionLog {
      * @param sample 
      */
     public void addTrimNotR1TrimR2butFail(Sample sample){
-        try{
-            lock.lock();
-            if (! this.sampleSet.contains(sample)){
-                this.sampleSet.add(sample);
-            }
-            if (this.trimMapNotR1TrimR2butFail.containsKey(sample)){
-                this.trimMapNotR1TrimR2butFail.put(sample, this.trimMapNotR1TrimR2butFail.get(sample) + 1);
-            }else{
-                this.trimMapNotR1TrimR2butFail.put(sample, 1);
-            }
-        }finally{
-            lock.unlock();
-        }
+        this.add(CorrectionCategory.TRIM_NOT_R1_TRIM_R2_FAIL, sample, 1);
     }
     
     /**
@@ -259,19 +224,7 @@ public class CorrectionLog {
      * @param sample 
      */
     public void addTrimNotR1TrimR2butOk(Sample sample){
-        try{
-            lock.lock();
-            if (! this.sampleSet.contains(sample)){
-                this.sampleSet.add(sample);
-            }
-            if (this.trimMapNotR1TrimR2butOK.containsKey(sample)){
-                this.trimMapNotR1TrimR2butOK.put(sample, this.trimMapNotR1TrimR2butOK.get(sample) + 1);
-            }else{
-                this.trimMapNotR1TrimR2butOK.put(sample, 1);
-            }
-        }finally{
-            lock.unlock();
-        }
+        this.add(CorrectionCategory.TRIM_NOT_R1_TRIM_R2_OK, sample, 1);
     }
     
     /**
@@ -279,19 +232,7 @@ public class CorrectionLog {
      * @param sample 
      */
     public void addTrimTrimR1NotR2Fail(Sample sample){
-        try{
-            lock.lock();
-            if (! this.sampleSet.contains(sample)){
-                this.sampleSet.add(sample);
-            }
-            if (this.trimMapTrimR1NotR2Fail.containsKey(sample)){
-                this.trimMapTrimR1NotR2Fail.put(sample, this.trimMapTrimR1NotR2Fail.get(sample) + 1);
-            }else{
-                this.trimMapTrimR1NotR2Fail.put(sample, 1);
-            }
-        }finally{
-            lock.unlock();
-        }
+        this.add(CorrectionCategory.TRIM_R1_NOT_R2_FAIL, sample, 1);
     }
     
     /**
@@ -299,19 +240,7 @@ public class CorrectionLog {
      * @param sample 
      */
     public void addTrimTrimR1TrimR2longR1(Sample sample){
-        try{
-            lock.lock();
-            if (! this.sampleSet.contains(sample)){
-                this.sampleSet.add(sample);
-            }
-            if (this.trimMapTrimR1trimR2longR1.containsKey(sample)){
-                this.trimMapTrimR1trimR2longR1.put(sample, this.trimMapTrimR1trimR2longR1.get(sample) + 1);
-            }else{
-                this.trimMapTrimR1trimR2longR1.put(sample, 1);
-            }
-        }finally{
-            lock.unlock();
-        }
+        this.add(CorrectionCategory.TRIM_R1_TRIM_R2_LONG_R1, sample, 1);
     }
     
     /**
@@ -319,19 +248,7 @@ public class CorrectionLog {
      * @param sample 
      */
     public void addTrimTrimR1TrimR2longR2(Sample sample){
-        try{
-            lock.lock();
-            if (! this.sampleSet.contains(sample)){
-                this.sampleSet.add(sample);
-            }
-            if (this.trimMapTrimR1trimR2longR2.containsKey(sample)){
-                this.trimMapTrimR1trimR2longR2.put(sample, this.trimMapTrimR1trimR2longR2.get(sample) + 1);
-            }else{
-                this.trimMapTrimR1trimR2longR2.put(sample, 1);
-            }
-        }finally{
-            lock.unlock();
-        }
+        this.add(CorrectionCategory.TRIM_R1_TRIM_R2_LONG_R2, sample, 1);
     }
     
     /**
@@ -339,19 +256,7 @@ public class CorrectionLog {
      * @param sample 
      */
     public void addTrimTrimR1TrimR2ok(Sample sample){
-        try{
-            lock.lock();
-            if (! this.sampleSet.contains(sample)){
-                this.sampleSet.add(sample);
-            }
-            if (this.trimMapTrimR1trimR2ok.containsKey(sample)){
-                this.trimMapTrimR1trimR2ok.put(sample, this.trimMapTrimR1trimR2ok.get(sample) + 1);
-            }else{
-                this.trimMapTrimR1trimR2ok.put(sample, 1);
-            }
-        }finally{
-            lock.unlock();
-        }
+        this.add(CorrectionCategory.TRIM_R1_TRIM_R2_OK, sample, 1);
     }
     
     /**
@@ -361,97 +266,26 @@ public class CorrectionLog {
     public void writeToFile(String outputFile){
         try{
             lock.lock();
-            String statsString = "Corrections:" + "\n";
-            statsString += "SampleID" + "\t" + "CorrectTrim" + "\t" + "CorrectedR1" + "\t" + "CorrectedR2" + "\t" + "NotCorrectR1" + "\t" + "NotCorrectR2" + "\n";
+            StringBuilder statsString = new StringBuilder();
+            statsString.append("Corrections:").append("\n");
+            statsString.append("SampleID" + "\t" + "CorrectTrim" + "\t" + "CorrectedR1" + "\t" + "CorrectedR2" + "\t" + "NotCorrectR1" + "\t" + "NotCorrectR2" + "\n");
             for (Sample sample : this.sampleSet){
-                statsString += sample.getSampleID() + "\t";
-                if (this.correctMapTrimOk.containsKey(sample)){
-                    statsString += this.correctMapTrimOk.get(sample);
-                }else{
-                    statsString += "0";
-                }
-                statsString += "\t";
-                if (this.correctMapR1Corrected.containsKey(sample)){
-                    statsString += this.correctMapR1Corrected.get(sample);
-                }else{
-                    statsString += "0";
-                }
-                statsString += "\t";
-                if (this.correctMapR2Corrected.containsKey(sample)){
-                    statsString += this.correctMapR2Corrected.get(sample);
-                }else{
-                    statsString += "0";
-                }
-                statsString += "\t";
-                if (this.correctMapR1Not.containsKey(sample)){
-                    statsString += this.correctMapR1Not.get(sample);
-                }else{
-                    statsString += "0";
-                }
-                statsString += "\t";
-                if (this.correctMapR2Not.containsKey(sample)){
-                    statsString += this.correctMapR2Not.get(sample);
-                }else{
-                    statsString += "0";
-                }
-                statsString += "\n";
+                this.appendCounts(statsString, sample, CorrectionCategory.CORRECT_TRIM_OK, CorrectionCategory.NOT_CORRECTED_R2);
             }
 
-            statsString += "\n\n\n";
-            statsString += "Trimming:" + "\n";
-            statsString += "SampleID" + "\t" + "not_R1_not_R2" + "\t" + "not_R1_but_OK" + "\t" + "not_R1_but_fail" + "\t" + "trim_R1_not_R2" + "\t" 
-                    + "trim_R1_trim_R2_long_R1" + "\t" + "trim_R1_trim_R2_long_R2" + "\t" + "trim_R1_trim_R2_ok" + "\n";
+            statsString.append("\n\n\n");
+            statsString.append("Trimming:").append("\n");
+            statsString.append("SampleID" + "\t" + "not_R1_not_R2" + "\t" + "not_R1_but_OK" + "\t" + "not_R1_but_fail" + "\t" + "trim_R1_not_R2" + "\t" 
+                    + "trim_R1_trim_R2_long_R1" + "\t" + "trim_R1_trim_R2_long_R2" + "\t" + "trim_R1_trim_R2_ok" + "\n");
             for (Sample sample : this.sampleSet){
-                statsString += sample.getSampleID() + "\t";
-                if (this.trimMapNotR1NotR2.containsKey(sample)){
-                    statsString += this.trimMapNotR1NotR2.get(sample);
-                }else{
-                    statsString += "0";
-                }
-                statsString += "\t";
-                if (this.trimMapNotR1TrimR2butOK.containsKey(sample)){
-                    statsString += this.trimMapNotR1TrimR2butOK.get(sample);
-                }else{
-                    statsString += "0";
-                }
-                statsString += "\t";
-                if (this.trimMapNotR1TrimR2butFail.containsKey(sample)){
-                    statsString += this.trimMapNotR1TrimR2butFail.get(sample);
-                }else{
-                    statsString += "0";
-                }
-                statsString += "\t";
-                if (this.trimMapTrimR1NotR2Fail.containsKey(sample)){
-                    statsString += this.trimMapTrimR1NotR2Fail.get(sample);
-                }else{
-                    statsString += "0";
-                }
-                statsString += "\t";
-                if (this.trimMapTrimR1trimR2longR1.containsKey(sample)){
-                    statsString += this.trimMapTrimR1trimR2longR1.get(sample);
-                }else{
-                    statsString += "0";
-                }
-                statsString += "\t";
-                if (this.trimMapTrimR1trimR2longR2.containsKey(sample)){
-                    statsString += this.trimMapTrimR1trimR2longR2.get(sample);
-                }else{
-                    statsString += "0";
-                }
-                statsString += "\t";
-                if (this.trimMapTrimR1trimR2ok.containsKey(sample)){
-                    statsString += this.trimMapTrimR1trimR2ok.get(sample);
-                }else{
-                    statsString += "0";
-                }
-                statsString += "\n";
+                this.appendCounts(statsString, sample, CorrectionCategory.TRIM_NOT_R1_NOT_R2, CorrectionCategory.TRIM_R1_TRIM_R2_OK);
             }
             //write the string to a file
             File file = new File(outputFile + System.getProperty("file.separator") + "correction.stats");
             try {
                 file.createNewFile();
                 BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file));
-                bufferedWriter.write(statsString);
+                bufferedWriter.write(statsString.toString());
                 bufferedWriter.close();
             } catch (IOException ex) {
                 Logger.getLogger(DemultiplexStats.class.getName()).log(Level.SEVERE, null, ex);
@@ -466,4 +300,25 @@ public class CorrectionLog {
         }
     }
     
+    /**
+     * appends 1 line with the sample id and the counts of the categories from first to last (both included)
+     * @param statsString StringBuilder | the builder to append to
+     * @param sample Sample | the sample
+     * @param first CorrectionCategory | the first category of the line
+     * @param last CorrectionCategory | the last category of the line
+     */
+    private void appendCounts(StringBuilder statsString, Sample sample, CorrectionCategory first, CorrectionCategory last){
+        long[] counts = this.countMap.get(sample);
+        statsString.append(sample.getSampleID());
+        for (int i = first.ordinal(); i <= last.ordinal(); i++){
+            statsString.append("\t");
+            if (counts == null){
+                statsString.append("0");
+            }else{
+                statsString.append(counts[i]);
+            }
+        }
+        statsString.append("\n");
+    }
+    
 }
@@ -21,6 +21,8 @@ package be.uzleuven.gc.logistics.GBSX.demultiplexer.application;
 
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.exceptions.ErrorInLogException;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.infrastructure.fileInteractors.LoggerFile;
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.ProcessedFragment;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqScores;
 import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.Sample;
 import java.io.BufferedWriter;
@@ -73,6 +75,11 @@ public class DemultiplexStats {
      * the FastqScore used for the quality
      */
     private FastqScores fastqScore;
+    /**
+     * the samples on their index, the index used in the arrays of the counters
+     * @see Sample#getIndex() 
+     */
+    private final Sample[] indexedSamples;
     
     private ReentrantLock lock = new ReentrantLock();
     
@@ -89,6 +96,7 @@ public class DemultiplexStats {
         this.basecall_qual = new HashMap();
         this.basecall_above_30 = new HashMap();
         this.rejected_reads = new HashMap();
+        this.indexedSamples = Sample.indexSamples(sampleList);
         for (Sample sample : sampleList){
             HashMap<Integer, Integer> mismatchMap = new HashMap();
             this.stats.put(sample, mismatchMap);
@@ -103,6 +111,44 @@ public class DemultiplexStats {
         this.fastqScore = fastqScore;
     }
     
+    /**
+     * creates a new counter for the stats of 1 thread
+     * <br> the thread can add its stats to the counter without locking, 
+     * and must add the counter to these stats when it is finished
+     * @return DemultiplexStatsCounter | a new empty counter for the samples of these stats
+     * @see DemultiplexStats#addCounter(be.uzleuven.gc.logistics.GBSX.demultiplexer.application.DemultiplexStatsCounter) 
+     */
+    public DemultiplexStatsCounter createCounter(){
+        return new DemultiplexStatsCounter(this.indexedSamples, this.fastqScore.getStartScore() - this.fastqScore.getMinScore());
+    }
+    
+    /**
+     * adds all counts of the given counter to the stats
+     * @param counter DemultiplexStatsCounter | a counter created by these stats
+     */
+    public void addCounter(DemultiplexStatsCounter counter){
+        try{
+            lock.lock();
+            for (int index = 0; index < this.indexedSamples.length; index++){
+                Sample sample = this.indexedSamples[index];
+                if (sample == null){
+                    continue;
+                }
+                long[] mismatches = counter.getMismatches(index);
+                for (int numberOfMismatches = 0; numberOfMismatches < mismatches.length; numberOfMismatches++){
+                    if (mismatches[numberOfMismatches] > 0){
+                        this.addMismatch(sample, numberOfMismatches, (int) mismatches[numberOfMismatches]);
+                    }
+                }
+                this.addQuality(sample, counter.getBasecallCount(index), counter.getBasecallQual(index), counter.getBasecallAbove30(index));
+                this.rejected_reads.put(sample, this.rejected_reads.get(sample) + (int) counter.getRejectedReads(index));
+            }
+            this.undetermined += (int) counter.getUndetermined();
+        }finally{
+            lock.unlock();
+        }
+    }
+    
     /**
      * Adds a stat to the file (adds the mismatch, basequality, and other statistics)
      * @param sample Sample | the sample of this read
@@ -112,38 +158,114 @@ public class DemultiplexStats {
     public void addStat(Sample sample, int numberOfMismatches, String quality){
         try{
             lock.lock();
-            HashMap<Integer, Integer> misMap = this.stats.get(sample);
-            if (misMap == null){
-                //create everything for the new sample
-                HashMap<Integer, Integer> mismatchMap = new HashMap();
-                this.stats.put(sample, mismatchMap);
-                this.basecall_count.put(sample, 0L);
-                this.basecall_qual.put(sample, 0L);
-                this.basecall_above_30.put(sample, 0L);
-                misMap = this.stats.get(sample);
-            }
-            //get the map of mismatches and add the mismatch
-            Integer mismatch = misMap.get(numberOfMismatches);
-            if (mismatch == null){
-                misMap.put(numberOfMismatches, 1);
-            }else{
-                misMap.put(numberOfMismatches, ++mismatch);
-            }
-            this.stats.put(sample, misMap);
+            this.addMismatch(sample, numberOfMismatches);
             //calculate the phred score, the basecount, base quality, ...
+            long count = 0;
+            long qual = 0;
+            long above30 = 0;
             for (char ascii_score : quality.toCharArray()){
                 int phred_score = (int) ascii_score - this.fastqScore.getStartScore() + this.fastqScore.getMinScore();
-                this.basecall_count.put(sample, this.basecall_count.get(sample) + 1);
-                this.basecall_qual.put(sample, this.basecall_qual.get(sample) + phred_score);
+                count++;
+                qual += phred_score;
                 if (phred_score >= 30){
-                    this.basecall_above_30.put(sample, this.basecall_above_30.get(sample) + 1);
+                    above30++;
                 }
             }
+            this.addQuality(sample, count, qual, above30);
         }finally{
             lock.unlock();
         }
     }
     
+    /**
+     * Adds a stat of the fragment to the file (adds the mismatch, basequality, and other statistics)
+     * <br> only the qualities of the kept part of the reads are used, without copying them
+     * @param fragment ProcessedFragment | the processed read (or read pair)
+     */
+    public void addStat(ProcessedFragment fragment){
+        try{
+            lock.lock();
+            Sample sample = fragment.getSample();
+            this.addMismatch(sample, fragment.getMismatch());
+            long[] qualities = new long[3];
+            this.countQuality(fragment.getRead1(), fragment.getRead1Start(), fragment.getRead1End(), qualities);
+            if (fragment.getRead2() != null){
+                this.countQuality(fragment.getRead2(), fragment.getRead2Start(), fragment.getRead2End(), qualities);
+            }
+            this.addQuality(sample, qualities[0], qualities[1], qualities[2]);
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * adds the mismatch of a read to the stats of the sample, the lock must be held
+     * @param sample Sample | the sample of this read
+     * @param numberOfMismatches int | the number of mismatches occured in the barcode
+     */
+    private void addMismatch(Sample sample, int numberOfMismatches){
+        this.addMismatch(sample, numberOfMismatches, 1);
+    }
+    
+    /**
+     * adds the mismatches of reads to the stats of the sample, the lock must be held
+     * @param sample Sample | the sample of the reads
+     * @param numberOfMismatches int | the number of mismatches occured in the barcode
+     * @param reads int | the number of reads with this number of mismatches
+     */
+    private void addMismatch(Sample sample, int numberOfMismatches, int reads){
+        HashMap<Integer, Integer> misMap = this.stats.get(sample);
+        if (misMap == null){
+            //create everything for the new sample
+            HashMap<Integer, Integer> mismatchMap = new HashMap();
+            this.stats.put(sample, mismatchMap);
+            this.basecall_count.put(sample, 0L);
+            this.basecall_qual.put(sample, 0L);
+            this.basecall_above_30.put(sample, 0L);
+            misMap = this.stats.get(sample);
+        }
+        //get the map of mismatches and add the mismatch
+        Integer mismatch = misMap.get(numberOfMismatches);
+        if (mismatch == null){
+            misMap.put(numberOfMismatches, reads);
+        }else{
+            misMap.put(numberOfMismatches, mismatch + reads);
+        }
+    }
+    
+    /**
+     * counts the phred scores of the given part of the read
+     * @param read FastqRead | the read
+     * @param start int | the first base of the part (first is 0)
+     * @param end int | the end of the part (exclusive)
+     * @param qualities long[] | the basecount, the total quality and the count above 30, the counts are added to it
+     */
+    private void countQuality(FastqRead read, int start, int end, long[] qualities){
+        byte[] data = read.getData();
+        int offset = read.getQualityStart();
+        for (int i = offset + start; i < offset + end; i++){
+            int phred_score = (data[i] & 0xff) - this.fastqScore.getStartScore() + this.fastqScore.getMinScore();
+            qualities[0]++;
+            qualities[1] += phred_score;
+            if (phred_score >= 30){
+                qualities[2]++;
+            }
+        }
+    }
+    
+    /**
+     * adds the counted qualities to the stats of the sample, the lock must be held
+     * @param sample Sample | the sample
+     * @param count long | the number of bases
+     * @param qual long | the sum of the phred scores
+     * @param above30 long | the number of bases with a phred score of 30 or more
+     */
+    private void addQuality(Sample sample, long count, long qual, long above30){
+        this.basecall_count.put(sample, this.basecall_count.get(sample) + count);
+        this.basecall_qual.put(sample, this.basecall_qual.get(sample) + qual);
+        this.basecall_above_30.put(sample, this.basecall_above_30.get(sample) + above30);
+    }
+    
     /**
      * add 1 undetermined read
      */
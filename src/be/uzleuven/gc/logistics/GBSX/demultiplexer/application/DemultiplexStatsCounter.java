@@ -0,0 +1,206 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.demultiplexer.application;
+
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.ProcessedFragment;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.Sample;
+
+/**
+ * The statistics of one demultiplex thread.
+ * <br> the counts are kept in arrays (indexed on the index of the sample), without locks or boxing.
+ * <br> at the end of the thread, the counts are added to the DemultiplexStats.
+ * <br> a counter may only be used by 1 thread.
+ * @author Koen Herten for the KU Leuven
+ * @see DemultiplexStats#createCounter() 
+ * @see DemultiplexStats#addCounter(be.uzleuven.gc.logistics.GBSX.demultiplexer.application.DemultiplexStatsCounter) 
+ */
+public class DemultiplexStatsCounter {
+    
+    private final Sample[] indexedSamples;
+    private final int scoreOffset;
+    /**
+     * per sample, the count per number of mismatches
+     */
+    private final long[][] mismatches;
+    private final long[] basecallCount;
+    private final long[] basecallQual;
+    private final long[] basecallAbove30;
+    private final long[] rejectedReads;
+    private long undetermined;
+    
+    /**
+     * creates a new counter
+     * @param indexedSamples Sample[] | the samples on their index
+     * @param scoreOffset int | the value to subtract from a quality char to get the phred score
+     * @see Sample#indexSamples(java.util.Collection) 
+     */
+    DemultiplexStatsCounter(Sample[] indexedSamples, int scoreOffset){
+        this.indexedSamples = indexedSamples;
+        this.scoreOffset = scoreOffset;
+        int size = indexedSamples.length;
+        this.mismatches = new long[size][0];
+        this.basecallCount = new long[size];
+        this.basecallQual = new long[size];
+        this.basecallAbove30 = new long[size];
+        this.rejectedReads = new long[size];
+        this.undetermined = 0;
+    }
+    
+    /**
+     * 
+     * @param sample Sample
+     * @return int | the index of the sample, -1 if the sample isn't known
+     */
+    private int getIndex(Sample sample){
+        int index = sample.getIndex();
+        if (index < 0 || index >= this.indexedSamples.length || this.indexedSamples[index] != sample){
+            return -1;
+        }
+        return index;
+    }
+    
+    /**
+     * Adds a stat of the fragment (adds the mismatch, basequality, and other statistics)
+     * <br> only the qualities of the kept part of the reads are used, without copying them
+     * @param fragment ProcessedFragment | the processed read (or read pair)
+     * @return true if the stat is added, false if the sample of the fragment isn't known by this counter
+     */
+    public boolean addStat(ProcessedFragment fragment){
+        int index = this.getIndex(fragment.getSample());
+        if (index == -1){
+            return false;
+        }
+        int mismatch = fragment.getMismatch();
+        if (mismatch < 0){
+            return false;
+        }
+        if (mismatch >= this.mismatches[index].length){
+            long[] newMismatches = new long[mismatch + 1];
+            System.arraycopy(this.mismatches[index], 0, newMismatches, 0, this.mismatches[index].length);
+            this.mismatches[index] = newMismatches;
+        }
+        this.mismatches[index][mismatch]++;
+        this.countQuality(index, fragment.getRead1(), fragment.getRead1Start(), fragment.getRead1End());
+        if (fragment.getRead2() != null){
+            this.countQuality(index, fragment.getRead2(), fragment.getRead2Start(), fragment.getRead2End());
+        }
+        return true;
+    }
+    
+    /**
+     * counts the phred scores of the given part of the read
+     * @param index int | the index of the sample
+     * @param read FastqRead | the read
+     * @param start int | the first base of the part (first is 0)
+     * @param end int | the end of the part (exclusive)
+     */
+    private void countQuality(int index, FastqRead read, int start, int end){
+        byte[] data = read.getData();
+        int offset = read.getQualityStart();
+        long qual = 0;
+        long above30 = 0;
+        for (int i = offset + start; i < offset + end; i++){
+            int phred_score = (data[i] & 0xff) - this.scoreOffset;
+            qual += phred_score;
+            if (phred_score >= 30){
+                above30++;
+            }
+        }
+        this.basecallCount[index] += end - start;
+        this.basecallQual[index] += qual;
+        this.basecallAbove30[index] += above30;
+    }
+    
+    /**
+     * add 1 undetermined read
+     */
+    public void addUndeterminedStat(){
+        this.undetermined++;
+    }
+    
+    /**
+     * Adds a rejected Read
+     * @param sample Sample | the sample of this read
+     * @return true if the read is added, false if the sample isn't known by this counter
+     */
+    public boolean addRejectedRead(Sample sample){
+        int index = this.getIndex(sample);
+        if (index == -1){
+            return false;
+        }
+        this.rejectedReads[index]++;
+        return true;
+    }
+    
+    /**
+     * 
+     * @param index int | the index of the sample
+     * @return long[] | the count per number of mismatches of the sample
+     */
+    long[] getMismatches(int index){
+        return this.mismatches[index];
+    }
+    
+    /**
+     * 
+     * @param index int | the index of the sample
+     * @return long | the number of bases of the sample
+     */
+    long getBasecallCount(int index){
+        return this.basecallCount[index];
+    }
+    
+    /**
+     * 
+     * @param index int | the index of the sample
+     * @return long | the sum of the phred scores of the sample
+     */
+    long getBasecallQual(int index){
+        return this.basecallQual[index];
+    }
+    
+    /**
+     * 
+     * @param index int | the index of the sample
+     * @return long | the number of bases with a phred score of 30 or more of the sample
+     */
+    long getBasecallAbove30(int index){
+        return this.basecallAbove30[index];
+    }
+    
+    /**
+     * 
+     * @param index int | the index of the sample
+     * @return long | the number of rejected reads of the sample
+     */
+    long getRejectedReads(int index){
+        return this.rejectedReads[index];
+    }
+    
+    /**
+     * 
+     * @return long | the number of undetermined reads
+     */
+    long getUndetermined(){
+        return this.undetermined;
+    }
+    
+}
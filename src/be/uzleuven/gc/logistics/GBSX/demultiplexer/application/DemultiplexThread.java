@@ -10,17 +10,20 @@ import be.uzleuven.gc.logistics.GBSX.demultiplexer.exceptions.ErrorInLogExceptio
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.exceptions.InvalidReadEnum;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.exceptions.InvalidReadException;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.infrastructure.fileInteractors.LoggerFile;
-import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.DemultiplexParameters;
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.DemultiplexConfig;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.ProcessedFragment;
-import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqBufferedReader;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqBatchReader;
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqBufferedWriter;
-import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqPairBufferedReader;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqOrderedWriter;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqPairBatchReader;
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqPairBufferedWriter;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqWriteBuffer;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqWriterPool;
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadBatch;
 import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.Sample;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,52 +33,102 @@ import java.util.logging.Logger;
  */
 public class DemultiplexThread implements Runnable{
 
+    /**
+     * the number of reads taken from the reader at once
+     */
+    public static final int READ_BATCH_SIZE = 4096;
+    
     private Thread t;
     private final ProgressTracker progressTracker;
     private final FastqReadParser fastqReadParser;
-    private final DemultiplexParameters parameters;
+    private final DemultiplexConfig config;
     private final LoggerFile loggerFile;
     private final DemultiplexStats statsFile;
-    private FastqBufferedReader srFastqReader;
+    /**
+     * the stats of this thread, added to the statsFile when the thread is finished
+     */
+    private final DemultiplexStatsCounter statsCounter;
+    private final CorrectionLog correctionLog;
+    /**
+     * the corrections of this thread, added to the correctionLog when the thread is finished
+     */
+    private final CorrectionCounter correctionCounter;
+    private FastqBatchReader srFastqReader;
     private FastqBufferedWriter srUndeterminedFastqFile;
-    private FastqPairBufferedReader peFastqReader;
+    private FastqPairBatchReader peFastqReader;
     private FastqPairBufferedWriter peUndeterminedFastqFile;
-    private HashMap<Sample, FastqBufferedWriter> srSampleFiles;
-    private HashMap<Sample, FastqPairBufferedWriter> peSampleFiles;
+    /**
+     * the writers of the samples, on the index of the sample
+     */
+    private FastqBufferedWriter[] srSampleFiles;
+    private FastqPairBufferedWriter[] peSampleFiles;
+    /**
+     * the pool that writes the full buffers of this thread, null if the reads are written directly to the writers
+     */
+    private final FastqWriterPool writerPool;
+    /**
+     * the writer that writes the buffers of every read batch in the order of the input, null if the order isn't kept
+     */
+    private final FastqOrderedWriter orderedWriter;
+    private final int flushSize;
+    /**
+     * the buffers of this thread, on the index of the sample (created when the sample has its first read)
+     * <br> for pair end, buffers1 are used for read 1, and buffers2 for read 2
+     */
+    private final FastqWriteBuffer[] sampleBuffers1;
+    private final FastqWriteBuffer[] sampleBuffers2;
+    private FastqWriteBuffer undeterminedBuffer1;
+    private FastqWriteBuffer undeterminedBuffer2;
     
-    public DemultiplexThread(DemultiplexParameters parameters,
+    public DemultiplexThread(DemultiplexConfig config,
             DemultiplexStats demultiplexStats, LoggerFile loggerFile, ProgressTracker progressTracker,
-            FastqBufferedReader fastq1Reader, FastqBufferedWriter undeterminedFastqFile, 
-            HashMap<Sample, FastqBufferedWriter> sampleFiles, int longestBarcode,
+            FastqBatchReader fastq1Reader, FastqBufferedWriter undeterminedFastqFile, 
+            FastqBufferedWriter[] sampleFiles, FastqWriterPool writerPool, FastqOrderedWriter orderedWriter, int longestBarcode,
             FindingDistanceAlgorithm findingDistanceAlgorithm, CorrectionLog correctionLog,
-            ArrayList<Sample> sampleList){
-        this.parameters = parameters;
+            ArrayList<Sample> sampleList, BarcodeIndex barcodeIndex, SampleMatchPlan[] matchPlans){
+        this.config = config;
         this.statsFile = demultiplexStats;
+        this.statsCounter = demultiplexStats.createCounter();
+        this.correctionLog = correctionLog;
+        this.correctionCounter = correctionLog.createCounter();
         this.loggerFile = loggerFile;
         this.progressTracker = progressTracker;
         this.srUndeterminedFastqFile = undeterminedFastqFile;
         this.srFastqReader = fastq1Reader;
         this.srSampleFiles = sampleFiles;
-        this.fastqReadParser = new FastqReadParser(this.parameters, longestBarcode, findingDistanceAlgorithm, correctionLog, sampleList);
+        this.writerPool = writerPool;
+        this.orderedWriter = orderedWriter;
+        this.flushSize = FastqWriterPool.getFlushSize(sampleFiles.length + 1);
+        this.sampleBuffers1 = new FastqWriteBuffer[sampleFiles.length];
+        this.sampleBuffers2 = null;
+        this.fastqReadParser = new FastqReadParser(this.config, longestBarcode, findingDistanceAlgorithm, this.correctionCounter, sampleList, barcodeIndex, matchPlans);
         this.peFastqReader = null;
         this.peSampleFiles = null;
         this.peUndeterminedFastqFile = null;
     }
     
-    public DemultiplexThread(DemultiplexParameters parameters,
+    public DemultiplexThread(DemultiplexConfig config,
             DemultiplexStats demultiplexStats, LoggerFile loggerFile, ProgressTracker progressTracker,
-            FastqPairBufferedReader fastq1Reader, FastqPairBufferedWriter undeterminedFastqFile, 
-            HashMap<Sample, FastqPairBufferedWriter> sampleFiles, int longestBarcode,
+            FastqPairBatchReader fastq1Reader, FastqPairBufferedWriter undeterminedFastqFile, 
+            FastqPairBufferedWriter[] sampleFiles, FastqWriterPool writerPool, FastqOrderedWriter orderedWriter, int longestBarcode,
             FindingDistanceAlgorithm findingDistanceAlgorithm, CorrectionLog correctionLog,
-            ArrayList<Sample> sampleList){
-        this.parameters = parameters;
+            ArrayList<Sample> sampleList, BarcodeIndex barcodeIndex, SampleMatchPlan[] matchPlans){
+        this.config = config;
         this.statsFile = demultiplexStats;
+        this.statsCounter = demultiplexStats.createCounter();
+        this.correctionLog = correctionLog;
+        this.correctionCounter = correctionLog.createCounter();
         this.loggerFile = loggerFile;
         this.progressTracker = progressTracker;
         this.peUndeterminedFastqFile = undeterminedFastqFile;
         this.peFastqReader = fastq1Reader;
         this.peSampleFiles = sampleFiles;
-        this.fastqReadParser = new FastqReadParser(this.parameters, longestBarcode, findingDistanceAlgorithm, correctionLog, sampleList);
+        this.writerPool = writerPool;
+        this.orderedWriter = orderedWriter;
+        this.flushSize = FastqWriterPool.getFlushSize(2 * (sampleFiles.length + 1));
+        this.sampleBuffers1 = new FastqWriteBuffer[sampleFiles.length];
+        this.sampleBuffers2 = new FastqWriteBuffer[sampleFiles.length];
+        this.fastqReadParser = new FastqReadParser(this.config, longestBarcode, findingDistanceAlgorithm, this.correctionCounter, sampleList, barcodeIndex, matchPlans);
         this.srFastqReader = null;
         this.srSampleFiles = null;
         this.srUndeterminedFastqFile = null;
@@ -92,96 +145,312 @@ public class DemultiplexThread implements Runnable{
             }
         }catch(IOException e){
             
+        }finally{
+            try {
+                this.flushBuffers();
+            } catch (IOException ex) {
+                this.writeToLog("ERROR in writing the fastq files: " + ex.getMessage());
+                Logger.getLogger(FastqDemultiplex.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            this.statsFile.addCounter(this.statsCounter);
+            this.correctionLog.addCounter(this.correctionCounter);
         }
     }
     
+    /**
+     * reads the pair end fastq files in batches, and demultiplexes every read pair of the batch
+     * @throws IOException | if an error occures while reading the fastq files
+     */
     private void pairedDemultiplex() throws IOException{
-        FastqRead fastq1 = null;
-        FastqRead fastq2 = null;
-        HashMap<String, FastqRead> readMap;
-        while (((readMap = peFastqReader.next()) != null) && ((fastq1 = readMap.get("r1")) != null) && ((fastq2 = readMap.get("r2")) != null)){
-            progressTracker.addProgress();
-            //read the next fastq line
-            try {
-                //try to parse the fastq
-                ProcessedFragment newReads = this.fastqReadParser.parseFastqRead(fastq1, fastq2);
-                //if a read is empty: correct it
-                if (newReads.getRead1().getSequence().equals("")){
-                    newReads = new ProcessedFragment(newReads.getSample(), new FastqRead(newReads.getRead1().getDescription(), "N", "#"), newReads.getRead2(), newReads.getMismatch());
-                }
-                if (newReads.getRead2().getSequence().equals("")){
-                    newReads = new ProcessedFragment(newReads.getSample(), newReads.getRead1(), new FastqRead(newReads.getRead2().getDescription(), "N", "#"), newReads.getMismatch());
-                }
-                //check if a sequence must be rejected (to short)
-                if (newReads.getRead1().getSequence().length() < this.parameters.getMinimumSequenceLength()
-                        || (! this.parameters.keepSequencesWithN() && newReads.getRead1().getSequence().contains("N"))){
-                    statsFile.addRejectedRead(newReads.getSample());
-                    peUndeterminedFastqFile.write(fastq1, fastq2);
-                    statsFile.addUndeterminedStat();
-                }else{
-                    //copies the read to the corresponding sample
-                    peSampleFiles.get(newReads.getSample()).write(newReads.getRead1(), newReads.getRead2());
-                    //updates the stats
-                    String totalQuality = newReads.getRead1().getQuality() + newReads.getRead2().getQuality();
-                    statsFile.addStat(newReads.getSample(), newReads.getMismatch(), totalQuality);
+        FastqReadBatch batch1 = new FastqReadBatch(READ_BATCH_SIZE);
+        FastqReadBatch batch2 = new FastqReadBatch(READ_BATCH_SIZE);
+        while (peFastqReader.nextBatch(batch1, batch2)){
+            progressTracker.addProgress(batch1.size());
+            try{
+                for (int i = 0; i < batch1.size(); i++){
+                    this.pairedDemultiplexRead(batch1.get(i), batch2.get(i));
                 }
+            }finally{
+                this.commitBatch(batch1.getSequenceNumber());
+            }
+        }
+    }
+    
+    /**
+     * demultiplexes the given read pair, and writes it to the corresponding sample or to the undetermined file
+     * @param fastq1 FastqRead | read 1
+     * @param fastq2 FastqRead | read 2
+     * @throws IOException | if an error occures while writing the fastq files
+     */
+    private void pairedDemultiplexRead(FastqRead fastq1, FastqRead fastq2) throws IOException{
+        try {
+            //try to parse the fastq
+            ProcessedFragment newReads = this.fastqReadParser.parseFastqRead(fastq1, fastq2);
+            //if a read is empty: correct it
+            if (newReads.getRead1Length() == 0){
+                newReads = new ProcessedFragment(newReads.getSample(), new FastqRead(newReads.getRead1().getDescription(), "N", "#"), 0, 1, newReads.getRead2(), newReads.getRead2Start(), newReads.getRead2End(), newReads.getMismatch(), newReads.getComment());
+            }
+            if (newReads.getRead2Length() == 0){
+                newReads = new ProcessedFragment(newReads.getSample(), newReads.getRead1(), newReads.getRead1Start(), newReads.getRead1End(), new FastqRead(newReads.getRead2().getDescription(), "N", "#"), 0, 1, newReads.getMismatch(), newReads.getComment());
+            }
+            //check if a sequence must be rejected (to short)
+            if (newReads.getRead1Length() < this.config.getMinimumSequenceLength()
+                    || (! this.config.keepSequencesWithN() && newReads.getRead1().containsBase('N', newReads.getRead1Start(), newReads.getRead1End()))){
+                this.addRejectedRead(newReads.getSample());
+                this.writeUndetermined(fastq1, fastq2);
+                this.statsCounter.addUndeterminedStat();
+            }else{
+                //copies the read to the corresponding sample
+                this.writeSample(newReads.getSample().getIndex(), newReads.getRead1(), newReads.getRead1Start(), newReads.getRead1End(), newReads.getRead2(), newReads.getRead2Start(), newReads.getRead2End());
+                //updates the stats
+                this.addStat(newReads);
+            }
 
-            } catch (InvalidReadException ex) {
-                if (ex.getInvalidRead() != InvalidReadEnum.READ1 && ex.getInvalidRead() != InvalidReadEnum.READ2){
-                    this.writeToLog("Unknown error in " + fastq1.getDescription() + " and " + fastq2.getDescription());
-                }
-                //write unknown fastq to the undetermined file
-                try{
-                    peUndeterminedFastqFile.write(fastq1, fastq2);
-                    statsFile.addUndeterminedStat();
-                } catch (IOException ioex) {
-                    this.writeToLog("ERROR in writing the fastq files for " + fastq1.getDescription());
-                    Logger.getLogger(FastqDemultiplex.class.getName()).log(Level.SEVERE, null, ioex);
-                }
+        } catch (InvalidReadException ex) {
+            if (ex.getInvalidRead() != InvalidReadEnum.READ1 && ex.getInvalidRead() != InvalidReadEnum.READ2){
+                this.writeToLog("Unknown error in " + fastq1.getDescription() + " and " + fastq2.getDescription());
+            }
+            //write unknown fastq to the undetermined file
+            try{
+                this.writeUndetermined(fastq1, fastq2);
+                this.statsCounter.addUndeterminedStat();
+            } catch (IOException ioex) {
+                this.writeToLog("ERROR in writing the fastq files for " + fastq1.getDescription());
+                Logger.getLogger(FastqDemultiplex.class.getName()).log(Level.SEVERE, null, ioex);
             }
         }
     }
     
+    /**
+     * reads the single read fastq file in batches, and demultiplexes every read of the batch
+     * @throws IOException | if an error occures while reading the fastq file
+     */
     private void singleDemultiplex() throws IOException{
-        //init vars needed in the loop to go furter
-        FastqRead fastq1;
-        while ((fastq1 = srFastqReader.next()) != null) {
-            progressTracker.addProgress();
-            //read the next fastq line
-            try {
-                //try to parse the fastq
-                ProcessedFragment newReads = this.fastqReadParser.parseFastqRead(fastq1);
-                //check if a sequence is empty: correct it
-                if (newReads.getRead1().getSequence().equals("")){
-                    newReads = new ProcessedFragment(newReads.getSample(), new FastqRead(newReads.getRead1().getDescription(), "N", "#"), newReads.getMismatch());
-                }
-                //check if a sequence must be rejected (to short)
-                if ((newReads.getRead1().getSequence().length() < this.parameters.getMinimumSequenceLength())
-                        || (! this.parameters.keepSequencesWithN() && newReads.getRead1().getSequence().contains("N"))){
-                    statsFile.addRejectedRead(newReads.getSample());
-                    srUndeterminedFastqFile.write(fastq1);
-                    statsFile.addUndeterminedStat();
-                }else{
-                    //copies the read to the corresponding sample
-                    srSampleFiles.get(newReads.getSample()).write(newReads.getRead1());
-                    //updates the stats
-                    statsFile.addStat(newReads.getSample(), newReads.getMismatch(), newReads.getRead1().getQuality());
+        FastqReadBatch batch = new FastqReadBatch(READ_BATCH_SIZE);
+        while (srFastqReader.nextBatch(batch)) {
+            progressTracker.addProgress(batch.size());
+            try{
+                for (int i = 0; i < batch.size(); i++){
+                    this.singleDemultiplexRead(batch.get(i));
                 }
+            }finally{
+                this.commitBatch(batch.getSequenceNumber());
+            }
+        }
+    }
+    
+    /**
+     * demultiplexes the given read, and writes it to the corresponding sample or to the undetermined file
+     * @param fastq1 FastqRead | the read
+     * @throws IOException | if an error occures while writing the fastq files
+     */
+    private void singleDemultiplexRead(FastqRead fastq1) throws IOException{
+        try {
+            //try to parse the fastq
+            ProcessedFragment newReads = this.fastqReadParser.parseFastqRead(fastq1);
+            //check if a sequence is empty: correct it
+            if (newReads.getRead1Length() == 0){
+                newReads = new ProcessedFragment(newReads.getSample(), new FastqRead(newReads.getRead1().getDescription(), "N", "#"), newReads.getMismatch());
+            }
+            //check if a sequence must be rejected (to short)
+            if ((newReads.getRead1Length() < this.config.getMinimumSequenceLength())
+                    || (! this.config.keepSequencesWithN() && newReads.getRead1().containsBase('N', newReads.getRead1Start(), newReads.getRead1End()))){
+                this.addRejectedRead(newReads.getSample());
+                this.writeUndetermined(fastq1);
+                this.statsCounter.addUndeterminedStat();
+            }else{
+                //copies the read to the corresponding sample
+                this.writeSample(newReads.getSample().getIndex(), newReads.getRead1(), newReads.getRead1Start(), newReads.getRead1End());
+                //updates the stats
+                this.addStat(newReads);
+            }
 
-            } catch (InvalidReadException ex) {
-                //error int the read
-                if (ex.getInvalidRead() != InvalidReadEnum.READ1){
-                    this.writeToLog("Unknown error in " + fastq1.getDescription());
+        } catch (InvalidReadException ex) {
+            //error int the read
+            if (ex.getInvalidRead() != InvalidReadEnum.READ1){
+                this.writeToLog("Unknown error in " + fastq1.getDescription());
+            }
+            //write unknown fastq to the undetermined file
+            try{
+                this.writeUndetermined(fastq1);
+                this.statsCounter.addUndeterminedStat();
+            } catch (IOException ioex) {
+                this.writeToLog("ERROR in writing the fastq files for " + fastq1.getDescription());
+                Logger.getLogger(FastqDemultiplex.class.getName()).log(Level.SEVERE, null, ioex);
+            }
+        }  
+    }
+    
+    /**
+     * writes the part of the read to the file of the sample
+     * <br> if a writer pool is used, the read is added to the buffer of this thread for the sample, 
+     * and the buffer is given to the pool when it is full
+     * <br> if the order is kept, the read is added to the buffer, and written when the batch is committed
+     * @param index int | the index of the sample
+     * @param read FastqRead | the read
+     * @param start int | the first base to write (first is 0)
+     * @param end int | the end of the bases to write (exclusive)
+     * @throws IOException | if an error occures while writing the fastq file
+     */
+    private void writeSample(int index, FastqRead read, int start, int end) throws IOException{
+        if (this.writerPool == null && this.orderedWriter == null){
+            this.srSampleFiles[index].write(read, start, end);
+        }else{
+            if (this.sampleBuffers1[index] == null){
+                this.sampleBuffers1[index] = new FastqWriteBuffer(this.flushSize);
+            }
+            this.sampleBuffers1[index].write(read, start, end);
+            if (this.writerPool != null && this.sampleBuffers1[index].isFull()){
+                this.writerPool.write(this.srSampleFiles[index], this.sampleBuffers1[index]);
+            }
+        }
+    }
+    
+    /**
+     * writes the parts of the reads to the files of the sample
+     * <br> if a writer pool is used, the reads are added to the buffers of this thread for the sample, 
+     * and the buffers are given to the pool when they are full
+     * <br> if the order is kept, the reads are added to the buffers, and written when the batch is committed
+     * @param index int | the index of the sample
+     * @param read1 FastqRead | read 1
+     * @param start1 int | the first base of read 1 to write (first is 0)
+     * @param end1 int | the end of the bases of read 1 to write (exclusive)
+     * @param read2 FastqRead | read 2
+     * @param start2 int | the first base of read 2 to write (first is 0)
+     * @param end2 int | the end of the bases of read 2 to write (exclusive)
+     * @throws IOException | if an error occures while writing the fastq files
+     */
+    private void writeSample(int index, FastqRead read1, int start1, int end1, FastqRead read2, int start2, int end2) throws IOException{
+        if (this.writerPool == null && this.orderedWriter == null){
+            this.peSampleFiles[index].write(read1, start1, end1, read2, start2, end2);
+        }else{
+            if (this.sampleBuffers1[index] == null){
+                this.sampleBuffers1[index] = new FastqWriteBuffer(this.flushSize);
+                this.sampleBuffers2[index] = new FastqWriteBuffer(this.flushSize);
+            }
+            this.sampleBuffers1[index].write(read1, start1, end1);
+            this.sampleBuffers2[index].write(read2, start2, end2);
+            if (this.writerPool != null && (this.sampleBuffers1[index].isFull() || this.sampleBuffers2[index].isFull())){
+                this.writerPool.write(this.peSampleFiles[index], this.sampleBuffers1[index], this.sampleBuffers2[index]);
+            }
+        }
+    }
+    
+    /**
+     * writes the read to the undetermined file
+     * @param read FastqRead | the read
+     * @throws IOException | if an error occures while writing the fastq file
+     */
+    private void writeUndetermined(FastqRead read) throws IOException{
+        if (this.writerPool == null && this.orderedWriter == null){
+            this.srUndeterminedFastqFile.write(read);
+        }else{
+            if (this.undeterminedBuffer1 == null){
+                this.undeterminedBuffer1 = new FastqWriteBuffer(this.flushSize);
+            }
+            this.undeterminedBuffer1.write(read);
+            if (this.writerPool != null && this.undeterminedBuffer1.isFull()){
+                this.writerPool.write(this.srUndeterminedFastqFile, this.undeterminedBuffer1);
+            }
+        }
+    }
+    
+    /**
+     * writes the reads to the undetermined files
+     * @param read1 FastqRead | read 1
+     * @param read2 FastqRead | read 2
+     * @throws IOException | if an error occures while writing the fastq files
+     */
+    private void writeUndetermined(FastqRead read1, FastqRead read2) throws IOException{
+        if (this.writerPool == null && this.orderedWriter == null){
+            this.peUndeterminedFastqFile.write(read1, read2);
+        }else{
+            if (this.undeterminedBuffer1 == null){
+                this.undeterminedBuffer1 = new FastqWriteBuffer(this.flushSize);
+                this.undeterminedBuffer2 = new FastqWriteBuffer(this.flushSize);
+            }
+            this.undeterminedBuffer1.write(read1);
+            this.undeterminedBuffer2.write(read2);
+            if (this.writerPool != null && (this.undeterminedBuffer1.isFull() || this.undeterminedBuffer2.isFull())){
+                this.writerPool.write(this.peUndeterminedFastqFile, this.undeterminedBuffer1, this.undeterminedBuffer2);
+            }
+        }
+    }
+    
+    /**
+     * commits the buffers of this thread as the output of the read batch, if the order must be kept
+     * @param sequenceNumber long | the sequence number of the read batch
+     * @throws IOException | if an error occured while writing the fastq files
+     */
+    private void commitBatch(long sequenceNumber) throws IOException{
+        if (this.orderedWriter == null){
+            return;
+        }
+        FastqOrderedWriter.OrderedBatch orderedBatch = this.orderedWriter.createBatch(sequenceNumber);
+        for (int index = 0; index < this.sampleBuffers1.length; index++){
+            if (this.sampleBuffers1[index] != null){
+                if (this.sampleBuffers2 == null){
+                    orderedBatch.add(this.srSampleFiles[index], this.sampleBuffers1[index]);
+                }else{
+                    orderedBatch.add(this.peSampleFiles[index], this.sampleBuffers1[index], this.sampleBuffers2[index]);
                 }
-                //write unknown fastq to the undetermined file
-                try{
-                    srUndeterminedFastqFile.write(fastq1);
-                    statsFile.addUndeterminedStat();
-                } catch (IOException ioex) {
-                    this.writeToLog("ERROR in writing the fastq files for " + fastq1.getDescription());
-                    Logger.getLogger(FastqDemultiplex.class.getName()).log(Level.SEVERE, null, ioex);
+            }
+        }
+        if (this.undeterminedBuffer1 != null){
+            if (this.undeterminedBuffer2 == null){
+                orderedBatch.add(this.srUndeterminedFastqFile, this.undeterminedBuffer1);
+            }else{
+                orderedBatch.add(this.peUndeterminedFastqFile, this.undeterminedBuffer1, this.undeterminedBuffer2);
+            }
+        }
+        this.orderedWriter.commit(orderedBatch);
+    }
+    
+    /**
+     * gives all buffers that aren't empty to the writer pool
+     * @throws IOException | if an error occured while writing the fastq files
+     */
+    private void flushBuffers() throws IOException{
+        if (this.writerPool == null){
+            return;
+        }
+        for (int index = 0; index < this.sampleBuffers1.length; index++){
+            if (this.sampleBuffers1[index] != null){
+                if (this.sampleBuffers2 == null){
+                    this.writerPool.write(this.srSampleFiles[index], this.sampleBuffers1[index]);
+                }else{
+                    this.writerPool.write(this.peSampleFiles[index], this.sampleBuffers1[index], this.sampleBuffers2[index]);
                 }
-            }  
+            }
+        }
+        if (this.undeterminedBuffer1 != null){
+            if (this.undeterminedBuffer2 == null){
+                this.writerPool.write(this.srUndeterminedFastqFile, this.undeterminedBuffer1);
+            }else{
+                this.writerPool.write(this.peUndeterminedFastqFile, this.undeterminedBuffer1, this.undeterminedBuffer2);
+            }
+        }
+    }
+    
+    /**
+     * adds the stat of the fragment to the counter of this thread
+     * <br> if the counter can't count the fragment, it is added to the statsFile
+     * @param fragment ProcessedFragment | the processed read (or read pair)
+     */
+    private void addStat(ProcessedFragment fragment){
+        if (! this.statsCounter.addStat(fragment)){
+            this.statsFile.addStat(fragment);
+        }
+    }
+    
+    /**
+     * adds a rejected read to the counter of this thread
+     * <br> if the counter doesn't know the sample, it is added to the statsFile
+     * @param sample Sample | the sample of the rejected read
+     */
+    private void addRejectedRead(Sample sample){
+        if (! this.statsCounter.addRejectedRead(sample)){
+            this.statsFile.addRejectedRead(sample);
         }
     }
     
@@ -29,7 +29,10 @@ import be.uzleuven.gc.logistics.GBSX.demultiplexer.exceptions.InvalidReadEnum;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.exceptions.InvalidReadException;
 import be.uzleuven.gc.logistics.GBSX.utils.exceptions.StopExcecutionException;
 import be.uzleuven.gc.logistics.GBSX.utils.enzyme.infrastructure.EnzymeFileParser;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.BgzfOutputStream;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqBatchReader;
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqBufferedReader;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqMappedReader;
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqBufferedWriter;
 import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.infrastructure.InfoFileParser;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.infrastructure.fileInteractors.LoggerFile;
@@ -37,26 +40,33 @@ import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.BasePair;
 import be.uzleuven.gc.logistics.GBSX.utils.enzyme.model.Enzyme;
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqParts;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.DemultiplexArguments;
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.DemultiplexConfig;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.DemultiplexParameters;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.ProcessedFragment;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.SampleBarcodeCombination;
 import be.uzleuven.gc.logistics.GBSX.utils.enzyme.model.EnzymeComparator;
 import be.uzleuven.gc.logistics.GBSX.utils.enzyme.model.EnzymeEnum;
-import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqPairBufferedReader;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqOrderedWriter;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqPairBatchReader;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqPairPipelinedReader;
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqPairBufferedWriter;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqWriterPool;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqPipelinedReader;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.FastqQueuedReader;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure.QueueDepthMetrics;
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
 import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.Sample;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -79,7 +89,19 @@ public final class FastqDemultiplex {
     private final CorrectionLog correctionLog;
     
     private final DemultiplexParameters parameters;
+    /**
+     * the parsed parameters, used by the demultiplex threads
+     */
+    private final DemultiplexConfig config;
     private final FindingDistanceAlgorithm findingDistanceAlgorithm;
+    /**
+     * the index of the barcodes, null if the reads must be compared with every sample
+     */
+    private final BarcodeIndex barcodeIndex;
+    /**
+     * the match plan of every sample (cutsites, complements and adaptor starts), on the index of the sample
+     */
+    private final SampleMatchPlan[] matchPlans;
     
     /**
      * this makes the bases for the demultiplexing. The given array contains all the needed arguments.
@@ -217,7 +239,8 @@ public final class FastqDemultiplex {
             throw new RuntimeException("Couldn't open the info file", ex);
         }
         this.findingDistanceAlgorithm = new FindingDistanceAlgorithm(this.parameters.getFindingsAlgorithm());
-        this.correctionLog = new CorrectionLog(this.sampleList, this.loggerFile);
+        //index the barcodes (and their mismatches), so a read is only compared with the samples that can have its barcode
+        this.barcodeIndex = BarcodeIndex.createIndex(this.sampleList, this.parameters);
         //check if all are simple, or all are double
         int doubleBarcodeCount = 0;
         for (Sample sample : this.sampleList){
@@ -239,6 +262,10 @@ public final class FastqDemultiplex {
             throw new RuntimeException("Use Double Barcodes, but no paired end fastq file found.");
             }
         }
+        //all parameters are known: parse them once for the demultiplexing
+        this.config = new DemultiplexConfig(this.parameters);
+        //make the match plans of the samples once, all threads use the same plans
+        this.matchPlans = SampleMatchPlan.createPlans(this.sampleList, this.config);
         try {
             //Open log file
             this.loggerFile = new LoggerFile(this.parameters);
@@ -249,6 +276,7 @@ public final class FastqDemultiplex {
             Logger.getLogger(FastqDemultiplex.class.getName()).log(Level.SEVERE, null, ex);
             throw new RuntimeException("Couldn't create a log file.", ex);
         }
+        this.correctionLog = new CorrectionLog(this.sampleList, this.loggerFile);
     }
 
     
@@ -285,6 +313,8 @@ public final class FastqDemultiplex {
      * <br> at the end it closes all used files (the read fastq.gz, the new fastq.gz and the stats)
      * 
      * @see FastqBufferedReader
+     * @see FastqPipelinedReader
+     * @see FastqMappedReader
      * @see FastqBufferedWriter
      * @see DemultiplexStats
      * @see FastqDemultiplex#parseFastqRead(java.util.Map) 
@@ -294,18 +324,47 @@ public final class FastqDemultiplex {
         File fastqFile1 = new File(this.parameters.getFastqFile1());
         try {
             //create buffered readers for the files
-            FastqBufferedReader fastq1Reader = new FastqBufferedReader(fastqFile1, this.parameters.mustBeZipped());
+            //ziped files are inflated and parsed in a pipeline, so the threads only have to demultiplex
+            //multi-member gzip files (BGZF) are inflated on as many threads as used for the demultiplexing
+            //memory mapped files are parsed by the threads self, every thread parses its own batches
+            //other files are read by a read thread, the threads take the batches from a bounded queue
+            FastqBatchReader fastq1Reader;
+            QueueDepthMetrics[] readMetrics;
+            if (this.parameters.useMemoryMappedInput()){
+                fastq1Reader = new FastqMappedReader(fastqFile1, DemultiplexThread.READ_BATCH_SIZE, this.parameters.getThreadNumber());
+                readMetrics = null;
+            }else if (this.parameters.mustBeZipped()){
+                FastqPipelinedReader pipelinedReader = new FastqPipelinedReader(fastqFile1, true, DemultiplexThread.READ_BATCH_SIZE, this.parameters.getThreadNumber(), this.parameters.getReadQueueSize());
+                readMetrics = new QueueDepthMetrics[]{pipelinedReader.getMetrics()};
+                fastq1Reader = pipelinedReader;
+            }else{
+                FastqQueuedReader queuedReader = new FastqQueuedReader(new FastqBufferedReader(fastqFile1, false), DemultiplexThread.READ_BATCH_SIZE, this.parameters.getReadQueueSize());
+                readMetrics = new QueueDepthMetrics[]{queuedReader.getMetrics()};
+                fastq1Reader = queuedReader;
+            }
             
             //create the outputfiles
-            HashMap<Sample, FastqBufferedWriter> sampleFiles = new HashMap();
+            ExecutorService deflatePool = this.createDeflatePool();
+            //the writers of the samples, on the index of the sample
+            FastqBufferedWriter[] sampleFiles = new FastqBufferedWriter[this.sampleList.size()];
             for (Sample sample : this.sampleList){
                 String sampleFileName = this.parameters.getOutputDirectory() + System.getProperty("file.separator") + sample.getSampleID() + ".R1" + this.parameters.getFileExtension();
                 if (this.parameters.useLongFileNames()){
                     sampleFileName = this.parameters.getOutputDirectory() + System.getProperty("file.separator") + sample.getSampleID() + "_" + sample.getBarcode() + "_" + sample.getEnzyme().getName().toLowerCase() + ".R1" + this.parameters.getFileExtension();
                 }
-                sampleFiles.put(sample, new FastqBufferedWriter(new File(sampleFileName), this.parameters.mustBeZipped()));
+                sampleFiles[sample.getIndex()] = new FastqBufferedWriter(new File(sampleFileName), this.parameters.mustBeZipped(), deflatePool);
+            }
+            FastqBufferedWriter undeterminedFastqFile = new FastqBufferedWriter(new File(this.parameters.getOutputDirectory() + System.getProperty("file.separator") + "undetermined" + this.parameters.getFileExtension()), this.parameters.mustBeZipped(), deflatePool);
+            
+            //the demultiplex threads buffer their reads, the full buffers are written by the writer pool
+            //or, if the order must be kept, the buffers of every read batch are written in the order of the batches
+            FastqWriterPool writerPool = null;
+            FastqOrderedWriter orderedWriter = null;
+            if (this.parameters.keepOrder()){
+                orderedWriter = new FastqOrderedWriter(this.parameters.getWriteQueueSize());
+            }else{
+                writerPool = new FastqWriterPool(this.parameters.getWriterThreadNumber(), this.parameters.getWriteQueueSize());
             }
-            FastqBufferedWriter undeterminedFastqFile = new FastqBufferedWriter(new File(this.parameters.getOutputDirectory() + System.getProperty("file.separator") + "undetermined" + this.parameters.getFileExtension()), this.parameters.mustBeZipped());
             
             //create the stats file
             DemultiplexStats statsFile = new DemultiplexStats(this.sampleList, this.loggerFile, this.parameters.getFastqQualityScore());
@@ -315,8 +374,8 @@ public final class FastqDemultiplex {
             ArrayList<DemultiplexThread> threadlist = new ArrayList<DemultiplexThread>();
             
             for (int i=0; i < this.parameters.getThreadNumber(); i++){
-                DemultiplexThread demultiplexThread = new DemultiplexThread(this.parameters, statsFile, loggerFile, progressTracker, fastq1Reader, 
-                    undeterminedFastqFile, sampleFiles, longestBarcodeLength, findingDistanceAlgorithm, correctionLog, sampleList);
+                DemultiplexThread demultiplexThread = new DemultiplexThread(this.config, statsFile, loggerFile, progressTracker, fastq1Reader, 
+                    undeterminedFastqFile, sampleFiles, writerPool, orderedWriter, longestBarcodeLength, findingDistanceAlgorithm, correctionLog, sampleList, barcodeIndex, matchPlans);
                 threadlist.add(demultiplexThread);
             }
                         
@@ -342,13 +401,25 @@ public final class FastqDemultiplex {
             service.shutdownNow();
             
             progressTracker.showProgress();
+            
+            //wait till all buffers are written
+            if (writerPool != null){
+                writerPool.close();
+            }
+            if (orderedWriter != null){
+                orderedWriter.close();
+            }
+            this.writeQueueMetrics(readMetrics, writerPool);
                         
             //all reads are parsed => close all files
             fastq1Reader.close();
-            for (FastqBufferedWriter writer : sampleFiles.values()){
+            for (FastqBufferedWriter writer : sampleFiles){
                 writer.close();
             }
             undeterminedFastqFile.close();
+            if (deflatePool != null){
+                deflatePool.shutdown();
+            }
             int mostMismatches = this.parameters.getAllowedMismatchesBarcode();
             for (Sample sample : this.sampleList){
                 if (sample.getBarcodeMismatches() > mostMismatches){
@@ -374,7 +445,8 @@ public final class FastqDemultiplex {
      * <br> updates the stats
      * <br> at the end it closes all used files (the read fastq.gz, the new fastq.gz and the stats)
      * 
-     * @see FastqBufferedReader
+     * @see FastqPairPipelinedReader
+     * @see FastqMappedReader
      * @see FastqBufferedWriter
      * @see DemultiplexStats
      * @see FastqDemultiplex#parseFastqRead(java.util.Map, java.util.Map) 
@@ -386,10 +458,25 @@ public final class FastqDemultiplex {
         File fastqFile2 = new File(this.parameters.getFastqFile2());
         try {
             //create buffered readers for the files
-            FastqPairBufferedReader fastqReader = new FastqPairBufferedReader(fastqFile1, fastqFile2, this.parameters.mustBeZipped());
+            //memory mapped files are parsed by the threads self, read i of every batch is read i in both files
+            //other files are read, inflated and parsed in a pipeline per file, so both files are read at the same time
+            //the threads take the batches of both files together from the bounded queues
+            FastqPairBatchReader fastqReader;
+            QueueDepthMetrics[] readMetrics;
+            if (this.parameters.useMemoryMappedInput()){
+                fastqReader = new FastqMappedReader(fastqFile1, fastqFile2, DemultiplexThread.READ_BATCH_SIZE, this.parameters.getThreadNumber());
+                readMetrics = null;
+            }else{
+                FastqPairPipelinedReader pipelinedReader = new FastqPairPipelinedReader(fastqFile1, fastqFile2, this.parameters.mustBeZipped(), 
+                        DemultiplexThread.READ_BATCH_SIZE, this.parameters.getThreadNumber(), this.parameters.getReadQueueSize());
+                readMetrics = pipelinedReader.getMetrics();
+                fastqReader = pipelinedReader;
+            }
             
             //create the outputfiles
-            HashMap<Sample, FastqPairBufferedWriter> sampleFiles = new HashMap();
+            ExecutorService deflatePool = this.createDeflatePool();
+            //the writers of the samples, on the index of the sample
+            FastqPairBufferedWriter[] sampleFiles = new FastqPairBufferedWriter[this.sampleList.size()];
             for (Sample sample : this.sampleList){
                 String sampleFileR1name = this.parameters.getOutputDirectory() + System.getProperty("file.separator") + sample.getSampleID() + ".R1" + this.parameters.getFileExtension();
                 String sampleFileR2name = this.parameters.getOutputDirectory() + System.getProperty("file.separator") + sample.getSampleID() + ".R2" + this.parameters.getFileExtension();
@@ -397,10 +484,20 @@ public final class FastqDemultiplex {
                     sampleFileR1name = this.parameters.getOutputDirectory() + System.getProperty("file.separator") + sample.getSampleID() + "_" + sample.getBarcode() + "_" + sample.getEnzyme().getName().toLowerCase() + ".R1" + this.parameters.getFileExtension();
                     sampleFileR2name = this.parameters.getOutputDirectory() + System.getProperty("file.separator") + sample.getSampleID() + "_" + sample.getBarcode() + "_" + sample.getEnzyme().getName().toLowerCase() + ".R2" + this.parameters.getFileExtension();
                 }
-                sampleFiles.put(sample, new FastqPairBufferedWriter(new File(sampleFileR1name), new File(sampleFileR2name), this.parameters.mustBeZipped()));
+                sampleFiles[sample.getIndex()] = new FastqPairBufferedWriter(new File(sampleFileR1name), new File(sampleFileR2name), this.parameters.mustBeZipped(), deflatePool);
             }
             FastqPairBufferedWriter undeterminedFastqFile = new FastqPairBufferedWriter(new File(this.parameters.getOutputDirectory() + System.getProperty("file.separator") + "undetermined" + ".R1" + this.parameters.getFileExtension()), 
-                    new File(this.parameters.getOutputDirectory() + System.getProperty("file.separator") + "undetermined" + ".R2" + this.parameters.getFileExtension()), this.parameters.mustBeZipped());
+                    new File(this.parameters.getOutputDirectory() + System.getProperty("file.separator") + "undetermined" + ".R2" + this.parameters.getFileExtension()), this.parameters.mustBeZipped(), deflatePool);
+            
+            //the demultiplex threads buffer their reads, the full buffers are written by the writer pool
+            //or, if the order must be kept, the buffers of every read batch are written in the order of the batches
+            FastqWriterPool writerPool = null;
+            FastqOrderedWriter orderedWriter = null;
+            if (this.parameters.keepOrder()){
+                orderedWriter = new FastqOrderedWriter(this.parameters.getWriteQueueSize());
+            }else{
+                writerPool = new FastqWriterPool(this.parameters.getWriterThreadNumber(), this.parameters.getWriteQueueSize());
+            }
             
             //create the stats file
             DemultiplexStats statsFile = new DemultiplexStats(this.sampleList, this.loggerFile, this.parameters.getFastqQualityScore());
@@ -412,8 +509,8 @@ public final class FastqDemultiplex {
             ArrayList<DemultiplexThread> threadlist = new ArrayList<DemultiplexThread>();
             
             for (int i=0; i < this.parameters.getThreadNumber(); i++){
-                DemultiplexThread demultiplexThread = new DemultiplexThread(this.parameters, statsFile, loggerFile, progressTracker, fastqReader, 
-                    undeterminedFastqFile, sampleFiles, longestBarcodeLength, findingDistanceAlgorithm, correctionLog, sampleList);
+                DemultiplexThread demultiplexThread = new DemultiplexThread(this.config, statsFile, loggerFile, progressTracker, fastqReader, 
+                    undeterminedFastqFile, sampleFiles, writerPool, orderedWriter, longestBarcodeLength, findingDistanceAlgorithm, correctionLog, sampleList, barcodeIndex, matchPlans);
                 threadlist.add(demultiplexThread);
             }
                         
@@ -440,13 +537,25 @@ public final class FastqDemultiplex {
             
             progressTracker.showProgress();
             
+            //wait till all buffers are written
+            if (writerPool != null){
+                writerPool.close();
+            }
+            if (orderedWriter != null){
+                orderedWriter.close();
+            }
+            this.writeQueueMetrics(readMetrics, writerPool);
+            
             
             
             fastqReader.close();
-            for (FastqPairBufferedWriter writer : sampleFiles.values()){
+            for (FastqPairBufferedWriter writer : sampleFiles){
                 writer.close();
             }
             undeterminedFastqFile.close();
+            if (deflatePool != null){
+                deflatePool.shutdown();
+            }
             
             int mostMismatches = this.parameters.getAllowedMismatchesBarcode() * 2;
             for (Sample sample : this.sampleList){
@@ -464,6 +573,43 @@ public final class FastqDemultiplex {
     }
     
     
+    /**
+     * creates the threads that compress the BGZF blocks of all output files
+     * @return ExecutorService | the deflate pool, or null if the output isn't BGZF
+     * @see BgzfOutputStream
+     */
+    private ExecutorService createDeflatePool(){
+        if (! this.parameters.mustBeBgzf()){
+            return null;
+        }
+        return Executors.newFixedThreadPool(this.parameters.getThreadNumber(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "bgzf-deflate");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+    
+    /**
+     * writes the depth of the queues between the stages to the log file
+     * @param readMetrics QueueDepthMetrics[] | the metrics of the read queues, null if there is no read queue
+     * @param writerPool FastqWriterPool | the writer pool, null if it isn't used
+     */
+    private void writeQueueMetrics(QueueDepthMetrics[] readMetrics, FastqWriterPool writerPool){
+        String metrics = "Queue depths:" + "\n";
+        if (readMetrics != null){
+            for (QueueDepthMetrics queueMetrics : readMetrics){
+                metrics += "\t" + queueMetrics.toString() + "\n";
+            }
+        }
+        if (writerPool != null){
+            metrics += "\t" + writerPool.getMetrics().toString() + "\n";
+        }
+        this.writeToLog(metrics);
+    }
+    
     /**
      * 
      * @param log String | the log to be written to the logfile
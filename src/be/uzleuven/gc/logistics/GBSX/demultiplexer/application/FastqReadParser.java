@@ -22,21 +22,26 @@
 package be.uzleuven.gc.logistics.GBSX.demultiplexer.application;
 
 import be.uzleuven.gc.logistics.GBSX.barcodeCorrector.application.BarcodeCorrectingAlgorithm;
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.application.distanceAlgorithms.AhoCorasickAutomaton;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.application.distanceAlgorithms.FindingDistanceAlgorithm;
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.application.distanceAlgorithms.HammingsDistance;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.application.distanceAlgorithms.MismatchIndelDistance;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.exceptions.InvalidReadEnum;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.exceptions.InvalidReadException;
-import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.DemultiplexParameters;
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.CorrectionCategory;
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.DemultiplexConfig;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.ProcessedFragment;
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.SampleBarcodeCombination;
-import be.uzleuven.gc.logistics.GBSX.utils.enzyme.model.EnzymeComparator;
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqParts;
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
 import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.BasePair;
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.PackedSequence;
 import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.Sample;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 /**
  *
@@ -45,23 +50,74 @@ import java.util.HashSet;
 public class FastqReadParser {
     
     private final int MAXIMUM_DISTANCE_BETWEEN_START_AND_BARCODE = 20;
-    private final DemultiplexParameters parameters;
+    private final DemultiplexConfig config;
     private final int longestBarcodeLength;
     private final FindingDistanceAlgorithm findingDistanceAlgorithm;
     /**
-     * correction log is only used in the correction of the pair end demultiplex
+     * correction counter is only used in the correction of the pair end demultiplex
      */
-    private final CorrectionLog correctionLog;
+    private final CorrectionCounter correctionCounter;
     private ArrayList<Sample> sampleList;
+    /**
+     * the index of the barcodes, null if all samples must be checked for every read
+     */
+    private final BarcodeIndex barcodeIndex;
+    /**
+     * the match plan of every sample, on the index of the sample
+     */
+    private final SampleMatchPlan[] matchPlans;
+    /**
+     * the starts of the common adaptor (on the length of the start), up to the adaptor compare size
+     */
+    private final String[] adaptorStarts;
     
-    public FastqReadParser(DemultiplexParameters parameters, int longestBarcodeLength, 
-            FindingDistanceAlgorithm findingDistanceAlgorithm, CorrectionLog correctionLog,
+    public FastqReadParser(DemultiplexConfig config, int longestBarcodeLength, 
+            FindingDistanceAlgorithm findingDistanceAlgorithm, CorrectionCounter correctionCounter,
             ArrayList<Sample> sampleList){
-        this.parameters = parameters;
+        this(config, longestBarcodeLength, findingDistanceAlgorithm, correctionCounter, sampleList, null, SampleMatchPlan.createPlans(sampleList, config));
+    }
+    
+    public FastqReadParser(DemultiplexConfig config, int longestBarcodeLength, 
+            FindingDistanceAlgorithm findingDistanceAlgorithm, CorrectionCounter correctionCounter,
+            ArrayList<Sample> sampleList, BarcodeIndex barcodeIndex, SampleMatchPlan[] matchPlans){
+        this.config = config;
         this.longestBarcodeLength = longestBarcodeLength;
         this.findingDistanceAlgorithm = findingDistanceAlgorithm;
-        this.correctionLog = correctionLog;
+        this.correctionCounter = correctionCounter;
         this.sampleList = sampleList;
+        this.barcodeIndex = barcodeIndex;
+        this.matchPlans = matchPlans;
+        String adaptor = config.getCommonAdaptor();
+        this.adaptorStarts = new String[Math.min(config.getAdaptorCompareSize(), adaptor.length()) + 1];
+        for (int length = 0; length < this.adaptorStarts.length; length++){
+            this.adaptorStarts[length] = adaptor.substring(0, length);
+        }
+    }
+    
+    /**
+     * 
+     * @param sample Sample | a sample
+     * @return SampleMatchPlan | the match plan of the sample, a new plan if the sample has no plan
+     */
+    private SampleMatchPlan getPlan(Sample sample){
+        int index = sample.getIndex();
+        if (index >= 0 && index < this.matchPlans.length && this.matchPlans[index] != null && this.matchPlans[index].getSample() == sample){
+            return this.matchPlans[index];
+        }
+        return new SampleMatchPlan(sample, this.config);
+    }
+    
+    /**
+     * 
+     * @param length int | the length of the start
+     * @return String | the start of the common adaptor
+     * @throws StringIndexOutOfBoundsException if the length is negative or longer than the adaptor
+     */
+    private String getAdaptorStart(int length){
+        if (length >= 0 && length < this.adaptorStarts.length){
+            return this.adaptorStarts[length];
+        }
+        return this.config.getCommonAdaptor().substring(0, length);
     }
         
     /**
@@ -77,7 +133,7 @@ public class FastqReadParser {
      * <br> else these are trimed from the read (both sequence as quality)
      * <br> then the read is searched for a secund cutsite (this will be the complement of the enzyme site + barcode)
      * <br> if found these are removed + rest after (both from the sequence as the quality)
-     * <br> a new array of Strings is created with 0 as the modified read of read1, and 1 as the modified read of read2
+     * <br> the reads are not changed: the start and end of the kept part of both reads are returned in the ProcessedFragment
      * @param read1 Map<FastqParts, String> | the 4 lines for the first read: the information line, the sequence line, the + line and the quality line (as Fastq from BioJava)
      * @param read2 Map<FastqParts, String> | the 4 lines for the second read: the information line, the sequence line, the + line and the quality line (as Fastq from BioJava)
      * @return ProcessedRead | All information about the processed reads
@@ -88,7 +144,7 @@ public class FastqReadParser {
      */
     public ProcessedFragment parseFastqRead(FastqRead read1, FastqRead read2) throws InvalidReadException{
         //search for the optimal barcode
-        SampleBarcodeCombination[] comb = this.findGBSBarcode2(read1.getSequence(), this.parameters.getStartDistance(), read2.getSequence());
+        SampleBarcodeCombination[] comb = this.findGBSBarcode2(read1.getSequence(), this.config.getStartDistance(), read2.getSequence());
         if (comb == null){
             //no optimal barcode found in the first read or both reads
             throw new InvalidReadException(read1, read2, InvalidReadEnum.READ1);
@@ -99,20 +155,23 @@ public class FastqReadParser {
             sampleBarcodeCombination2 = comb[1];
         }
         Sample sample = sampleBarcodeCombination1.getSample();
+        SampleMatchPlan plan = this.getPlan(sample);
         String barcodeEnzyme = sampleBarcodeCombination1.getSample().getBarcode();
         String enzymeCutsite = sampleBarcodeCombination1.getEnzymeCutsite();
         int barcodeEnzymeLength = sampleBarcodeCombination1.getLengthFoundBarcode();
-        if (! this.parameters.keepCutSites()){
+        if (! this.config.keepCutSites()){
             //the cutsite mustn't be kept
             barcodeEnzyme += sampleBarcodeCombination1.getEnzymeCutsite();
             barcodeEnzymeLength += sampleBarcodeCombination1.getLengthFoundEnzyme();
         }
         //remove the barcode and the enzyme site
         int read1BarcodeLocation = sampleBarcodeCombination1.getLocation();
-        String read1modifiedSequence = read1.getSequence().substring(read1BarcodeLocation + barcodeEnzymeLength, read1.getSequence().length() - (this.longestBarcodeLength - sample.getBarcode().length()));
-        String read1modifiedQuality = read1.getQuality().substring(read1BarcodeLocation + barcodeEnzymeLength, read1.getSequence().length() - (this.longestBarcodeLength - sample.getBarcode().length()));
+        String read1Sequence = read1.getSequence();
+        int read1Start = read1BarcodeLocation + barcodeEnzymeLength;
+        int read1End = read1Sequence.length() - (this.longestBarcodeLength - sample.getBarcode().length());
+        String read1modifiedSequence = read1Sequence.substring(read1Start, read1End);
         
-        if (this.parameters.keepCutSites()){
+        if (this.config.keepCutSites()){
             //add the cutsite to the barcodeEnzyme when not already added (to have the correct complement)
             barcodeEnzyme += sampleBarcodeCombination1.getEnzymeCutsite();
         }
@@ -120,18 +179,15 @@ public class FastqReadParser {
         //find the next enzyme site (if there is any)
         int read1EndLocation = -1;
         int[] read1EndLocationLength = {-1, 0};
-        read1EndLocationLength = this.findRead1EnzymeLocation(read1modifiedSequence, sample);
+        read1EndLocationLength = this.findRead1EnzymeLocation(read1modifiedSequence, plan);
         read1EndLocation = read1EndLocationLength[0];
-        String read1optimalSequence = read1modifiedSequence;
-        String read1optimalQuality = read1modifiedQuality;
         if (read1EndLocation != -1){
             //compliment barcode found
-            if (this.parameters.keepCutSites() && ! this.parameters.isRadData()){
+            if (this.config.keepCutSites() && ! this.config.isRadData()){
                 //cutsites must be kept
                 read1EndLocation += read1EndLocationLength[1];
             }
-            read1optimalSequence = read1modifiedSequence.substring(0, read1EndLocation);
-            read1optimalQuality = read1modifiedQuality.substring(0, read1EndLocation);
+            read1End = this.cutToLength(read1Start, read1End, read1EndLocation);
         }
         
         
@@ -143,151 +199,146 @@ public class FastqReadParser {
         if (sampleBarcodeCombination2 != null){
             read2firstEnzymeLocation = sampleBarcodeCombination2.getLengthFoundBarcode();
         }
-        String read2modifiedSequence = read2.getSequence().substring(read2firstEnzymeLocation);
-        String read2modifiedQuality = read2.getQuality().substring(read2firstEnzymeLocation);
-        if (this.parameters.isRadData()){
+        String read2Sequence = read2.getSequence();
+        int read2Start = read2firstEnzymeLocation;
+        int read2End = read2Sequence.length();
+        String read2modifiedSequence = read2Sequence.substring(read2Start);
+        if (this.config.isRadData()){
             //RAD data
         }else{
             //GBS data
-            if (! this.parameters.keepCutSites()){
+            if (! this.config.keepCutSites()){
                 //remove the enzyme site
                 String foundEnzyme = "";
-                for (String enzymeSite : sample.getEnzyme().getInitialCutSiteRemnant()){
-                    if (this.findingDistanceAlgorithm.isEquivalent(read2modifiedSequence.substring(0, enzymeSite.length()), enzymeSite, this.parameters.getAllowedMismatchesEnzyme())){
+                for (String enzymeSite : plan.getCutSites()){
+                    if (this.findingDistanceAlgorithm.isEquivalent(read2modifiedSequence.substring(0, enzymeSite.length()), enzymeSite, this.config.getAllowedMismatchesEnzyme())){
                         foundEnzyme = enzymeSite;
                     }
                 }
                 read2modifiedSequence = read2modifiedSequence.substring(foundEnzyme.length());
-                read2modifiedQuality = read2modifiedQuality.substring(foundEnzyme.length());
+                read2Start += foundEnzyme.length();
             }
         }
         
         //find the next enzyme site (if there is any)
         //String complementBarcodeEnzyme = BasePair.getComplementSequence(barcodeEnzyme);
-        int[] read2secondEnzymeLocationLength = this.findRead2EnzymeLocation(read2modifiedSequence, sample, enzymeCutsite);
-        String read2optimalSequence = read2modifiedSequence;
-        String read2optimalQuality = read2modifiedQuality;
+        int[] read2secondEnzymeLocationLength = this.findRead2EnzymeLocation(read2modifiedSequence, plan, enzymeCutsite);
         if (read2secondEnzymeLocationLength[0] != -1){
             int read2secondEnzymeLocation = read2secondEnzymeLocationLength[0];
             //enzyme site found
-            if (this.parameters.keepCutSites()){
+            if (this.config.keepCutSites()){
                 //keep the enzyme sites
                 read2secondEnzymeLocation += read2secondEnzymeLocationLength[1];
             }
-            read2optimalSequence = read2modifiedSequence.substring(0, read2secondEnzymeLocation);
-            read2optimalQuality = read2modifiedQuality.substring(0, read2secondEnzymeLocation);
+            read2End = this.cutToLength(read2Start, read2End, read2secondEnzymeLocation);
         }
         
         
         //size selection
         boolean trimedR1 = false;
         boolean trimedR2 = false;
-        int lengthR1 = read1optimalSequence.length();
-        int lengthR2 = read2optimalSequence.length();
-        String sequenceError = "TRIM\t" + "trimok" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + read1optimalSequence.length() + "\tread2:" + read2optimalSequence.length();
+        int lengthR1 = read1End - read1Start;
+        int lengthR2 = read2End - read2Start;
+        String sequenceError = "TRIM\t" + "trimok" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + (read1End - read1Start) + "\tread2:" + (read2End - read2Start);
         
         
-        if (read1optimalSequence.length() != read1.getSequence().length() - this.longestBarcodeLength){
+        if ((read1End - read1Start) != read1Sequence.length() - this.longestBarcodeLength){
             trimedR1 = true;
         }
-        if (read2optimalSequence.length() != read2.getSequence().length()){
+        if ((read2End - read2Start) != read2Sequence.length()){
             trimedR2 = true;
         }
         
         if (! trimedR1 && ! trimedR2){
             //both original => ok
-            this.correctionLog.addCorrecterTrimOk(sample);
-        }else if (! trimedR1 && read2optimalSequence.length() >= read1optimalSequence.length()){
+            this.correctionCounter.add(CorrectionCategory.CORRECT_TRIM_OK, sample);
+        }else if (! trimedR1 && (read2End - read2Start) >= (read1End - read1Start)){
             //R1 is original, R2 is trimed, but same length or longer => ok
-            this.correctionLog.addCorrecterTrimOk(sample);
-        }else if (read1optimalSequence.length() == read2optimalSequence.length()){
+            this.correctionCounter.add(CorrectionCategory.CORRECT_TRIM_OK, sample);
+        }else if ((read1End - read1Start) == (read2End - read2Start)){
             //R1 and R2 are same length => OK
-            this.correctionLog.addCorrecterTrimOk(sample);
+            this.correctionCounter.add(CorrectionCategory.CORRECT_TRIM_OK, sample);
         }else{
             int compareLength = this.longestBarcodeLength;
-            if (this.parameters.keepCutSites()){
+            if (this.config.keepCutSites()){
                 compareLength += sample.getPossibleEnzymeCutSiteLength();
             }
             //R1 and R2 have different sizes, find lowest and check
-            if (read1optimalSequence.length() < read2optimalSequence.length()){
+            if ((read1End - read1Start) < (read2End - read2Start)){
                 //R1 is shortest
-                if (read1optimalSequence.length() > compareLength){
-                    String read1end = read1optimalSequence.substring(read1optimalSequence.length() - compareLength, read1optimalSequence.length());
-                    String expectedStartR2 = BasePair.getComplementSequence(read1end);
-                    if (this.parameters.keepCutSites()){
-                        if (this.findingDistanceAlgorithm.isEquivalent(read2optimalSequence.substring(0, sample.getPossibleEnzymeCutSiteLength()), expectedStartR2.substring(0, sample.getPossibleEnzymeCutSiteLength()), this.parameters.getAllowedMismatchesEnzyme())
-                                && this.findingDistanceAlgorithm.isEquivalent(read2optimalSequence.substring(sample.getPossibleEnzymeCutSiteLength(), compareLength), expectedStartR2.substring(sample.getPossibleEnzymeCutSiteLength()), this.parameters.getAllowedMismatchesBarcode(sample))){
+                if ((read1End - read1Start) > compareLength){
+                    //the complement of read1 (read1End - compareLength)-read1End
+                    String expectedStartR2 = read1.getComplementSequence().substring(read1Sequence.length() - read1End, read1Sequence.length() - read1End + compareLength);
+                    if (this.config.keepCutSites()){
+                        if (this.findingDistanceAlgorithm.isEquivalent(read2Sequence.substring(read2Start, read2Start + sample.getPossibleEnzymeCutSiteLength()), expectedStartR2.substring(0, sample.getPossibleEnzymeCutSiteLength()), this.config.getAllowedMismatchesEnzyme())
+                                && this.findingDistanceAlgorithm.isEquivalent(read2Sequence.substring(read2Start + sample.getPossibleEnzymeCutSiteLength(), read2Start + compareLength), expectedStartR2.substring(sample.getPossibleEnzymeCutSiteLength()), this.config.getAllowedMismatchesBarcode(sample))){
                             //is equivalent:(read2(0-cutsite), complement read1(0-cutsite) with allowed mismatches enzyme)
                             //and is equivalent:(read2(cutsite-comparelength), complement read1(cutsite-comparelength) with allowed mismatches barcode)
                             //is same => trim R2
-                            read2optimalSequence = read2optimalSequence.substring(0, read1optimalSequence.length());
-                            read2optimalQuality = read2optimalQuality.substring(0, read1optimalSequence.length());
+                            read2End = this.cutToLength(read2Start, read2End, read1End - read1Start);
                             trimedR2 = true;
-                            this.correctionLog.addCorrecterR2Corrected(sample);
+                            this.correctionCounter.add(CorrectionCategory.CORRECTED_R2, sample);
                         }else{
-                            if (read1optimalSequence.length() + sample.getBarcode().length() + this.parameters.getAdaptorCompareSize() >= read1.getSequence().length()){
+                            if ((read1End - read1Start) + sample.getBarcode().length() + this.config.getAdaptorCompareSize() >= read1.getSequence().length()){
                                 //read1 is only checked on cutsite, not on adaptor, not corrected so wrong
                                 int minus = this.longestBarcodeLength - sample.getBarcode().length();
-                                read1optimalSequence = read1.getSequence().substring(sample.getBarcode().length(), read1.getSequence().length() - minus);
-                                read1optimalQuality = read1.getQuality().substring(sample.getBarcode().length(), read1.getSequence().length() - minus);
+                                read1Start = sample.getBarcode().length();
+                                read1End = this.cutToLength(read1Start, read1Sequence.length() - minus, read1Sequence.length() - minus - read1Start);
                                 trimedR1 = false;
-                                this.correctionLog.addCorrecterR1Corrected(sample);
+                                this.correctionCounter.add(CorrectionCategory.CORRECTED_R1, sample);
                             }else{
-                                this.correctionLog.addCorrecterR2NotCorrected(sample);
+                                this.correctionCounter.add(CorrectionCategory.NOT_CORRECTED_R2, sample);
                             }
                         }
                     }else{
                         //not keep cutsites
-                        if (this.findingDistanceAlgorithm.isEquivalent(read2optimalSequence.substring(0, compareLength), expectedStartR2, this.parameters.getAllowedMismatchesBarcode(sample))){
+                        if (this.findingDistanceAlgorithm.isEquivalent(read2Sequence.substring(read2Start, read2Start + compareLength), expectedStartR2, this.config.getAllowedMismatchesBarcode(sample))){
                             //is same => trim R2
-                            read2optimalSequence = read2optimalSequence.substring(0, read1optimalSequence.length());
-                            read2optimalQuality = read2optimalQuality.substring(0, read1optimalSequence.length());
+                            read2End = this.cutToLength(read2Start, read2End, read1End - read1Start);
                             trimedR2 = true;
-                            this.correctionLog.addCorrecterR2Corrected(sample);
+                            this.correctionCounter.add(CorrectionCategory.CORRECTED_R2, sample);
                         }else{
-                            if (read1optimalSequence.length() + sample.getBarcode().length() + this.parameters.getAdaptorCompareSize() + sample.getPossibleEnzymeCutSiteLength() + sample.getPossibleEnzymeCutSiteLength() >= read1.getSequence().length()){
+                            if ((read1End - read1Start) + sample.getBarcode().length() + this.config.getAdaptorCompareSize() + sample.getPossibleEnzymeCutSiteLength() + sample.getPossibleEnzymeCutSiteLength() >= read1.getSequence().length()){
                                 //read1 is only checked on cutsite, not on adaptor, not corrected so wrong
                                 int minus = this.longestBarcodeLength - sample.getBarcode().length();
-                                read1optimalSequence = read1.getSequence().substring(sample.getBarcode().length() + sample.getPossibleEnzymeCutSiteLength(), read1.getSequence().length() - minus);
-                                read1optimalQuality = read1.getQuality().substring(sample.getBarcode().length() + sample.getPossibleEnzymeCutSiteLength(), read1.getSequence().length() - minus);
+                                read1Start = sample.getBarcode().length() + sample.getPossibleEnzymeCutSiteLength();
+                                read1End = this.cutToLength(read1Start, read1Sequence.length() - minus, read1Sequence.length() - minus - read1Start);
                                 trimedR1 = false;
-                                this.correctionLog.addCorrecterR1Corrected(sample);
+                                this.correctionCounter.add(CorrectionCategory.CORRECTED_R1, sample);
                             }else{
-                                this.correctionLog.addCorrecterR2NotCorrected(sample);
+                                this.correctionCounter.add(CorrectionCategory.NOT_CORRECTED_R2, sample);
                             }
                         }
                     }
                 }
-            }else if (read1optimalSequence.length() > read2optimalSequence.length()){
+            }else if ((read1End - read1Start) > (read2End - read2Start)){
                 //R2 is shortest
-                if (read2optimalSequence.length() > compareLength){
-                    String read2end = read2optimalSequence.substring(read2optimalSequence.length() - compareLength, read2optimalSequence.length());
-                    String expectedStartR1 = BasePair.getComplementSequence(read2end);
-                    if (this.parameters.keepCutSites()){
-                        if (this.findingDistanceAlgorithm.isEquivalent(read1optimalSequence.substring(0, sample.getPossibleEnzymeCutSiteLength()), expectedStartR1.substring(0, sample.getPossibleEnzymeCutSiteLength()), this.parameters.getAllowedMismatchesEnzyme())
-                                && this.findingDistanceAlgorithm.isEquivalent(read1optimalSequence.substring(sample.getPossibleEnzymeCutSiteLength(), compareLength), expectedStartR1.substring(sample.getPossibleEnzymeCutSiteLength()), this.parameters.getAllowedMismatchesBarcode(sample))){
-                            read1optimalSequence = read1optimalSequence.substring(0, read2optimalSequence.length());
-                            read1optimalQuality = read1optimalQuality.substring(0, read2optimalSequence.length());
+                if ((read2End - read2Start) > compareLength){
+                    //the complement of read2 (read2End - compareLength)-read2End
+                    String expectedStartR1 = read2.getComplementSequence().substring(read2Sequence.length() - read2End, read2Sequence.length() - read2End + compareLength);
+                    if (this.config.keepCutSites()){
+                        if (this.findingDistanceAlgorithm.isEquivalent(read1Sequence.substring(read1Start, read1Start + sample.getPossibleEnzymeCutSiteLength()), expectedStartR1.substring(0, sample.getPossibleEnzymeCutSiteLength()), this.config.getAllowedMismatchesEnzyme())
+                                && this.findingDistanceAlgorithm.isEquivalent(read1Sequence.substring(read1Start + sample.getPossibleEnzymeCutSiteLength(), read1Start + compareLength), expectedStartR1.substring(sample.getPossibleEnzymeCutSiteLength()), this.config.getAllowedMismatchesBarcode(sample))){
+                            read1End = this.cutToLength(read1Start, read1End, read2End - read2Start);
                             trimedR1 = true;
-                            this.correctionLog.addCorrecterR1Corrected(sample);
+                            this.correctionCounter.add(CorrectionCategory.CORRECTED_R1, sample);
                         }else{
-                            this.correctionLog.addCorrecterR1NotCorrected(sample);
+                            this.correctionCounter.add(CorrectionCategory.NOT_CORRECTED_R1, sample);
                         }
                     }else{
                         //not keep cutsites
-                        if (this.findingDistanceAlgorithm.isEquivalent(read1optimalSequence.substring(0, compareLength), expectedStartR1, this.parameters.getAllowedMismatchesBarcode(sample))){
-                            read1optimalSequence = read1optimalSequence.substring(0, read2optimalSequence.length());
-                            read1optimalQuality = read1optimalQuality.substring(0, read2optimalSequence.length());
+                        if (this.findingDistanceAlgorithm.isEquivalent(read1Sequence.substring(read1Start, read1Start + compareLength), expectedStartR1, this.config.getAllowedMismatchesBarcode(sample))){
+                            read1End = this.cutToLength(read1Start, read1End, read2End - read2Start);
                             trimedR1 = true;
-                            this.correctionLog.addCorrecterR1Corrected(sample);
+                            this.correctionCounter.add(CorrectionCategory.CORRECTED_R1, sample);
                         }else{
-                            this.correctionLog.addCorrecterR1NotCorrected(sample);
+                            this.correctionCounter.add(CorrectionCategory.NOT_CORRECTED_R1, sample);
                         }
                     }
                 }
             }else{
                 //same size (may not occure here)
-                this.correctionLog.addCorrecterTrimOk(sample);
+                this.correctionCounter.add(CorrectionCategory.CORRECT_TRIM_OK, sample);
             }
         }
         
@@ -297,67 +348,61 @@ public class FastqReadParser {
         if (trimedR1 && ! trimedR2){
             //R1 was trimed, but R2 not
             int mismatch = -1;
-            if (read1optimalSequence.length() < (read1.getSequence().length() - this.longestBarcodeLength - sample.getBarcode().length() + 1)){
-                mismatch = (MismatchIndelDistance.calculateEquivalentDistance(read2optimalSequence.substring(read1optimalSequence.length() + 1, (read1optimalSequence.length() + 1 + sample.getBarcode().length())), sample.getComplementBarcode(), 1)[0]);
+            if ((read1End - read1Start) < (read1Sequence.length() - this.longestBarcodeLength - sample.getBarcode().length() + 1)){
+                mismatch = (MismatchIndelDistance.calculateEquivalentDistance(read2Sequence.substring(read2Start + (read1End - read1Start) + 1, read2Start + (read1End - read1Start) + 1 + sample.getBarcode().length()), sample.getComplementBarcode(), 1)[0]);
             }
-            read2optimalSequence = read2optimalSequence.substring(0, read1optimalSequence.length());
-            read2optimalQuality = read2optimalQuality.substring(0, read1optimalSequence.length());
-            sequenceError = "TRIM\t" + "tR1nR2" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + read1optimalSequence.length() + "\tread2:" + read2optimalSequence.length() + "\t" + (lengthR1 - lengthR2) + "\t" + mismatch;
-            this.correctionLog.addTrimTrimR1NotR2Fail(sample);
+            read2End = this.cutToLength(read2Start, read2End, read1End - read1Start);
+            sequenceError = "TRIM\t" + "tR1nR2" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + (read1End - read1Start) + "\tread2:" + (read2End - read2Start) + "\t" + (lengthR1 - lengthR2) + "\t" + mismatch;
+            this.correctionCounter.add(CorrectionCategory.TRIM_R1_NOT_R2_FAIL, sample);
         }else if (! trimedR1 && trimedR2){
             //R2 was trimed, not R1, so check sizes to diside to trim
-            if (read1optimalSequence.length() > read2optimalSequence.length()){
+            if ((read1End - read1Start) > (read2End - read2Start)){
                 //read 1 is longer, so trim read 1
                 int mismatch = -1;
-                if (read2optimalSequence.length() < read1.getSequence().length() - this.parameters.getAdaptorCompareSize() - this.longestBarcodeLength){
-                    mismatch = (MismatchIndelDistance.calculateEquivalentDistance(read1optimalSequence.substring(read2optimalSequence.length(), (read2optimalSequence.length() + this.parameters.getAdaptorCompareSize())), this.parameters.getCommonAdaptor(), 1)[0]);;
+                if ((read2End - read2Start) < read1.getSequence().length() - this.config.getAdaptorCompareSize() - this.longestBarcodeLength){
+                    mismatch = (MismatchIndelDistance.calculateEquivalentDistance(read1Sequence.substring(read1Start + (read2End - read2Start), read1Start + (read2End - read2Start) + this.config.getAdaptorCompareSize()), this.config.getCommonAdaptor(), 1)[0]);
                 }
-                read1optimalSequence = read1optimalSequence.substring(0, read2optimalSequence.length());
-                read1optimalQuality = read1optimalQuality.substring(0, read2optimalSequence.length());
-                sequenceError = "TRIM\t" + "nR1tR2not" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + read1optimalSequence.length() + "\tread2:" + read2optimalSequence.length() + "\t" + (lengthR1 - lengthR2) + "\t" + mismatch;
-                this.correctionLog.addTrimNotR1TrimR2butFail(sample);
-            }else if (read1optimalSequence.length() < read2optimalSequence.length()){
+                read1End = this.cutToLength(read1Start, read1End, read2End - read2Start);
+                sequenceError = "TRIM\t" + "nR1tR2not" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + (read1End - read1Start) + "\tread2:" + (read2End - read2Start) + "\t" + (lengthR1 - lengthR2) + "\t" + mismatch;
+                this.correctionCounter.add(CorrectionCategory.TRIM_NOT_R1_TRIM_R2_FAIL, sample);
+            }else if ((read1End - read1Start) < (read2End - read2Start)){
                 //read 2 is longer, so is ok
-                sequenceError = "TRIM\t" + "nR1tR2okl" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + read1optimalSequence.length() + "\tread2:" + read2optimalSequence.length();
-                this.correctionLog.addTrimNotR1TrimR2butOk(sample);
+                sequenceError = "TRIM\t" + "nR1tR2okl" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + (read1End - read1Start) + "\tread2:" + (read2End - read2Start);
+                this.correctionCounter.add(CorrectionCategory.TRIM_NOT_R1_TRIM_R2_OK, sample);
             }else{
                 //same length so ok
-                sequenceError = "TRIM\t" + "nR1tR2oks" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + read1optimalSequence.length() + "\tread2:" + read2optimalSequence.length();
-                this.correctionLog.addTrimNotR1TrimR2butOk(sample);
+                sequenceError = "TRIM\t" + "nR1tR2oks" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + (read1End - read1Start) + "\tread2:" + (read2End - read2Start);
+                this.correctionCounter.add(CorrectionCategory.TRIM_NOT_R1_TRIM_R2_OK, sample);
             }
         }else if (trimedR1 && trimedR2){
             //both are trimed so both have to be the same size
-            if (read1optimalSequence.length() > read2optimalSequence.length()){
+            if ((read1End - read1Start) > (read2End - read2Start)){
                 //read 1 is longer, so trim read 1
-                read1optimalSequence = read1optimalSequence.substring(0, read2optimalSequence.length());
-                read1optimalQuality = read1optimalQuality.substring(0, read2optimalSequence.length());
-                sequenceError = "TRIM\t" + "tR1tR2notR1" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + read1optimalSequence.length() + "\tread2:" + read2optimalSequence.length() + "\t" + (lengthR1 - lengthR2);
-                this.correctionLog.addTrimTrimR1TrimR2longR1(sample);
-            }else if (read1optimalSequence.length() < read2optimalSequence.length()){
+                read1End = this.cutToLength(read1Start, read1End, read2End - read2Start);
+                sequenceError = "TRIM\t" + "tR1tR2notR1" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + (read1End - read1Start) + "\tread2:" + (read2End - read2Start) + "\t" + (lengthR1 - lengthR2);
+                this.correctionCounter.add(CorrectionCategory.TRIM_R1_TRIM_R2_LONG_R1, sample);
+            }else if ((read1End - read1Start) < (read2End - read2Start)){
                 //read 2 is longer, so trim read 2
-                read2optimalSequence = read2optimalSequence.substring(0, read1optimalSequence.length());
-                read2optimalQuality = read2optimalQuality.substring(0, read1optimalSequence.length());
-                sequenceError = "TRIM\t" + "tR1tR2notR2" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + read1optimalSequence.length() + "\tread2:" + read2optimalSequence.length() + "\t" + (lengthR1 - lengthR2);
-                this.correctionLog.addTrimTrimR1TrimR2longR2(sample);
+                read2End = this.cutToLength(read2Start, read2End, read1End - read1Start);
+                sequenceError = "TRIM\t" + "tR1tR2notR2" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + (read1End - read1Start) + "\tread2:" + (read2End - read2Start) + "\t" + (lengthR1 - lengthR2);
+                this.correctionCounter.add(CorrectionCategory.TRIM_R1_TRIM_R2_LONG_R2, sample);
             }else{
                 //both reads have same length so ok
-                sequenceError = "TRIM\t" + "tR1tR2ok" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + read1optimalSequence.length() + "\tread2:" + read2optimalSequence.length();
-                this.correctionLog.addTrimTrimR1TrimR2ok(sample);
+                sequenceError = "TRIM\t" + "tR1tR2ok" + "\t" + read1.getDescription() + "\t" + read2.getDescription() + "\tor1:" + lengthR1 + "\tor2:" + lengthR2 + "\tread1:" + (read1End - read1Start) + "\tread2:" + (read2End - read2Start);
+                this.correctionCounter.add(CorrectionCategory.TRIM_R1_TRIM_R2_OK, sample);
             }
         }else if (! trimedR1 && ! trimedR2){
             //perfect sequence, not trimmed
-            this.correctionLog.addTrimNotR1NotR2(sample);
+            this.correctionCounter.add(CorrectionCategory.TRIM_NOT_R1_NOT_R2, sample);
         }
         
         
         //save results
-        FastqRead resultRead1 = new FastqRead(read1.getDescription(), read1optimalSequence, read1optimalQuality);
-        FastqRead resultRead2 = new FastqRead(read2.getDescription(), read2optimalSequence, read2optimalQuality);
         int mismatches = sampleBarcodeCombination1.getMismatches();
         if (sampleBarcodeCombination2 != null){
             mismatches += sampleBarcodeCombination2.getMismatches();
         }
-        return new ProcessedFragment(sample, resultRead1, resultRead2, mismatches, sequenceError);
+        return new ProcessedFragment(sample, read1, read1Start, read1End, read2, read2Start, read2End, mismatches, sequenceError);
     }
      
     /**
@@ -366,7 +411,7 @@ public class FastqReadParser {
      * <br> The reads are made of the 4 lines for every read: the information line, the sequence line, the + line and the quality line.
      * <br> The first read is searched for the barcode + enzyme site (looked to all known samples)
      * <br> if no barcode + enzyme (perfect match) is found, a InvalidReadException is thrown
-     * <br> else these are trimed from the read (both from the sequence as the quality)
+     * <br> else these are trimed from the read (only the start and end of the kept part are stored, the read is not changed)
      * <br> then the read is searched for a cutsite of the same enzyme, if any that piece + the rest is removed (both from the sequence as the quality)
      * @param read1 Map<FastqParts, String> | the 4 lines for the first read: the information line, the sequence line, the + line and the quality line (as Fastq from BioJava)
      * @return ProcessedRead | all information of the processed read
@@ -378,47 +423,55 @@ public class FastqReadParser {
     public ProcessedFragment parseFastqRead(FastqRead read1) throws InvalidReadException{
         //search for the optimal barcode
         //SampleBarcodeCombination sampleBarcodeCombination = this.findBestBarcode(read1.getSequence());
-        SampleBarcodeCombination sampleBarcodeCombination = this.findGBSBarcode(read1.getSequence(), this.parameters.getStartDistance());
+        SampleBarcodeCombination sampleBarcodeCombination = this.findGBSBarcode(read1.getSequence(), this.config.getStartDistance());
         if (sampleBarcodeCombination == null){
             //no optimal barcode found in the first read
             throw new InvalidReadException(read1, InvalidReadEnum.READ1);
         }
         Sample sample = sampleBarcodeCombination.getSample();
+        SampleMatchPlan plan = this.getPlan(sample);
         int barcodeEnzymeLength = sampleBarcodeCombination.getLengthFoundBarcode();
-        if (! this.parameters.keepCutSites()){
+        if (! this.config.keepCutSites()){
             //if the cutsites mustn't be kept
             barcodeEnzymeLength += sampleBarcodeCombination.getLengthFoundEnzyme();
         }
         //remove the barcode and the enzyme site
         int read1BarcodeLocation = sampleBarcodeCombination.getLocation();
-        String read1modifiedSequence = read1.getSequence().substring(read1BarcodeLocation + barcodeEnzymeLength, read1.getSequence().length() - (this.longestBarcodeLength - sample.getBarcode().length()));
-        String read1modifiedQuality = read1.getQuality().substring(read1BarcodeLocation + barcodeEnzymeLength, read1.getSequence().length() - (this.longestBarcodeLength - sample.getBarcode().length()));
+        String read1Sequence = read1.getSequence();
+        int read1Start = read1BarcodeLocation + barcodeEnzymeLength;
+        int read1End = read1Sequence.length() - (this.longestBarcodeLength - sample.getBarcode().length());
+        String read1modifiedSequence = read1Sequence.substring(read1Start, read1End);
         
         //find the next enzyme site (if there is any)
         int read1EndLocation = -1;
         int[] read1EndLocationLength = {-1, 0};
-        read1EndLocationLength = this.findRead1EnzymeLocation(read1modifiedSequence, sample);
+        read1EndLocationLength = this.findRead1EnzymeLocation(read1modifiedSequence, plan);
         read1EndLocation = read1EndLocationLength[0];
-        String read1optimalSequence = read1modifiedSequence;
-        String read1optimalQuality = read1modifiedQuality;
         if (read1EndLocation != -1){
             //compliment barcode found
-            if (this.parameters.keepCutSites() && ! this.parameters.isRadData()){
+            if (this.config.keepCutSites() && ! this.config.isRadData()){
                 //if the cutsites must be kept
                 read1EndLocation += read1EndLocationLength[1];
             }
-            read1optimalSequence = read1modifiedSequence.substring(0, read1EndLocation);
-            read1optimalQuality = read1modifiedQuality.substring(0, read1EndLocation);
+            read1End = this.cutToLength(read1Start, read1End, read1EndLocation);
         }
         //save results
-        HashMap<FastqParts, String> result1 = new HashMap();
-        result1.put(FastqParts.DESCRIPTION, read1.getDescription());
-        result1.put(FastqParts.SEQUENCE, read1optimalSequence);
-        result1.put(FastqParts.QUALITY, read1optimalQuality);
-        
-        FastqRead fastqRead = new FastqRead(read1.getDescription(), read1optimalSequence, read1optimalQuality);
-        
-        return new ProcessedFragment(sample, fastqRead, sampleBarcodeCombination.getMismatches());
+        return new ProcessedFragment(sample, read1, read1Start, read1End, sampleBarcodeCombination.getMismatches());
+    }
+    
+    /**
+     * gives the end of a part of a read when the part is cut to the given length
+     * @param start int | the first base of the part
+     * @param end int | the current end of the part (exclusive)
+     * @param length int | the new length of the part
+     * @return int | the new end of the part (exclusive)
+     * @throws StringIndexOutOfBoundsException if the part is shorter than the given length
+     */
+    private int cutToLength(int start, int end, int length){
+        if (length < 0 || length > end - start){
+            throw new StringIndexOutOfBoundsException("Can't cut a part of length " + (end - start) + " to length " + length);
+        }
+        return start + length;
     }
     
   
@@ -431,32 +484,31 @@ public class FastqReadParser {
      * <br> if it is equivalent, the location is returned, else the sequence is continued
      * <br> if no cutsite is found (any more) -1 is returned
      * @param sequence String | the whole sequence to search the possible enzyme cut site
-     * @param sample Sample | the sample of the sequence (contains the enzyme)
+     * @param plan SampleMatchPlan | the match plan of the sample of the sequence (contains the cutsites of the enzyme)
      * @return int[location, length] | the location of the cutsite, or -1 if no location is found, length of the cutsite (indels)
      * @see FindingDistanceAlgorithm#isEquivalent(java.lang.String, java.lang.String, int) 
      * @see FastqDemultiplex#getAllowedMismatchesEnzyme() 
      */
-    private int[] findRead1EnzymeLocation(String sequence, Sample sample){
+    private int[] findRead1EnzymeLocation(String sequence, SampleMatchPlan plan){
         //get all possible cutsites
-        HashSet<String> cutsites = new HashSet<String>(sample.getEnzyme2().getComplementCutSiteRemnant());
+        String[] cutsites = plan.getRead1EndCutSites();
 
         int[] bestIndex = {-1, 0};
-        EnzymeComparator enzymeComparator = new EnzymeComparator();
-        if (this.parameters.isRadData() || enzymeComparator.compare(sample.getEnzyme2(), this.parameters.getNeutralEnzyme()) == 0){
+        if (this.config.isRadData() || plan.hasNeutralEnzyme2()){
             //rad data, so check for adaptor (with out enzyme cut site)
-            int adaptorMismatches = this.parameters.getAdaptorLigaseMismatches();
+            int adaptorMismatches = this.config.getAdaptorLigaseMismatches();
             if (adaptorMismatches == -1) adaptorMismatches = 0;
             int[] locationLength = {-1, 0};
             for(int mis = 0; mis <= adaptorMismatches && locationLength[0] != -1; mis++){
-                locationLength = this.findingDistanceAlgorithm.indexOf(sequence, this.parameters.getCommonAdaptor().substring(0, this.parameters.getAdaptorCompareSize()), mis);
+                locationLength = this.findingDistanceAlgorithm.indexOf(sequence, this.getAdaptorStart(this.config.getAdaptorCompareSize()), mis);
             }
             if (locationLength[0] == -1){
                 int mis = adaptorMismatches;
-                for (int adaptorSize = this.parameters.getAdaptorCompareSize(); adaptorSize >= 4 && locationLength[0] == -1; adaptorSize--){
-                    if (adaptorSize < this.parameters.getAdaptorCompareSize() / 2){
+                for (int adaptorSize = this.config.getAdaptorCompareSize(); adaptorSize >= 4 && locationLength[0] == -1; adaptorSize--){
+                    if (adaptorSize < this.config.getAdaptorCompareSize() / 2){
                         mis = 0;
                     }
-                    locationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence.substring(sequence.length() - adaptorSize), this.parameters.getCommonAdaptor().substring(0, adaptorSize), mis);
+                    locationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence.substring(sequence.length() - adaptorSize), this.getAdaptorStart(adaptorSize), mis);
                     if (locationLength[0] != -1){
                         locationLength[0] = locationLength[0] + (sequence.length() - adaptorSize);
                     }
@@ -465,28 +517,26 @@ public class FastqReadParser {
             if (bestIndex[0] == -1 || bestIndex[0] > locationLength[0]){
                 bestIndex = locationLength;
             }
+        }else if (plan.getRead1EndAutomaton() != null){
+            //GBS data, check all cutsites in one pass
+            bestIndex = this.scanRead1EnzymeLocation(sequence, plan);
         }else{
             //GBS data, so check for enzyme cut site and adaptor
             for (String enzyme : cutsites){
-                String endSequence = "";
-                int endSeqMismatches = 0;
-                endSequence = this.parameters.getCommonAdaptor().substring(0, this.parameters.getAdaptorCompareSize());
-                if (this.parameters.useDoubleBarcodes()){
-                    endSequence = BasePair.getComplementSequence(sample.getBarcodeSecond()) + this.parameters.getCommonAdaptor();
-                    endSequence = endSequence.substring(0, this.parameters.getAdaptorCompareSize());
-                }
-                endSeqMismatches = this.parameters.getAdaptorLigaseMismatches();
+                //the adaptor, or with double barcodes the complement of the second barcode + the adaptor
+                String endSequence = plan.getEndSequenceStart(this.config.getAdaptorCompareSize());
+                int endSeqMismatches = this.config.getAdaptorLigaseMismatches();
                 if (endSeqMismatches < 0) endSeqMismatches = 0;
-                int[] locationLength = this.findingDistanceAlgorithm.indexOf(sequence, enzyme, endSequence, this.parameters.getAllowedMismatchesEnzyme(), endSeqMismatches);
+                int[] locationLength = this.findingDistanceAlgorithm.indexOf(sequence, enzyme, endSequence, this.config.getAllowedMismatchesEnzyme(), endSeqMismatches);
                 
                 if (locationLength[0] == -1){
                     //if the sequence is search and no enzyme + adaptor is found, look at the end of the sequence for the enzyme (no adaptor)
-                    for (int i = 0; i < this.parameters.getAdaptorCompareSize(); i++){
-                        int[] newLocationLength = this.findingDistanceAlgorithm.indexOf(sequence.substring(sequence.length() - this.parameters.getAdaptorCompareSize() - enzyme.length() + i), enzyme, endSequence.substring(0, this.parameters.getAdaptorCompareSize() - i), this.parameters.getAllowedMismatchesEnzyme(), 0);
+                    for (int i = 0; i < this.config.getAdaptorCompareSize(); i++){
+                        int[] newLocationLength = this.findingDistanceAlgorithm.indexOf(sequence.substring(sequence.length() - this.config.getAdaptorCompareSize() - enzyme.length() + i), enzyme, plan.getEndSequenceStart(this.config.getAdaptorCompareSize() - i), this.config.getAllowedMismatchesEnzyme(), 0);
                         if (newLocationLength[0] != -1){
-                            newLocationLength[0] = sequence.length() - this.parameters.getAdaptorCompareSize() - enzyme.length() + i + newLocationLength[0];
+                            newLocationLength[0] = sequence.length() - this.config.getAdaptorCompareSize() - enzyme.length() + i + newLocationLength[0];
                             locationLength = newLocationLength;
-                            i = this.parameters.getAdaptorCompareSize();
+                            i = this.config.getAdaptorCompareSize();
                         }
                     }
 
@@ -517,6 +567,94 @@ public class FastqReadParser {
     }
     
     
+    /**
+     * finds the same location as the cutsite loop of findRead1EnzymeLocation (with the hammings distance),
+     * but searches all cutsites in one pass with the automaton of the plan.
+     * <br> for every cutsite, the first location is kept where the cutsite is followed by the end sequence (the adaptor start),
+     * <br> the search of a cutsite stops when it is found to close to the end of the sequence to have the complete end sequence after it.
+     * <br> else the first location at the end of the sequence is kept where the cutsite is followed by an exact start of the end sequence,
+     * <br> else the longest exact start of the cutsite at the end of the sequence.
+     * @param sequence String | the whole sequence to search the possible enzyme cut site
+     * @param plan SampleMatchPlan | the match plan of the sample of the sequence (with the automaton of the cutsites)
+     * @return int[location, length] | the location of the cutsite, or -1 if no location is found, length of the cutsite
+     * @throws StringIndexOutOfBoundsException if a cutsite isn't found, and the sequence is shorter than the cutsite + adaptor compare size
+     * @see FastqReadParser#findRead1EnzymeLocation(java.lang.String, be.uzleuven.gc.logistics.GBSX.demultiplexer.application.SampleMatchPlan) 
+     */
+    private int[] scanRead1EnzymeLocation(String sequence, SampleMatchPlan plan){
+        String[] cutsites = plan.getRead1EndCutSites();
+        AhoCorasickAutomaton automaton = plan.getRead1EndAutomaton();
+        int compareSize = this.config.getAdaptorCompareSize();
+        String endSequence = plan.getEndSequenceStart(compareSize);
+        int endSeqMismatches = this.config.getAdaptorLigaseMismatches();
+        if (endSeqMismatches < 0) endSeqMismatches = 0;
+        int length = sequence.length();
+        //the location of every cutsite followed by the end sequence, and followed by the start of the end sequence at the end
+        int[] locations = new int[cutsites.length];
+        int[] endLocations = new int[cutsites.length];
+        Arrays.fill(locations, -1);
+        Arrays.fill(endLocations, -1);
+        int searching = (int) ((1L << cutsites.length) - 1);
+        int endSearching = searching;
+        int state = automaton.getStartState();
+        for (int index = 0; index < length && (searching | endSearching) != 0; index++){
+            state = automaton.nextState(state, sequence.charAt(index));
+            int found = automaton.getMatches(state) & (searching | endSearching);
+            while (found != 0){
+                int cutsite = Integer.numberOfTrailingZeros(found);
+                int bit = 1 << cutsite;
+                found &= found - 1;
+                int enzymeLength = cutsites[cutsite].length();
+                int location = index - enzymeLength + 1;
+                if (location >= length - enzymeLength){
+                    //the cutsite at the end, only the exact start of the cutsite is used
+                    continue;
+                }
+                if ((searching & bit) != 0){
+                    if (location + enzymeLength + endSequence.length() > length){
+                        //to short to find the end sequence
+                        searching &= ~bit;
+                    }else if (HammingsDistance.isEquivalent(sequence, location + enzymeLength, endSequence, endSeqMismatches)){
+                        locations[cutsite] = location;
+                        searching &= ~bit;
+                        endSearching &= ~bit;
+                    }
+                }
+                if ((endSearching & bit) != 0 && location >= length - compareSize - enzymeLength){
+                    int endLength = length - location - enzymeLength;
+                    if (sequence.regionMatches(location + enzymeLength, plan.getEndSequenceStart(endLength), 0, endLength)){
+                        endLocations[cutsite] = location;
+                        endSearching &= ~bit;
+                    }
+                }
+            }
+        }
+        int[] bestIndex = {-1, 0};
+        for (int cutsite = 0; cutsite < cutsites.length; cutsite++){
+            int enzymeLength = cutsites[cutsite].length();
+            int location = locations[cutsite];
+            if (location == -1){
+                if (length - compareSize - enzymeLength < 0){
+                    throw new StringIndexOutOfBoundsException(length - compareSize - enzymeLength);
+                }
+                location = endLocations[cutsite];
+            }
+            if (location == -1){
+                int prefixLength = automaton.getExactPrefixLength(state, cutsite);
+                if (prefixLength > 0){
+                    location = length - prefixLength;
+                }
+            }
+            if ((location < bestIndex[0] && location != -1) || bestIndex[0] == -1){
+                bestIndex = new int[]{location, enzymeLength};
+                if (location + enzymeLength >= length){
+                    bestIndex[0] = length;
+                    bestIndex[1] = 0;
+                }
+            }
+        }
+        return bestIndex;
+    }
+    
     /**
      * if the complete check option is used:
      * <br> then the complement of the found barcode and enzyme combination is searched in the given sequence (used mismatches for barcode enzyme combination)
@@ -525,41 +663,44 @@ public class FastqReadParser {
      * <br> the first possible enzyme cutsite is searched, if found the location is returned
      * <br> if no locations are found -1 is returned
      * @param sequence String | the sequence to search in
-     * @param sample Sample | the sample with the possible enzyme site
+     * @param plan SampleMatchPlan | the match plan of the sample with the possible enzyme site
      * @param foundEnzyme String | the found enzyme (NOT the complement) barcode is in sample
      * @return int[location, length] | the location of the first enzyme (don't do a complete check) or the location of the complement barcode enzyme combination (do a complete check) or -1 if no location is found
      */
-    private int[] findRead2EnzymeLocation(String sequence, Sample sample, String foundEnzyme){
-        if (this.parameters.completeCheck()){
+    private int[] findRead2EnzymeLocation(String sequence, SampleMatchPlan plan, String foundEnzyme){
+        Sample sample = plan.getSample();
+        if (this.config.completeCheck()){
             //uses the complete check option: look for the complement of the found enzyme => look for the reverse barcode => and look for the adaptor there after
-            String complementFoundEnzyme = BasePair.getComplementSequence(foundEnzyme);
-            int barcodeEnzymeLength = complementFoundEnzyme.length() + sample.getBarcode().length();
+            String complementFoundEnzyme = plan.getComplementCutSite(foundEnzyme);
+            String complementBarcode = plan.getComplementBarcode();
+            int complementBarcodeLength = plan.getComplementBarcodeLength();
+            int barcodeEnzymeLength = complementFoundEnzyme.length() + plan.getBarcodeLength();
             int extraAdaptorSearch = this.longestBarcodeLength;
-            if (extraAdaptorSearch > this.parameters.getCommonAdaptor().length()){
-                extraAdaptorSearch = this.parameters.getCommonAdaptor().length();
+            if (extraAdaptorSearch > this.config.getCommonAdaptor().length()){
+                extraAdaptorSearch = this.config.getCommonAdaptor().length();
             }
             
             int[] place = {-1, 0};
             boolean searchMore = true;
             int posloc = -1;
-            int mismatches = 1 + this.parameters.getAllowedMismatchesBarcode(sample) + this.parameters.getAllowedMismatchesEnzyme() + this.parameters.getAdaptorLigaseMismatches();
+            int mismatches = 1 + this.config.getAllowedMismatchesBarcode(sample) + this.config.getAllowedMismatchesEnzyme() + this.config.getAdaptorLigaseMismatches();
             while (searchMore){
                 //find index of complement enzyme + complement barcode
-                int[] posplace = this.findingDistanceAlgorithm.indexOf(sequence.substring(posloc + 1), complementFoundEnzyme, sample.getComplementBarcode(), this.parameters.getAllowedMismatchesEnzyme(), this.parameters.getAllowedMismatchesBarcode(sample));
+                int[] posplace = this.findingDistanceAlgorithm.indexOf(sequence.substring(posloc + 1), complementFoundEnzyme, complementBarcode, this.config.getAllowedMismatchesEnzyme(), this.config.getAllowedMismatchesBarcode(sample));
                 
                 if (posplace[0] == -1){
                     //no index found
                     searchMore = false;
-                }else if (posloc + 1 + posplace[0] < sequence.length() - complementFoundEnzyme.length() - sample.getComplementBarcode().length()){
+                }else if (posloc + 1 + posplace[0] < sequence.length() - complementFoundEnzyme.length() - complementBarcodeLength){
                     //if new found possible location is smaller then the maximum location
                     //and the the new found location + enzyme + barcode + extraAdaptor search is smaller than the length of the sequence
-                    extraAdaptorSearch = this.parameters.getAdaptorCompareSize();
-                    if (extraAdaptorSearch >= sequence.length() - (posloc + 1 + posplace[0] + complementFoundEnzyme.length() + sample.getComplementBarcode().length())){
-                        extraAdaptorSearch = sequence.length() - (posloc + 1 + posplace[0] + complementFoundEnzyme.length() + sample.getComplementBarcode().length()) -1;
+                    extraAdaptorSearch = this.config.getAdaptorCompareSize();
+                    if (extraAdaptorSearch >= sequence.length() - (posloc + 1 + posplace[0] + complementFoundEnzyme.length() + complementBarcodeLength)){
+                        extraAdaptorSearch = sequence.length() - (posloc + 1 + posplace[0] + complementFoundEnzyme.length() + complementBarcodeLength) -1;
                     }
-                    if (this.findingDistanceAlgorithm.isEquivalent(sequence.substring(posloc + 1 + posplace[0] + complementFoundEnzyme.length() + sample.getComplementBarcode().length(), posloc + 1 + posplace[0] + complementFoundEnzyme.length() + sample.getComplementBarcode().length() + extraAdaptorSearch), this.parameters.getCommonAdaptor().substring(0, extraAdaptorSearch), this.parameters.getAdaptorLigaseMismatches())){
+                    if (this.findingDistanceAlgorithm.isEquivalent(sequence.substring(posloc + 1 + posplace[0] + complementFoundEnzyme.length() + complementBarcodeLength, posloc + 1 + posplace[0] + complementFoundEnzyme.length() + complementBarcodeLength + extraAdaptorSearch), this.getAdaptorStart(extraAdaptorSearch), this.config.getAdaptorLigaseMismatches())){
                         //common adaptor found
-                        int[] newMismatch = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence.substring(posloc + 1 + posplace[0], posloc + 1 + posplace[0] + complementFoundEnzyme.length() + sample.getComplementBarcode().length() + extraAdaptorSearch), complementFoundEnzyme + sample.getComplementBarcode() + this.parameters.getCommonAdaptor().substring(0, extraAdaptorSearch), (this.parameters.getAllowedMismatchesEnzyme() + this.parameters.getAllowedMismatchesBarcode(sample) + this.parameters.getAdaptorLigaseMismatches()));
+                        int[] newMismatch = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence.substring(posloc + 1 + posplace[0], posloc + 1 + posplace[0] + complementFoundEnzyme.length() + complementBarcodeLength + extraAdaptorSearch), complementFoundEnzyme + complementBarcode + this.getAdaptorStart(extraAdaptorSearch), (this.config.getAllowedMismatchesEnzyme() + this.config.getAllowedMismatchesBarcode(sample) + this.config.getAdaptorLigaseMismatches()));
                         posloc += 1 + posplace[0];
                         if (newMismatch[0] == -1){
                             //normaly can not occure
@@ -587,10 +728,10 @@ public class FastqReadParser {
             place[1] = complementFoundEnzyme.length();
             if (place[0] == -1){
                 //find with no barcode
-                int[] newplace = this.findingDistanceAlgorithm.indexOf(sequence.substring(sequence.length() - complementFoundEnzyme.length() - sample.getBarcode().length()), complementFoundEnzyme, this.parameters.getAllowedMismatchesEnzyme());
+                int[] newplace = this.findingDistanceAlgorithm.indexOf(sequence.substring(sequence.length() - complementFoundEnzyme.length() - plan.getBarcodeLength()), complementFoundEnzyme, this.config.getAllowedMismatchesEnzyme());
                 
                 if (newplace[0] != -1){
-                    place[0] = (sequence.length() - complementFoundEnzyme.length() - sample.getBarcode().length() + newplace[0]);
+                    place[0] = (sequence.length() - complementFoundEnzyme.length() - plan.getBarcodeLength() + newplace[0]);
                 }
                 else{
                     for (int ei=0; ei < complementFoundEnzyme.length(); ei++){
@@ -605,18 +746,20 @@ public class FastqReadParser {
             }
             return place;
         }else{
-            EnzymeComparator enzymeComparator = new EnzymeComparator();
-            if (this.parameters.isRadData() || enzymeComparator.compare(sample.getEnzyme(), this.parameters.getNeutralEnzyme()) == 0){
+            if (this.config.isRadData() || plan.hasNeutralEnzyme()){
                 return new int[]{-1,0};
             }
             //uses complete digest option: look only for an enzyme cutsite
             //get all possible cutsites
-            HashSet<String> cutsites = new HashSet<String>(sample.getEnzyme().getComplementCutSiteRemnant());
+            String[] cutsites = plan.getRead2EndCutSites();
+            if (plan.getRead2EndAutomaton() != null){
+                return this.scanRead2EnzymeLocation(sequence, plan);
+            }
             //check every enzyme
             int [] locationLength = new int[] {-1, 0};
             for (String enzyme : cutsites){
                 int[] newlocationLength;
-                if ((newlocationLength = this.findingDistanceAlgorithm.indexOf(sequence, enzyme, this.parameters.getAllowedMismatchesEnzyme()))[0] != -1){
+                if ((newlocationLength = this.findingDistanceAlgorithm.indexOf(sequence, enzyme, this.config.getAllowedMismatchesEnzyme()))[0] != -1){
                     if (locationLength[0] == -1 || (newlocationLength[0] < locationLength[0] && newlocationLength[0] != -1)){
                         locationLength = newlocationLength;
                     }
@@ -626,6 +769,40 @@ public class FastqReadParser {
         }
     }
     
+    /**
+     * finds the same location as the cutsite loop of findRead2EnzymeLocation without complete check (with the hammings distance),
+     * but searches all cutsites in one pass with the automaton of the plan
+     * @param sequence String | the sequence to search in
+     * @param plan SampleMatchPlan | the match plan of the sample (with the automaton of the cutsites)
+     * @return int[location, length] | the location of the first cutsite, or -1 if no location is found, length of the cutsite
+     */
+    private int[] scanRead2EnzymeLocation(String sequence, SampleMatchPlan plan){
+        String[] cutsites = plan.getRead2EndCutSites();
+        AhoCorasickAutomaton automaton = plan.getRead2EndAutomaton();
+        int[] locations = new int[cutsites.length];
+        Arrays.fill(locations, -1);
+        int searching = (int) ((1L << cutsites.length) - 1);
+        int state = automaton.getStartState();
+        for (int index = 0; index < sequence.length() && searching != 0; index++){
+            state = automaton.nextState(state, sequence.charAt(index));
+            int found = automaton.getMatches(state) & searching;
+            while (found != 0){
+                int cutsite = Integer.numberOfTrailingZeros(found);
+                found &= found - 1;
+                locations[cutsite] = index - cutsites[cutsite].length() + 1;
+                searching &= ~(1 << cutsite);
+            }
+        }
+        //the first location, on equal locations the first cutsite
+        int[] locationLength = new int[] {-1, 0};
+        for (int cutsite = 0; cutsite < cutsites.length; cutsite++){
+            if (locations[cutsite] != -1 && (locationLength[0] == -1 || locations[cutsite] < locationLength[0])){
+                locationLength = new int[] {locations[cutsite], cutsites[cutsite].length()};
+            }
+        }
+        return locationLength;
+    }
+    
     /**
      * looks at the sequences first basepairs to determenate if there is a barcode + enzyme combination possible
      * <br> the hammings distance is used to allow mismatches.
@@ -635,22 +812,23 @@ public class FastqReadParser {
      * @see FindingDistanceAlgorithm#isEquivalent(java.lang.String, java.lang.String, int) 
      */
     private SampleBarcodeCombination findGBSBarcode(String sequence, int startDistance){
+        //pack the read once (only for the packed algorithm)
+        PackedSequence packedSequence = this.findingDistanceAlgorithm.packSequence(sequence);
         //for every distance
         for (int distance = 0; distance <= startDistance && distance <= this.MAXIMUM_DISTANCE_BETWEEN_START_AND_BARCODE; distance++){
             HashSet<SampleBarcodeCombination> foundSampleSet = new HashSet<SampleBarcodeCombination>();
-            //try every sample
-            for (Sample sample : this.sampleList){
+            //try every sample that can have the barcode
+            for (Sample sample : this.getCandidateSamples(sequence, distance)){
                 //try every barcode
                 int[] barcodeLocationLength = new int[]{-1};
-                if (this.parameters.useSelfCorrectingBarcodes()){
-                    BarcodeCorrectingAlgorithm barcodeCorrectingAlgorithm = new BarcodeCorrectingAlgorithm();
-                    String newBarcode = barcodeCorrectingAlgorithm.correctBarcode(sequence.substring(distance, distance + sample.getBarcode().length()));
-                    if (newBarcode.equals(sample.getBarcode())){
+                if (this.config.useSelfCorrectingBarcodes()){
+                    //the candidates of the index already have the corrected barcode of the read
+                    if (this.barcodeIndex != null || BarcodeCorrectingAlgorithm.isCorrectedBarcode(sequence, distance, sample.getBarcode())){
                         //distance, length
                         barcodeLocationLength = new int[] {0, sample.getBarcode().length()};
                     }
                 }else{
-                    barcodeLocationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence.substring(distance), sample.getBarcode(), this.parameters.getAllowedMismatchesBarcode(sample));
+                    barcodeLocationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence, packedSequence, distance, sample.getBarcode(), sample.getPackedBarcode(), this.config.getAllowedMismatchesBarcode(sample));
                 }
                 if (barcodeLocationLength[0] != -1){
                     //try every enzyme site
@@ -658,13 +836,17 @@ public class FastqReadParser {
                     String exactEnzymeCutSite = "";
                     int[] cutsiteLocationLength = new int[1];
                     cutsiteLocationLength[0] = 0;
-                    for (String enzymeCutSite : sample.getEnzyme().getInitialCutSiteRemnant()){
-                        if ((cutsiteLocationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence.substring(distance + barcodeLocationLength[1]), enzymeCutSite, this.parameters.getAllowedMismatchesEnzyme()))[0] != -1){
+                    SampleMatchPlan plan = this.getPlan(sample);
+                    String[] cutSites = plan.getCutSites();
+                    PackedSequence[] packedCutSites = plan.getPackedCutSites();
+                    for (int site = 0; site < cutSites.length; site++){
+                        String enzymeCutSite = cutSites[site];
+                        if ((cutsiteLocationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence, packedSequence, distance + barcodeLocationLength[1], enzymeCutSite, packedCutSites[site], this.config.getAllowedMismatchesEnzyme()))[0] != -1){
                             //check on adaptor ligase
-                            if (this.parameters.getAdaptorLigaseMismatches() != -1){
-                                String adaptor = this.parameters.getCommonAdaptor();
+                            if (this.config.getAdaptorLigaseMismatches() != -1){
+                                String adaptor = this.config.getCommonAdaptor();
                                 for (int l = cutsiteLocationLength[1]/2; l <= cutsiteLocationLength[1]; l++){
-                                    if (this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence.substring(distance + barcodeLocationLength[1] + cutsiteLocationLength[1]), adaptor, this.parameters.getAdaptorLigaseMismatches())[0] != -1){
+                                    if (this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence.substring(distance + barcodeLocationLength[1] + cutsiteLocationLength[1]), adaptor, this.config.getAdaptorLigaseMismatches())[0] != -1){
                                         return null;
                                         //adaptor ligase
                                     }
@@ -707,22 +889,27 @@ public class FastqReadParser {
      * @see FindingDistanceAlgorithm#isEquivalent(java.lang.String, java.lang.String, int) 
      */
     private SampleBarcodeCombination[] findGBSBarcode2(String sequence, int startDistance, String sequence2){
+        //pack the reads once (only for the packed algorithm)
+        PackedSequence packedSequence = this.findingDistanceAlgorithm.packSequence(sequence);
+        PackedSequence packedSequence2 = null;
+        if (this.config.useDoubleBarcodes()){
+            packedSequence2 = this.findingDistanceAlgorithm.packSequence(sequence2);
+        }
         //for every distance
         for (int distance = 0; distance <= startDistance && distance <= this.MAXIMUM_DISTANCE_BETWEEN_START_AND_BARCODE; distance++){
             HashSet<SampleBarcodeCombination> foundSampleSet = new HashSet<SampleBarcodeCombination>();
-            //try every sample
-            for (Sample sample : this.sampleList){
+            //try every sample that can have the barcode
+            for (Sample sample : this.getCandidateSamples(sequence, distance)){
                 //try every barcode
                 int[] barcodeLocationLength = new int[]{-1};
-                if (this.parameters.useSelfCorrectingBarcodes()){
-                    BarcodeCorrectingAlgorithm barcodeCorrectingAlgorithm = new BarcodeCorrectingAlgorithm();
-                    String newBarcode = barcodeCorrectingAlgorithm.correctBarcode(sequence.substring(distance, distance + sample.getBarcode().length()));
-                    if (newBarcode.equals(sample.getBarcode())){
+                if (this.config.useSelfCorrectingBarcodes()){
+                    //the candidates of the index already have the corrected barcode of the read
+                    if (this.barcodeIndex != null || BarcodeCorrectingAlgorithm.isCorrectedBarcode(sequence, distance, sample.getBarcode())){
                         //distance, length
                         barcodeLocationLength = new int[] {0, sample.getBarcode().length()};
                     }
                 }else{
-                    barcodeLocationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence.substring(distance), sample.getBarcode(), this.parameters.getAllowedMismatchesBarcode(sample));
+                    barcodeLocationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence, packedSequence, distance, sample.getBarcode(), sample.getPackedBarcode(), this.config.getAllowedMismatchesBarcode(sample));
                 }
                 if (barcodeLocationLength[0] != -1){
                     //try every enzyme site
@@ -730,13 +917,17 @@ public class FastqReadParser {
                     String exactEnzymeCutSite = "";
                     int[] cutsiteLocationLength = new int[1];
                     cutsiteLocationLength[0] = 0;
-                    for (String enzymeCutSite : sample.getEnzyme().getInitialCutSiteRemnant()){
-                        if ((cutsiteLocationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence.substring(distance + barcodeLocationLength[1]), enzymeCutSite, this.parameters.getAllowedMismatchesEnzyme()))[0] != -1){
+                    SampleMatchPlan plan = this.getPlan(sample);
+                    String[] cutSites = plan.getCutSites();
+                    PackedSequence[] packedCutSites = plan.getPackedCutSites();
+                    for (int site = 0; site < cutSites.length; site++){
+                        String enzymeCutSite = cutSites[site];
+                        if ((cutsiteLocationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence, packedSequence, distance + barcodeLocationLength[1], enzymeCutSite, packedCutSites[site], this.config.getAllowedMismatchesEnzyme()))[0] != -1){
                             //check on adaptor ligase
-                            if (this.parameters.getAdaptorLigaseMismatches() != -1){
-                                String adaptor = this.parameters.getCommonAdaptor();
+                            if (this.config.getAdaptorLigaseMismatches() != -1){
+                                String adaptor = this.config.getCommonAdaptor();
                                 for (int l = cutsiteLocationLength[1]/2; l <= cutsiteLocationLength[1]; l++){
-                                    if (this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence.substring(distance + barcodeLocationLength[1] + cutsiteLocationLength[1]), adaptor, this.parameters.getAdaptorLigaseMismatches())[0] != -1){
+                                    if (this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence.substring(distance + barcodeLocationLength[1] + cutsiteLocationLength[1]), adaptor, this.config.getAdaptorLigaseMismatches())[0] != -1){
                                         return null;
                                         //adaptor ligase
                                     }
@@ -755,7 +946,7 @@ public class FastqReadParser {
             //found possible sampleBarcode combinations
             if (foundSampleSet.isEmpty()){
                 return null;
-            }else if(! this.parameters.useDoubleBarcodes()){
+            }else if(! this.config.useDoubleBarcodes()){
                 //only 1 barcode
                 if (foundSampleSet.size() == 1){
                     //found exact 1 possibility == report
@@ -776,15 +967,13 @@ public class FastqReadParser {
                 for (Sample sample : testSamplesMap.keySet()){
                 //try every barcode
                     int[] barcodeLocationLength = new int[]{-1};
-                    if (this.parameters.useSelfCorrectingBarcodes()){
-                        BarcodeCorrectingAlgorithm barcodeCorrectingAlgorithm = new BarcodeCorrectingAlgorithm();
-                        String newBarcode = barcodeCorrectingAlgorithm.correctBarcode(sequence2.substring(distance, distance + sample.getBarcodeSecond().length()));
-                        if (newBarcode.equals(sample.getBarcodeSecond())){
+                    if (this.config.useSelfCorrectingBarcodes()){
+                        if (BarcodeCorrectingAlgorithm.isCorrectedBarcode(sequence2, distance, sample.getBarcodeSecond())){
                             //distance, length
                             barcodeLocationLength = new int[] {0, sample.getBarcodeSecond().length()};
                         }
                     }else{
-                        barcodeLocationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence2.substring(distance), sample.getBarcodeSecond(), this.parameters.getAllowedMismatchesBarcode(sample));
+                        barcodeLocationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence2, packedSequence2, distance, sample.getBarcodeSecond(), sample.getPackedBarcodeSecond(), this.config.getAllowedMismatchesBarcode(sample));
                     }
                     if (barcodeLocationLength[0] != -1){
                         //try every enzyme site
@@ -792,13 +981,17 @@ public class FastqReadParser {
                         String exactEnzymeCutSite = "";
                         int[] cutsiteLocationLength = new int[1];
                         cutsiteLocationLength[0] = 0;
-                        for (String enzymeCutSite : sample.getEnzyme2().getInitialCutSiteRemnant()){
-                            if ((cutsiteLocationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence2.substring(distance + barcodeLocationLength[1]), enzymeCutSite, this.parameters.getAllowedMismatchesEnzyme()))[0] != -1){
+                        SampleMatchPlan plan = this.getPlan(sample);
+                        String[] cutSites2 = plan.getCutSites2();
+                        PackedSequence[] packedCutSites2 = plan.getPackedCutSites2();
+                        for (int site = 0; site < cutSites2.length; site++){
+                            String enzymeCutSite = cutSites2[site];
+                            if ((cutsiteLocationLength = this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence2, packedSequence2, distance + barcodeLocationLength[1], enzymeCutSite, packedCutSites2[site], this.config.getAllowedMismatchesEnzyme()))[0] != -1){
                                 //check on adaptor ligase
-                                if (this.parameters.getAdaptorLigaseMismatches() != -1){
-                                    String adaptor = this.parameters.getCommonAdaptor();
+                                if (this.config.getAdaptorLigaseMismatches() != -1){
+                                    String adaptor = this.config.getCommonAdaptor();
                                     for (int l = cutsiteLocationLength[1]/2; l <= cutsiteLocationLength[1]; l++){
-                                        if (this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence2.substring(distance + barcodeLocationLength[1] + l), adaptor, this.parameters.getAdaptorLigaseMismatches())[0] != -1){
+                                        if (this.findingDistanceAlgorithm.calculateEquivalentDistance(sequence2.substring(distance + barcodeLocationLength[1] + l), adaptor, this.config.getAdaptorLigaseMismatches())[0] != -1){
                                             return null;
                                         }
                                     }
@@ -830,6 +1023,23 @@ public class FastqReadParser {
         return null;
     }
     
-    
+    /**
+     * gives the samples that must be checked for a barcode at the given location
+     * <br> if there is a barcode index, only the samples with a barcode within the allowed mismatches are given
+     * @param sequence String | the sequence of the read
+     * @param distance int | the location of the barcode in the sequence
+     * @return List of Sample | the samples to check (all samples if there is no index, or the sequence can't be looked up)
+     * @see BarcodeIndex#getCandidates(java.lang.String, int) 
+     */
+    private List<Sample> getCandidateSamples(String sequence, int distance){
+        if (this.barcodeIndex == null){
+            return this.sampleList;
+        }
+        List<Sample> candidates = this.barcodeIndex.getCandidates(sequence, distance);
+        if (candidates == null){
+            return this.sampleList;
+        }
+        return candidates;
+    }
     
 }
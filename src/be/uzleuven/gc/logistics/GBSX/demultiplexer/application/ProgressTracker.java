@@ -49,6 +49,23 @@ public class ProgressTracker {
         }
     }
     
+    /**
+     * adds the given number of processed reads, a line is printed each time the reporting interval is passed
+     * @param count int | the number of processed reads
+     */
+    public void addProgress(int count){
+        try{
+            lock.lock();
+            int previousReports = process_count / this.PROCESS_REPORTING_INTERVAL;
+            process_count += count;
+            if (process_count / this.PROCESS_REPORTING_INTERVAL > previousReports){
+                System.out.println(process_count + " reads demultiplexed");
+            }
+        }finally{
+            lock.unlock();
+        }
+    }
+    
     public void showProgress(){
         try{
             lock.lock();
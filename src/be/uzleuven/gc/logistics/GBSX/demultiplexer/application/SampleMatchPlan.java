@@ -0,0 +1,308 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.demultiplexer.application;
+
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.application.distanceAlgorithms.AhoCorasickAutomaton;
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.DemultiplexConfig;
+import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.FindingsAlgorithms;
+import be.uzleuven.gc.logistics.GBSX.utils.enzyme.model.Enzyme;
+import be.uzleuven.gc.logistics.GBSX.utils.enzyme.model.EnzymeComparator;
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.BasePair;
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.PackedSequence;
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.Sample;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * everything the FastqReadParser needs of a sample, made once before the demultiplexing starts.
+ * <br> the cutsites, complement cutsites, adaptor starts and complement barcode of the sample are kept in arrays,
+ * so no sets, complements or substrings must be made for every read.
+ * <br> the cutsites are in the same order as the sets of the enzyme, so the parser finds the same cutsites as before.
+ * <br> with the hammings distances, the complement cutsites are also in an automaton, to search the end of the reads in one pass.
+ * <br> a plan can't be changed, so all threads can use the same plans.
+ * @author Koen Herten for the KU Leuven
+ */
+public class SampleMatchPlan {
+    
+    private final Sample sample;
+    private final int barcodeLength;
+    private final String complementBarcode;
+    private final int complementBarcodeLength;
+    /**
+     * the cutsites of the enzyme (the start of read 1), their packed form and their complement
+     */
+    private final String[] cutSites;
+    private final PackedSequence[] packedCutSites;
+    private final String[] complementCutSites;
+    /**
+     * the cutsites of the second enzyme (the start of read 2 with double barcodes) and their packed form
+     */
+    private final String[] cutSites2;
+    private final PackedSequence[] packedCutSites2;
+    /**
+     * the complement cutsites of the second enzyme (the end of read 1) and of the enzyme (the end of read 2)
+     */
+    private final String[] read1EndCutSites;
+    private final String[] read2EndCutSites;
+    /**
+     * the automata of the complement cutsites (on the index of the cutsite), null if the mismatches aren't searched
+     * with the hammings distance, or the automaton would be to big
+     */
+    private final AhoCorasickAutomaton read1EndAutomaton;
+    private final AhoCorasickAutomaton read2EndAutomaton;
+    private final boolean neutralEnzyme;
+    private final boolean neutralEnzyme2;
+    /**
+     * the sequence after the cutsite at the end of read 1 (the adaptor, or with double barcodes the complement
+     * of the second barcode and the adaptor), and its starts (on the length of the start)
+     */
+    private final String endSequence;
+    private final String[] endSequenceStarts;
+    
+    /**
+     * creates the plan of the given sample
+     * @param sample Sample | the sample
+     * @param config DemultiplexConfig | the config of the demultiplexing (the adaptor, the compare size and the neutral enzyme)
+     */
+    public SampleMatchPlan(Sample sample, DemultiplexConfig config){
+        this.sample = sample;
+        this.barcodeLength = sample.getBarcode().length();
+        this.complementBarcode = sample.getComplementBarcode();
+        this.complementBarcodeLength = this.complementBarcode.length();
+        
+        this.cutSites = SampleMatchPlan.toArray(sample.getEnzyme().getInitialCutSiteRemnant());
+        this.packedCutSites = new PackedSequence[this.cutSites.length];
+        this.complementCutSites = new String[this.cutSites.length];
+        for (int i = 0; i < this.cutSites.length; i++){
+            this.packedCutSites[i] = sample.getPackedCutSite(this.cutSites[i]);
+            this.complementCutSites[i] = BasePair.getComplementSequence(this.cutSites[i]);
+        }
+        this.cutSites2 = SampleMatchPlan.toArray(sample.getEnzyme2().getInitialCutSiteRemnant());
+        this.packedCutSites2 = new PackedSequence[this.cutSites2.length];
+        for (int i = 0; i < this.cutSites2.length; i++){
+            this.packedCutSites2[i] = sample.getPackedCutSite(this.cutSites2[i]);
+        }
+        this.read1EndCutSites = SampleMatchPlan.toArray(new HashSet<String>(sample.getEnzyme2().getComplementCutSiteRemnant()));
+        this.read2EndCutSites = SampleMatchPlan.toArray(new HashSet<String>(sample.getEnzyme().getComplementCutSiteRemnant()));
+        if (config.getFindingsAlgorithm() == FindingsAlgorithms.HAMMINGS_DISTANCE
+                || config.getFindingsAlgorithm() == FindingsAlgorithms.PACKED_HAMMINGS_DISTANCE){
+            //only mismatches, so the automaton finds the same locations
+            this.read1EndAutomaton = AhoCorasickAutomaton.create(this.read1EndCutSites, config.getAllowedMismatchesEnzyme());
+            this.read2EndAutomaton = AhoCorasickAutomaton.create(this.read2EndCutSites, config.getAllowedMismatchesEnzyme());
+        }else{
+            this.read1EndAutomaton = null;
+            this.read2EndAutomaton = null;
+        }
+        
+        EnzymeComparator enzymeComparator = new EnzymeComparator();
+        Enzyme neutral = config.getNeutralEnzyme();
+        this.neutralEnzyme = enzymeComparator.compare(sample.getEnzyme(), neutral) == 0;
+        this.neutralEnzyme2 = enzymeComparator.compare(sample.getEnzyme2(), neutral) == 0;
+        
+        if (config.useDoubleBarcodes() && sample.getBarcodeSecond() != null){
+            this.endSequence = BasePair.getComplementSequence(sample.getBarcodeSecond()) + config.getCommonAdaptor();
+        }else if (config.useDoubleBarcodes()){
+            //no second barcode: the end sequence can't be made, the parser fails on the read like before
+            this.endSequence = null;
+        }else{
+            this.endSequence = config.getCommonAdaptor();
+        }
+        int starts = 0;
+        if (this.endSequence != null){
+            starts = Math.min(config.getAdaptorCompareSize(), this.endSequence.length()) + 1;
+        }
+        this.endSequenceStarts = new String[starts];
+        for (int length = 0; length < starts; length++){
+            this.endSequenceStarts[length] = this.endSequence.substring(0, length);
+        }
+    }
+    
+    /**
+     * creates the plans of the given samples, on the index of the sample
+     * @param sampleList List of Sample | all samples
+     * @param config DemultiplexConfig | the config of the demultiplexing
+     * @return SampleMatchPlan[] | the plan of every sample on the index of the sample
+     * @see Sample#indexSamples(java.util.Collection) 
+     */
+    public static SampleMatchPlan[] createPlans(List<Sample> sampleList, DemultiplexConfig config){
+        Sample[] indexedSamples = Sample.indexSamples(sampleList);
+        SampleMatchPlan[] plans = new SampleMatchPlan[indexedSamples.length];
+        for (int i = 0; i < indexedSamples.length; i++){
+            if (indexedSamples[i] != null){
+                plans[i] = new SampleMatchPlan(indexedSamples[i], config);
+            }
+        }
+        return plans;
+    }
+    
+    /**
+     * 
+     * @param cutSites Collection of String | the cutsites
+     * @return String[] | the cutsites in the order of the collection
+     */
+    private static String[] toArray(Collection<String> cutSites){
+        return cutSites.toArray(new String[cutSites.size()]);
+    }
+    
+    /**
+     * 
+     * @return Sample | the sample of this plan
+     */
+    public Sample getSample(){
+        return this.sample;
+    }
+    
+    /**
+     * 
+     * @return int | the length of the barcode
+     */
+    public int getBarcodeLength(){
+        return this.barcodeLength;
+    }
+    
+    /**
+     * 
+     * @return String | the complement of the barcode
+     */
+    public String getComplementBarcode(){
+        return this.complementBarcode;
+    }
+    
+    /**
+     * 
+     * @return int | the length of the complement of the barcode
+     */
+    public int getComplementBarcodeLength(){
+        return this.complementBarcodeLength;
+    }
+    
+    /**
+     * the returned array may not be changed
+     * @return String[] | the cutsites of the enzyme
+     */
+    public String[] getCutSites(){
+        return this.cutSites;
+    }
+    
+    /**
+     * the returned array may not be changed
+     * @return PackedSequence[] | the packed cutsites of the enzyme (on the index of the cutsite), null if a cutsite can't be packed
+     */
+    public PackedSequence[] getPackedCutSites(){
+        return this.packedCutSites;
+    }
+    
+    /**
+     * the returned array may not be changed
+     * @return String[] | the cutsites of the second enzyme
+     */
+    public String[] getCutSites2(){
+        return this.cutSites2;
+    }
+    
+    /**
+     * the returned array may not be changed
+     * @return PackedSequence[] | the packed cutsites of the second enzyme (on the index of the cutsite), null if a cutsite can't be packed
+     */
+    public PackedSequence[] getPackedCutSites2(){
+        return this.packedCutSites2;
+    }
+    
+    /**
+     * the returned array may not be changed
+     * @return String[] | the complement cutsites of the second enzyme, to search the end of read 1
+     */
+    public String[] getRead1EndCutSites(){
+        return this.read1EndCutSites;
+    }
+    
+    /**
+     * the returned array may not be changed
+     * @return String[] | the complement cutsites of the enzyme, to search the end of read 2
+     */
+    public String[] getRead2EndCutSites(){
+        return this.read2EndCutSites;
+    }
+    
+    /**
+     * 
+     * @return AhoCorasickAutomaton | the automaton of the read 1 end cutsites (on the same index), null if there is none
+     */
+    public AhoCorasickAutomaton getRead1EndAutomaton(){
+        return this.read1EndAutomaton;
+    }
+    
+    /**
+     * 
+     * @return AhoCorasickAutomaton | the automaton of the read 2 end cutsites (on the same index), null if there is none
+     */
+    public AhoCorasickAutomaton getRead2EndAutomaton(){
+        return this.read2EndAutomaton;
+    }
+    
+    /**
+     * 
+     * @param cutSite String | a cutsite
+     * @return String | the complement of the cutsite
+     */
+    public String getComplementCutSite(String cutSite){
+        for (int i = 0; i < this.cutSites.length; i++){
+            if (this.cutSites[i].equals(cutSite)){
+                return this.complementCutSites[i];
+            }
+        }
+        return BasePair.getComplementSequence(cutSite);
+    }
+    
+    /**
+     * 
+     * @return true if the enzyme is the neutral enzyme
+     */
+    public boolean hasNeutralEnzyme(){
+        return this.neutralEnzyme;
+    }
+    
+    /**
+     * 
+     * @return true if the second enzyme is the neutral enzyme
+     */
+    public boolean hasNeutralEnzyme2(){
+        return this.neutralEnzyme2;
+    }
+    
+    /**
+     * gives the start of the sequence after the cutsite at the end of read 1
+     * @param length int | the length of the start
+     * @return String | the start of the adaptor, or with double barcodes of the complement of the second barcode and the adaptor
+     * @throws StringIndexOutOfBoundsException if the length is negative or longer than the sequence
+     * @throws NullPointerException if double barcodes are used, and the sample has no second barcode
+     */
+    public String getEndSequenceStart(int length){
+        if (length >= 0 && length < this.endSequenceStarts.length){
+            return this.endSequenceStarts[length];
+        }
+        if (this.endSequence == null){
+            throw new NullPointerException("The sample " + this.sample.getSampleID() + " has no second barcode");
+        }
+        return this.endSequence.substring(0, length);
+    }
+    
+}
@@ -0,0 +1,327 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.demultiplexer.application.distanceAlgorithms;
+
+import java.util.Arrays;
+
+/**
+ * An Aho-Corasick automaton that finds a set of patterns (like the cutsites of an enzyme) with mismatches,
+ * in one pass over the sequence.
+ * <br> the trie contains every sequence that is maximum maxMismatch mismatches away from a pattern,
+ * so a pattern is found at the same locations as with the HammingsDistance.
+ * <br> the characters of the patterns each have a symbol, all other characters (like N) share one extra symbol.
+ * <br> every state knows the patterns that end there (as a bitmask on the index of the pattern),
+ * and the patterns where the state is an exact prefix of, to find the start of a pattern at the end of a sequence.
+ * <br> an automaton can't be changed, so all threads can use the same automaton.
+ * @author Koen Herten for the KU Leuven
+ * @see HammingsDistance#indexOf(java.lang.String, java.lang.String, int) 
+ */
+public class AhoCorasickAutomaton {
+    
+    /**
+     * the maximum number of patterns (one bit of an int for each pattern)
+     */
+    public static final int MAX_PATTERNS = 32;
+    /**
+     * the maximum number of states, more mismatches or patterns are searched with the distance algorithms
+     */
+    public static final int MAX_STATES = 65536;
+    private static final int NO_STATE = -1;
+    
+    private final int[] patternLengths;
+    /**
+     * the symbol of every ascii character, other characters have the extra symbol
+     */
+    private final int[] symbols;
+    private final int alphabetSize;
+    /**
+     * the next state for every state and symbol (state * alphabetSize + symbol)
+     */
+    private final int[] transitions;
+    private final int[] failures;
+    /**
+     * the patterns that end in the state (with the failure states)
+     */
+    private final int[] matches;
+    /**
+     * the patterns where the state is an exact prefix of
+     */
+    private final int[] exactPrefixes;
+    private final int[] depths;
+    
+    /**
+     * creates a new automaton, use the create method to check the size of the automaton first
+     * @param patterns String[] | the patterns to find (maximum MAX_PATTERNS, no empty patterns)
+     * @param maxMismatch int | the maximum number of mismatches in a pattern
+     * @throws IllegalArgumentException if there are to many patterns or states
+     * @see AhoCorasickAutomaton#create(java.lang.String[], int) 
+     */
+    public AhoCorasickAutomaton(String[] patterns, int maxMismatch){
+        if (patterns.length > AhoCorasickAutomaton.MAX_PATTERNS){
+            throw new IllegalArgumentException("To many patterns for the automaton: " + patterns.length);
+        }
+        //the symbols: the characters of the patterns and one extra symbol
+        this.symbols = new int[128];
+        int size = 0;
+        Arrays.fill(this.symbols, -1);
+        for (String pattern : patterns){
+            for (int i = 0; i < pattern.length(); i++){
+                char base = pattern.charAt(i);
+                if (base < 128 && this.symbols[base] == -1){
+                    this.symbols[base] = size;
+                    size++;
+                }
+            }
+        }
+        for (int i = 0; i < this.symbols.length; i++){
+            if (this.symbols[i] == -1){
+                this.symbols[i] = size;
+            }
+        }
+        this.alphabetSize = size + 1;
+        //the trie
+        Trie trie = new Trie(this.alphabetSize);
+        this.patternLengths = new int[patterns.length];
+        for (int pattern = 0; pattern < patterns.length; pattern++){
+            this.patternLengths[pattern] = patterns[pattern].length();
+            int[] patternSymbols = new int[patterns[pattern].length()];
+            for (int i = 0; i < patternSymbols.length; i++){
+                patternSymbols[i] = this.getSymbol(patterns[pattern].charAt(i));
+            }
+            trie.add(pattern, patternSymbols, 0, 0, maxMismatch, true);
+        }
+        //the failures (breadth first, so the failure of a state is known before its children)
+        int states = trie.size;
+        this.transitions = Arrays.copyOf(trie.children, states * this.alphabetSize);
+        this.failures = new int[states];
+        this.matches = Arrays.copyOf(trie.outputs, states);
+        this.exactPrefixes = Arrays.copyOf(trie.exactPrefixes, states);
+        this.depths = Arrays.copyOf(trie.depths, states);
+        int[] queue = new int[states];
+        int queueEnd = 0;
+        for (int symbol = 0; symbol < this.alphabetSize; symbol++){
+            int child = this.transitions[symbol];
+            if (child == AhoCorasickAutomaton.NO_STATE){
+                this.transitions[symbol] = 0;
+            }else{
+                this.failures[child] = 0;
+                queue[queueEnd] = child;
+                queueEnd++;
+            }
+        }
+        for (int queueStart = 0; queueStart < queueEnd; queueStart++){
+            int state = queue[queueStart];
+            this.matches[state] |= this.matches[this.failures[state]];
+            for (int symbol = 0; symbol < this.alphabetSize; symbol++){
+                int child = this.transitions[state * this.alphabetSize + symbol];
+                int failureNext = this.transitions[this.failures[state] * this.alphabetSize + symbol];
+                if (child == AhoCorasickAutomaton.NO_STATE){
+                    this.transitions[state * this.alphabetSize + symbol] = failureNext;
+                }else{
+                    this.failures[child] = failureNext;
+                    queue[queueEnd] = child;
+                    queueEnd++;
+                }
+            }
+        }
+    }
+    
+    /**
+     * creates the automaton of the given patterns, if it isn't to big
+     * @param patterns String[] | the patterns to find
+     * @param maxMismatch int | the maximum number of mismatches in a pattern
+     * @return AhoCorasickAutomaton | the automaton, or null if there are no patterns, empty patterns, to many patterns,
+     * a negative maxMismatch or more than MAX_STATES states
+     */
+    public static AhoCorasickAutomaton create(String[] patterns, int maxMismatch){
+        if (patterns.length == 0 || patterns.length > AhoCorasickAutomaton.MAX_PATTERNS || maxMismatch < 0){
+            return null;
+        }
+        for (String pattern : patterns){
+            if (pattern.isEmpty()){
+                return null;
+            }
+        }
+        try{
+            return new AhoCorasickAutomaton(patterns, maxMismatch);
+        }catch (IllegalArgumentException ex){
+            //to many states
+            return null;
+        }
+    }
+    
+    /**
+     * 
+     * @param base char | a character of the sequence
+     * @return int | the symbol of the character
+     */
+    private int getSymbol(char base){
+        if (base < 128){
+            return this.symbols[base];
+        }
+        return this.alphabetSize - 1;
+    }
+    
+    /**
+     * 
+     * @return int | the number of patterns
+     */
+    public int getPatternCount(){
+        return this.patternLengths.length;
+    }
+    
+    /**
+     * 
+     * @param pattern int | the index of the pattern
+     * @return int | the length of the pattern
+     */
+    public int getPatternLength(int pattern){
+        return this.patternLengths[pattern];
+    }
+    
+    /**
+     * 
+     * @return int | the state before the first character of a sequence
+     */
+    public int getStartState(){
+        return 0;
+    }
+    
+    /**
+     * 
+     * @param state int | the current state
+     * @param base char | the next character of the sequence
+     * @return int | the state after the character
+     */
+    public int nextState(int state, char base){
+        return this.transitions[state * this.alphabetSize + this.getSymbol(base)];
+    }
+    
+    /**
+     * gives the patterns that end at the last read character, with maximum maxMismatch mismatches
+     * <br> the pattern with index i is found when bit i is set, the pattern starts at the last character - the length of the pattern + 1
+     * @param state int | the current state
+     * @return int | the bitmask of the found patterns
+     */
+    public int getMatches(int state){
+        return this.matches[state];
+    }
+    
+    /**
+     * gives the length of the longest end of the read characters that is exactly the start of the pattern
+     * @param state int | the current state (normaly after the last character of the sequence)
+     * @param pattern int | the index of the pattern
+     * @return int | the length of the longest start of the pattern at the end of the read characters, 0 if there is none
+     */
+    public int getExactPrefixLength(int state, int pattern){
+        int bit = 1 << pattern;
+        while (state != 0){
+            if ((this.exactPrefixes[state] & bit) != 0){
+                return this.depths[state];
+            }
+            state = this.failures[state];
+        }
+        return 0;
+    }
+    
+    /**
+     * the trie of all sequences with maximum maxMismatch mismatches from a pattern, while it is build
+     */
+    private static class Trie {
+        
+        private final int alphabetSize;
+        private int[] children;
+        private int[] outputs;
+        private int[] exactPrefixes;
+        private int[] depths;
+        private int size;
+        
+        private Trie(int alphabetSize){
+            this.alphabetSize = alphabetSize;
+            this.children = new int[64 * alphabetSize];
+            this.outputs = new int[64];
+            this.exactPrefixes = new int[64];
+            this.depths = new int[64];
+            Arrays.fill(this.children, AhoCorasickAutomaton.NO_STATE);
+            this.size = 1;
+        }
+        
+        /**
+         * adds the rest of the pattern from the given state, with every symbol on every position that may be a mismatch
+         * @param pattern int | the index of the pattern
+         * @param patternSymbols int[] | the symbols of the pattern
+         * @param position int | the position in the pattern
+         * @param state int | the state of the part before the position
+         * @param mismatchesLeft int | the mismatches that may still occure
+         * @param exact boolean | true if the part before the position has no mismatches
+         * @throws IllegalArgumentException if the trie gets more than MAX_STATES states
+         */
+        private void add(int pattern, int[] patternSymbols, int position, int state, int mismatchesLeft, boolean exact){
+            if (position == patternSymbols.length){
+                this.outputs[state] |= 1 << pattern;
+                return;
+            }
+            for (int symbol = 0; symbol < this.alphabetSize; symbol++){
+                boolean mismatch = symbol != patternSymbols[position];
+                if (mismatch && mismatchesLeft == 0){
+                    continue;
+                }
+                int child = this.getChild(state, symbol);
+                if (exact && ! mismatch){
+                    this.exactPrefixes[child] |= 1 << pattern;
+                }
+                this.add(pattern, patternSymbols, position + 1, child, mismatch ? mismatchesLeft - 1 : mismatchesLeft, exact && ! mismatch);
+            }
+        }
+        
+        /**
+         * 
+         * @param state int | a state
+         * @param symbol int | a symbol
+         * @return int | the child of the state for the symbol, a new state if there was no child
+         * @throws IllegalArgumentException if the trie gets more than MAX_STATES states
+         */
+        private int getChild(int state, int symbol){
+            int child = this.children[state * this.alphabetSize + symbol];
+            if (child != AhoCorasickAutomaton.NO_STATE){
+                return child;
+            }
+            if (this.size == AhoCorasickAutomaton.MAX_STATES){
+                throw new IllegalArgumentException("To many states for the automaton");
+            }
+            if (this.size == this.depths.length){
+                int length = this.depths.length * 2;
+                int oldChildren = this.children.length;
+                this.children = Arrays.copyOf(this.children, length * this.alphabetSize);
+                Arrays.fill(this.children, oldChildren, this.children.length, AhoCorasickAutomaton.NO_STATE);
+                this.outputs = Arrays.copyOf(this.outputs, length);
+                this.exactPrefixes = Arrays.copyOf(this.exactPrefixes, length);
+                this.depths = Arrays.copyOf(this.depths, length);
+            }
+            child = this.size;
+            this.size++;
+            this.children[state * this.alphabetSize + symbol] = child;
+            this.depths[child] = this.depths[state] + 1;
+            return child;
+        }
+        
+    }
+    
+}
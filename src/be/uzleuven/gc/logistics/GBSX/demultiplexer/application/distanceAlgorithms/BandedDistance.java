@@ -0,0 +1,363 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.demultiplexer.application.distanceAlgorithms;
+
+/**
+ * The indel mismatch distance calculated on a band of the distance matrix.
+ * <br> only the cells that are maximum mismatch indels away from the diagonal are calculated,
+ * <br> so the cost is the length of the search sequence times the number of mismatches.
+ * <br> the calculation stops as soon as a complete row of the band is higher than the mismatches.
+ * <br> the band is calculated in an array that is reused by every thread.
+ * <br> gives the same distance and length as the recursive IndelMismatchDistance (regular before insert before delete).
+ * @author Koen Herten for the KU Leuven
+ * @see IndelMismatchDistance
+ */
+public class BandedDistance {
+    
+    private static final int NOT_FOUND = Integer.MAX_VALUE / 2;
+    
+    /**
+     * the arrays for the band (from the begin, to the end of the search sequence, to the end of the original sequence)
+     */
+    private static final ThreadLocal<int[][]> BAND = new ThreadLocal<int[][]>(){
+        @Override
+        protected int[][] initialValue(){
+            return new int[3][0];
+        }
+    };
+    
+    /**
+     * returns true if the calculateEquivalentDistance function doesn't return -1
+     * <br> so sequence2 is completely found in sequence1 (starting from the begining)
+     * <br> with maximum mismatch times a mismatch
+     * @param sequence1 String | the original sequence (for the indels, longer than the sequence2)
+     * @param sequence2 String | the search sequence (like the barcode, enzyme or adaptor)
+     * @param mismatch int | number of mismatches that may occure
+     * @return true if sequence2 can be found in the beginning of sequence1
+     */
+    public static boolean isEquivalent(String sequence1, String sequence2, int mismatch){
+        if (BandedDistance.calculateEquivalentDistance(sequence1, 0, sequence2, 0, mismatch)[0] != -1){
+            return true;
+        }else{
+            return false;
+        }
+    }
+    
+    /**
+     * Compare the begining of sequence1 with sequence2, in sequence1 can occure indels to match sequence2
+     * <br> there can only be mismatch number of mismatches, then -1 is returned.
+     * @param sequence1 String | the original sequence (possible much longer then sequence2)
+     * @param sequence2 String | the search sequence (like the barcode, enzyme, adaptor)
+     * @param mismatch int | number of mismatches that may occure
+     * @return int [distance, length] | for distance: -1 if the number of mismatches > mismatch, else the number of mismatches found for length: the found length
+     * @see IndelMismatchDistance#calculateEquivalentDistance(java.lang.String, java.lang.String, int) 
+     */
+    public static int[] calculateEquivalentDistance(String sequence1, String sequence2, int mismatch){
+        return BandedDistance.calculateEquivalentDistance(sequence1, 0, sequence2, 0, mismatch);
+    }
+    
+    /**
+     * Compare the begining of sequence1 (from start1) with sequence2 (from start2), in sequence1 can occure indels to match sequence2
+     * <br> there can only be mismatch number of mismatches, then -1 is returned.
+     * @param sequence1 String | the original sequence (possible much longer then sequence2)
+     * @param start1 int | the start location in sequence1
+     * @param sequence2 String | the search sequence (like the barcode, enzyme, adaptor)
+     * @param start2 int | the start location in sequence2
+     * @param mismatch int | number of mismatches that may occure
+     * @return int [distance, length] | for distance: -1 if the number of mismatches > mismatch, else the number of mismatches found for length: the found length
+     * @see IndelMismatchDistance#calculateEquivalentDistance(java.lang.String, java.lang.String, int) 
+     */
+    public static int[] calculateEquivalentDistance(String sequence1, int start1, String sequence2, int start2, int mismatch){
+        int length1 = sequence1.length() - start1;
+        int length2 = sequence2.length() - start2;
+        if (mismatch < 0){
+            //mismatch is lower then zero
+            return new int[]{-1, 0};
+        }
+        if (length2 == 0){
+            //end of search sequence
+            return new int[]{0, 0};
+        }
+        if (length1 == 0){
+            if (length2 < mismatch){
+                return new int[] {length2, 0};
+            }
+            //end of original sequence
+            return new int[] {-1, 0};
+        }
+        if (length2 == 1){
+            if (sequence1.charAt(start1) == sequence2.charAt(start2)){
+                //equal => distance is 0
+                return new int[]{0, 1};
+            }else if (mismatch > 0){
+                //one mismatch
+                return new int[]{1, 1};
+            }else{
+                //more mismatches than may occure
+                return new int[]{-1, 0};
+            }
+        }
+        int width = 2 * mismatch + 1;
+        int size = (length2 + 1) * width;
+        int[][] band = BandedDistance.BAND.get();
+        if (band[0].length < size){
+            band[0] = new int[size];
+            band[1] = new int[size];
+            band[2] = new int[size];
+        }
+        int[] begin = band[0];
+        //calculate the distance from the beginning (row by row)
+        int bestDistance = -1;
+        int bestLength = 0;
+        boolean moreLengths = false;
+        for (int i = 0; i <= length2; i++){
+            int rowMinimum = BandedDistance.NOT_FOUND;
+            for (int d = 0; d < width; d++){
+                int j = i + d - mismatch;
+                int cell = i * width + d;
+                if (j < 0 || j > length1){
+                    begin[cell] = BandedDistance.NOT_FOUND;
+                    continue;
+                }
+                int distance = BandedDistance.NOT_FOUND;
+                if (i == 0 && j == 0){
+                    distance = 0;
+                }
+                if (i > 0 && j > 0){
+                    //regular (every cell before the last row)
+                    int regular = (sequence1.charAt(start1 + j - 1) == sequence2.charAt(start2 + i - 1)) ? 0 : 1;
+                    distance = Math.min(distance, begin[cell - width] + regular);
+                }
+                if (j > 0 && d > 0 && i < length2 - 1){
+                    //insert (not in the last 2 rows)
+                    distance = Math.min(distance, begin[cell - 1] + 1);
+                }
+                if (i > 0 && d < width - 1 && j < length1 && i - 1 < length2 - 1){
+                    //delete (not from the last char, or after the end of the original sequence)
+                    distance = Math.min(distance, begin[cell - width + 1] + 1);
+                }
+                begin[cell] = distance;
+                int end = -1;
+                if (i == length2 && distance <= mismatch){
+                    //end of the search sequence
+                    end = distance;
+                }else if (i < length2 && j == length1 && distance + length2 - i < mismatch){
+                    //end of the original sequence, the rest of the search sequence is deleted
+                    end = distance + length2 - i;
+                }else if (i < length2 && j < length1){
+                    rowMinimum = Math.min(rowMinimum, distance);
+                }
+                if (end != -1){
+                    if (bestDistance == -1 || end < bestDistance){
+                        bestDistance = end;
+                        bestLength = j;
+                        moreLengths = false;
+                    }else if (end == bestDistance && j != bestLength){
+                        moreLengths = true;
+                    }
+                }
+            }
+            if (i < length2 && rowMinimum > mismatch){
+                //the complete band is higher than the mismatches
+                break;
+            }
+        }
+        if (bestDistance == -1){
+            return new int[]{-1, 0};
+        }
+        if (moreLengths){
+            //more lengths possible, choose the same length as the recursion
+            bestLength = BandedDistance.recursionLength(sequence1, start1, length1, sequence2, start2, length2, mismatch, band[1], band[2]);
+        }
+        return new int[]{bestDistance, bestLength};
+    }
+    
+    /**
+     * calculates the distance to the end of the band (from the end to the beginning),
+     * <br> and follows the path in the same order as the recursion (regular, insert, delete) to find the length.
+     * <br> the distance to the end is kept seperate for the paths that end after sequence2 
+     * and the paths that end after sequence1 (the last ones must be lower than the mismatches)
+     * @param sequence1 String | the original sequence
+     * @param start1 int | the start location in sequence1
+     * @param length1 int | the number of chars of sequence1 to use (at least 1)
+     * @param sequence2 String | the search sequence
+     * @param start2 int | the start location in sequence2
+     * @param length2 int | the number of chars of sequence2 to use (at least 2)
+     * @param mismatch int | number of mismatches that may occure (at least 0)
+     * @param sequenceEnd int[] | array for the distances to the end of sequence2
+     * @param originalEnd int[] | array for the distances to the end of sequence1
+     * @return int | the length of the path chosen by the recursion
+     */
+    private static int recursionLength(String sequence1, int start1, int length1, String sequence2, int start2, int length2, int mismatch, int[] sequenceEnd, int[] originalEnd){
+        int width = 2 * mismatch + 1;
+        for (int i = length2; i >= 0; i--){
+            for (int d = width - 1; d >= 0; d--){
+                int j = i + d - mismatch;
+                int cell = i * width + d;
+                if (j < 0 || j > length1){
+                    sequenceEnd[cell] = BandedDistance.NOT_FOUND;
+                    originalEnd[cell] = BandedDistance.NOT_FOUND;
+                }else if (i == length2){
+                    //end of search sequence
+                    sequenceEnd[cell] = 0;
+                    originalEnd[cell] = BandedDistance.NOT_FOUND;
+                }else if (j == length1){
+                    //end of original sequence
+                    sequenceEnd[cell] = BandedDistance.NOT_FOUND;
+                    originalEnd[cell] = length2 - i;
+                }else if (i == length2 - 1){
+                    //last char of the search sequence: only regular
+                    sequenceEnd[cell] = (sequence1.charAt(start1 + j) == sequence2.charAt(start2 + i)) ? 0 : 1;
+                    originalEnd[cell] = BandedDistance.NOT_FOUND;
+                }else{
+                    int regular = (sequence1.charAt(start1 + j) == sequence2.charAt(start2 + i)) ? 0 : 1;
+                    sequenceEnd[cell] = regular + sequenceEnd[cell + width];
+                    originalEnd[cell] = regular + originalEnd[cell + width];
+                    if (d < width - 1){
+                        //insert
+                        sequenceEnd[cell] = Math.min(sequenceEnd[cell], 1 + sequenceEnd[cell + 1]);
+                        originalEnd[cell] = Math.min(originalEnd[cell], 1 + originalEnd[cell + 1]);
+                    }
+                    if (d > 0){
+                        //delete
+                        sequenceEnd[cell] = Math.min(sequenceEnd[cell], 1 + sequenceEnd[cell + width - 1]);
+                        originalEnd[cell] = Math.min(originalEnd[cell], 1 + originalEnd[cell + width - 1]);
+                    }
+                }
+            }
+        }
+        //follow the path
+        int i = 0;
+        int j = 0;
+        int budget = mismatch;
+        while (i < length2 && j < length1){
+            if (i == length2 - 1){
+                //last char of the search sequence
+                j++;
+                break;
+            }
+            int cell = i * width + j - i + mismatch;
+            int regular = (sequence1.charAt(start1 + j) == sequence2.charAt(start2 + i)) ? 0 : 1;
+            int regularDistance = BandedDistance.pathDistance(sequenceEnd, originalEnd, cell + width, budget - regular);
+            int insertDistance = -1;
+            if (cell % width < width - 1){
+                insertDistance = BandedDistance.pathDistance(sequenceEnd, originalEnd, cell + 1, budget - 1);
+            }
+            int deleteDistance = -1;
+            if (cell % width > 0){
+                deleteDistance = BandedDistance.pathDistance(sequenceEnd, originalEnd, cell + width - 1, budget - 1);
+            }
+            int best = -1;
+            int step = 0;
+            if (regularDistance != -1){
+                best = regular + regularDistance;
+            }
+            if (insertDistance != -1 && (best == -1 || best > 1 + insertDistance)){
+                best = 1 + insertDistance;
+                step = 1;
+            }
+            if (deleteDistance != -1 && (best == -1 || best > 1 + deleteDistance)){
+                step = 2;
+            }
+            if (step == 0){
+                budget -= regular;
+                i++;
+                j++;
+            }else if (step == 1){
+                budget--;
+                j++;
+            }else{
+                budget--;
+                i++;
+            }
+        }
+        return j;
+    }
+    
+    /**
+     * the distance to the end of a cell, with the given mismatches left
+     * @param sequenceEnd int[] | the distances of the paths ending after the search sequence
+     * @param originalEnd int[] | the distances of the paths ending after the original sequence
+     * @param cell int | the cell
+     * @param budget int | the mismatches that may still occure
+     * @return int | the lowest distance to the end, -1 if higher than the budget
+     */
+    private static int pathDistance(int[] sequenceEnd, int[] originalEnd, int cell, int budget){
+        int distance = -1;
+        if (sequenceEnd[cell] <= budget){
+            distance = sequenceEnd[cell];
+        }
+        if (originalEnd[cell] < budget && (distance == -1 || originalEnd[cell] < distance)){
+            distance = originalEnd[cell];
+        }
+        return distance;
+    }
+    
+    /**
+     * 
+     * @param sequence1 String | the original sequence
+     * @param sequence2 String | the sequence where is searched for
+     * @param mismatch int | the number of mismatches that may occure
+     * @return int[distance, length] | distance: -1 if no possible match is found, else the index of sequence2 in sequence1 length: the length of the found piece
+     */
+    public static int[] indexOf(String sequence1, String sequence2, int mismatch){
+        //go over every possible location in the first string
+        for (int location = 0; location <= sequence1.length() - sequence2.length(); location++){
+            //calculate distance
+            int[] distanceLenght = BandedDistance.calculateEquivalentDistance(sequence1, location, sequence2, 0, mismatch);
+            if (distanceLenght[0] != -1){
+                return new int[]{location, distanceLenght[1]};
+            }
+        }
+        return new int[]{-1, 0};
+    }
+    
+    /**
+     * 
+     * @param sequence1 String | the original sequence
+     * @param sequence2 String | the first sequence to find in the original
+     * @param sequence3 String | the second sequence to find right after sequence2 in the original sequence
+     * @param mismatch2 int | number of mismatches possible in sequence2
+     * @param mismatch3 int | number of mismatches possible in sequence3
+     * @return int[location, lenght] | location: -1 if not found, else start location, length: the length of the found sequences (sequence2.length + sequence3.length, longer when inserts, shorter when deletes)
+     */
+    public static int[] indexOf(String sequence1, String sequence2, String sequence3, int mismatch2, int mismatch3){
+        //go over every possible location in the first string
+        for (int location = 0; location <= sequence1.length() - sequence2.length(); location++){
+            //calculate distance
+            int[] distanceLength = BandedDistance.calculateEquivalentDistance(sequence1, location, sequence2, 0, mismatch2);
+            if (distanceLength[0] != -1){
+                //sequence2 found
+                if ((sequence1.length() - (location + sequence2.length())) < sequence3.length()){
+                    //sequence1 is not long enough to find sequence3
+                    return new int[]{location, distanceLength[1]};
+                }else{
+                    int[] distanceLength3 = BandedDistance.calculateEquivalentDistance(sequence1, location + distanceLength[1], sequence3, 0, mismatch3);
+                    if (distanceLength3[0] != -1){
+                        //sequence3 found
+                        return new int[]{location, distanceLength[1] + distanceLength3[1]};
+                    }
+                }
+            }
+        }
+        return new int[]{-1,0};
+    }
+    
+}
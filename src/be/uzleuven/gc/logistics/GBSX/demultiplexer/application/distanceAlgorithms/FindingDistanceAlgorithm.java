@@ -20,6 +20,7 @@
 package be.uzleuven.gc.logistics.GBSX.demultiplexer.application.distanceAlgorithms;
 
 import be.uzleuven.gc.logistics.GBSX.demultiplexer.model.FindingsAlgorithms;
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.PackedSequence;
 
 /**
  *
@@ -64,6 +65,12 @@ public class FindingDistanceAlgorithm {
         if (this.algorithm == FindingsAlgorithms.MISMATCH_INDEL_DISTANCE){
             return MismatchIndelDistance.isEquivalent(sequence1, sequence2, maxMismatch);
         }
+        if (this.algorithm == FindingsAlgorithms.PACKED_HAMMINGS_DISTANCE){
+            return PackedHammingsDistance.isEquivalent(sequence1, sequence2, maxMismatch);
+        }
+        if (this.algorithm == FindingsAlgorithms.BANDED_INDEL_MISMATCH_DISTANCE){
+            return BandedDistance.isEquivalent(sequence1, sequence2, maxMismatch);
+        }
         return false;
     }
     
@@ -90,6 +97,12 @@ public class FindingDistanceAlgorithm {
         if (this.algorithm == FindingsAlgorithms.MISMATCH_INDEL_DISTANCE){
             return MismatchIndelDistance.calculateEquivalentDistance(sequence1, sequence2, maxMismatch);
         }
+        if (this.algorithm == FindingsAlgorithms.PACKED_HAMMINGS_DISTANCE){
+            return new int[] {PackedHammingsDistance.calculateEquivalentDistance(sequence1.substring(0, sequence2.length()), sequence2, maxMismatch), sequence2.length()};
+        }
+        if (this.algorithm == FindingsAlgorithms.BANDED_INDEL_MISMATCH_DISTANCE){
+            return BandedDistance.calculateEquivalentDistance(sequence1, sequence2, maxMismatch);
+        }
         return new int[]{-1, 0};
     }
     
@@ -117,6 +130,12 @@ public class FindingDistanceAlgorithm {
         if (this.algorithm == FindingsAlgorithms.MISMATCH_INDEL_DISTANCE){
             return MismatchIndelDistance.indexOf(sequence1, sequence2, maxMismatch);
         }
+        if (this.algorithm == FindingsAlgorithms.PACKED_HAMMINGS_DISTANCE){
+            return new int[] {PackedHammingsDistance.indexOf(sequence1, sequence2, maxMismatch), sequence2.length()};
+        }
+        if (this.algorithm == FindingsAlgorithms.BANDED_INDEL_MISMATCH_DISTANCE){
+            return BandedDistance.indexOf(sequence1, sequence2, maxMismatch);
+        }
         return new int[] {-1, 0};
     }
     
@@ -143,8 +162,54 @@ public class FindingDistanceAlgorithm {
         if (this.algorithm == FindingsAlgorithms.MISMATCH_INDEL_DISTANCE){
             return MismatchIndelDistance.indexOf(sequence1, sequence2, sequence3, maxMismatch2, maxMismatch3);
         }
+        if (this.algorithm == FindingsAlgorithms.PACKED_HAMMINGS_DISTANCE){
+            return new int[]{PackedHammingsDistance.indexOf(sequence1, sequence2, sequence3, maxMismatch2, maxMismatch3), sequence2.length() + sequence3.length()};
+        }
+        if (this.algorithm == FindingsAlgorithms.BANDED_INDEL_MISMATCH_DISTANCE){
+            return BandedDistance.indexOf(sequence1, sequence2, sequence3, maxMismatch2, maxMismatch3);
+        }
         return new int[]{-1, 0};
     }
     
+    /**
+     * packs the given sequence if the algorithm works on packed sequences
+     * <br> a read is packed once, and then compared with the packed barcodes and cutsites of the samples
+     * @param sequence String | the sequence to pack
+     * @return PackedSequence | the packed sequence, or null if the algorithm doesn't use packed sequences or the sequence can't be packed
+     * @see FindingDistanceAlgorithm#calculateEquivalentDistance(java.lang.String, be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.PackedSequence, int, java.lang.String, be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.PackedSequence, int) 
+     */
+    public PackedSequence packSequence(String sequence){
+        if (this.algorithm == FindingsAlgorithms.PACKED_HAMMINGS_DISTANCE){
+            return PackedSequence.pack(sequence);
+        }
+        return null;
+    }
+    
+    /**
+     * the same as calculateEquivalentDistance(sequence1.substring(start), sequence2, maxMismatch)
+     * <br> but if the algorithm works on packed sequences, and both packed sequences are given, the packed sequences are compared
+     * @param sequence1 String | the sequence to search in
+     * @param packedSequence1 PackedSequence | the packed sequence1, or null
+     * @param start int | the location in sequence1 to compare with
+     * @param sequence2 String | the original (like barcode, enzyme site)
+     * @param packedSequence2 PackedSequence | the packed sequence2, or null
+     * @param maxMismatch int | the max amount of mismatches, where 0 is equals to
+     * @return int[] | the distance (-1 if higher than maxMismatch) and the length of the found sequence
+     * @see FindingDistanceAlgorithm#calculateEquivalentDistance(java.lang.String, java.lang.String, int) 
+     */
+    public int[] calculateEquivalentDistance(String sequence1, PackedSequence packedSequence1, int start, String sequence2, PackedSequence packedSequence2, int maxMismatch){
+        if (this.algorithm == FindingsAlgorithms.PACKED_HAMMINGS_DISTANCE && packedSequence1 != null && packedSequence2 != null
+                && start + packedSequence2.length() <= packedSequence1.length()){
+            return new int[] {PackedHammingsDistance.calculateEquivalentDistance(packedSequence1, start, packedSequence2, maxMismatch), packedSequence2.length()};
+        }
+        if (this.algorithm == FindingsAlgorithms.INDEL_MISMATCH_DISTANCE){
+            //no substring needed
+            return MyersDistance.calculateEquivalentDistance(sequence1, start, sequence2, 0, maxMismatch);
+        }
+        if (this.algorithm == FindingsAlgorithms.BANDED_INDEL_MISMATCH_DISTANCE){
+            return BandedDistance.calculateEquivalentDistance(sequence1, start, sequence2, 0, maxMismatch);
+        }
+        return this.calculateEquivalentDistance(sequence1.substring(start), sequence2, maxMismatch);
+    }
     
 }
@@ -85,6 +85,28 @@ public class HammingsDistance {
         return true;
     }
     
+    /**
+     * compares sequence2 with sequence1 at the given location, without making a substring
+     * @param sequence1 String | the sequence
+     * @param start int | the location in sequence1 to compare with (start + the length of sequence2 may not be longer than sequence1)
+     * @param sequence2 String | the sequence to compare
+     * @param maxMismatch int | the max amount of mismatches, where 0 is equals to
+     * @return true if the hammings distance is lower or equals the maxMismatch, false otherwise
+     * @see HammingsDistance#isEquivalent(java.lang.String, java.lang.String, int) 
+     */
+    public static boolean isEquivalent(String sequence1, int start, String sequence2, int maxMismatch){
+        int distance = 0;
+        for (int index = 0; index < sequence2.length(); index++){
+            if (sequence1.charAt(start + index) != sequence2.charAt(index)){
+                distance++;
+                if (distance > maxMismatch){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
     /**
      * returns -1 if the length of both sequences is different
      * <br> returns -1 if the HammingsDistance is higher than the maxMismatch
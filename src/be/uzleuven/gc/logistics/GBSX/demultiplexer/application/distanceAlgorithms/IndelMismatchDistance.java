@@ -22,6 +22,7 @@ package be.uzleuven.gc.logistics.GBSX.demultiplexer.application.distanceAlgorith
 /**
  *
  * @author Koen Herten for the KU Leuven
+ * @see MyersDistance
  */
 public class IndelMismatchDistance {
 
@@ -76,99 +77,7 @@ public class IndelMismatchDistance {
      * @see FindingAlgorithm#calculateEquivalentDistance(java.lang.String, java.lang.String, int) 
      */
     public static int[] calculateEquivalentDistance(String sequence1, String sequence2, int mismatch){
-        if (mismatch < 0){
-            //mismatch is lower then zero
-            return new int[]{-1, 0};
-        }
-        if (sequence2.length() == 0){
-            //end of search sequence
-            return new int[]{0, 0};
-        }
-        if (sequence1.length() == 0){
-            if (sequence2.length() < mismatch){
-                return new int[] {sequence2.length(), 0};
-            }
-            //end of original sequence
-            return new int[] {-1, 0};
-        }
-        //end of strings
-        if (sequence2.length() == 1){
-            //end of strings
-            if (sequence1.charAt(0) == sequence2.charAt(0)){
-                //equal => distance is 0
-                return new int[]{0, 1};
-            }else{
-                //not equal => mismatch
-                mismatch--;
-                if (mismatch < 0){
-                    //more mismatches than may occure
-                    return new int[]{-1, 0};
-                }else{
-                    //one mismatch
-                    return new int[]{1, 1};
-                }
-            }
-        }
-        //not end of string
-        int distance = -1;
-        int length = 0;
-        //calculate regular distance
-        int regularMismatch = mismatch;
-        int regularDistance = 0;
-        if (sequence1.charAt(0) != sequence2.charAt(0)){
-            regularDistance = 1;
-            regularMismatch--;
-        }
-        int[] regularOutput = IndelMismatchDistance.calculateEquivalentDistance(sequence1.substring(1), sequence2.substring(1), regularMismatch);
-        if (regularOutput[0] == -1){
-            regularDistance = -1;
-        }else{
-            regularDistance += regularOutput[0];
-        }
-        int regularLength = regularOutput[1] + 1;
-        
-        //calculate insert distance
-        int insertDistance = -1;
-        int insertMismatch = mismatch - 1;
-        int[] insertOuput = IndelMismatchDistance.calculateEquivalentDistance(sequence1.substring(1), sequence2, insertMismatch);
-        int insertLenght = insertOuput[1] + 1;
-        if (insertOuput[0] != -1) insertDistance = 1 + insertOuput[0];
-        
-        //calculate delete distance
-        int deleteDistance = -1;
-        int deleteMismatch = mismatch - 1;
-        int[] deleteOutput = IndelMismatchDistance.calculateEquivalentDistance(sequence1, sequence2.substring(1), deleteMismatch);
-        int deleteLength = deleteOutput[1];
-        if (deleteOutput[0] != -1) deleteDistance = deleteOutput[0] + 1;
-        
-        //find minimum of all distances (that isn't 0)
-        if (regularDistance != -1){
-            distance = regularDistance;
-            length = regularLength;
-        }
-        if (distance == -1 && insertDistance != -1){
-            distance = insertDistance;
-            length = insertLenght;
-        }else if (distance != -1 && insertDistance != -1){
-            if (distance > insertDistance){
-                distance = insertDistance;
-                length = insertLenght;
-            }
-        }
-        if (distance == -1 && deleteDistance != -1){
-            distance = deleteDistance;
-            length = deleteLength;
-        }else if (distance != -1 && deleteDistance != -1){
-            if (distance > deleteDistance){
-                distance = deleteDistance;
-                length = deleteLength;
-            }
-        }
-        
-        if (distance > mismatch){
-            return new int[]{-1,0};
-        }
-        return new int[]{distance, length};
+        return MyersDistance.calculateEquivalentDistance(sequence1, 0, sequence2, 0, mismatch);
     }
     
     
@@ -183,7 +92,7 @@ public class IndelMismatchDistance {
         //go over every possible location in the first string
         for (int location = 0; location <= sequence1.length() - sequence2.length(); location++){
             //calculate distance
-            int[] distanceLenght = IndelMismatchDistance.calculateEquivalentDistance(sequence1, sequence2, mismatch);
+            int[] distanceLenght = MyersDistance.calculateEquivalentDistance(sequence1, location, sequence2, 0, mismatch);
             if (distanceLenght[0] != -1){
                 return new int[]{location, distanceLenght[1]};
             }
@@ -204,14 +113,14 @@ public class IndelMismatchDistance {
         //go over every possible location in the first string
         for (int location = 0; location <= sequence1.length() - sequence2.length(); location++){
             //calculate distance
-            int[] distanceLength = IndelMismatchDistance.calculateEquivalentDistance(sequence1.substring(location), sequence2, mismatch2);
+            int[] distanceLength = MyersDistance.calculateEquivalentDistance(sequence1, location, sequence2, 0, mismatch2);
             if (distanceLength[0] != -1){
                 //sequence2 found
                 if ((sequence1.length() - (location + sequence2.length())) < sequence3.length()){
                     //sequence1 is not long enough to find sequence3
                     return new int[]{location, distanceLength[1]};
                 }else{
-                    int[] distanceLength3 = IndelMismatchDistance.calculateEquivalentDistance(sequence1.substring(location + distanceLength[1]), sequence3, mismatch3);
+                    int[] distanceLength3 = MyersDistance.calculateEquivalentDistance(sequence1, location + distanceLength[1], sequence3, 0, mismatch3);
                     if (distanceLength3[0] != -1){
                         //sequence3 found
                         return new int[]{location, distanceLength[1] + distanceLength3[1]};
@@ -79,42 +79,12 @@ public class MismatchIndelDistance {
      * @see FindingAlgorithm#calculateEquivalentDistance(java.lang.String, java.lang.String, int) 
      */
     public static int[] calculateEquivalentDistance(String sequence1, String sequence2, int mismatch){
-        if (mismatch < 0){
-            //mismatch is lower then zero
-            return new int[]{-1, 0};
+        int length1 = sequence1.length();
+        int length2 = sequence2.length();
+        if (mismatch < 0 || length2 <= 1 || length1 == 0){
+            //the ends of the strings are the same as for the indel mismatch distance
+            return MyersDistance.calculateEquivalentDistance(sequence1, 0, sequence2, 0, mismatch);
         }
-        if (sequence2.length() == 0){
-            //end of search sequence
-            return new int[]{0, 0};
-        }
-        if (sequence1.length() == 0){
-            if (sequence2.length() < mismatch){
-                return new int[] {sequence2.length(), 0};
-            }
-            //end of original sequence
-            return new int[] {-1, 0};
-        }
-        //end of strings
-        if (sequence2.length() == 1){
-            //end of strings
-            if (sequence1.charAt(0) == sequence2.charAt(0)){
-                //equal => distance is 0
-                return new int[]{0, 1};
-            }else{
-                //not equal => mismatch
-                mismatch--;
-                if (mismatch < 0){
-                    //more mismatches than may occure
-                    return new int[]{-1, 0};
-                }else{
-                    //one mismatch
-                    return new int[]{1, 1};
-                }
-            }
-        }
-        //not end of string
-        int distance = -1;
-        int length = 0;
         //calculate regular distance
         int regularMismatch = mismatch;
         int regularDistance = 0;
@@ -122,52 +92,26 @@ public class MismatchIndelDistance {
             regularDistance = 1;
             regularMismatch--;
         }
-        int[] regularOutput = IndelMismatchDistance.calculateEquivalentDistance(sequence1.substring(1), sequence2.substring(1), regularMismatch);
-        if (regularOutput[0] == -1){
-            regularDistance = -1;
-        }else{
-            regularDistance += regularOutput[0];
+        int[] regularOutput = MyersDistance.calculateEquivalentDistance(sequence1, 1, sequence2, 1, regularMismatch);
+        if (regularOutput[0] != -1){
+            //if a regular distance is found, do not look for a better indel distance
+            return new int[]{regularDistance + regularOutput[0], regularOutput[1] + 1};
         }
-        int regularLength = regularOutput[1] + 1;
-        
-        
-        //if a regular distance is found, do not look for a better indel distance
-        if (regularDistance != -1 && regularDistance <= mismatch){
-            distance = regularDistance;
-            length = regularLength;
-        }else{
-            //calculate insert distance
-            int insertDistance = -1;
-            int insertMismatch = mismatch - 1;
-            int[] insertOuput = IndelMismatchDistance.calculateEquivalentDistance(sequence1.substring(1), sequence2, insertMismatch);
-            int insertLenght = insertOuput[1] + 1;
-            if (insertOuput[0] != -1) insertDistance = 1 + insertOuput[0];
-
-            //calculate delete distance
-            int deleteDistance = -1;
-            int deleteMismatch = mismatch - 1;
-            int[] deleteOutput = IndelMismatchDistance.calculateEquivalentDistance(sequence1, sequence2.substring(1), deleteMismatch);
-            int deleteLength = deleteOutput[1];
-            if (deleteOutput[0] != -1) deleteDistance = deleteOutput[0] + 1;
-            
-            if (insertDistance != -1){
-                distance = insertDistance;
-                length = insertLenght;
-            }
-            if (deleteDistance != -1){
-                if (distance == -1){
-                    distance = deleteDistance;
-                    length = deleteLength;
-                }else{
-                    if (distance > deleteDistance){
-                        distance = deleteDistance;
-                        length = deleteLength;
-                    }
-                }
-            }
+        int distance = -1;
+        int length = 0;
+        //calculate insert distance
+        int[] insertOuput = MyersDistance.calculateEquivalentDistance(sequence1, 1, sequence2, 0, mismatch - 1);
+        if (insertOuput[0] != -1){
+            distance = 1 + insertOuput[0];
+            length = insertOuput[1] + 1;
+        }
+        //calculate delete distance
+        int[] deleteOutput = MyersDistance.calculateEquivalentDistance(sequence1, 0, sequence2, 1, mismatch - 1);
+        if (deleteOutput[0] != -1 && (distance == -1 || distance > deleteOutput[0] + 1)){
+            distance = deleteOutput[0] + 1;
+            length = deleteOutput[1];
         }
-        
-        if (distance > mismatch){
+        if (distance == -1 || distance > mismatch){
             return new int[]{-1,0};
         }
         return new int[]{distance, length};
@@ -185,7 +129,7 @@ public class MismatchIndelDistance {
         //go over every possible location in the first string
         for (int location = 0; location <= sequence1.length() - sequence2.length(); location++){
             //calculate distance
-            int[] distanceLenght = IndelMismatchDistance.calculateEquivalentDistance(sequence1.substring(location), sequence2, mismatch);
+            int[] distanceLenght = MyersDistance.calculateEquivalentDistance(sequence1, location, sequence2, 0, mismatch);
             if (distanceLenght[0] != -1){
                 return new int[]{location, distanceLenght[1]};
             }
@@ -206,14 +150,14 @@ public class MismatchIndelDistance {
         //go over every possible location in the first string
         for (int location = 0; location <= sequence1.length() - sequence2.length(); location++){
             //calculate distance
-            int[] distanceLength = IndelMismatchDistance.calculateEquivalentDistance(sequence1.substring(location), sequence2, mismatch2);
+            int[] distanceLength = MyersDistance.calculateEquivalentDistance(sequence1, location, sequence2, 0, mismatch2);
             if (distanceLength[0] != -1){
                 //sequence2 found
                 if ((sequence1.length() - (location + sequence2.length())) < sequence3.length()){
                     //sequence1 is not long enough to find sequence3
                     return new int[]{location, distanceLength[1]};
                 }else{
-                    int[] distanceLength3 = IndelMismatchDistance.calculateEquivalentDistance(sequence1.substring(location + distanceLength[1]), sequence3, mismatch3);
+                    int[] distanceLength3 = MyersDistance.calculateEquivalentDistance(sequence1, location + distanceLength[1], sequence3, 0, mismatch3);
                     if (distanceLength3[0] != -1){
                         //sequence3 found
                         return new int[]{location, distanceLength[1] + distanceLength3[1]};
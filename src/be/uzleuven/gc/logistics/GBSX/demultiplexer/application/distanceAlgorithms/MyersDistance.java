@@ -0,0 +1,125 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.demultiplexer.application.distanceAlgorithms;
+
+/**
+ * Bit-parallel (Myers) calculation of the indel mismatch distance.
+ * <br> one column of the edit distance matrix is calculated with a few operations on a long,
+ * <br> so patterns of maximum 64 bases are compared without recursion or substrings.
+ * <br> gives the same distance and length as the recursive IndelMismatchDistance:
+ * <br> when more end positions have the same distance, or when the end of the original sequence can be reached,
+ * <br> the length is chosen by the BandedDistance, in the same order as the recursion (regular, insert, delete).
+ * @author Koen Herten for the KU Leuven
+ * @see IndelMismatchDistance
+ * @see BandedDistance
+ */
+public class MyersDistance {
+    
+    /**
+     * the maximum length of a pattern that fits in one word
+     */
+    public static final int MAX_PATTERN_LENGTH = 64;
+    
+    /**
+     * Compare the begining of sequence1 (from start1) with sequence2 (from start2), in sequence1 can occure indels to match sequence2
+     * <br> there can only be mismatch number of mismatches, then -1 is returned.
+     * @param sequence1 String | the original sequence (possible much longer then sequence2)
+     * @param start1 int | the start location in sequence1
+     * @param sequence2 String | the search sequence (like the barcode, enzyme, adaptor)
+     * @param start2 int | the start location in sequence2
+     * @param mismatch int | number of mismatches that may occure
+     * @return int [distance, length] | for distance: -1 if the number of mismatches > mismatch, else the number of mismatches found for length: the found length
+     * @see IndelMismatchDistance#calculateEquivalentDistance(java.lang.String, java.lang.String, int) 
+     */
+    public static int[] calculateEquivalentDistance(String sequence1, int start1, String sequence2, int start2, int mismatch){
+        int length1 = sequence1.length() - start1;
+        int length2 = sequence2.length() - start2;
+        if (mismatch < 0 || length1 == 0 || length2 <= 1 || length2 > MyersDistance.MAX_PATTERN_LENGTH || length1 < length2 + mismatch){
+            //the ends of the strings, the pattern doesn't fit in a long, or the end of sequence1 can be reached
+            return BandedDistance.calculateEquivalentDistance(sequence1, start1, sequence2, start2, mismatch);
+        }
+        //the pattern masks of the different chars in sequence2
+        char[] chars = new char[length2];
+        long[] masks = new long[length2];
+        int numberOfChars = 0;
+        for (int i = 0; i < length2; i++){
+            char c = sequence2.charAt(start2 + i);
+            int charIndex = 0;
+            while (charIndex < numberOfChars && chars[charIndex] != c){
+                charIndex++;
+            }
+            if (charIndex == numberOfChars){
+                chars[charIndex] = c;
+                numberOfChars++;
+            }
+            masks[charIndex] |= 1L << i;
+        }
+        long lastBit = 1L << (length2 - 1);
+        long positiveVertical = (length2 == 64) ? -1L : (1L << length2) - 1;
+        long negativeVertical = 0L;
+        //the distance of the last row of the current column (column 0 = only deletions)
+        int score = length2;
+        int bestScore = score;
+        int bestLength = 0;
+        int bestCount = 1;
+        //more than length2 + mismatch bases of sequence1 always give a higher distance than mismatch
+        int columns = Math.min(length1, length2 + mismatch);
+        for (int j = 0; j < columns; j++){
+            char c = sequence1.charAt(start1 + j);
+            long equal = 0L;
+            for (int charIndex = 0; charIndex < numberOfChars; charIndex++){
+                if (chars[charIndex] == c){
+                    equal = masks[charIndex];
+                    break;
+                }
+            }
+            long verticalChange = equal | negativeVertical;
+            long horizontalChange = (((equal & positiveVertical) + positiveVertical) ^ positiveVertical) | equal;
+            long positiveHorizontal = negativeVertical | ~(horizontalChange | positiveVertical);
+            long negativeHorizontal = positiveVertical & horizontalChange;
+            if ((positiveHorizontal & lastBit) != 0){
+                score++;
+            }else if ((negativeHorizontal & lastBit) != 0){
+                score--;
+            }
+            //the first row is anchored (distance j), so a +1 is shifted in
+            positiveHorizontal = (positiveHorizontal << 1) | 1L;
+            negativeHorizontal = negativeHorizontal << 1;
+            positiveVertical = negativeHorizontal | ~(verticalChange | positiveHorizontal);
+            negativeVertical = positiveHorizontal & verticalChange;
+            if (score < bestScore){
+                bestScore = score;
+                bestLength = j + 1;
+                bestCount = 1;
+            }else if (score == bestScore){
+                bestCount++;
+            }
+        }
+        if (bestScore > mismatch){
+            return new int[]{-1, 0};
+        }
+        if (bestCount > 1){
+            //more lengths possible, choose the same length as the recursion
+            return BandedDistance.calculateEquivalentDistance(sequence1, start1, sequence2, start2, mismatch);
+        }
+        return new int[]{bestScore, bestLength};
+    }
+    
+}
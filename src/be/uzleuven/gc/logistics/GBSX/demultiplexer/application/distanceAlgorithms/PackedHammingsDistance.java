@@ -0,0 +1,180 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.demultiplexer.application.distanceAlgorithms;
+
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.PackedSequence;
+
+/**
+ * The hammings distance on 2 bit packed sequences.
+ * <br> gives the same results as the HammingsDistance, but compares 32 bases at once.
+ * <br> sequences that can't be packed (other characters than ACGTN) are compared with the HammingsDistance.
+ * @author Koen Herten for the KU Leuven
+ * @see HammingsDistance
+ * @see PackedSequence
+ */
+public class PackedHammingsDistance {
+    
+    /**
+     * returns -1 if the length of both sequences is different
+     * <br> returns -1 if the HammingsDistance is higher than the maxMismatch
+     * @param sequence1 | String
+     * @param sequence2 | String
+     * @param maxMismatch | int the max amount of mismatches, where 0 is equals to
+     * @return the hammings distance if the hammings distance is lower or equals the maxMismatch, -1 otherwise
+     * @see HammingsDistance#calculateEquivalentDistance(java.lang.String, java.lang.String, int) 
+     */
+    public static int calculateEquivalentDistance(String sequence1, String sequence2, int maxMismatch){
+        if (sequence1.length() != sequence2.length()){
+            return -1;
+        }
+        PackedSequence packedSequence1 = PackedSequence.pack(sequence1);
+        PackedSequence packedSequence2 = PackedSequence.pack(sequence2);
+        if (packedSequence1 == null || packedSequence2 == null){
+            return HammingsDistance.calculateEquivalentDistance(sequence1, sequence2, maxMismatch);
+        }
+        return PackedHammingsDistance.calculateEquivalentDistance(packedSequence1, 0, packedSequence2, maxMismatch);
+    }
+    
+    /**
+     * compares sequence2 with sequence1 at the given location
+     * @param sequence1 PackedSequence | the sequence
+     * @param start int | the location in sequence1 to compare with (start + the length of sequence2 may not be longer than sequence1)
+     * @param sequence2 PackedSequence | the sequence to compare
+     * @param maxMismatch int | the max amount of mismatches, where 0 is equals to
+     * @return the hammings distance if the hammings distance is lower or equals the maxMismatch, -1 otherwise
+     */
+    public static int calculateEquivalentDistance(PackedSequence sequence1, int start, PackedSequence sequence2, int maxMismatch){
+        if (sequence2.length() == 0){
+            return 0;
+        }
+        int distance = sequence1.countMismatches(start, sequence2, maxMismatch);
+        if (distance > maxMismatch){
+            return -1;
+        }
+        return distance;
+    }
+    
+    /**
+     * returns false if the length of both sequences is different
+     * <br> returns false if the HammingsDistance is higher than the maxMismatch
+     * @param sequence1 | String
+     * @param sequence2 | String
+     * @param maxMismatch | int the max amount of mismatches, where 0 is equals to
+     * @return true if the hammings distance is lower or equals the maxMismatch, false otherwise
+     * @see HammingsDistance#isEquivalent(java.lang.String, java.lang.String, int) 
+     */
+    public static boolean isEquivalent(String sequence1, String sequence2, int maxMismatch){
+        if (sequence1.length() != sequence2.length()){
+            return false;
+        }
+        PackedSequence packedSequence1 = PackedSequence.pack(sequence1);
+        PackedSequence packedSequence2 = PackedSequence.pack(sequence2);
+        if (packedSequence1 == null || packedSequence2 == null){
+            return HammingsDistance.isEquivalent(sequence1, sequence2, maxMismatch);
+        }
+        return PackedHammingsDistance.isEquivalent(packedSequence1, 0, packedSequence2, maxMismatch);
+    }
+    
+    /**
+     * compares sequence2 with sequence1 at the given location
+     * <br> as in the HammingsDistance, equal sequences are always equivalent (also with negative mismatches)
+     * @param sequence1 PackedSequence | the sequence
+     * @param start int | the location in sequence1 to compare with (start + the length of sequence2 may not be longer than sequence1)
+     * @param sequence2 PackedSequence | the sequence to compare
+     * @param maxMismatch int | the max amount of mismatches, where 0 is equals to
+     * @return true if the hammings distance is lower or equals the maxMismatch, false otherwise
+     */
+    public static boolean isEquivalent(PackedSequence sequence1, int start, PackedSequence sequence2, int maxMismatch){
+        int allowedMismatches = Math.max(maxMismatch, 0);
+        return sequence1.countMismatches(start, sequence2, allowedMismatches) <= allowedMismatches;
+    }
+    
+    /**
+     * checks if sequence2 is a substring of sequence1, but allows mismatches.
+     * @param sequence1 String | the longest string, where sequence2 must be found in
+     * @param sequence2 String | the shortest string, where is looked for in sequence1
+     * @param maxMismatch int | the maximum allowed mismatches in the comparison
+     * @return int the location of the sequence2 in sequence1 (first char is 0), -1 if not found
+     * @see HammingsDistance#indexOf(java.lang.String, java.lang.String, int) 
+     */
+    public static int indexOf(String sequence1, String sequence2, int maxMismatch){
+        PackedSequence packedSequence1 = PackedSequence.pack(sequence1);
+        PackedSequence packedSequence2 = PackedSequence.pack(sequence2);
+        if (packedSequence1 == null || packedSequence2 == null){
+            return HammingsDistance.indexOf(sequence1, sequence2, maxMismatch);
+        }
+        return PackedHammingsDistance.indexOf(packedSequence1, packedSequence2, maxMismatch);
+    }
+    
+    /**
+     * checks if sequence2 is a substring of sequence1, but allows mismatches.
+     * @param sequence1 PackedSequence | the longest sequence, where sequence2 must be found in
+     * @param sequence2 PackedSequence | the shortest sequence, where is looked for in sequence1
+     * @param maxMismatch int | the maximum allowed mismatches in the comparison
+     * @return int the location of the sequence2 in sequence1 (first char is 0), -1 if not found (also for an empty sequence2)
+     */
+    public static int indexOf(PackedSequence sequence1, PackedSequence sequence2, int maxMismatch){
+        if (sequence2.length() == 0){
+            return -1;
+        }
+        for (int location = 0; location <= sequence1.length() - sequence2.length(); location++){
+            if (sequence1.countMismatches(location, sequence2, maxMismatch) <= maxMismatch){
+                return location;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * checks if sequence2 is a substring of sequence1, but allows mismathces
+     * and if sequence3 is a substring of sequence1, right afther sequence2, allowing mismatches
+     * @param sequence1 String | original sequence
+     * @param sequence2 String | enzyme cut site
+     * @param sequence3 String | adaptor
+     * @param maxMismatch2 int | mismatch for sequence2 (enzyme cut site)
+     * @param maxMismatch3 int | mismatch for sequence3 (adaptor)
+     * @return -1 if not found 
+     *          -1 if sequence2 is found, but the sequence is to short to find sequence3 (not found complete)
+     *          the location if sequence2 + sequence3 are found
+     * @see HammingsDistance#indexOf(java.lang.String, java.lang.String, java.lang.String, int, int) 
+     */
+    public static int indexOf(String sequence1, String sequence2, String sequence3, int maxMismatch2, int maxMismatch3){
+        PackedSequence packedSequence1 = PackedSequence.pack(sequence1);
+        PackedSequence packedSequence2 = PackedSequence.pack(sequence2);
+        PackedSequence packedSequence3 = PackedSequence.pack(sequence3);
+        if (packedSequence1 == null || packedSequence2 == null || packedSequence3 == null){
+            return HammingsDistance.indexOf(sequence1, sequence2, sequence3, maxMismatch2, maxMismatch3);
+        }
+        for (int location = 0; location < packedSequence1.length() - packedSequence2.length(); location++){
+            if (PackedHammingsDistance.isEquivalent(packedSequence1, location, packedSequence2, maxMismatch2)){
+                //found sequence2
+                if (location + packedSequence2.length() + packedSequence3.length() > packedSequence1.length()){
+                    //to short to find sequence3
+                    return -1;
+                }else if (PackedHammingsDistance.isEquivalent(packedSequence1, location + packedSequence2.length(), packedSequence3, maxMismatch3)){
+                    //found sequence3
+                    return location;
+                }
+            }
+        }
+        return -1;
+    }
+    
+}
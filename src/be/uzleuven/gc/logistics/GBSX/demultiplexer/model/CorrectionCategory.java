@@ -0,0 +1,77 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.demultiplexer.model;
+
+/**
+ * The categories of the correction log (the correction and trimming of pair end reads)
+ * @author Koen Herten for the KU Leuven
+ */
+public enum CorrectionCategory {
+    
+    /**
+     * the trim of both reads is correct
+     */
+    CORRECT_TRIM_OK,
+    /**
+     * read 1 is corrected
+     */
+    CORRECTED_R1,
+    /**
+     * read 2 is corrected
+     */
+    CORRECTED_R2,
+    /**
+     * read 1 isn't corrected
+     */
+    NOT_CORRECTED_R1,
+    /**
+     * read 2 isn't corrected
+     */
+    NOT_CORRECTED_R2,
+    /**
+     * read 1 and read 2 are not trimmed
+     */
+    TRIM_NOT_R1_NOT_R2,
+    /**
+     * read 1 isn't trimmed, read 2 is trimmed, but it is ok
+     */
+    TRIM_NOT_R1_TRIM_R2_OK,
+    /**
+     * read 1 isn't trimmed, read 2 is trimmed, and it is a fail
+     */
+    TRIM_NOT_R1_TRIM_R2_FAIL,
+    /**
+     * read 1 is trimmed, read 2 isn't, so a fail
+     */
+    TRIM_R1_NOT_R2_FAIL,
+    /**
+     * read 1 and read 2 are trimmed, but read 1 is longer
+     */
+    TRIM_R1_TRIM_R2_LONG_R1,
+    /**
+     * read 1 and read 2 are trimmed, but read 2 is longer
+     */
+    TRIM_R1_TRIM_R2_LONG_R2,
+    /**
+     * read 1 and read 2 are trimmed, and it is correct
+     */
+    TRIM_R1_TRIM_R2_OK;
+    
+}
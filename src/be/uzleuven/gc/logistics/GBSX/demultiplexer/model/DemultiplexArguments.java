@@ -118,6 +118,21 @@ public enum DemultiplexArguments implements Arguments{
      * Optional
      */
     USE_GZIP_FILES ("-gzip"),
+    /**
+     * Write the gziped output files as BGZF (blocked gzip) files
+     * Optional
+     */
+    USE_BGZF_FILES ("-bgzf"),
+    /**
+     * Write the reads in the order of the input file
+     * Optional
+     */
+    ORDERED_OUTPUT ("-ord"),
+    /**
+     * Read the (not gziped) input files memory mapped
+     * Optional
+     */
+    MEMORY_MAPPED_INPUT ("-mmap"),
     /**
      * use long file names
      */
@@ -130,6 +145,21 @@ public enum DemultiplexArguments implements Arguments{
      * number of threads
      */
     THREADS ("-t"),
+    /**
+     * the maximum number of read batches between the reader and the demultiplex threads
+     * Optional
+     */
+    READ_QUEUE_SIZE ("-rq"),
+    /**
+     * number of threads that write the output files
+     * Optional
+     */
+    WRITER_THREADS ("-wt"),
+    /**
+     * the maximum number of output buffers between the demultiplex threads and the writer threads
+     * Optional
+     */
+    WRITE_QUEUE_SIZE ("-wq"),
     /**
      * If the given argument was invalid
      */
@@ -0,0 +1,222 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.demultiplexer.model;
+
+import be.uzleuven.gc.logistics.GBSX.utils.enzyme.model.Enzyme;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqScores;
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.Sample;
+
+/**
+ * A frozen copy of the demultiplex parameters, used while the reads are processed.
+ * <br> the DemultiplexParameters keep every parameter as a String, and parse it on every call.
+ * <br> this configuration parses them once (after all arguments and the info file are parsed),
+ * so the demultiplex threads only read final fields.
+ * <br> changes to the DemultiplexParameters after the creation of the configuration are not seen.
+ * @author Koen Herten for the KU Leuven
+ * @see DemultiplexParameters
+ */
+public final class DemultiplexConfig {
+    
+    private final int allowedMismatchesBarcode;
+    private final int allowedMismatchesEnzyme;
+    private final int startDistance;
+    private final boolean keepCutSites;
+    private final boolean radData;
+    private final boolean doubleBarcodes;
+    private final boolean selfCorrectingBarcodes;
+    private final boolean completeCheck;
+    private final boolean keepSequencesWithN;
+    private final int minimumSequenceLength;
+    private final int adaptorLigaseMismatches;
+    private final String commonAdaptor;
+    private final int adaptorCompareSize;
+    private final Enzyme neutralEnzyme;
+    private final FindingsAlgorithms findingsAlgorithm;
+    private final FastqScores fastqQualityScore;
+    
+    /**
+     * creates a frozen copy of the given parameters
+     * @param parameters DemultiplexParameters | the parsed parameters
+     * @throws NumberFormatException if a numeric parameter isn't a number
+     */
+    public DemultiplexConfig(DemultiplexParameters parameters){
+        this.allowedMismatchesBarcode = parameters.getAllowedMismatchesBarcode();
+        this.allowedMismatchesEnzyme = parameters.getAllowedMismatchesEnzyme();
+        this.startDistance = parameters.getStartDistance();
+        this.keepCutSites = parameters.keepCutSites();
+        this.radData = parameters.isRadData();
+        this.doubleBarcodes = parameters.useDoubleBarcodes();
+        this.selfCorrectingBarcodes = parameters.useSelfCorrectingBarcodes();
+        this.completeCheck = parameters.completeCheck();
+        this.keepSequencesWithN = parameters.keepSequencesWithN();
+        this.minimumSequenceLength = parameters.getMinimumSequenceLength();
+        this.adaptorLigaseMismatches = parameters.getAdaptorLigaseMismatches();
+        this.commonAdaptor = parameters.getCommonAdaptor();
+        this.adaptorCompareSize = parameters.getAdaptorCompareSize();
+        this.neutralEnzyme = parameters.getNeutralEnzyme();
+        this.findingsAlgorithm = parameters.getFindingsAlgorithm();
+        this.fastqQualityScore = parameters.getFastqQualityScore();
+    }
+    
+    /**
+     * 
+     * @return int | the allowed mismatches for the barcode
+     */
+    public int getAllowedMismatchesBarcode(){
+        return this.allowedMismatchesBarcode;
+    }
+    
+    /**
+     * returns the sample specific mismatches
+     * <br> if the sample barcode is 0 or positif, the sample barcode is returned
+     * <br> else the standard or universal defined mismatches are used
+     * @param sample Sample | the sample for the mismatches
+     * @return int | the allowed mismatches for the barcode
+     * @see DemultiplexParameters#getAllowedMismatchesBarcode(be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.Sample) 
+     */
+    public int getAllowedMismatchesBarcode(Sample sample){
+        if (sample.getBarcodeMismatches() >= 0){
+            return sample.getBarcodeMismatches();
+        }else{
+            return this.allowedMismatchesBarcode;
+        }
+    }
+    
+    /**
+     * 
+     * @return int | the allowed mismatches for the enzyme
+     */
+    public int getAllowedMismatchesEnzyme(){
+        return this.allowedMismatchesEnzyme;
+    }
+    
+    /**
+     * 
+     * @return int | the max distance of the startsite (distance between the start of the read sequence and the barcode)
+     */
+    public int getStartDistance(){
+        return this.startDistance;
+    }
+    
+    /**
+     * 
+     * @return true if the enzyme cutsites must be kept
+     */
+    public boolean keepCutSites(){
+        return this.keepCutSites;
+    }
+    
+    /**
+     * 
+     * @return true if the data is RAD data
+     */
+    public boolean isRadData(){
+        return this.radData;
+    }
+    
+    /**
+     * 
+     * @return the double barcodes status, true if double barcodes are used
+     */
+    public boolean useDoubleBarcodes(){
+        return this.doubleBarcodes;
+    }
+    
+    /**
+     * 
+     * @return true if the barcodes are self correcting
+     */
+    public boolean useSelfCorrectingBarcodes(){
+        return this.selfCorrectingBarcodes;
+    }
+    
+    /**
+     * 
+     * @return true if the complete check option is used
+     */
+    public boolean completeCheck(){
+        return this.completeCheck;
+    }
+    
+    /**
+     * 
+     * @return true if the sequences where N occurs as a nucleotide must be kept. 
+     */
+    public boolean keepSequencesWithN(){
+        return this.keepSequencesWithN;
+    }
+    
+    /**
+     * 
+     * @return int | the minimum amount of basepairs in a sequence
+     */
+    public int getMinimumSequenceLength(){
+        return this.minimumSequenceLength;
+    }
+    
+    /**
+     * 
+     * @return int | the number of mismatches in the adaptor, -1 if the adaptor isn't checked
+     */
+    public int getAdaptorLigaseMismatches(){
+        return this.adaptorLigaseMismatches;
+    }
+    
+    /**
+     * 
+     * @return String | the common adaptor that is used in the GBS
+     */
+    public String getCommonAdaptor(){
+        return this.commonAdaptor;
+    }
+    
+    /**
+     * 
+     * @return int | the size of the common adapter to compare to
+     */
+    public int getAdaptorCompareSize(){
+        return this.adaptorCompareSize;
+    }
+    
+    /**
+     * 
+     * @return Enzyme | the neutral enzyme
+     */
+    public Enzyme getNeutralEnzyme(){
+        return this.neutralEnzyme;
+    }
+    
+    /**
+     * 
+     * @return FindingsAlgorithms | the algorithm for the mismatches and indels
+     */
+    public FindingsAlgorithms getFindingsAlgorithm(){
+        return this.findingsAlgorithm;
+    }
+    
+    /**
+     * 
+     * @return FastqScores | the used fastq score
+     */
+    public FastqScores getFastqQualityScore(){
+        return this.fastqQualityScore;
+    }
+    
+}
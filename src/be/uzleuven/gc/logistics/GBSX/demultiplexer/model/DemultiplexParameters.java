@@ -54,6 +54,9 @@ public class DemultiplexParameters implements Parameters{
         this.arguments.put(DemultiplexArguments.KEEP_SEQUENCES_WITH_N, "true");
         this.arguments.put(DemultiplexArguments.COMMON_ADAPTOR, DemultiplexParameters.COMMON_AND_BARCODED_ADAPTOR);
         this.arguments.put(DemultiplexArguments.USE_GZIP_FILES, "false");
+        this.arguments.put(DemultiplexArguments.USE_BGZF_FILES, "false");
+        this.arguments.put(DemultiplexArguments.ORDERED_OUTPUT, "false");
+        this.arguments.put(DemultiplexArguments.MEMORY_MAPPED_INPUT, "false");
         this.arguments.put(DemultiplexArguments.KEEP_ENZYME_CUTSITES, "true");
         this.arguments.put(DemultiplexArguments.IS_RAD, "false");
         this.arguments.put(DemultiplexArguments.ENZYME_ADD, "false");
@@ -196,6 +199,42 @@ public class DemultiplexParameters implements Parameters{
         }
     }
     
+    /**
+     * returns true if the gziped output files must be written as BGZF files
+     * @return true if the output is gziped and must be BGZF
+     */
+    public boolean mustBeBgzf(){
+        if (this.mustBeZipped() && this.arguments.get(DemultiplexArguments.USE_BGZF_FILES).toLowerCase().equals("true")){
+            return true;
+        }else{
+            return false;
+        }
+    }
+    
+    /**
+     * returns true if the reads must be written in the order of the input file
+     * @return true if the output must be in the order of the input
+     */
+    public boolean keepOrder(){
+        if (this.arguments.get(DemultiplexArguments.ORDERED_OUTPUT).toLowerCase().equals("true")){
+            return true;
+        }else{
+            return false;
+        }
+    }
+    
+    /**
+     * returns true if the input files must be read memory mapped, this is only possible if the input isn't gziped
+     * @return true if the input files must be memory mapped
+     */
+    public boolean useMemoryMappedInput(){
+        if (! this.mustBeZipped() && this.arguments.get(DemultiplexArguments.MEMORY_MAPPED_INPUT).toLowerCase().equals("true")){
+            return true;
+        }else{
+            return false;
+        }
+    }
+    
     /**
      * returns true if the enzyme cutsites remains must be kept, false otherwise
      * @return true if the enzyme cutsites must be kept
@@ -464,6 +503,39 @@ public class DemultiplexParameters implements Parameters{
         return Integer.parseInt(this.arguments.get(DemultiplexArguments.THREADS));
     }
     
+    /**
+     * 
+     * @return integer | the maximum number of read batches that wait for the demultiplex threads (standard 2 times the number of threads)
+     */
+    public int getReadQueueSize(){
+        if (this.arguments.containsKey(DemultiplexArguments.READ_QUEUE_SIZE)){
+            return Integer.parseInt(this.arguments.get(DemultiplexArguments.READ_QUEUE_SIZE));
+        }
+        return 2 * this.getThreadNumber();
+    }
+    
+    /**
+     * 
+     * @return integer | the number of threads that write the output files (standard the number of threads)
+     */
+    public int getWriterThreadNumber(){
+        if (this.arguments.containsKey(DemultiplexArguments.WRITER_THREADS)){
+            return Integer.parseInt(this.arguments.get(DemultiplexArguments.WRITER_THREADS));
+        }
+        return this.getThreadNumber();
+    }
+    
+    /**
+     * 
+     * @return integer | the maximum number of output buffers that wait for the writer threads (standard 4 times the number of threads)
+     */
+    public int getWriteQueueSize(){
+        if (this.arguments.containsKey(DemultiplexArguments.WRITE_QUEUE_SIZE)){
+            return Integer.parseInt(this.arguments.get(DemultiplexArguments.WRITE_QUEUE_SIZE));
+        }
+        return 4 * this.getThreadNumber();
+    }
+    
     /**
      * configures a log file for all known parameters
      * @return String to put in the log file
@@ -485,6 +557,17 @@ public class DemultiplexParameters implements Parameters{
         toLog += "\t Output directory: \t" + this.getOutputDirectory() + "\n";
         //-gzip
         toLog += "\t In- and output file are gziped: \t" + this.mustBeZipped() + "\n";
+        //-bgzf
+        toLog += "\t Output files are BGZF: \t" + this.mustBeBgzf() + "\n";
+        //-ord
+        toLog += "\t Output in the order of the input: \t" + this.keepOrder() + "\n";
+        //-mmap
+        toLog += "\t Memory mapped input: \t" + this.useMemoryMappedInput() + "\n";
+        //-t, -rq, -wt and -wq
+        toLog += "\t Demultiplex threads: \t" + this.getThreadNumber() + "\n";
+        toLog += "\t Read queue size (batches): \t" + this.getReadQueueSize() + "\n";
+        toLog += "\t Writer threads: \t" + this.getWriterThreadNumber() + "\n";
+        toLog += "\t Write queue size (buffers): \t" + this.getWriteQueueSize() + "\n";
         //-lf
         toLog += "\t Use long file names: \t" + this.useLongFileNames()+ "\n";
         //-rad
@@ -560,7 +643,13 @@ public class DemultiplexParameters implements Parameters{
         toHelp += "\t -lf \t use long file names (standard false) filename is standard the sample name, long file names is sample name _ barcode _ enzyme" + "\n";
         toHelp += "\t -rad \t if the data is rad data or not (-rad true for RAD data, -rad false for GBS data) standard false (GBS)" + "\n";
         toHelp += "\t -gzip \t the input and output are/must be gziped (.gz) (standard false: input and output are .fastq, if true this is .fastq.gz)" + "\n";
+        toHelp += "\t -bgzf \t write the gziped output as BGZF (blocked gzip, can be indexed), the compression is done with -t threads (standard false, only used if -gzip is true)" + "\n";
+        toHelp += "\t -ord \t write the reads in the order of the input file, so the output is the same for any number of threads (standard false)" + "\n";
+        toHelp += "\t -mmap \t read the input files memory mapped, the threads parse their own part of the files (standard false, only used if -gzip is false)" + "\n";
         toHelp += "\t -t \t the number of threads to use (standard 1)" + "\n";
+        toHelp += "\t -rq \t the maximum number of read batches that wait between the reader and the demultiplex threads (standard 2 times -t)" + "\n";
+        toHelp += "\t -wt \t the number of threads that write the output files (standard -t)" + "\n";
+        toHelp += "\t -wq \t the maximum number of output buffers that wait for the writer threads (standard 4 times -t)" + "\n";
         toHelp += "\t -mb \t the allowed mismatches in the barcodes (overrides the option -m)" + "\n";
         toHelp += "\t -me \t the allowed mismatches in the enzymes (overrides the option -m)" + "\n";
         toHelp += "\t -minsl \t the minimum allowed length for the sequences (standard 0, rejected sequences are found in the stats for each sample in the rejected.count column. The sequences self are found untrimmed in the undetermined file.)" + "\n";
@@ -572,7 +661,7 @@ public class DemultiplexParameters implements Parameters{
         toHelp += "\t -ea \t Add enzymes from the given file (keeps the standard enzymes, and add the new) (enzyme file: no header, enzyme name tab cutsites (multiple cutsites are comma separeted)) (only use once, not use -er)" + "\n";
         toHelp += "\t -er \t Replace enzymes from the given file (don't keep the standard enzymes) (enzyme file: no header, enzyme name tab cutsites (multiple cutsites are comma separeted)) (only use once, not use -ea)" + "\n";
         //toHelp += "\t -al \t check for adaptor ligase: no (for no check) or a positive integer (starts at 0), for the number of mismatches (only checks 10 basepairs of the adaptor), standard 1" + "\n";
-        toHelp += "\t -scb \t Use self correcting barcodes (barcodes created by the barcodeGenerator) (standard false)" + "\n";
+        toHelp += "\t -scb \t Use self correcting barcodes (barcodes created by the barcodeGenerator, only barcodes of 15 bases are corrected) (standard false)" + "\n";
         toHelp += "\t -malg \t the used algorithm to find mismatches and indels, possible algorithms (see README): " + "\n";
         for (FindingsAlgorithms algorithm : FindingsAlgorithms.values()){
             toHelp += "\t \t \t" + algorithm.getAlgorithmName();
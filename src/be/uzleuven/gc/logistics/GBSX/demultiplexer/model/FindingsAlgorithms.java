@@ -43,7 +43,17 @@ public enum FindingsAlgorithms {
     /**
      * search first for mismatches, if no found, look for indels
      */
-    MISMATCH_INDEL_DISTANCE ("misindel", "Checks for mismatches and indels, the mismatches are supperior to the indels (faster than indelmis, but errors can be higher)");
+    MISMATCH_INDEL_DISTANCE ("misindel", "Checks for mismatches and indels, the mismatches are supperior to the indels (faster than indelmis, but errors can be higher)"),
+    
+    /**
+     * use hammings distance on 2 bit packed sequences (same results as hammings distance)
+     */
+    PACKED_HAMMINGS_DISTANCE ("packed", "Checks for mismatches (no indels), same results as hammings, but compares 32 bases at once"),
+    
+    /**
+     * search for indels and mismatches on a band of the distance matrix (same results as indel mismatch distance)
+     */
+    BANDED_INDEL_MISMATCH_DISTANCE ("indelband", "Checks for mismatches and indels, same results as indelmis, but only calculates the distances near the diagonal");
     
     /**
      * the name of the argument (-name)
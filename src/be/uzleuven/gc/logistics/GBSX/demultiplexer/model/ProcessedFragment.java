@@ -17,14 +17,18 @@ public class ProcessedFragment {
     /**
      * all information of the processed fragment:
      * <br> the sample of the read, 
-     * <br> read1 (as HashMap of FastqParts and String)
-     * <br> read2 (only pair-end) (as HashMap of FastqParts and String)
+     * <br> read1 (the original read, with the start and end of the part that is kept)
+     * <br> read2 (only pair-end) (the original read, with the start and end of the part that is kept)
      * <br> mismatch occured in finding the barcode/enzyme
      */
         
     private Sample sample;
     private FastqRead read1;
     private FastqRead read2;
+    private int read1Start;
+    private int read1End;
+    private int read2Start;
+    private int read2End;
     private int mismatch;
     private String sequenceComment = "";
 
@@ -37,9 +41,30 @@ public class ProcessedFragment {
      * @param sequenceComment String | the comment on the cut of the sequence
      */
     public ProcessedFragment(Sample sample, FastqRead read1, FastqRead read2, int mismatch, String sequenceComment){
+        this(sample, read1, 0, read1.getSequenceLength(), read2, 0, read2.getSequenceLength(), mismatch, sequenceComment);
+    }
+    
+    /**
+     * create a new ProcessedFragment (pair-end) of a part of the given reads
+     * <br> the reads are not changed or copied, only the start and end of the kept part are stored
+     * @param sample Sample | the sample of the fragment
+     * @param read1 FastqRead | the first read of the fragment
+     * @param read1Start int | the first base of read 1 that is kept (first is 0)
+     * @param read1End int | the end of the kept bases of read 1 (exclusive)
+     * @param read2 FastqRead | the second read of the fragment (only pair-end)
+     * @param read2Start int | the first base of read 2 that is kept (first is 0)
+     * @param read2End int | the end of the kept bases of read 2 (exclusive)
+     * @param mismatch int | number of mismatches in the barcode/enzyme
+     * @param sequenceComment String | the comment on the cut of the sequence
+     */
+    public ProcessedFragment(Sample sample, FastqRead read1, int read1Start, int read1End, FastqRead read2, int read2Start, int read2End, int mismatch, String sequenceComment){
         this.sample = sample;
         this.read1 = read1;
+        this.read1Start = read1Start;
+        this.read1End = read1End;
         this.read2 = read2;
+        this.read2Start = read2Start;
+        this.read2End = read2End;
         this.mismatch = mismatch;
         this.sequenceComment = sequenceComment;
     }
@@ -52,10 +77,7 @@ public class ProcessedFragment {
      * @param mismatch int | number of mismatches in the barcode/enzyme
      */
     public ProcessedFragment(Sample sample, FastqRead read1, FastqRead read2, int mismatch){
-        this.sample = sample;
-        this.read1 = read1;
-        this.read2 = read2;
-        this.mismatch = mismatch;
+        this(sample, read1, 0, read1.getSequenceLength(), read2, 0, read2.getSequenceLength(), mismatch, "");
     }
 
     /**
@@ -65,9 +87,26 @@ public class ProcessedFragment {
      * @param mismatch int | number of mismatches in the barcode/enzyme
      */
     public ProcessedFragment(Sample sample, FastqRead read1, int mismatch){
+        this(sample, read1, 0, read1.getSequenceLength(), mismatch);
+    }
+    
+    /**
+     * create a new ProcessedFragment (single read) of a part of the given read
+     * <br> the read is not changed or copied, only the start and end of the kept part are stored
+     * @param sample Sample | the sample of the fragment
+     * @param read1 FastqRead | the only read of the fragment
+     * @param read1Start int | the first base of the read that is kept (first is 0)
+     * @param read1End int | the end of the kept bases of the read (exclusive)
+     * @param mismatch int | number of mismatches in the barcode/enzyme
+     */
+    public ProcessedFragment(Sample sample, FastqRead read1, int read1Start, int read1End, int mismatch){
         this.sample = sample;
         this.read1 = read1;
+        this.read1Start = read1Start;
+        this.read1End = read1End;
         this.read2 = null;
+        this.read2Start = 0;
+        this.read2End = 0;
         this.mismatch = mismatch;
     }
 
@@ -81,19 +120,67 @@ public class ProcessedFragment {
 
     /**
      * 
-     * @return HashMap of FastqParts and String | the first read
+     * @return FastqRead | the first read, only the part from getRead1Start() to getRead1End() belongs to the fragment
      */
     public FastqRead getRead1(){
         return this.read1;
     }
+    
+    /**
+     * 
+     * @return int | the first base of read 1 that is kept
+     */
+    public int getRead1Start(){
+        return this.read1Start;
+    }
+    
+    /**
+     * 
+     * @return int | the end of the kept bases of read 1 (exclusive)
+     */
+    public int getRead1End(){
+        return this.read1End;
+    }
+    
+    /**
+     * 
+     * @return int | the number of kept bases of read 1
+     */
+    public int getRead1Length(){
+        return this.read1End - this.read1Start;
+    }
 
     /**
      * 
-     * @return HashMap of FastqParts and String | the second read (only by pair-end)
+     * @return FastqRead | the second read (only by pair-end), only the part from getRead2Start() to getRead2End() belongs to the fragment
      */
     public FastqRead getRead2(){
         return this.read2;
     }
+    
+    /**
+     * 
+     * @return int | the first base of read 2 that is kept (only by pair-end)
+     */
+    public int getRead2Start(){
+        return this.read2Start;
+    }
+    
+    /**
+     * 
+     * @return int | the end of the kept bases of read 2 (exclusive) (only by pair-end)
+     */
+    public int getRead2End(){
+        return this.read2End;
+    }
+    
+    /**
+     * 
+     * @return int | the number of kept bases of read 2 (only by pair-end)
+     */
+    public int getRead2Length(){
+        return this.read2End - this.read2Start;
+    }
 
     /**
      * 
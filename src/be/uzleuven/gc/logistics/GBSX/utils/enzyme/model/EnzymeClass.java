@@ -22,7 +22,9 @@ package be.uzleuven.gc.logistics.GBSX.utils.enzyme.model;
 import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.BasePair;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
 /**
  *
@@ -33,6 +35,11 @@ public class EnzymeClass implements Enzyme{
     
     private String name;
     private String[] initialCutSiteRemnants;
+    /**
+     * the (complement) cutsites as a set, made at the first call and shared by all threads afterwards
+     */
+    private volatile Set<String> cutSiteSet;
+    private volatile Set<String> complementCutSiteSet;
     
     /**
      * creates a new Enzyme from the name and the cut sites (as String array)
@@ -70,24 +77,32 @@ public class EnzymeClass implements Enzyme{
     
     /**
      * returns all cutsites
+     * <br> the set is only made once, and can't be changed
      * @return Collection of String | all the cutsites of the enzyme in a collection
      */
     public Collection<String> getInitialCutSiteRemnant(){
-        HashSet<String> cutsitesSet = new HashSet();
-        cutsitesSet.addAll(Arrays.asList(this.initialCutSiteRemnants));
-        return cutsitesSet;
+        if (this.cutSiteSet == null){
+            HashSet<String> cutsitesSet = new HashSet();
+            cutsitesSet.addAll(Arrays.asList(this.initialCutSiteRemnants));
+            this.cutSiteSet = Collections.unmodifiableSet(cutsitesSet);
+        }
+        return this.cutSiteSet;
     }
     
     /**
      * returns all complement cutsites
+     * <br> the set is only made once, and can't be changed
      * @return Collection of String | all the complement cutsites of the enzyme in a collection
      */
     public Collection<String> getComplementCutSiteRemnant() {
-        HashSet<String> cutsitesSet = new HashSet();
-        for (String cutsite : this.initialCutSiteRemnants){
-            cutsitesSet.add(BasePair.getComplementSequence(cutsite));
+        if (this.complementCutSiteSet == null){
+            HashSet<String> cutsitesSet = new HashSet();
+            for (String cutsite : this.initialCutSiteRemnants){
+                cutsitesSet.add(BasePair.getComplementSequence(cutsite));
+            }
+            this.complementCutSiteSet = Collections.unmodifiableSet(cutsitesSet);
         }
-        return cutsitesSet;
+        return this.complementCutSiteSet;
     }
     
 }
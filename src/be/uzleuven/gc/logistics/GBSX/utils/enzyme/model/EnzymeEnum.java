@@ -22,7 +22,9 @@ package be.uzleuven.gc.logistics.GBSX.utils.enzyme.model;
 import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.BasePair;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
 /**
  *
@@ -85,6 +87,11 @@ public enum EnzymeEnum implements Enzyme{
     
     private final String name;
     private final String[] initialCutSiteRemnant;
+    /**
+     * the (complement) cutsites as a set, made at the first call and shared by all threads afterwards
+     */
+    private volatile Set<String> cutSiteSet;
+    private volatile Set<String> complementCutSiteSet;
     
     /**
      * creates the enzyme
@@ -106,24 +113,32 @@ public enum EnzymeEnum implements Enzyme{
         
     /**
      * returns all cutsites
+     * <br> the set is only made once, and can't be changed
      * @return Collection of String | all the cutsites of the enzyme in a collection
      */
     public Collection<String> getInitialCutSiteRemnant(){
-        HashSet<String> cutsitesSet = new HashSet();
-        cutsitesSet.addAll(Arrays.asList(this.initialCutSiteRemnant));
-        return cutsitesSet;
+        if (this.cutSiteSet == null){
+            HashSet<String> cutsitesSet = new HashSet();
+            cutsitesSet.addAll(Arrays.asList(this.initialCutSiteRemnant));
+            this.cutSiteSet = Collections.unmodifiableSet(cutsitesSet);
+        }
+        return this.cutSiteSet;
     }
     
     /**
      * returns all complement cutsites
+     * <br> the set is only made once, and can't be changed
      * @return Collection of String | all the complement cutsites of the enzyme in a collection
      */
     public Collection<String> getComplementCutSiteRemnant() {
-        HashSet<String> cutsitesSet = new HashSet();
-        for (String cutsite : this.initialCutSiteRemnant){
-            cutsitesSet.add(BasePair.getComplementSequence(cutsite));
+        if (this.complementCutSiteSet == null){
+            HashSet<String> cutsitesSet = new HashSet();
+            for (String cutsite : this.initialCutSiteRemnant){
+                cutsitesSet.add(BasePair.getComplementSequence(cutsite));
+            }
+            this.complementCutSiteSet = Collections.unmodifiableSet(cutsitesSet);
         }
-        return cutsitesSet;
+        return this.complementCutSiteSet;
     }
     
     
@@ -0,0 +1,239 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * an output stream that writes BGZF (blocked gzip) files.
+ * <br> the data is cut in blocks of maximum 64 kB, every block is a complete gzip member
+ * with the BGZF extra field, so the output is a valid gzip file that can be indexed.
+ * <br> the blocks are compressed on the given (shared) deflate pool, and written in order.
+ * <br> this stream is not thread safe, the caller must synchronise the writes.
+ * @author Koen Herten for the KU Leuven
+ */
+public class BgzfOutputStream extends OutputStream {
+    
+    /**
+     * the maximum number of uncompressed bytes in a block (as used by samtools)
+     */
+    private static final int BLOCK_DATA_SIZE = 0xff00;
+    /**
+     * the maximum number of blocks of one stream that wait for compression
+     */
+    private static final int MAXIMUM_PENDING_BLOCKS = 8;
+    private static final int BLOCK_HEADER_SIZE = 18;
+    private static final int BLOCK_FOOTER_SIZE = 8;
+    private static final int MAXIMUM_BLOCK_SIZE = 0x10000;
+    private static final byte[] EMPTY_BLOCK = new byte[]{
+        0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00, 0x1b, 0x00,
+        0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+    };
+    /**
+     * every thread of the deflate pool keeps its own deflaters
+     */
+    private static final ThreadLocal<Deflater[]> DEFLATERS = new ThreadLocal<Deflater[]>(){
+        @Override
+        protected Deflater[] initialValue(){
+            return new Deflater[]{new Deflater(Deflater.DEFAULT_COMPRESSION, true), new Deflater(Deflater.NO_COMPRESSION, true)};
+        }
+    };
+    
+    private final OutputStream outputStream;
+    private final ExecutorService deflatePool;
+    private final ArrayDeque<Future<byte[]>> pendingBlocks;
+    private byte[] blockData;
+    private int blockLength;
+    private boolean closed;
+    
+    /**
+     * creates a new BgzfOutputStream
+     * @param outputStream OutputStream | the stream where the compressed blocks are written to
+     * @param deflatePool ExecutorService | the threads that compress the blocks
+     */
+    public BgzfOutputStream(OutputStream outputStream, ExecutorService deflatePool){
+        this.outputStream = outputStream;
+        this.deflatePool = deflatePool;
+        this.pendingBlocks = new ArrayDeque();
+        this.blockData = new byte[BLOCK_DATA_SIZE];
+        this.blockLength = 0;
+        this.closed = false;
+    }
+    
+    @Override
+    public void write(int b) throws IOException{
+        if (this.blockLength == BLOCK_DATA_SIZE){
+            this.submitBlock();
+        }
+        this.blockData[this.blockLength] = (byte) b;
+        this.blockLength++;
+    }
+    
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException{
+        while (length > 0){
+            if (this.blockLength == BLOCK_DATA_SIZE){
+                this.submitBlock();
+            }
+            int copied = Math.min(length, BLOCK_DATA_SIZE - this.blockLength);
+            System.arraycopy(data, offset, this.blockData, this.blockLength, copied);
+            this.blockLength += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+    
+    /**
+     * gives the current block to the deflate pool, and writes the blocks that are compressed
+     * @throws IOException | if an error occures while writing
+     */
+    private void submitBlock() throws IOException{
+        if (this.blockLength == 0){
+            return;
+        }
+        final byte[] data = this.blockData;
+        final int length = this.blockLength;
+        this.pendingBlocks.add(this.deflatePool.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return compressBlock(data, length);
+            }
+        }));
+        this.blockData = new byte[BLOCK_DATA_SIZE];
+        this.blockLength = 0;
+        //write the finished blocks, and wait if too many blocks are pending
+        while (! this.pendingBlocks.isEmpty() 
+                && (this.pendingBlocks.peek().isDone() || this.pendingBlocks.size() > MAXIMUM_PENDING_BLOCKS)){
+            this.writeFirstPendingBlock();
+        }
+    }
+    
+    /**
+     * waits for the first pending block and writes it
+     * @throws IOException | if the compression failed or an error occures while writing
+     */
+    private void writeFirstPendingBlock() throws IOException{
+        try {
+            this.outputStream.write(this.pendingBlocks.poll().get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Error while compressing", ex.getCause());
+        }
+    }
+    
+    /**
+     * compresses the data to a complete BGZF block
+     * @param data byte[] | the uncompressed data
+     * @param length int | the number of bytes in data
+     * @return byte[] | the BGZF block
+     */
+    private static byte[] compressBlock(byte[] data, int length){
+        Deflater[] deflaters = DEFLATERS.get();
+        byte[] block = new byte[MAXIMUM_BLOCK_SIZE];
+        int compressedLength = deflate(deflaters[0], data, length, block);
+        if (compressedLength == -1){
+            //data that can't be compressed is stored
+            compressedLength = deflate(deflaters[1], data, length, block);
+        }
+        int blockSize = BLOCK_HEADER_SIZE + compressedLength + BLOCK_FOOTER_SIZE;
+        System.arraycopy(EMPTY_BLOCK, 0, block, 0, BLOCK_HEADER_SIZE);
+        writeShort(block, 16, blockSize - 1);
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        writeInt(block, blockSize - 8, crc.getValue());
+        writeInt(block, blockSize - 4, length);
+        byte[] result = new byte[blockSize];
+        System.arraycopy(block, 0, result, 0, blockSize);
+        return result;
+    }
+    
+    /**
+     * 
+     * @param deflater Deflater | the deflater to use (raw deflate)
+     * @param data byte[] | the uncompressed data
+     * @param length int | the number of bytes in data
+     * @param block byte[] | the block where the compressed data is written after the header
+     * @return int | the compressed length, or -1 if it doesn't fit in the block
+     */
+    private static int deflate(Deflater deflater, byte[] data, int length, byte[] block){
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        int space = MAXIMUM_BLOCK_SIZE - BLOCK_HEADER_SIZE - BLOCK_FOOTER_SIZE;
+        int compressedLength = deflater.deflate(block, BLOCK_HEADER_SIZE, space);
+        if (! deflater.finished()){
+            return -1;
+        }
+        return compressedLength;
+    }
+    
+    private static void writeShort(byte[] block, int offset, int value){
+        block[offset] = (byte) value;
+        block[offset + 1] = (byte) (value >>> 8);
+    }
+    
+    private static void writeInt(byte[] block, int offset, long value){
+        block[offset] = (byte) value;
+        block[offset + 1] = (byte) (value >>> 8);
+        block[offset + 2] = (byte) (value >>> 16);
+        block[offset + 3] = (byte) (value >>> 24);
+    }
+    
+    /**
+     * compresses and writes all data
+     * @throws IOException | if an error occures while writing
+     */
+    @Override
+    public void flush() throws IOException{
+        this.submitBlock();
+        while (! this.pendingBlocks.isEmpty()){
+            this.writeFirstPendingBlock();
+        }
+        this.outputStream.flush();
+    }
+    
+    /**
+     * writes all data, the BGZF end of file block, and closes the stream
+     * @throws IOException | if an error occures while writing
+     */
+    @Override
+    public void close() throws IOException{
+        if (! this.closed){
+            this.closed = true;
+            try{
+                this.flush();
+                this.outputStream.write(EMPTY_BLOCK);
+            }finally{
+                this.outputStream.close();
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,46 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
+
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadBatch;
+import java.io.IOException;
+
+/**
+ * a fastq reader that hands out the reads in batches.
+ * <br> implementations must be safe to use from multiple threads at the same time.
+ * @author Koen Herten for the KU Leuven
+ */
+public interface FastqBatchReader {
+    
+    /**
+     * clears the given batch and fills it with the next reads of the fastq file
+     * @param batch FastqReadBatch | the batch to refill
+     * @return false if there are no fastq reads anymore (the batch is empty), else true
+     * @throws IOException | if any error occures while reading the file
+     */
+    public boolean nextBatch(FastqReadBatch batch) throws IOException;
+    
+    /**
+     * closes this reader
+     * @throws IOException | if any error occures while closing the file
+     */
+    public void close() throws IOException;
+    
+}
@@ -20,26 +20,48 @@
 package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
 
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
-import java.io.BufferedReader;
-import java.io.DataInputStream;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadBatch;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
 
 /**
- *
+ * reads a fastq file as bytes: the lines are searched in a byte buffer,
+ * and copied in the data block of the batch, so no characters are decoded.
  * @author Koen Herten for the KU Leuven
  */
-public class FastqBufferedReader {
+public class FastqBufferedReader implements FastqBatchReader {
     
-    private final BufferedReader fastqBufferedReader;
+    /**
+     * the initial size of the byte buffer, the buffer grows if a line is longer
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] DESCRIPTION_START = {'@'};
+    
+    private final InputStream fastqInputStream;
+    private byte[] buffer;
+    /**
+     * the unread bytes of the buffer
+     */
+    private int bufferStart;
+    private int bufferEnd;
+    private boolean endOfStream;
+    /**
+     * the last found line in the buffer (without the newline)
+     */
+    private int lineStart;
+    private int lineEnd;
     private ReentrantLock lock = new ReentrantLock();
+    /**
+     * the number of batches handed out
+     */
+    private long batchCount = 0;
     
     /**
      * creates a new FastqBufferedReader of the given file.
@@ -50,10 +72,14 @@ public class FastqBufferedReader {
      */
     public FastqBufferedReader(File file, boolean ziped) throws FileNotFoundException, IOException{
         if (ziped){
-            this.fastqBufferedReader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file))));
+            this.fastqInputStream = new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE);
         }else{
-            this.fastqBufferedReader = new BufferedReader(new InputStreamReader(new DataInputStream(new FileInputStream(file))));
+            this.fastqInputStream = new FileInputStream(file);
         }
+        this.buffer = new byte[BUFFER_SIZE];
+        this.bufferStart = 0;
+        this.bufferEnd = 0;
+        this.endOfStream = false;
     }
     
     
@@ -65,36 +91,175 @@ public class FastqBufferedReader {
     public FastqRead next() throws IOException{
         try{
             lock.lock();
-            String descriptionLine = this.fastqBufferedReader.readLine();
-            if (descriptionLine == null){
-                return null;
-            }
-
-            String sequenceLine = this.fastqBufferedReader.readLine();
-            if (sequenceLine == null){
-                return null;
+            return this.readNextRead();
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * reads the next reads in the fastq file and returns them as a new batch
+     * <br> the lock is only taken once for the whole batch
+     * @param batchSize int | the maximum number of reads in the batch
+     * @return null if there are no fastq reads anymore, else a FastqReadBatch with at least one read
+     * @throws IOException | if any error occures while reading the file
+     */
+    public FastqReadBatch nextBatch(int batchSize) throws IOException{
+        FastqReadBatch batch = new FastqReadBatch(batchSize);
+        if (this.nextBatch(batch)){
+            return batch;
+        }
+        return null;
+    }
+    
+    /**
+     * clears the given batch and fills it with the next reads in the fastq file
+     * <br> the lock is only taken once for the whole batch
+     * @param batch FastqReadBatch | the batch to refill, is filled up to its capacity
+     * @return false if there are no fastq reads anymore (the batch is empty), else true
+     * @throws IOException | if any error occures while reading the file
+     */
+    @Override
+    public boolean nextBatch(FastqReadBatch batch) throws IOException{
+        batch.clear();
+        try{
+            lock.lock();
+            while (! batch.isFull() && this.readNextRead(batch)){
             }
-            //the + line
-            this.fastqBufferedReader.readLine();
-            String qualityLine = this.fastqBufferedReader.readLine();
-            if (qualityLine == null){
-                return null;
+            if (! batch.isEmpty()){
+                batch.setSequenceNumber(this.batchCount++);
             }
-            FastqRead fastqRead = new FastqRead(descriptionLine, sequenceLine, qualityLine);
-            return fastqRead;
         }finally{
             lock.unlock();
         }
-    }  
+        return ! batch.isEmpty();
+    }
+    
+    /**
+     * reads the next 4 lines without taking the lock
+     * <br> the caller must hold the lock of this reader, or of the pair reader that owns this reader
+     * @return null if there are no fastq files anymore, else a FastqRead
+     * @throws IOException | if any error occures while reading the file
+     */
+    FastqRead readNextRead() throws IOException{
+        FastqReadBatch readBatch = new FastqReadBatch(1);
+        if (this.readNextRead(readBatch)){
+            return readBatch.get(0);
+        }
+        return null;
+    }
+    
+    /**
+     * reads the next 4 lines without taking the lock, and adds the read to the given batch
+     * <br> the description, sequence and quality line are copied in the data block of the batch
+     * <br> the caller must hold the lock of this reader, or of the pair reader that owns this reader
+     * @param batch FastqReadBatch | the batch to add the read to, may not be full
+     * @return false if there are no fastq files anymore (nothing is added to the batch), else true
+     * @throws IOException | if any error occures while reading the file
+     */
+    boolean readNextRead(FastqReadBatch batch) throws IOException{
+        if (! this.nextLine()){
+            return false;
+        }
+        int descriptionStart = batch.getDataLength();
+        if (this.lineEnd == this.lineStart || this.buffer[this.lineStart] != '@'){
+            batch.appendData(DESCRIPTION_START, 0, 1);
+        }
+        batch.appendData(this.buffer, this.lineStart, this.lineEnd);
+        int descriptionEnd = batch.getDataLength();
+        
+        if (! this.nextLine()){
+            return false;
+        }
+        int sequenceStart = batch.appendData(this.buffer, this.lineStart, this.lineEnd);
+        int sequenceEnd = batch.getDataLength();
+        //the + line
+        this.nextLine();
+        if (! this.nextLine()){
+            return false;
+        }
+        int qualityStart = batch.appendData(this.buffer, this.lineStart, this.lineEnd);
+        int qualityEnd = batch.getDataLength();
+        batch.add(new FastqRead(batch.getData(), descriptionStart, descriptionEnd, sequenceStart, sequenceEnd, qualityStart, qualityEnd));
+        return true;
+    }
+    
+    /**
+     * searches the next line in the buffer, and reads more bytes of the file if the line isn't complete
+     * <br> the line is found in the buffer from lineStart to lineEnd, a \r before the newline is not in the line
+     * @return false if the end of the file is reached, else true
+     * @throws IOException | if any error occures while reading the file
+     */
+    private boolean nextLine() throws IOException{
+        int searchStart = this.bufferStart;
+        while (true){
+            for (int i = searchStart; i < this.bufferEnd; i++){
+                if (this.buffer[i] == '\n'){
+                    this.setLine(i);
+                    this.bufferStart = i + 1;
+                    return true;
+                }
+            }
+            if (this.endOfStream){
+                if (this.bufferStart == this.bufferEnd){
+                    return false;
+                }
+                //last line without a newline
+                this.setLine(this.bufferEnd);
+                this.bufferStart = this.bufferEnd;
+                return true;
+            }
+            searchStart = this.fillBuffer();
+        }
+    }
+    
+    /**
+     * sets the line from the start of the unread bytes to the given end
+     * @param end int | the end of the line (the newline or the end of the buffer)
+     */
+    private void setLine(int end){
+        this.lineStart = this.bufferStart;
+        if (end > this.lineStart && this.buffer[end - 1] == '\r'){
+            end--;
+        }
+        this.lineEnd = end;
+    }
+    
+    /**
+     * moves the unread bytes to the start of the buffer, and fills the rest of the buffer with the file
+     * <br> if the buffer is full of unread bytes, the buffer is replaced by a bigger one
+     * @return int | the end of the moved unread bytes, the newline search can continue from there
+     * @throws IOException | if any error occures while reading the file
+     */
+    private int fillBuffer() throws IOException{
+        int unread = this.bufferEnd - this.bufferStart;
+        if (unread == this.buffer.length){
+            byte[] newBuffer = new byte[this.buffer.length * 2];
+            System.arraycopy(this.buffer, this.bufferStart, newBuffer, 0, unread);
+            this.buffer = newBuffer;
+        }else{
+            System.arraycopy(this.buffer, this.bufferStart, this.buffer, 0, unread);
+        }
+        this.bufferStart = 0;
+        this.bufferEnd = unread;
+        int read = this.fastqInputStream.read(this.buffer, this.bufferEnd, this.buffer.length - this.bufferEnd);
+        if (read == -1){
+            this.endOfStream = true;
+        }else{
+            this.bufferEnd += read;
+        }
+        return unread;
+    }
     
     /**
      * closes this buffered reader
      * @throws IOException 
      */
+    @Override
     public void close() throws IOException{
         try{
             lock.lock();
-            this.fastqBufferedReader.close();
+            this.fastqInputStream.close();
         }finally{
             lock.unlock();
         }
@@ -109,7 +274,7 @@ public class FastqBufferedReader {
     @Override
     public void finalize() throws Throwable{
         try {
-            this.fastqBufferedReader.close();
+            this.fastqInputStream.close();
         } catch (IOException ex) {
             Logger.getLogger(FastqBufferedReader.class.getName()).log(Level.SEVERE, null, ex);
         }finally{
@@ -20,25 +20,30 @@
 package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
 
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
-import java.io.BufferedWriter;
-import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPOutputStream;
 
 /**
- *
+ * writes fastq reads to a (ziped) file.
+ * <br> the reads are written as bytes, without creating Strings of the reads.
  * @author Koen Herten for the KU Leuven
  */
 public class FastqBufferedWriter {
     
-    private final BufferedWriter fastqBufferedWriter;
+    /**
+     * the size of the write buffer
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final BufferedOutputStream fastqOutputStream;
     private ReentrantLock lock = new ReentrantLock();
     
     /**
@@ -50,9 +55,30 @@ public class FastqBufferedWriter {
      */
     public FastqBufferedWriter(File file, boolean ziped) throws FileNotFoundException, IOException{
         if (ziped){
-            this.fastqBufferedWriter = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file))));
+            this.fastqOutputStream = new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file)), BUFFER_SIZE);
         }else{
-            this.fastqBufferedWriter = new BufferedWriter(new OutputStreamWriter(new DataOutputStream(new FileOutputStream(file))));
+            this.fastqOutputStream = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        }
+    }
+    
+    /**
+     * creates a new FastqBufferedWriter of the given file.
+     * <br> if a deflate pool is given, and the file must be zipped, the file is written as BGZF file
+     * and the compression is done on the deflate pool.
+     * @param file | the file that must be writen
+     * @param ziped | true if the file must be zipped
+     * @param deflatePool | the threads that compress the BGZF blocks, null for a normal gzip file
+     * @throws FileNotFoundException | if the given file isn't found
+     * @throws IOException | if an error occures while opening the file
+     * @see BgzfOutputStream
+     */
+    public FastqBufferedWriter(File file, boolean ziped, ExecutorService deflatePool) throws FileNotFoundException, IOException{
+        if (ziped && deflatePool != null){
+            this.fastqOutputStream = new BufferedOutputStream(new BgzfOutputStream(new FileOutputStream(file), deflatePool), BUFFER_SIZE);
+        }else if (ziped){
+            this.fastqOutputStream = new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file)), BUFFER_SIZE);
+        }else{
+            this.fastqOutputStream = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
         }
     }
     
@@ -66,9 +92,9 @@ public class FastqBufferedWriter {
      */
     public FastqBufferedWriter(File file, boolean ziped, boolean append) throws FileNotFoundException, IOException{
         if (ziped){
-            this.fastqBufferedWriter = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file, append))));
+            this.fastqOutputStream = new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file, append)), BUFFER_SIZE);
         }else{
-            this.fastqBufferedWriter = new BufferedWriter(new OutputStreamWriter(new DataOutputStream(new FileOutputStream(file, append))));
+            this.fastqOutputStream = new BufferedOutputStream(new FileOutputStream(file, append), BUFFER_SIZE);
         }
     }
     
@@ -81,14 +107,45 @@ public class FastqBufferedWriter {
     public void write(FastqRead fastq) throws IOException{
         try{
             lock.lock();
-            this.fastqBufferedWriter.write(fastq.getDescription());
-            this.fastqBufferedWriter.write("\n");
-            this.fastqBufferedWriter.write(fastq.getSequence());
-            this.fastqBufferedWriter.write("\n");
-            this.fastqBufferedWriter.write("+");
-            this.fastqBufferedWriter.write("\n");
-            this.fastqBufferedWriter.write(fastq.getQuality());
-            this.fastqBufferedWriter.write("\n");
+            fastq.writeTo(this.fastqOutputStream);
+        }catch(IOException e){
+            throw new IOException("FastqBuffer closed");
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    
+    /**
+     * writes a part of the given read in the fastq file, the read itself is not changed. 
+     * @param fastq | a fastqRead
+     * @param start | the first base to write (first is 0)
+     * @param end | the end of the bases to write (exclusive)
+     * @throws IOException | if any error occures while writing the file
+     */
+    public void write(FastqRead fastq, int start, int end) throws IOException{
+        try{
+            lock.lock();
+            fastq.writeTo(this.fastqOutputStream, start, end);
+        }catch(IOException e){
+            throw new IOException("FastqBuffer closed");
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    
+    /**
+     * writes the given bytes (complete fastq reads) in the fastq file.
+     * @param data | the bytes to write
+     * @param length | the number of bytes to write (from the start of data)
+     * @throws IOException | if any error occures while writing the file
+     * @see FastqWriterPool
+     */
+    public void write(byte[] data, int length) throws IOException{
+        try{
+            lock.lock();
+            this.fastqOutputStream.write(data, 0, length);
         }catch(IOException e){
             throw new IOException("FastqBuffer closed");
         }finally{
@@ -104,7 +161,7 @@ public class FastqBufferedWriter {
     public void close() throws IOException{
         try{
             lock.lock();
-            this.fastqBufferedWriter.close();
+            this.fastqOutputStream.close();
         }finally{
             lock.unlock();
         }
@@ -119,7 +176,7 @@ public class FastqBufferedWriter {
     @Override
     public void finalize() throws Throwable{
         try {
-            this.fastqBufferedWriter.close();
+            this.fastqOutputStream.close();
         } catch (IOException ex) {
             Logger.getLogger(FastqBufferedWriter.class.getName()).log(Level.SEVERE, null, ex);
         }finally{
@@ -0,0 +1,449 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
+
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadBatch;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * a reader of not ziped fastq files (single or paired) that maps the files in memory.
+ * <br> when the reader is created, the start of every batch is searched in the files:
+ * the lines of the files are counted in chunks on multiple threads, and the batches
+ * start at every batch size * 4 lines. read i of a paired batch is read i in both files,
+ * so the files stay in lockstep without reading them together.
+ * <br> the callers take the next batch number with an atomic counter and parse the part of the mapped files
+ * of that batch themselfs, so there is no lock and no read thread.
+ * <br> a fastq read must be 4 lines, like the other readers expect.
+ * @author Koen Herten for the KU Leuven
+ */
+public class FastqMappedReader implements FastqBatchReader, FastqPairBatchReader {
+    
+    /**
+     * the number of bytes of a chunk in which the lines are counted by 1 thread
+     */
+    private static final int COUNT_CHUNK_SIZE = 32 * 1024 * 1024;
+    /**
+     * the maximum size of a mapped part of a file (a MappedByteBuffer can't be bigger than 2GB)
+     */
+    private static final long MAXIMUM_SEGMENT_SIZE = 1024L * 1024 * 1024;
+    /**
+     * the number of bytes copied at once from a mapped chunk while counting the lines
+     */
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    
+    private final MappedFile mappedFile1;
+    private final MappedFile mappedFile2;
+    private final int batchSize;
+    private final long numberOfReads;
+    private final long numberOfBatches;
+    private final AtomicLong nextBatch;
+    
+    /**
+     * creates a new FastqMappedReader for single reads, and searches the start of every batch in the file
+     * @param file File | the fastq file
+     * @param batchSize int | the number of reads in a batch
+     * @param threads int | the number of threads that count the lines of the file
+     * @throws FileNotFoundException | if the given file isn't found
+     * @throws IOException | if an error occures while mapping the file
+     */
+    public FastqMappedReader(File file, int batchSize, int threads) throws FileNotFoundException, IOException{
+        this(file, null, batchSize, threads);
+    }
+    
+    /**
+     * creates a new FastqMappedReader for paired reads, and searches the start of every batch in both files
+     * <br> if one file has more reads than the other, the extra reads are ignored
+     * @param file1 File | the fastq file of read 1
+     * @param file2 File | the fastq file of read 2, null for single reads
+     * @param batchSize int | the number of reads in a batch
+     * @param threads int | the number of threads that count the lines of the files
+     * @throws FileNotFoundException | if one of the given files isn't found
+     * @throws IOException | if an error occures while mapping the files
+     */
+    public FastqMappedReader(File file1, File file2, int batchSize, int threads) throws FileNotFoundException, IOException{
+        if (batchSize < 1){
+            throw new IllegalArgumentException("The batch size of a FastqMappedReader must be at least 1");
+        }
+        this.batchSize = batchSize;
+        this.nextBatch = new AtomicLong(0);
+        this.mappedFile1 = new MappedFile(file1);
+        this.mappedFile2 = (file2 == null) ? null : new MappedFile(file2);
+        ExecutorService countPool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try{
+            //first pass: count the lines of every chunk, a read is 4 lines
+            long reads = this.mappedFile1.countLines(countPool) / 4;
+            if (this.mappedFile2 != null){
+                reads = Math.min(reads, this.mappedFile2.countLines(countPool) / 4);
+            }
+            this.numberOfReads = reads;
+            this.numberOfBatches = (reads + batchSize - 1) / batchSize;
+            if (this.numberOfBatches >= Integer.MAX_VALUE){
+                throw new IOException("The fastq file has too many reads to be memory mapped");
+            }
+            //second pass: find the start of every batch, and map the batches
+            this.mappedFile1.mapBatches(countPool, reads, batchSize);
+            if (this.mappedFile2 != null){
+                this.mappedFile2.mapBatches(countPool, reads, batchSize);
+            }
+        }catch (IOException ex){
+            this.close();
+            throw ex;
+        }finally{
+            countPool.shutdown();
+        }
+    }
+    
+    /**
+     * 
+     * @return long | the number of (paired) reads that are handed out by this reader
+     */
+    public long getNumberOfReads(){
+        return this.numberOfReads;
+    }
+    
+    /**
+     * clears the given batch and fills it with the next reads of the file
+     * @param batch FastqReadBatch | the batch to refill, with a capacity of at least the batch size of this reader
+     * @return false if there are no fastq reads anymore (the batch is empty), else true
+     * @throws IOException | if any error occured while reading the file
+     */
+    @Override
+    public boolean nextBatch(FastqReadBatch batch) throws IOException{
+        if (this.mappedFile2 != null){
+            throw new IllegalStateException("The FastqMappedReader reads paired files, ask the batches in pairs");
+        }
+        batch.clear();
+        long batchNumber = this.nextBatch.getAndIncrement();
+        if (batchNumber >= this.numberOfBatches){
+            return false;
+        }
+        this.readBatch(this.mappedFile1, (int) batchNumber, batch);
+        return true;
+    }
+    
+    /**
+     * clears the given batches and fills them with the next reads of both fastq files
+     * <br> read i of batch1 and read i of batch2 are always a pair
+     * @param batch1 FastqReadBatch | the batch for read 1
+     * @param batch2 FastqReadBatch | the batch for read 2
+     * @return false if there are no fastq reads anymore (the batches are empty), else true
+     * @throws IOException | if any error occured while reading the files
+     */
+    @Override
+    public boolean nextBatch(FastqReadBatch batch1, FastqReadBatch batch2) throws IOException{
+        if (this.mappedFile2 == null){
+            throw new IllegalStateException("The FastqMappedReader reads a single file, ask the batches one by one");
+        }
+        batch1.clear();
+        batch2.clear();
+        long batchNumber = this.nextBatch.getAndIncrement();
+        if (batchNumber >= this.numberOfBatches){
+            return false;
+        }
+        this.readBatch(this.mappedFile1, (int) batchNumber, batch1);
+        this.readBatch(this.mappedFile2, (int) batchNumber, batch2);
+        return true;
+    }
+    
+    /**
+     * copies the bytes of the batch from the mapped file in the data block of the batch,
+     * and splits them in fastq reads
+     * @param mappedFile MappedFile | the file to read from
+     * @param batchNumber int | the number of the batch in the file
+     * @param batch FastqReadBatch | the empty batch to fill
+     */
+    private void readBatch(MappedFile mappedFile, int batchNumber, FastqReadBatch batch){
+        int reads = (int) Math.min(this.batchSize, this.numberOfReads - (long) batchNumber * this.batchSize);
+        if (batch.getCapacity() < reads){
+            throw new IllegalArgumentException("The FastqReadBatch is smaller than the batch size of the reader");
+        }
+        mappedFile.copyBatch(batchNumber, batch);
+        batch.setSequenceNumber(batchNumber);
+        byte[] data = batch.getData();
+        int length = batch.getDataLength();
+        int[] lineOffsets = new int[8];
+        int start = 0;
+        for (int read = 0; read < reads; read++){
+            for (int line = 0; line < 4; line++){
+                int end = start;
+                while (end < length && data[end] != '\n'){
+                    end++;
+                }
+                int lineEnd = end;
+                if (lineEnd > start && data[lineEnd - 1] == '\r'){
+                    lineEnd--;
+                }
+                lineOffsets[line * 2] = start;
+                lineOffsets[line * 2 + 1] = lineEnd;
+                start = end + 1;
+            }
+            //the + line (line 2) is not used
+            batch.add(new FastqRead(data, lineOffsets[0], lineOffsets[1], lineOffsets[2], lineOffsets[3], lineOffsets[6], lineOffsets[7]));
+        }
+    }
+    
+    /**
+     * closes the files, the mapped parts are released when they are no longer used
+     * @throws IOException 
+     */
+    @Override
+    public void close() throws IOException{
+        try{
+            this.mappedFile1.close();
+        }finally{
+            if (this.mappedFile2 != null){
+                this.mappedFile2.close();
+            }
+        }
+    }
+    
+    /**
+     * closes first the files
+     * then execute finilize()
+     * @throws Throwable
+     */
+    @Override
+    public void finalize() throws Throwable{
+        try {
+            this.close();
+        } catch (IOException ex) {
+            Logger.getLogger(FastqMappedReader.class.getName()).log(Level.SEVERE, null, ex);
+        }finally{
+            super.finalize();
+        }
+    }
+    
+    /**
+     * a fastq file, its lines per chunk, the start of every batch and the mapped parts of the file
+     */
+    private static class MappedFile{
+        
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final long size;
+        /**
+         * the number of newlines in every chunk of COUNT_CHUNK_SIZE bytes
+         */
+        private long[] chunkLines;
+        /**
+         * the start of every batch in the file, the last value is the end of the last batch
+         */
+        private long[] batchOffsets;
+        /**
+         * the mapped parts of the file, a part contains only complete batches
+         */
+        private MappedByteBuffer[] segments;
+        private long[] segmentStarts;
+        /**
+         * the index of the mapped part of every batch
+         */
+        private int[] batchSegments;
+        
+        private MappedFile(File file) throws FileNotFoundException, IOException{
+            this.file = new RandomAccessFile(file, "r");
+            this.channel = this.file.getChannel();
+            this.size = this.channel.size();
+        }
+        
+        /**
+         * counts the lines of every chunk of the file on the given threads
+         * @param pool ExecutorService | the threads that count
+         * @return long | the number of lines of the file (a last line without a newline included)
+         * @throws IOException | if an error occures while mapping the file
+         */
+        private long countLines(ExecutorService pool) throws IOException{
+            int chunks = (int) ((this.size + COUNT_CHUNK_SIZE - 1) / COUNT_CHUNK_SIZE);
+            this.chunkLines = new long[chunks];
+            ArrayList<Future<Long>> counts = new ArrayList();
+            for (int chunk = 0; chunk < chunks; chunk++){
+                final long chunkStart = (long) chunk * COUNT_CHUNK_SIZE;
+                counts.add(pool.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        return scanChunk(chunkStart, -1, 0, 0, null);
+                    }
+                }));
+            }
+            long lines = 0;
+            for (int chunk = 0; chunk < chunks; chunk++){
+                this.chunkLines[chunk] = MappedFile.getResult(counts.get(chunk));
+                lines += this.chunkLines[chunk];
+            }
+            if (this.size > 0){
+                ByteBuffer lastByte = ByteBuffer.allocate(1);
+                this.channel.read(lastByte, this.size - 1);
+                if (lastByte.get(0) != '\n'){
+                    lines++;
+                }
+            }
+            return lines;
+        }
+        
+        /**
+         * searches the start of every batch in the file on the given threads, and maps the batches in memory
+         * @param pool ExecutorService | the threads that search the batches
+         * @param reads long | the number of reads to hand out
+         * @param batchSize int | the number of reads in a batch
+         * @throws IOException | if an error occures while mapping the file
+         */
+        private void mapBatches(ExecutorService pool, long reads, int batchSize) throws IOException{
+            final int batches = (int) ((reads + batchSize - 1) / batchSize);
+            final long linesPerBatch = 4L * batchSize;
+            final long lastLine = 4L * reads;
+            this.batchOffsets = new long[batches + 1];
+            //if the last read has no newline, the last batch ends at the end of the file
+            this.batchOffsets[batches] = this.size;
+            ArrayList<Future<Long>> searches = new ArrayList();
+            long firstLine = 0;
+            for (int chunk = 0; chunk < this.chunkLines.length && firstLine < lastLine; chunk++){
+                final long chunkStart = (long) chunk * COUNT_CHUNK_SIZE;
+                final long chunkFirstLine = firstLine;
+                searches.add(pool.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        return scanChunk(chunkStart, chunkFirstLine, linesPerBatch, lastLine, batchOffsets);
+                    }
+                }));
+                firstLine += this.chunkLines[chunk];
+            }
+            for (Future<Long> search : searches){
+                MappedFile.getResult(search);
+            }
+            //map the batches in parts of at most MAXIMUM_SEGMENT_SIZE
+            ArrayList<MappedByteBuffer> mappedSegments = new ArrayList();
+            ArrayList<Long> starts = new ArrayList();
+            this.batchSegments = new int[batches];
+            int firstBatch = 0;
+            while (firstBatch < batches){
+                long start = this.batchOffsets[firstBatch];
+                int endBatch = firstBatch + 1;
+                while (endBatch < batches && this.batchOffsets[endBatch + 1] - start <= MAXIMUM_SEGMENT_SIZE){
+                    endBatch++;
+                }
+                long segmentSize = this.batchOffsets[endBatch] - start;
+                if (segmentSize > Integer.MAX_VALUE){
+                    throw new IOException("A batch of fastq reads is too big to be memory mapped");
+                }
+                for (int batch = firstBatch; batch < endBatch; batch++){
+                    this.batchSegments[batch] = mappedSegments.size();
+                }
+                mappedSegments.add(this.channel.map(FileChannel.MapMode.READ_ONLY, start, segmentSize));
+                starts.add(start);
+                firstBatch = endBatch;
+            }
+            this.segments = mappedSegments.toArray(new MappedByteBuffer[mappedSegments.size()]);
+            this.segmentStarts = new long[starts.size()];
+            for (int i = 0; i < this.segmentStarts.length; i++){
+                this.segmentStarts[i] = starts.get(i);
+            }
+        }
+        
+        /**
+         * counts the newlines of a chunk, and stores the start of the batches that start in the chunk
+         * @param chunkStart long | the first byte of the chunk
+         * @param firstLine long | the number of newlines before the chunk, -1 to only count
+         * @param linesPerBatch long | the number of lines in a batch
+         * @param lastLine long | the line after the last read that is handed out
+         * @param offsets long[] | the start of every batch, only the batches that start in this chunk are set
+         * @return long | the number of newlines in the chunk
+         * @throws IOException | if an error occures while mapping the chunk
+         */
+        private long scanChunk(long chunkStart, long firstLine, long linesPerBatch, long lastLine, long[] offsets) throws IOException{
+            int chunkSize = (int) Math.min(COUNT_CHUNK_SIZE, this.size - chunkStart);
+            MappedByteBuffer chunk = this.channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkSize);
+            byte[] scanBuffer = new byte[SCAN_BUFFER_SIZE];
+            int lastBatch = (offsets == null) ? 0 : offsets.length - 1;
+            long newlines = 0;
+            int position = 0;
+            while (position < chunkSize){
+                int length = Math.min(SCAN_BUFFER_SIZE, chunkSize - position);
+                chunk.get(scanBuffer, 0, length);
+                for (int i = 0; i < length; i++){
+                    if (scanBuffer[i] == '\n'){
+                        newlines++;
+                        if (firstLine >= 0){
+                            //the line that starts after this newline
+                            long line = firstLine + newlines;
+                            if (line % linesPerBatch == 0 && line / linesPerBatch < lastBatch){
+                                offsets[(int) (line / linesPerBatch)] = chunkStart + position + i + 1;
+                            }
+                            if (line == lastLine){
+                                offsets[lastBatch] = chunkStart + position + i + 1;
+                            }
+                        }
+                    }
+                }
+                position += length;
+            }
+            return newlines;
+        }
+        
+        /**
+         * copies the bytes of the given batch at the end of the data block of the given batch
+         * <br> the mapped part is duplicated, so multiple threads can copy at the same time
+         * @param batchNumber int | the number of the batch in the file
+         * @param batch FastqReadBatch | the batch to copy the bytes to
+         */
+        private void copyBatch(int batchNumber, FastqReadBatch batch){
+            int segment = this.batchSegments[batchNumber];
+            ByteBuffer buffer = this.segments[segment].duplicate();
+            buffer.position((int) (this.batchOffsets[batchNumber] - this.segmentStarts[segment]));
+            batch.appendData(buffer, (int) (this.batchOffsets[batchNumber + 1] - this.batchOffsets[batchNumber]));
+        }
+        
+        /**
+         * waits for the result of a chunk
+         * @param result Future of Long | the result of the chunk
+         * @return long | the number of newlines in the chunk
+         * @throws IOException | if an error occured in the chunk, or if interrupted while waiting
+         */
+        private static long getResult(Future<Long> result) throws IOException{
+            try {
+                return result.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while counting the lines of the fastq file", ex);
+            } catch (ExecutionException ex) {
+                throw new IOException("Error while counting the lines of the fastq file", ex.getCause());
+            }
+        }
+        
+        private void close() throws IOException{
+            this.file.close();
+        }
+    }
+    
+}
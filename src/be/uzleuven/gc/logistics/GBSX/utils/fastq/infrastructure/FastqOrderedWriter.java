@@ -0,0 +1,280 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * writes the output of numbered batches in the order of their sequence number.
+ * <br> every demultiplex thread collects the output of 1 batch of reads in its FastqWriteBuffers,
+ * and commits them as an OrderedBatch with the sequence number of the read batch.
+ * <br> the batches are written as soon as all batches before them are written, 
+ * so every file gets its reads in the order of the input file, independent of the number of threads.
+ * <br> the thread that commits the next batch writes it (and the following batches that are waiting),
+ * the other threads continue with their next batch.
+ * if too many batches wait for an earlier batch, the threads that commit a later batch have to wait.
+ * @author Koen Herten for the KU Leuven
+ * @see FastqWriteBuffer
+ * @see be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadBatch#getSequenceNumber() 
+ */
+public class FastqOrderedWriter {
+    
+    private final int maximumPendingBatches;
+    private final HashMap<Long, OrderedBatch> pendingBatches;
+    private long nextSequenceNumber;
+    /**
+     * the first error that occured while writing a batch
+     */
+    private IOException error;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchWritten = lock.newCondition();
+    /**
+     * only the thread with this lock writes batches
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    
+    /**
+     * creates a new FastqOrderedWriter, the first batch has sequence number 0
+     * @param maximumPendingBatches int | the maximum number of batches that can wait for an earlier batch
+     */
+    public FastqOrderedWriter(int maximumPendingBatches){
+        this.maximumPendingBatches = Math.max(1, maximumPendingBatches);
+        this.pendingBatches = new HashMap();
+        this.nextSequenceNumber = 0;
+        this.error = null;
+    }
+    
+    /**
+     * creates a new empty batch
+     * @param sequenceNumber long | the sequence number of the read batch
+     * @return OrderedBatch | the batch to add the buffers of the read batch to
+     */
+    public OrderedBatch createBatch(long sequenceNumber){
+        return new OrderedBatch(sequenceNumber);
+    }
+    
+    /**
+     * commits the batch, the batch is written when all batches before it are written.
+     * <br> every sequence number must be committed once (an empty batch if there are no reads to write),
+     * else the later batches are never written.
+     * @param batch OrderedBatch | the batch to commit
+     * @throws IOException | if an error occured while writing a batch
+     */
+    public void commit(OrderedBatch batch) throws IOException{
+        try{
+            lock.lock();
+            while (this.error == null && batch.sequenceNumber != this.nextSequenceNumber 
+                    && this.pendingBatches.size() >= this.maximumPendingBatches){
+                this.batchWritten.awaitUninterruptibly();
+            }
+            this.checkError();
+            this.pendingBatches.put(batch.sequenceNumber, batch);
+        }finally{
+            lock.unlock();
+        }
+        this.writeReadyBatches();
+        this.checkError();
+    }
+    
+    /**
+     * writes all batches that can be written, if no other thread is writing them
+     */
+    private void writeReadyBatches(){
+        while (this.writeLock.tryLock()){
+            try{
+                OrderedBatch batch;
+                while ((batch = this.takeNextBatch()) != null){
+                    try {
+                        batch.write();
+                    } catch (IOException ex) {
+                        this.setError(ex);
+                    }
+                }
+            }finally{
+                this.writeLock.unlock();
+            }
+            //an other thread can have committed the next batch after the last check, but before the unlock
+            if (! this.hasNextBatch()){
+                return;
+            }
+        }
+    }
+    
+    /**
+     * takes the next batch from the pending batches
+     * @return OrderedBatch | the next batch, or null if the next batch isn't committed yet
+     */
+    private OrderedBatch takeNextBatch(){
+        try{
+            lock.lock();
+            OrderedBatch batch = this.pendingBatches.remove(this.nextSequenceNumber);
+            if (batch != null){
+                this.nextSequenceNumber++;
+                this.batchWritten.signalAll();
+            }
+            return batch;
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 
+     * @return boolean | true if the next batch is committed
+     */
+    private boolean hasNextBatch(){
+        try{
+            lock.lock();
+            return this.pendingBatches.containsKey(this.nextSequenceNumber);
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * saves the error, only the first error is kept
+     * @param ex IOException | the error
+     */
+    private void setError(IOException ex){
+        try{
+            lock.lock();
+            if (this.error == null){
+                this.error = ex;
+            }
+            this.batchWritten.signalAll();
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * @throws IOException | the first error that occured while writing a batch
+     */
+    private void checkError() throws IOException{
+        try{
+            lock.lock();
+            if (this.error != null){
+                throw new IOException("Couldn't write the fastq file: " + this.error.getMessage(), this.error);
+            }
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * checks if all committed batches are written, must be called after all batches are committed
+     * @throws IOException | if an error occured while writing a batch, or if a batch was never committed
+     */
+    public void close() throws IOException{
+        this.checkError();
+        try{
+            lock.lock();
+            if (! this.pendingBatches.isEmpty()){
+                throw new IOException("Not all batches are written, batch " + this.nextSequenceNumber + " is missing");
+            }
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * the output of 1 batch of reads: the content of the buffers and the files they belong to
+     */
+    public static class OrderedBatch{
+        
+        private final long sequenceNumber;
+        private final ArrayList<Object> writers;
+        private final ArrayList<byte[]> data;
+        private final ArrayList<Integer> lengths;
+        
+        /**
+         * 
+         * @param sequenceNumber long | the sequence number of the read batch
+         */
+        private OrderedBatch(long sequenceNumber){
+            this.sequenceNumber = sequenceNumber;
+            this.writers = new ArrayList();
+            this.data = new ArrayList();
+            this.lengths = new ArrayList();
+        }
+        
+        /**
+         * 
+         * @return long | the sequence number of the read batch
+         */
+        public long getSequenceNumber(){
+            return this.sequenceNumber;
+        }
+        
+        /**
+         * adds the content of the buffer to this batch, the buffer is empty afterwards
+         * @param writer FastqBufferedWriter | the file of the buffer
+         * @param buffer FastqWriteBuffer | the buffer
+         */
+        public void add(FastqBufferedWriter writer, FastqWriteBuffer buffer){
+            if (buffer.isEmpty()){
+                return;
+            }
+            this.writers.add(writer);
+            this.lengths.add(buffer.size());
+            this.data.add(buffer.takeData());
+        }
+        
+        /**
+         * adds the content of both buffers to this batch, both buffers are empty afterwards
+         * @param writer FastqPairBufferedWriter | the files of the buffers
+         * @param buffer1 FastqWriteBuffer | the buffer of read 1
+         * @param buffer2 FastqWriteBuffer | the buffer of read 2
+         */
+        public void add(FastqPairBufferedWriter writer, FastqWriteBuffer buffer1, FastqWriteBuffer buffer2){
+            if (buffer1.isEmpty() && buffer2.isEmpty()){
+                return;
+            }
+            this.writers.add(writer);
+            this.lengths.add(buffer1.size());
+            this.data.add(buffer1.takeData());
+            this.lengths.add(buffer2.size());
+            this.data.add(buffer2.takeData());
+        }
+        
+        /**
+         * writes all buffers of this batch to their files
+         * @throws IOException | if an error occures while writing the files
+         */
+        private void write() throws IOException{
+            int dataIndex = 0;
+            for (Object writer : this.writers){
+                if (writer instanceof FastqPairBufferedWriter){
+                    ((FastqPairBufferedWriter) writer).write(this.data.get(dataIndex), this.lengths.get(dataIndex), this.data.get(dataIndex + 1), this.lengths.get(dataIndex + 1));
+                    dataIndex += 2;
+                }else{
+                    ((FastqBufferedWriter) writer).write(this.data.get(dataIndex), this.lengths.get(dataIndex));
+                    dataIndex++;
+                }
+            }
+        }
+        
+    }
+    
+}
@@ -0,0 +1,48 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
+
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadBatch;
+import java.io.IOException;
+
+/**
+ * a reader of 2 fastq files (read 1 and read 2) that hands out the read pairs in batches.
+ * <br> implementations must be safe to use from multiple threads at the same time.
+ * @author Koen Herten for the KU Leuven
+ */
+public interface FastqPairBatchReader {
+    
+    /**
+     * clears the given batches and fills them with the next reads of both fastq files
+     * <br> read i of batch1 and read i of batch2 are always a pair
+     * @param batch1 FastqReadBatch | the batch for read 1
+     * @param batch2 FastqReadBatch | the batch for read 2, must have the same capacity as batch1
+     * @return false if there are no fastq reads anymore (the batches are empty), else true
+     * @throws IOException | if any error occures while reading the files
+     */
+    public boolean nextBatch(FastqReadBatch batch1, FastqReadBatch batch2) throws IOException;
+    
+    /**
+     * closes this reader
+     * @throws IOException | if any error occures while closing the files
+     */
+    public void close() throws IOException;
+    
+}
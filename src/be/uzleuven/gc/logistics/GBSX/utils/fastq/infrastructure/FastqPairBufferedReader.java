@@ -20,10 +20,11 @@
 package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
 
 import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadBatch;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadPair;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -32,11 +33,15 @@ import java.util.logging.Logger;
  *
  * @author Koen Herten for the KU Leuven
  */
-public class FastqPairBufferedReader {
+public class FastqPairBufferedReader implements FastqPairBatchReader {
     
     private FastqBufferedReader fastqBufferedReader1;
     private FastqBufferedReader fastqBufferedReader2;
     private ReentrantLock lock = new ReentrantLock();
+    /**
+     * the number of batches handed out
+     */
+    private long batchCount = 0;
     
     /**
      * creates 2 new FastqBufferedReader of the given files.
@@ -52,26 +57,64 @@ public class FastqPairBufferedReader {
     }
     
     /**
-     * reads the next lines in the fastq file. and returns it as an fastqread
-     * @return null if there are no fastq files anymore, else a FastqRead
-     * @throws IOException | if any error occures while reading the file
+     * reads the next read of both fastq files, and returns them as a read pair
+     * @return null if there are no fastq reads anymore, else a FastqReadPair
+     * @throws IOException | if any error occures while reading the files
      */
-    public HashMap<String, FastqRead> next() throws IOException{
-        HashMap<String, FastqRead> tmpMap = new HashMap();
+    public FastqReadPair next() throws IOException{
         try{
             lock.lock();
-            tmpMap.put("r1", this.fastqBufferedReader1.next());
-            tmpMap.put("r2", this.fastqBufferedReader2.next());
+            FastqRead fastqRead1 = this.fastqBufferedReader1.readNextRead();
+            FastqRead fastqRead2 = this.fastqBufferedReader2.readNextRead();
+            if (fastqRead1 == null || fastqRead2 == null){
+                return null;
+            }
+            return new FastqReadPair(fastqRead1, fastqRead2);
         }finally{
             lock.unlock();
         }
-        return tmpMap;
     }  
     
+    /**
+     * clears the given batches and fills them with the next reads of both fastq files
+     * <br> read i of batch1 and read i of batch2 are always a pair
+     * <br> the lock is only taken once for the whole batch
+     * @param batch1 FastqReadBatch | the batch for read 1
+     * @param batch2 FastqReadBatch | the batch for read 2, must have the same capacity as batch1
+     * @return false if there are no fastq reads anymore (the batches are empty), else true
+     * @throws IOException | if any error occures while reading the files
+     */
+    @Override
+    public boolean nextBatch(FastqReadBatch batch1, FastqReadBatch batch2) throws IOException{
+        if (batch1.getCapacity() != batch2.getCapacity()){
+            throw new IllegalArgumentException("The batches for read 1 and read 2 must have the same capacity");
+        }
+        batch1.clear();
+        batch2.clear();
+        try{
+            lock.lock();
+            while (! batch1.isFull() 
+                    && this.fastqBufferedReader1.readNextRead(batch1)
+                    && this.fastqBufferedReader2.readNextRead(batch2)){
+            }
+            //a read 1 without a read 2 is no pair
+            batch1.truncate(batch2.size());
+            if (! batch1.isEmpty()){
+                batch1.setSequenceNumber(this.batchCount);
+                batch2.setSequenceNumber(this.batchCount);
+                this.batchCount++;
+            }
+        }finally{
+            lock.unlock();
+        }
+        return ! batch1.isEmpty();
+    }
+    
     /**
      * closes this buffered reader
      * @throws IOException 
      */
+    @Override
     public void close() throws IOException{
         try{
             lock.lock();
@@ -23,6 +23,7 @@ import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -49,6 +50,21 @@ public class FastqPairBufferedWriter {
         this.fastqBufferedWriter2 = new FastqBufferedWriter(fileRead2, ziped);
     }
     
+    /**
+     * creates 2 new FastqBufferedWriter of the given files.
+     * @param fileRead1 | the file for read 1
+     * @param fileRead2 | the file for read 2
+     * @param ziped | boolean if the fastq file is ziped (gz)
+     * @param deflatePool | the threads that compress the BGZF blocks, null for normal gzip files
+     * @throws FileNotFoundException | if the given file isn't found
+     * @throws IOException | if an error occures while opening the file
+     * @see FastqBufferedWriter#FastqBufferedWriter(java.io.File, boolean, java.util.concurrent.ExecutorService) 
+     */
+    public FastqPairBufferedWriter(File fileRead1, File fileRead2, boolean ziped, ExecutorService deflatePool) throws FileNotFoundException, IOException{
+        this.fastqBufferedWriter1 = new FastqBufferedWriter(fileRead1, ziped, deflatePool);
+        this.fastqBufferedWriter2 = new FastqBufferedWriter(fileRead2, ziped, deflatePool);
+    }
+    
     /**
      * reads the next lines in the fastq file. and returns it as an fastqread
      * @return null if there are no fastq files anymore, else a FastqRead
@@ -64,6 +80,46 @@ public class FastqPairBufferedWriter {
         }
     }  
     
+    /**
+     * writes a part of both reads in the fastq files, the reads themselves are not changed
+     * @param fastqRead1 | the first read
+     * @param start1 | the first base of read 1 to write (first is 0)
+     * @param end1 | the end of the bases of read 1 to write (exclusive)
+     * @param fastqRead2 | the second read
+     * @param start2 | the first base of read 2 to write (first is 0)
+     * @param end2 | the end of the bases of read 2 to write (exclusive)
+     * @throws IOException | if any error occures while writing the files
+     */
+    public void write(FastqRead fastqRead1, int start1, int end1, FastqRead fastqRead2, int start2, int end2) throws IOException{
+        try{
+            lock.lock();
+            this.fastqBufferedWriter1.write(fastqRead1, start1, end1);
+            this.fastqBufferedWriter2.write(fastqRead2, start2, end2);
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * writes the given bytes (complete fastq reads) in both fastq files, 
+     * the bytes of read 1 and read 2 must contain the same reads
+     * @param data1 | the bytes of read 1
+     * @param length1 | the number of bytes of read 1
+     * @param data2 | the bytes of read 2
+     * @param length2 | the number of bytes of read 2
+     * @throws IOException | if any error occures while writing the files
+     * @see FastqWriterPool
+     */
+    public void write(byte[] data1, int length1, byte[] data2, int length2) throws IOException{
+        try{
+            lock.lock();
+            this.fastqBufferedWriter1.write(data1, length1);
+            this.fastqBufferedWriter2.write(data2, length2);
+        }finally{
+            lock.unlock();
+        }
+    }
+    
     /**
      * closes this buffered reader
      * @throws IOException 
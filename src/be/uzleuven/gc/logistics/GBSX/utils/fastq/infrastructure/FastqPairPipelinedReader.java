@@ -0,0 +1,179 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
+
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadBatch;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadPair;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * a reader of 2 fastq files (read 1 and read 2) that reads, inflates and parses both files at the same time.
+ * <br> every file has its own FastqPipelinedReader (a read and a parse thread), 
+ * so both files are inflated and parsed on separate threads.
+ * <br> both readers make batches of the same size, so batch i of read 1 and batch i of read 2
+ * contain the same read pairs. the lock is only taken to take the batch of both readers together.
+ * @author Koen Herten for the KU Leuven
+ * @see FastqPipelinedReader
+ */
+public class FastqPairPipelinedReader implements FastqPairBatchReader {
+    
+    private final FastqPipelinedReader fastqReader1;
+    private final FastqPipelinedReader fastqReader2;
+    private final int batchSize;
+    private ReentrantLock lock = new ReentrantLock();
+    /**
+     * the batches of next(), and the next read in them
+     */
+    private FastqReadBatch pairBatch1;
+    private FastqReadBatch pairBatch2;
+    private int pairIndex;
+    
+    /**
+     * creates a new FastqPairPipelinedReader of the given files and starts the read and parse threads of both files.
+     * @param fileRead1 File | the file for read 1
+     * @param fileRead2 File | the file for read 2
+     * @param ziped boolean | if the fastq files are ziped (gz)
+     * @param batchSize int | the number of read pairs in a batch
+     * @param inflateThreads int | the number of threads that inflate a ziped file (for every file)
+     * @param batchQueueSize int | the maximum number of parsed batches that wait for a caller (for every file)
+     * @throws FileNotFoundException | if one of the given files isn't found
+     * @throws IOException | if an error occures while opening the files
+     */
+    public FastqPairPipelinedReader(File fileRead1, File fileRead2, boolean ziped, int batchSize, int inflateThreads, int batchQueueSize) throws FileNotFoundException, IOException{
+        this.batchSize = batchSize;
+        this.fastqReader1 = new FastqPipelinedReader(fileRead1, ziped, batchSize, inflateThreads, batchQueueSize);
+        try{
+            this.fastqReader2 = new FastqPipelinedReader(fileRead2, ziped, batchSize, inflateThreads, batchQueueSize);
+        }catch (IOException ex){
+            this.fastqReader1.close();
+            throw ex;
+        }
+        this.pairIndex = 0;
+    }
+    
+    /**
+     * clears the given batches and fills them with the next reads of both fastq files
+     * <br> read i of batch1 and read i of batch2 are always a pair
+     * @param batch1 FastqReadBatch | the batch for read 1
+     * @param batch2 FastqReadBatch | the batch for read 2
+     * @return false if there are no fastq reads anymore (the batches are empty), else true
+     * @throws IOException | if any error occures while reading the files
+     */
+    @Override
+    public boolean nextBatch(FastqReadBatch batch1, FastqReadBatch batch2) throws IOException{
+        boolean hasReads1;
+        boolean hasReads2;
+        try{
+            lock.lock();
+            hasReads1 = this.fastqReader1.nextBatch(batch1);
+            hasReads2 = this.fastqReader2.nextBatch(batch2);
+        }finally{
+            lock.unlock();
+        }
+        if (! hasReads1 || ! hasReads2){
+            //one of the files has no reads anymore, the reads of the other file have no pair
+            batch1.clear();
+            batch2.clear();
+            return false;
+        }
+        if (batch1.getSequenceNumber() != batch2.getSequenceNumber()){
+            throw new IOException("The batches of read 1 and read 2 are not in lockstep");
+        }
+        //only the last batch of a file can be smaller, a read without pair is dropped
+        int pairs = Math.min(batch1.size(), batch2.size());
+        batch1.truncate(pairs);
+        batch2.truncate(pairs);
+        return true;
+    }
+    
+    /**
+     * reads the next read of both fastq files, and returns them as a read pair
+     * <br> the pairs are taken from a batch of both files, the reads stay valid after the batch is refilled
+     * @return null if there are no fastq reads anymore, else a FastqReadPair
+     * @throws IOException | if any error occures while reading the files
+     */
+    public FastqReadPair next() throws IOException{
+        try{
+            lock.lock();
+            if (this.pairBatch1 == null || this.pairIndex == this.pairBatch1.size()){
+                //a new batch every time, the reads of the previous batch may still be used
+                FastqReadBatch newBatch1 = new FastqReadBatch(this.batchSize);
+                FastqReadBatch newBatch2 = new FastqReadBatch(this.batchSize);
+                if (! this.fastqReader1.nextBatch(newBatch1) || ! this.fastqReader2.nextBatch(newBatch2)){
+                    return null;
+                }
+                int pairs = Math.min(newBatch1.size(), newBatch2.size());
+                newBatch1.truncate(pairs);
+                newBatch2.truncate(pairs);
+                this.pairBatch1 = newBatch1;
+                this.pairBatch2 = newBatch2;
+                this.pairIndex = 0;
+            }
+            FastqReadPair readPair = new FastqReadPair(this.pairBatch1.get(this.pairIndex), this.pairBatch2.get(this.pairIndex));
+            this.pairIndex++;
+            return readPair;
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 
+     * @return QueueDepthMetrics[] | the depth of the queues between the parse threads and the callers (read 1 and read 2)
+     */
+    public QueueDepthMetrics[] getMetrics(){
+        return new QueueDepthMetrics[]{this.fastqReader1.getMetrics(), this.fastqReader2.getMetrics()};
+    }
+    
+    /**
+     * stops the read and parse threads and closes the files
+     * @throws IOException 
+     */
+    @Override
+    public void close() throws IOException{
+        try{
+            this.fastqReader1.close();
+        }finally{
+            this.fastqReader2.close();
+        }
+    }
+    
+    /**
+     * closes first the files
+     * then execute finilize()
+     * @throws Throwable
+     */
+    @Override
+    public void finalize() throws Throwable{
+        try {
+            this.close();
+        } catch (IOException ex) {
+            Logger.getLogger(FastqPairPipelinedReader.class.getName()).log(Level.SEVERE, null, ex);
+        }finally{
+            super.finalize();
+        }
+    }
+    
+}
@@ -0,0 +1,368 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
+
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadBatch;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * a fastq reader that reads the file in a pipeline of 2 threads.
+ * <br> the first thread reads (and inflates if ziped) the file into a bounded ring of byte buffers
+ * <br> the second thread splits the buffers in fastq reads and fills batches of reads
+ * <br> the callers of nextBatch only take the parsed batches, so reading, inflating, parsing
+ * and the processing of the reads all run at the same time.
+ * @author Koen Herten for the KU Leuven
+ */
+public class FastqPipelinedReader implements FastqBatchReader {
+    
+    /**
+     * the size of a byte buffer in the ring
+     */
+    private static final int BUFFER_SIZE = 256 * 1024;
+    /**
+     * the number of byte buffers in the ring
+     */
+    private static final int RING_SIZE = 16;
+    /**
+     * the number of parsed batches that can wait for a caller
+     */
+    private static final int BATCH_QUEUE_SIZE = 8;
+    
+    private final InputStream inputStream;
+    private final ArrayBlockingQueue<RingBuffer> freeBuffers;
+    private final ArrayBlockingQueue<RingBuffer> filledBuffers;
+    private final ArrayBlockingQueue<FastqReadBatch> freeBatches;
+    private final ArrayBlockingQueue<FastqReadBatch> parsedBatches;
+    private final FastqReadBatch endOfFile;
+    private final RingBuffer endOfStream;
+    private final Thread readThread;
+    private final Thread parseThread;
+    private volatile IOException readException;
+    private volatile boolean closed;
+    /**
+     * the number of parsed batches, only used by the parse thread
+     */
+    private long parsedBatchCount;
+    private final QueueDepthMetrics metrics;
+    
+    /**
+     * creates a new FastqPipelinedReader of the given file and starts the read and parse thread.
+     * @param file | the file that must be read
+     * @param ziped | boolean if the fastq file is ziped (gz)
+     * @param batchSize | the number of reads in a parsed batch
+     * @throws FileNotFoundException | if the given file isn't found
+     * @throws IOException | if an error occures while opening the file
+     */
+    public FastqPipelinedReader(File file, boolean ziped, int batchSize) throws FileNotFoundException, IOException{
+        this(file, ziped, batchSize, 1);
+    }
+    
+    /**
+     * creates a new FastqPipelinedReader of the given file and starts the read and parse thread.
+     * <br> if more than 1 inflate thread is given, the members of a multi-member gzip file (like BGZF)
+     * are inflated in parallel.
+     * @param file | the file that must be read
+     * @param ziped | boolean if the fastq file is ziped (gz)
+     * @param batchSize | the number of reads in a parsed batch
+     * @param inflateThreads | the number of threads that inflate a ziped file
+     * @throws FileNotFoundException | if the given file isn't found
+     * @throws IOException | if an error occures while opening the file
+     * @see ParallelGzipInputStream
+     */
+    public FastqPipelinedReader(File file, boolean ziped, int batchSize, int inflateThreads) throws FileNotFoundException, IOException{
+        this(file, ziped, batchSize, inflateThreads, BATCH_QUEUE_SIZE * 2);
+    }
+    
+    /**
+     * creates a new FastqPipelinedReader of the given file and starts the read and parse thread.
+     * <br> if more than 1 inflate thread is given, the members of a multi-member gzip file (like BGZF)
+     * are inflated in parallel.
+     * @param file | the file that must be read
+     * @param ziped | boolean if the fastq file is ziped (gz)
+     * @param batchSize | the number of reads in a parsed batch
+     * @param inflateThreads | the number of threads that inflate a ziped file
+     * @param batchQueueSize | the maximum number of parsed batches that wait for a caller
+     * @throws FileNotFoundException | if the given file isn't found
+     * @throws IOException | if an error occures while opening the file
+     * @see ParallelGzipInputStream
+     */
+    public FastqPipelinedReader(File file, boolean ziped, int batchSize, int inflateThreads, int batchQueueSize) throws FileNotFoundException, IOException{
+        if (ziped && inflateThreads > 1){
+            this.inputStream = new ParallelGzipInputStream(file, inflateThreads);
+        }else if (ziped){
+            this.inputStream = new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE);
+        }else{
+            this.inputStream = new FileInputStream(file);
+        }
+        this.freeBuffers = new ArrayBlockingQueue(RING_SIZE);
+        this.filledBuffers = new ArrayBlockingQueue(RING_SIZE + 1);
+        for (int i = 0; i < RING_SIZE; i++){
+            this.freeBuffers.add(new RingBuffer(BUFFER_SIZE));
+        }
+        //the callers hand in their own batch for every parsed batch, so the number of batches stays the same
+        batchQueueSize = Math.max(1, batchQueueSize);
+        this.freeBatches = new ArrayBlockingQueue(batchQueueSize);
+        this.parsedBatches = new ArrayBlockingQueue(batchQueueSize + 1);
+        for (int i = 0; i < batchQueueSize; i++){
+            this.freeBatches.add(new FastqReadBatch(batchSize));
+        }
+        this.metrics = new QueueDepthMetrics("read queue " + file.getName(), batchQueueSize);
+        this.endOfFile = new FastqReadBatch(1);
+        this.endOfStream = new RingBuffer(0);
+        this.closed = false;
+        this.readThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readFile();
+            }
+        }, "fastq-read-" + file.getName());
+        this.parseThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                parseBuffers();
+            }
+        }, "fastq-parse-" + file.getName());
+        this.readThread.setDaemon(true);
+        this.parseThread.setDaemon(true);
+        this.readThread.start();
+        this.parseThread.start();
+    }
+    
+    /**
+     * clears the given batch and fills it with the next parsed batch
+     * <br> the reads are not copied: the batch takes over the reads (and capacity) of the parsed batch
+     * @param batch FastqReadBatch | the batch to refill
+     * @return false if there are no fastq reads anymore (the batch is empty), else true
+     * @throws IOException | if any error occured while reading the file
+     */
+    @Override
+    public boolean nextBatch(FastqReadBatch batch) throws IOException{
+        batch.clear();
+        FastqReadBatch parsedBatch = this.parsedBatches.poll();
+        if (parsedBatch == null){
+            this.metrics.addEmptyTake();
+            try {
+                parsedBatch = this.parsedBatches.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for fastq reads", ex);
+            }
+        }
+        if (parsedBatch == this.endOfFile){
+            //put it back, so all other callers also see the end of the file
+            this.parsedBatches.add(this.endOfFile);
+            if (this.readException != null){
+                throw new IOException("Error while reading the fastq file", this.readException);
+            }
+            return false;
+        }
+        batch.swap(parsedBatch);
+        parsedBatch.clear();
+        this.freeBatches.add(parsedBatch);
+        return true;
+    }
+    
+    /**
+     * the read thread: fills the free buffers of the ring with the (inflated) file
+     */
+    private void readFile(){
+        try{
+            while (true){
+                RingBuffer buffer = this.freeBuffers.take();
+                buffer.length = this.readFully(buffer.data);
+                if (buffer.length <= 0){
+                    break;
+                }
+                this.filledBuffers.put(buffer);
+            }
+        } catch (IOException ex) {
+            if (! this.closed){
+                Logger.getLogger(FastqPipelinedReader.class.getName()).log(Level.SEVERE, null, ex);
+                this.readException = ex;
+            }
+        } catch (InterruptedException ex) {
+            return;
+        }
+        this.filledBuffers.add(this.endOfStream);
+    }
+    
+    /**
+     * reads from the input stream until the buffer is full or the end of the stream is reached
+     * @param data byte[] | the buffer to fill
+     * @return int | the number of bytes read, 0 at the end of the stream
+     * @throws IOException | if an error occures while reading
+     */
+    private int readFully(byte[] data) throws IOException{
+        int length = 0;
+        int read;
+        while (length < data.length && (read = this.inputStream.read(data, length, data.length - length)) != -1){
+            length += read;
+        }
+        return length;
+    }
+    
+    /**
+     * the parse thread: splits the filled buffers in lines, and combines every 4 lines to a fastq read
+     * <br> the description, sequence and quality lines are copied in the data block of the batch,
+     * the reads are made on that block, so no Strings or arrays are created per read.
+     */
+    private void parseBuffers(){
+        try{
+            FastqReadBatch batch = this.freeBatches.take();
+            int[] lineOffsets = new int[6];
+            int lineNumber = 0;
+            int lineStart = 0;
+            RingBuffer buffer;
+            while ((buffer = this.filledBuffers.take()) != this.endOfStream){
+                int start = 0;
+                for (int i = 0; i < buffer.length; i++){
+                    if (buffer.data[i] == '\n'){
+                        if (lineNumber != 2){
+                            batch.appendData(buffer.data, start, i);
+                        }
+                        start = i + 1;
+                        batch = this.endLine(batch, lineOffsets, lineNumber, lineStart);
+                        lineNumber = (lineNumber + 1) % 4;
+                        lineStart = batch.getDataLength();
+                    }
+                }
+                //the last line of the buffer continues in the next buffer
+                if (lineNumber != 2){
+                    batch.appendData(buffer.data, start, buffer.length);
+                }
+                this.freeBuffers.put(buffer);
+            }
+            if (lineNumber == 3 && batch.getDataLength() > lineStart){
+                //last line without a newline
+                batch = this.endLine(batch, lineOffsets, lineNumber, lineStart);
+            }
+            if (! batch.isEmpty()){
+                this.putParsedBatch(batch);
+            }
+        } catch (InterruptedException ex) {
+            return;
+        }
+        this.parsedBatches.add(this.endOfFile);
+    }
+    
+    /**
+     * stores the offsets of the ended line, and adds a new read to the batch if it is the quality line
+     * @param batch FastqReadBatch | the batch that is filled, the line is the last data in its data block
+     * @param lineOffsets int[] | the start and end of the description, sequence and quality line of the current read
+     * @param lineNumber int | the line number of the line in the read (0 to 3), the + line (2) is not stored
+     * @param lineStart int | the start of the line in the data block
+     * @return FastqReadBatch | the batch to fill with the next reads (a new batch if the given batch is full)
+     * @throws InterruptedException | if interrupted while waiting for a free batch
+     */
+    private FastqReadBatch endLine(FastqReadBatch batch, int[] lineOffsets, int lineNumber, int lineStart) throws InterruptedException{
+        if (lineNumber == 2){
+            return batch;
+        }
+        byte[] data = batch.getData();
+        int lineEnd = batch.getDataLength();
+        if (lineEnd > lineStart && data[lineEnd - 1] == '\r'){
+            lineEnd--;
+        }
+        int index = (lineNumber == 3) ? 4 : lineNumber * 2;
+        lineOffsets[index] = lineStart;
+        lineOffsets[index + 1] = lineEnd;
+        if (lineNumber < 3){
+            return batch;
+        }
+        batch.add(new FastqRead(data, lineOffsets[0], lineOffsets[1], lineOffsets[2], lineOffsets[3], lineOffsets[4], lineOffsets[5]));
+        if (batch.isFull()){
+            this.putParsedBatch(batch);
+            return this.freeBatches.take();
+        }
+        return batch;
+    }
+    
+    /**
+     * numbers the batch, and puts it in the queue of the parsed batches
+     * @param batch FastqReadBatch | the parsed batch
+     * @throws InterruptedException | if interrupted while waiting for space in the queue
+     */
+    private void putParsedBatch(FastqReadBatch batch) throws InterruptedException{
+        batch.setSequenceNumber(this.parsedBatchCount++);
+        //if there are no free batches, the parse thread must wait for the callers
+        this.metrics.addPut(this.parsedBatches.size(), this.freeBatches.isEmpty());
+        this.parsedBatches.put(batch);
+    }
+    
+    /**
+     * 
+     * @return QueueDepthMetrics | the depth of the queue between the parse thread and the callers
+     */
+    public QueueDepthMetrics getMetrics(){
+        return this.metrics;
+    }
+    
+    /**
+     * stops the read and parse thread and closes the file
+     * @throws IOException 
+     */
+    @Override
+    public void close() throws IOException{
+        this.closed = true;
+        this.readThread.interrupt();
+        this.parseThread.interrupt();
+        this.inputStream.close();
+    }
+    
+    /**
+     * closes first the file
+     * then execute finilize()
+     * @throws Throwable
+     */
+    @Override
+    public void finalize() throws Throwable{
+        try {
+            this.close();
+        } catch (IOException ex) {
+            Logger.getLogger(FastqPipelinedReader.class.getName()).log(Level.SEVERE, null, ex);
+        }finally{
+            super.finalize();
+        }
+    }
+    
+    /**
+     * a buffer of the ring: the data and the number of used bytes
+     */
+    private static class RingBuffer{
+        
+        private final byte[] data;
+        private int length;
+        
+        private RingBuffer(int size){
+            this.data = new byte[size];
+            this.length = 0;
+        }
+    }
+    
+}
@@ -0,0 +1,249 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
+
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqReadBatch;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * the read stage of the demultiplexing: a thread that reads batches from a reader (single or paired),
+ * and puts them in a bounded queue.
+ * <br> the demultiplex threads take the batches from the queue, so they never wait on the lock of the reader,
+ * and the reading is done while the reads of the previous batches are processed.
+ * <br> the number of batches in memory is bounded by the queue size.
+ * @author Koen Herten for the KU Leuven
+ * @see QueueDepthMetrics
+ */
+public class FastqQueuedReader implements FastqBatchReader, FastqPairBatchReader {
+    
+    private final FastqBatchReader reader;
+    private final FastqPairBatchReader pairReader;
+    /**
+     * the batches (1 for single reads, 2 for pairs) read by the read thread, and the empty batches
+     */
+    private final ArrayBlockingQueue<FastqReadBatch[]> filledBatches;
+    private final ArrayBlockingQueue<FastqReadBatch[]> freeBatches;
+    private final FastqReadBatch[] endOfFile;
+    private final QueueDepthMetrics metrics;
+    private final Thread readThread;
+    private volatile IOException readException;
+    
+    /**
+     * creates a new FastqQueuedReader for single reads, and starts the read thread
+     * @param reader FastqBatchReader | the reader of the fastq file
+     * @param batchSize int | the number of reads in a batch
+     * @param queueSize int | the maximum number of read batches that wait in the queue
+     */
+    public FastqQueuedReader(FastqBatchReader reader, int batchSize, int queueSize){
+        this(reader, null, 1, batchSize, queueSize);
+    }
+    
+    /**
+     * creates a new FastqQueuedReader for read pairs, and starts the read thread
+     * @param pairReader FastqPairBatchReader | the reader of both fastq files
+     * @param batchSize int | the number of read pairs in a batch
+     * @param queueSize int | the maximum number of read batches that wait in the queue
+     */
+    public FastqQueuedReader(FastqPairBatchReader pairReader, int batchSize, int queueSize){
+        this(null, pairReader, 2, batchSize, queueSize);
+    }
+    
+    /**
+     * 
+     * @param reader FastqBatchReader | the reader of single reads, null for pairs
+     * @param pairReader FastqPairBatchReader | the reader of pairs, null for single reads
+     * @param batchesPerItem int | 1 for single reads, 2 for pairs
+     * @param batchSize int | the number of reads in a batch
+     * @param queueSize int | the maximum number of read batches that wait in the queue
+     */
+    private FastqQueuedReader(FastqBatchReader reader, FastqPairBatchReader pairReader, int batchesPerItem, int batchSize, int queueSize){
+        this.reader = reader;
+        this.pairReader = pairReader;
+        queueSize = Math.max(1, queueSize);
+        //the callers hand in their own batches for every filled batch, so the number of batches stays the same
+        this.freeBatches = new ArrayBlockingQueue(queueSize);
+        this.filledBatches = new ArrayBlockingQueue(queueSize + 1);
+        for (int i = 0; i < queueSize; i++){
+            FastqReadBatch[] batches = new FastqReadBatch[batchesPerItem];
+            for (int b = 0; b < batchesPerItem; b++){
+                batches[b] = new FastqReadBatch(batchSize);
+            }
+            this.freeBatches.add(batches);
+        }
+        this.endOfFile = new FastqReadBatch[0];
+        this.metrics = new QueueDepthMetrics("read queue", queueSize);
+        this.readThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readBatches();
+            }
+        }, "fastq-read-stage");
+        this.readThread.setDaemon(true);
+        this.readThread.start();
+    }
+    
+    /**
+     * the read thread: fills the free batches and puts them in the queue, till the end of the file
+     */
+    private void readBatches(){
+        try{
+            while (true){
+                //if there are no free batches, all batches wait in the queue
+                boolean full = this.freeBatches.isEmpty();
+                FastqReadBatch[] batches = this.freeBatches.take();
+                boolean read;
+                if (this.pairReader == null){
+                    read = this.reader.nextBatch(batches[0]);
+                }else{
+                    read = this.pairReader.nextBatch(batches[0], batches[1]);
+                }
+                if (! read){
+                    break;
+                }
+                this.metrics.addPut(this.filledBatches.size(), full);
+                this.filledBatches.put(batches);
+            }
+        } catch (IOException ex) {
+            this.readException = ex;
+        } catch (InterruptedException ex) {
+            //the reader is closed
+        }
+        this.filledBatches.add(this.endOfFile);
+    }
+    
+    /**
+     * clears the given batch and fills it with the next batch of the queue
+     * <br> the reads are not copied: the batch takes over the reads of the queued batch
+     * @param batch FastqReadBatch | the batch to refill
+     * @return false if there are no fastq reads anymore (the batch is empty), else true
+     * @throws IOException | if any error occured while reading the file
+     */
+    @Override
+    public boolean nextBatch(FastqReadBatch batch) throws IOException{
+        if (this.pairReader != null){
+            throw new UnsupportedOperationException("This reader reads pairs");
+        }
+        FastqReadBatch[] batches = this.takeBatches();
+        if (batches == null){
+            batch.clear();
+            return false;
+        }
+        batch.swap(batches[0]);
+        batches[0].clear();
+        this.freeBatches.add(batches);
+        return true;
+    }
+    
+    /**
+     * clears the given batches and fills them with the next batches of the queue
+     * <br> the reads are not copied: the batches take over the reads of the queued batches
+     * @param batch1 FastqReadBatch | the batch for read 1
+     * @param batch2 FastqReadBatch | the batch for read 2
+     * @return false if there are no fastq reads anymore (the batches are empty), else true
+     * @throws IOException | if any error occured while reading the files
+     */
+    @Override
+    public boolean nextBatch(FastqReadBatch batch1, FastqReadBatch batch2) throws IOException{
+        if (this.pairReader == null){
+            throw new UnsupportedOperationException("This reader reads single reads");
+        }
+        FastqReadBatch[] batches = this.takeBatches();
+        if (batches == null){
+            batch1.clear();
+            batch2.clear();
+            return false;
+        }
+        batch1.swap(batches[0]);
+        batch2.swap(batches[1]);
+        batches[0].clear();
+        batches[1].clear();
+        this.freeBatches.add(batches);
+        return true;
+    }
+    
+    /**
+     * takes the next filled batches from the queue
+     * @return FastqReadBatch[] | the filled batches, null at the end of the file
+     * @throws IOException | if any error occured while reading the files
+     */
+    private FastqReadBatch[] takeBatches() throws IOException{
+        FastqReadBatch[] batches = this.filledBatches.poll();
+        if (batches == null){
+            this.metrics.addEmptyTake();
+            try {
+                batches = this.filledBatches.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for fastq reads", ex);
+            }
+        }
+        if (batches == this.endOfFile){
+            //put it back, so all other callers also see the end of the file
+            this.filledBatches.add(this.endOfFile);
+            if (this.readException != null){
+                throw new IOException("Error while reading the fastq file", this.readException);
+            }
+            return null;
+        }
+        return batches;
+    }
+    
+    /**
+     * 
+     * @return QueueDepthMetrics | the depth of the queue between the read thread and the demultiplex threads
+     */
+    public QueueDepthMetrics getMetrics(){
+        return this.metrics;
+    }
+    
+    /**
+     * stops the read thread and closes the reader
+     * @throws IOException | if any error occures while closing the files
+     */
+    @Override
+    public void close() throws IOException{
+        this.readThread.interrupt();
+        if (this.pairReader == null){
+            this.reader.close();
+        }else{
+            this.pairReader.close();
+        }
+    }
+    
+    /**
+     * closes first the file
+     * then execute finilize()
+     * @throws Throwable
+     */
+    @Override
+    public void finalize() throws Throwable{
+        try {
+            this.close();
+        } catch (IOException ex) {
+            Logger.getLogger(FastqQueuedReader.class.getName()).log(Level.SEVERE, null, ex);
+        }finally{
+            super.finalize();
+        }
+    }
+    
+}
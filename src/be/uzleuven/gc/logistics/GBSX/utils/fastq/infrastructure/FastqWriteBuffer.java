@@ -0,0 +1,139 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
+
+import be.uzleuven.gc.logistics.GBSX.utils.fastq.model.FastqRead;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * a growing byte buffer where complete fastq reads are written to.
+ * <br> used by 1 thread to collect the reads of 1 output file, before the bytes are given to a FastqWriterPool.
+ * <br> this buffer is not thread safe.
+ * @author Koen Herten for the KU Leuven
+ * @see FastqWriterPool
+ */
+public class FastqWriteBuffer extends OutputStream {
+    
+    /**
+     * the first size of the buffer
+     */
+    private static final int INITIAL_SIZE = 1024;
+    
+    private final int flushSize;
+    private byte[] data;
+    private int length;
+    
+    /**
+     * creates a new empty FastqWriteBuffer
+     * @param flushSize int | the number of bytes after which the buffer is full
+     */
+    public FastqWriteBuffer(int flushSize){
+        this.flushSize = flushSize;
+        this.data = new byte[Math.min(INITIAL_SIZE, flushSize)];
+        this.length = 0;
+    }
+    
+    /**
+     * writes the complete read to the buffer
+     * @param fastq FastqRead | the read
+     * @throws IOException | never thrown
+     */
+    public void write(FastqRead fastq) throws IOException{
+        fastq.writeTo(this);
+    }
+    
+    /**
+     * writes a part of the read to the buffer, the read itself is not changed
+     * @param fastq FastqRead | the read
+     * @param start int | the first base to write (first is 0)
+     * @param end int | the end of the bases to write (exclusive)
+     * @throws IOException | never thrown
+     */
+    public void write(FastqRead fastq, int start, int end) throws IOException{
+        fastq.writeTo(this, start, end);
+    }
+
+    @Override
+    public void write(int b){
+        this.ensureCapacity(this.length + 1);
+        this.data[this.length] = (byte) b;
+        this.length++;
+    }
+    
+    @Override
+    public void write(byte[] bytes, int offset, int len){
+        this.ensureCapacity(this.length + len);
+        System.arraycopy(bytes, offset, this.data, this.length, len);
+        this.length += len;
+    }
+    
+    /**
+     * grows the buffer (doubling) till the capacity is reached
+     * @param capacity int | the needed capacity
+     */
+    private void ensureCapacity(int capacity){
+        if (capacity > this.data.length){
+            int newSize = this.data.length * 2;
+            while (newSize < capacity){
+                newSize *= 2;
+            }
+            this.data = Arrays.copyOf(this.data, newSize);
+        }
+    }
+    
+    /**
+     * 
+     * @return boolean | true if the buffer contains at least the flush size of bytes
+     */
+    public boolean isFull(){
+        return this.length >= this.flushSize;
+    }
+    
+    /**
+     * 
+     * @return boolean | true if the buffer contains no bytes
+     */
+    public boolean isEmpty(){
+        return this.length == 0;
+    }
+    
+    /**
+     * 
+     * @return int | the number of bytes in the buffer
+     */
+    public int size(){
+        return this.length;
+    }
+    
+    /**
+     * takes the bytes of this buffer, the buffer is empty afterwards.
+     * <br> the returned array isn't used by the buffer anymore, only the first size() bytes are used
+     * @return byte[] | the bytes of the buffer
+     */
+    byte[] takeData(){
+        byte[] takenData = this.data;
+        this.data = new byte[Math.min(takenData.length, this.flushSize + INITIAL_SIZE)];
+        this.length = 0;
+        return takenData;
+    }
+    
+}
@@ -0,0 +1,215 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * a pool of threads that write the filled FastqWriteBuffers to their files.
+ * <br> the demultiplex threads fill their own buffers per output file, and give the full buffers to this pool,
+ * so they don't have to wait on the disk, or on other threads writing the same file.
+ * <br> a buffer is always written as a whole, the buffers of a pair of files are written together,
+ * so both files keep the reads in the same order.
+ * <br> if more than the maximum of buffers wait to be written, the thread that gives the buffer writes it itself.
+ * @author Koen Herten for the KU Leuven
+ * @see FastqWriteBuffer
+ */
+public class FastqWriterPool {
+    
+    /**
+     * the maximum number of bytes that all buffers of 1 demultiplex thread may use
+     */
+    private static final int THREAD_BUFFER_BYTES = 8 * 1024 * 1024;
+    private static final int MINIMUM_FLUSH_SIZE = 4 * 1024;
+    private static final int MAXIMUM_FLUSH_SIZE = 64 * 1024;
+    
+    private final ThreadPoolExecutor executor;
+    private final QueueDepthMetrics metrics;
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * the first error that occured while writing a buffer
+     */
+    private IOException error;
+    
+    /**
+     * creates a new FastqWriterPool
+     * @param threads int | the number of threads that write the buffers
+     * @param maximumPendingBuffers int | the maximum number of buffers that can wait to be written
+     */
+    public FastqWriterPool(int threads, int maximumPendingBuffers){
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, 
+                new ArrayBlockingQueue<Runnable>(maximumPendingBuffers), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "fastq-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.metrics = new QueueDepthMetrics("write queue", maximumPendingBuffers);
+        this.error = null;
+    }
+    
+    /**
+     * calculates the flush size of the buffers, so all buffers of 1 thread use at most 8 MB
+     * @param numberOfFiles int | the number of files 1 thread writes to
+     * @return int | the flush size for the FastqWriteBuffers (between 4 kB and 64 kB)
+     */
+    public static int getFlushSize(int numberOfFiles){
+        int flushSize = THREAD_BUFFER_BYTES / Math.max(1, numberOfFiles);
+        return Math.max(MINIMUM_FLUSH_SIZE, Math.min(MAXIMUM_FLUSH_SIZE, flushSize));
+    }
+    
+    /**
+     * gives the content of the buffer to the pool, the buffer is empty afterwards
+     * @param writer FastqBufferedWriter | the file of the buffer
+     * @param buffer FastqWriteBuffer | the buffer
+     * @throws IOException | if an error occured while writing an earlier buffer
+     */
+    public void write(final FastqBufferedWriter writer, FastqWriteBuffer buffer) throws IOException{
+        this.checkError();
+        if (buffer.isEmpty()){
+            return;
+        }
+        final int length = buffer.size();
+        final byte[] data = buffer.takeData();
+        this.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writer.write(data, length);
+                } catch (IOException ex) {
+                    setError(ex);
+                }
+            }
+        });
+    }
+    
+    /**
+     * gives the content of both buffers to the pool, both buffers are empty afterwards
+     * <br> the buffers must contain the same reads (read 1 and read 2)
+     * @param writer FastqPairBufferedWriter | the files of the buffers
+     * @param buffer1 FastqWriteBuffer | the buffer of read 1
+     * @param buffer2 FastqWriteBuffer | the buffer of read 2
+     * @throws IOException | if an error occured while writing an earlier buffer
+     */
+    public void write(final FastqPairBufferedWriter writer, FastqWriteBuffer buffer1, FastqWriteBuffer buffer2) throws IOException{
+        this.checkError();
+        if (buffer1.isEmpty() && buffer2.isEmpty()){
+            return;
+        }
+        final int length1 = buffer1.size();
+        final byte[] data1 = buffer1.takeData();
+        final int length2 = buffer2.size();
+        final byte[] data2 = buffer2.takeData();
+        this.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writer.write(data1, length1, data2, length2);
+                } catch (IOException ex) {
+                    setError(ex);
+                }
+            }
+        });
+    }
+    
+    /**
+     * gives the write to the threads of the pool, and keeps the depth of the queue
+     * <br> if the queue is full, the write is done by the calling thread
+     * @param write Runnable | the write of 1 or 2 buffers
+     */
+    private void execute(final Runnable write){
+        BlockingQueue<Runnable> queue = this.executor.getQueue();
+        this.metrics.addPut(queue.size(), queue.remainingCapacity() == 0);
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write.run();
+                if (executor.getQueue().isEmpty()){
+                    //the writer threads have to wait for the next buffer
+                    metrics.addEmptyTake();
+                }
+            }
+        });
+    }
+    
+    /**
+     * 
+     * @return QueueDepthMetrics | the depth of the queue of buffers that wait to be written
+     */
+    public QueueDepthMetrics getMetrics(){
+        return this.metrics;
+    }
+    
+    /**
+     * saves the error, only the first error is kept
+     * @param ex IOException | the error
+     */
+    private void setError(IOException ex){
+        try{
+            lock.lock();
+            if (this.error == null){
+                this.error = ex;
+            }
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * @throws IOException | the first error that occured while writing a buffer
+     */
+    private void checkError() throws IOException{
+        try{
+            lock.lock();
+            if (this.error != null){
+                throw new IOException("Couldn't write the fastq file: " + this.error.getMessage(), this.error);
+            }
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * waits till all given buffers are written, and stops the threads of this pool.
+     * <br> must be called after all buffers are given, and before the files are closed
+     * @throws IOException | if an error occured while writing a buffer
+     */
+    public void close() throws IOException{
+        this.executor.shutdown();
+        try {
+            while (! this.executor.awaitTermination(1, TimeUnit.MINUTES)){
+                //wait till all buffers are written
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the fastq files", ex);
+        }
+        this.checkError();
+    }
+    
+}
@@ -0,0 +1,581 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * an input stream that inflates a multi-member gzip file (like BGZF) on a pool of threads.
+ * <br> the member boundaries are found with the block size of the BGZF extra field, or
+ * by scanning for the next gzip member header.
+ * <br> the members are inflated in parallel, and given back in the order of the file.
+ * <br> a member of which the boundary can't be found (a normal single member gzip file, or
+ * a header found inside the compressed data) is inflated streaming on the calling thread, so every
+ * gzip file can be read.
+ * @author Koen Herten for the KU Leuven
+ */
+public class ParallelGzipInputStream extends InputStream {
+    
+    /**
+     * the maximum compressed size of a member that is inflated in parallel
+     */
+    private static final int MAXIMUM_MEMBER_SIZE = 4 * 1024 * 1024;
+    /**
+     * the maximum inflated size of a member that is inflated in parallel
+     */
+    private static final int MAXIMUM_INFLATED_SIZE = 64 * 1024 * 1024;
+    /**
+     * the number of members that can be inflated in advance per thread
+     */
+    private static final int MEMBERS_PER_THREAD = 4;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+    private static final int GZIP_DEFLATE = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int FRESERVED = 0xe0;
+    
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final long fileLength;
+    private final ExecutorService inflatePool;
+    private final int maximumPendingMembers;
+    private final ArrayDeque<PendingMember> pendingMembers;
+    private final byte[] scanBuffer;
+    /**
+     * the offset of the first member that isn't given to the inflate pool yet
+     */
+    private long nextMemberOffset;
+    /**
+     * true if there are no members anymore after nextMemberOffset
+     */
+    private boolean endOfMembers;
+    private byte[] currentData;
+    private int currentPosition;
+    private int currentLength;
+    private MemberStream memberStream;
+    private boolean closed;
+    
+    /**
+     * creates a new ParallelGzipInputStream of the given file
+     * @param file File | the gzip file
+     * @param threads int | the number of threads that inflate the members
+     * @throws FileNotFoundException | if the given file isn't found
+     * @throws IOException | if an error occures while opening the file
+     */
+    public ParallelGzipInputStream(File file, int threads) throws FileNotFoundException, IOException{
+        if (threads < 1){
+            throw new IllegalArgumentException("At least one inflate thread is needed");
+        }
+        this.randomAccessFile = new RandomAccessFile(file, "r");
+        this.channel = this.randomAccessFile.getChannel();
+        this.fileLength = this.channel.size();
+        this.inflatePool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "gzip-inflate");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.maximumPendingMembers = threads * MEMBERS_PER_THREAD;
+        this.pendingMembers = new ArrayDeque();
+        this.scanBuffer = new byte[MAXIMUM_MEMBER_SIZE];
+        this.nextMemberOffset = 0;
+        this.endOfMembers = false;
+        this.currentData = new byte[0];
+        this.currentPosition = 0;
+        this.currentLength = 0;
+        this.memberStream = null;
+        this.closed = false;
+    }
+    
+    @Override
+    public int read() throws IOException{
+        byte[] oneByte = new byte[1];
+        if (this.read(oneByte, 0, 1) == -1){
+            return -1;
+        }
+        return oneByte[0] & 0xff;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException{
+        if (this.closed){
+            throw new IOException("Stream closed");
+        }
+        if (length == 0){
+            return 0;
+        }
+        while (true){
+            if (this.currentPosition < this.currentLength){
+                int copied = Math.min(length, this.currentLength - this.currentPosition);
+                System.arraycopy(this.currentData, this.currentPosition, buffer, offset, copied);
+                this.currentPosition += copied;
+                return copied;
+            }
+            if (this.memberStream != null){
+                int read = this.memberStream.read(buffer, offset, length);
+                if (read > 0){
+                    return read;
+                }
+                //the member is completely inflated, continue after it
+                this.nextMemberOffset = this.memberStream.getMemberEnd();
+                this.memberStream = null;
+            }
+            if (! this.nextMember()){
+                return -1;
+            }
+        }
+    }
+    
+    /**
+     * makes the next member the current member
+     * @return false if there are no members anymore
+     * @throws IOException | if an error occures while reading or inflating
+     */
+    private boolean nextMember() throws IOException{
+        this.dispatchMembers();
+        PendingMember pendingMember = this.pendingMembers.poll();
+        if (pendingMember == null){
+            return false;
+        }
+        byte[] data = null;
+        if (pendingMember.future != null){
+            try {
+                data = pendingMember.future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while inflating", ex);
+            } catch (ExecutionException ex) {
+                if (! (ex.getCause() instanceof InvalidMemberException)){
+                    throw new IOException("Error while inflating the gzip file", ex.getCause());
+                }
+            }
+        }
+        if (data == null){
+            //the boundary of this member is unknown: all members after it are wrong
+            for (PendingMember laterMember : this.pendingMembers){
+                if (laterMember.future != null){
+                    laterMember.future.cancel(true);
+                }
+            }
+            this.pendingMembers.clear();
+            this.endOfMembers = false;
+            this.memberStream = new MemberStream(pendingMember.offset);
+            this.currentLength = 0;
+            this.currentPosition = 0;
+        }else{
+            this.currentData = data;
+            this.currentLength = data.length;
+            this.currentPosition = 0;
+        }
+        return true;
+    }
+    
+    /**
+     * gives the next members to the inflate pool, until enough members are pending
+     * @throws IOException | if an error occures while reading the file
+     */
+    private void dispatchMembers() throws IOException{
+        while (! this.endOfMembers && this.pendingMembers.size() < this.maximumPendingMembers){
+            long offset = this.nextMemberOffset;
+            int headerLength = this.readAt(offset, this.scanBuffer, 0, 18);
+            if (headerLength < 18 || ! this.isMemberHeader(this.scanBuffer, 0)){
+                //no member anymore (trailing garbage is ignored, like GZIPInputStream does)
+                this.endOfMembers = true;
+                return;
+            }
+            int blockSize = this.getBgzfBlockSize(this.scanBuffer);
+            if (blockSize > 0){
+                byte[] member = new byte[blockSize];
+                if (this.readAt(offset, member, 0, blockSize) < blockSize){
+                    throw new EOFException("Unexpected end of the BGZF file");
+                }
+                this.submit(offset, member, blockSize);
+                this.nextMemberOffset = offset + blockSize;
+                continue;
+            }
+            //no BGZF: scan for the next member header, the scanned window grows until the header is found
+            int length = 0;
+            int nextHeader = -1;
+            int windowSize = STREAM_BUFFER_SIZE;
+            boolean endOfFile = false;
+            while (nextHeader == -1 && ! endOfFile && length < this.scanBuffer.length){
+                int scanStart = Math.max(18, length - 9);
+                int read = this.readAt(offset + length, this.scanBuffer, length, Math.min(windowSize, this.scanBuffer.length) - length);
+                length += read;
+                endOfFile = offset + length >= this.fileLength;
+                for (int i = scanStart; i < length - 9 && nextHeader == -1; i++){
+                    if (this.isMemberHeader(this.scanBuffer, i)){
+                        nextHeader = i;
+                    }
+                }
+                windowSize *= 2;
+            }
+            if (nextHeader != -1){
+                byte[] member = new byte[nextHeader];
+                System.arraycopy(this.scanBuffer, 0, member, 0, nextHeader);
+                this.submit(offset, member, nextHeader);
+                this.nextMemberOffset = offset + nextHeader;
+            }else if (endOfFile){
+                //last member of the file
+                byte[] member = new byte[length];
+                System.arraycopy(this.scanBuffer, 0, member, 0, length);
+                this.submit(offset, member, length);
+                this.nextMemberOffset = offset + length;
+                this.endOfMembers = true;
+            }else{
+                //a large member: inflated streaming when it is reached
+                this.pendingMembers.add(new PendingMember(offset, null));
+                this.endOfMembers = true;
+            }
+        }
+    }
+    
+    /**
+     * gives the member to the inflate pool
+     * @param offset long | the offset of the member in the file
+     * @param member byte[] | the compressed member
+     * @param length int | the length of the member
+     */
+    private void submit(long offset, final byte[] member, final int length){
+        Future<byte[]> future = this.inflatePool.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return inflateMember(member, length);
+            }
+        });
+        this.pendingMembers.add(new PendingMember(offset, future));
+    }
+    
+    /**
+     * inflates a complete gzip member
+     * @param member byte[] | the compressed member, header and trailer included
+     * @param length int | the length of the member
+     * @return byte[] | the inflated data
+     * @throws InvalidMemberException | if the data isn't exactly one complete member, or is too large
+     * @throws DataFormatException | if the compressed data is invalid
+     */
+    private static byte[] inflateMember(byte[] member, int length) throws InvalidMemberException, DataFormatException{
+        int headerLength = getHeaderLength(member, length);
+        if (headerLength < 0 || length - headerLength < 8){
+            throw new InvalidMemberException();
+        }
+        long expectedSize = readUnsignedInt(member, length - 4);
+        long expectedCrc = readUnsignedInt(member, length - 8);
+        //the size in the trailer can't be trusted before the member is checked
+        byte[] data = new byte[(int) Math.min(Math.max(expectedSize, 1024), 8L * length + 1024)];
+        int dataLength = 0;
+        Inflater inflater = new Inflater(true);
+        try{
+            inflater.setInput(member, headerLength, length - headerLength - 8);
+            while (! inflater.finished()){
+                if (dataLength == data.length){
+                    if (dataLength >= expectedSize || dataLength >= MAXIMUM_INFLATED_SIZE){
+                        //too large for this member, or too large to keep in memory: inflated streaming
+                        throw new InvalidMemberException();
+                    }
+                    byte[] newData = new byte[(int) Math.min(Math.min(2L * data.length, expectedSize), MAXIMUM_INFLATED_SIZE)];
+                    System.arraycopy(data, 0, newData, 0, dataLength);
+                    data = newData;
+                }
+                int inflated = inflater.inflate(data, dataLength, data.length - dataLength);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+                    //the member continues after the found boundary
+                    throw new InvalidMemberException();
+                }
+                dataLength += inflated;
+            }
+            if (inflater.getRemaining() != 0){
+                throw new InvalidMemberException();
+            }
+        }finally{
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, dataLength);
+        if (crc.getValue() != expectedCrc || (dataLength & 0xffffffffL) != expectedSize){
+            throw new InvalidMemberException();
+        }
+        if (dataLength == data.length){
+            return data;
+        }
+        byte[] result = new byte[dataLength];
+        System.arraycopy(data, 0, result, 0, dataLength);
+        return result;
+    }
+    
+    /**
+     * 
+     * @param data byte[] | the data
+     * @param offset int | the possible start of the header
+     * @return true if the bytes at the offset look like the start of a gzip member (10 bytes must be available)
+     */
+    private boolean isMemberHeader(byte[] data, int offset){
+        return (data[offset] & 0xff) == GZIP_MAGIC_1 
+                && (data[offset + 1] & 0xff) == GZIP_MAGIC_2
+                && data[offset + 2] == GZIP_DEFLATE
+                && (data[offset + 3] & FRESERVED) == 0
+                && (data[offset + 8] == 0 || data[offset + 8] == 2 || data[offset + 8] == 4)
+                && ((data[offset + 9] & 0xff) <= 13 || (data[offset + 9] & 0xff) == 255);
+    }
+    
+    /**
+     * 
+     * @param header byte[] | the first 18 bytes of a member
+     * @return int | the total size of the BGZF block, or -1 if the member has no BGZF extra field
+     */
+    private int getBgzfBlockSize(byte[] header){
+        if ((header[3] & FEXTRA) == 0){
+            return -1;
+        }
+        int extraLength = (header[10] & 0xff) | ((header[11] & 0xff) << 8);
+        if (extraLength == 6 && header[12] == 'B' && header[13] == 'C' && header[14] == 2 && header[15] == 0){
+            return ((header[16] & 0xff) | ((header[17] & 0xff) << 8)) + 1;
+        }
+        return -1;
+    }
+    
+    /**
+     * 
+     * @param member byte[] | the member
+     * @param length int | the length of the member
+     * @return int | the length of the gzip header, or -1 if the header isn't complete
+     */
+    private static int getHeaderLength(byte[] member, int length){
+        if (length < 10){
+            return -1;
+        }
+        int flags = member[3] & 0xff;
+        int position = 10;
+        if ((flags & FEXTRA) != 0){
+            if (position + 2 > length){
+                return -1;
+            }
+            position += 2 + ((member[position] & 0xff) | ((member[position + 1] & 0xff) << 8));
+        }
+        if ((flags & FNAME) != 0){
+            while (position < length && member[position] != 0){
+                position++;
+            }
+            position++;
+        }
+        if ((flags & FCOMMENT) != 0){
+            while (position < length && member[position] != 0){
+                position++;
+            }
+            position++;
+        }
+        if ((flags & FHCRC) != 0){
+            position += 2;
+        }
+        if (position > length){
+            return -1;
+        }
+        return position;
+    }
+    
+    /**
+     * 
+     * @param data byte[] | the data
+     * @param offset int | the offset of the little endian unsigned int
+     * @return long | the unsigned int
+     */
+    private static long readUnsignedInt(byte[] data, int offset){
+        return (data[offset] & 0xffL) | ((data[offset + 1] & 0xffL) << 8) 
+                | ((data[offset + 2] & 0xffL) << 16) | ((data[offset + 3] & 0xffL) << 24);
+    }
+    
+    /**
+     * reads the bytes at the given offset of the file
+     * @param fileOffset long | the offset in the file
+     * @param data byte[] | the array to fill
+     * @param offset int | the first position in the array
+     * @param length int | the number of bytes to read
+     * @return int | the number of bytes read (less than length at the end of the file)
+     * @throws IOException | if an error occures while reading the file
+     */
+    private int readAt(long fileOffset, byte[] data, int offset, int length) throws IOException{
+        ByteBuffer byteBuffer = ByteBuffer.wrap(data, offset, length);
+        int total = 0;
+        while (byteBuffer.hasRemaining()){
+            int read = this.channel.read(byteBuffer, fileOffset + total);
+            if (read == -1){
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+    
+    /**
+     * stops the inflate threads and closes the file
+     * @throws IOException 
+     */
+    @Override
+    public void close() throws IOException{
+        if (! this.closed){
+            this.closed = true;
+            this.inflatePool.shutdownNow();
+            if (this.memberStream != null){
+                this.memberStream.end();
+            }
+            this.randomAccessFile.close();
+        }
+    }
+    
+    /**
+     * a member that is given to the inflate pool
+     */
+    private static class PendingMember{
+        
+        private final long offset;
+        /**
+         * null if the member must be inflated streaming
+         */
+        private final Future<byte[]> future;
+        
+        private PendingMember(long offset, Future<byte[]> future){
+            this.offset = offset;
+            this.future = future;
+        }
+    }
+    
+    /**
+     * thrown if the compressed data isn't exactly one member, the boundary was wrong
+     */
+    private static class InvalidMemberException extends Exception{
+    }
+    
+    /**
+     * inflates one member of unknown size streaming
+     */
+    private class MemberStream{
+        
+        private final Inflater inflater;
+        private final CRC32 crc;
+        private final byte[] input;
+        private long inputOffset;
+        private long memberEnd;
+        private long inflatedSize;
+        private boolean finished;
+        
+        /**
+         * @param offset long | the offset of the member in the file
+         * @throws IOException | if the header is invalid
+         */
+        private MemberStream(long offset) throws IOException{
+            this.inflater = new Inflater(true);
+            this.crc = new CRC32();
+            this.input = new byte[STREAM_BUFFER_SIZE];
+            int length = readAt(offset, this.input, 0, this.input.length);
+            int headerLength = getHeaderLength(this.input, length);
+            if (headerLength < 0){
+                throw new ZipException("Invalid gzip header at " + offset);
+            }
+            this.inflater.setInput(this.input, headerLength, length - headerLength);
+            this.inputOffset = offset + length;
+            this.inflatedSize = 0;
+            this.finished = false;
+        }
+        
+        /**
+         * @return int | the number of inflated bytes, -1 at the end of the member
+         */
+        private int read(byte[] buffer, int offset, int length) throws IOException{
+            if (this.finished){
+                return -1;
+            }
+            try{
+                int inflated = 0;
+                while (inflated == 0){
+                    if (this.inflater.finished()){
+                        this.finish();
+                        return -1;
+                    }
+                    if (this.inflater.needsInput()){
+                        int read = readAt(this.inputOffset, this.input, 0, this.input.length);
+                        if (read <= 0){
+                            throw new EOFException("Unexpected end of the gzip file");
+                        }
+                        this.inflater.setInput(this.input, 0, read);
+                        this.inputOffset += read;
+                    }
+                    inflated = this.inflater.inflate(buffer, offset, length);
+                }
+                this.crc.update(buffer, offset, inflated);
+                this.inflatedSize += inflated;
+                return inflated;
+            } catch (DataFormatException ex){
+                throw new ZipException(ex.getMessage());
+            }
+        }
+        
+        /**
+         * checks the trailer of the member
+         * @throws IOException | if the trailer doesn't match
+         */
+        private void finish() throws IOException{
+            long trailerOffset = this.inputOffset - this.inflater.getRemaining();
+            byte[] trailer = new byte[8];
+            if (readAt(trailerOffset, trailer, 0, 8) < 8){
+                throw new EOFException("Unexpected end of the gzip file");
+            }
+            if (readUnsignedInt(trailer, 0) != this.crc.getValue() 
+                    || readUnsignedInt(trailer, 4) != (this.inflatedSize & 0xffffffffL)){
+                throw new ZipException("Corrupt gzip trailer at " + trailerOffset);
+            }
+            this.memberEnd = trailerOffset + 8;
+            this.finished = true;
+            this.end();
+        }
+        
+        private long getMemberEnd(){
+            return this.memberEnd;
+        }
+        
+        private void end(){
+            this.inflater.end();
+        }
+    }
+    
+}
@@ -0,0 +1,130 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.infrastructure;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * keeps the depth of a bounded queue between 2 stages of the demultiplexing.
+ * <br> the depth is added every time an item is put in the queue, 
+ * together with the number of times a consumer found the queue empty, or a producer found the queue full.
+ * <br> a queue that is often empty has a slow producer, a queue that is often full has a slow consumer.
+ * @author Koen Herten for the KU Leuven
+ */
+public class QueueDepthMetrics {
+    
+    private final String name;
+    private final int capacity;
+    private long puts;
+    private long depthSum;
+    private int maximumDepth;
+    private long emptyTakes;
+    private long fullPuts;
+    private ReentrantLock lock = new ReentrantLock();
+    
+    /**
+     * creates new empty metrics
+     * @param name String | the name of the queue
+     * @param capacity int | the capacity of the queue
+     */
+    public QueueDepthMetrics(String name, int capacity){
+        this.name = name;
+        this.capacity = capacity;
+        this.puts = 0;
+        this.depthSum = 0;
+        this.maximumDepth = 0;
+        this.emptyTakes = 0;
+        this.fullPuts = 0;
+    }
+    
+    /**
+     * adds the depth of the queue, just before an item is put in the queue
+     * @param depth int | the number of items in the queue
+     * @param full boolean | true if the producer found the queue full (and had to wait)
+     */
+    public void addPut(int depth, boolean full){
+        try{
+            lock.lock();
+            this.puts++;
+            this.depthSum += depth;
+            if (depth > this.maximumDepth){
+                this.maximumDepth = depth;
+            }
+            if (full){
+                this.fullPuts++;
+            }
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * adds a take of a consumer that found the queue empty (and had to wait)
+     */
+    public void addEmptyTake(){
+        try{
+            lock.lock();
+            this.emptyTakes++;
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 
+     * @return String | the name of the queue
+     */
+    public String getName(){
+        return this.name;
+    }
+    
+    /**
+     * 
+     * @return double | the average depth of the queue when an item was put, 0 if no item was put
+     */
+    public double getAverageDepth(){
+        try{
+            lock.lock();
+            if (this.puts == 0){
+                return 0;
+            }
+            return (double) this.depthSum / this.puts;
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 
+     * @return String | the metrics as a line for the log file
+     */
+    @Override
+    public String toString(){
+        try{
+            lock.lock();
+            return this.name + ": \t capacity " + this.capacity + ", items " + this.puts 
+                    + ", average depth " + String.format("%.2f", this.getAverageDepth()) + ", maximum depth " + this.maximumDepth 
+                    + ", found empty " + this.emptyTakes + " times, found full " + this.fullPuts + " times";
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+}
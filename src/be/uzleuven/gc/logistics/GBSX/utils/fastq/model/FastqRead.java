@@ -19,35 +19,40 @@
  */
 package be.uzleuven.gc.logistics.GBSX.utils.fastq.model;
 
+import be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model.BasePair;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 
 /**
- *
+ * a fastq read, stored as one byte array with the offsets of the description, sequence and quality.
+ * <br> the byte array can be shared with other reads (for example the data block of a FastqReadBatch),
+ * trimming only moves the offsets, nothing is copied.
+ * <br> the String representations are only created when asked for.
  * @author Koen Herten for the KU Leuven
  */
 public class FastqRead {
     
-    HashMap<FastqParts, String> parts;
-    FastqScores fastqScore = FastqScores.getStandard();
-    
     /**
-     * creates a new empty read
+     * fastq files are ascii, every char is stored as 1 byte
      */
-    private FastqRead(){
-        this.parts = new HashMap();
-    }
+    public static final Charset FASTQ_CHARSET = Charset.forName("ISO-8859-1");
+    private static final byte[] NEWLINE = {'\n'};
+    private static final byte[] PLUS_LINE = {'\n', '+', '\n'};
     
-    /**
-     * creates a new read with only a description
-     * @param description String | the description of the fastq read
-     */
-    private FastqRead(String description){
-        this.parts = new HashMap();
-        if (! description.startsWith("@")){
-            description = "@" + description;
-        }
-        this.parts.put(FastqParts.DESCRIPTION, description);
-    }
+    private final byte[] data;
+    private final int descriptionStart;
+    private final int descriptionEnd;
+    private int sequenceStart;
+    private int sequenceEnd;
+    private int qualityStart;
+    private int qualityEnd;
+    private FastqScores fastqScore = FastqScores.getStandard();
+    private String description;
+    private String sequence;
+    private String quality;
+    private String complementSequence;
     
     /**
      * creates a new complete fastq read
@@ -56,13 +61,25 @@ public class FastqRead {
      * @param quality String | the quality of the sequence
      */
     public FastqRead(String description, String sequence, String quality){
-        this.parts = new HashMap();
         if (! description.startsWith("@")){
             description = "@" + description;
         }
-        this.parts.put(FastqParts.DESCRIPTION, description);
-        this.parts.put(FastqParts.SEQUENCE, sequence);
-        this.parts.put(FastqParts.QUALITY, quality);
+        byte[] descriptionBytes = description.getBytes(FASTQ_CHARSET);
+        byte[] sequenceBytes = sequence.getBytes(FASTQ_CHARSET);
+        byte[] qualityBytes = quality.getBytes(FASTQ_CHARSET);
+        this.data = new byte[descriptionBytes.length + sequenceBytes.length + qualityBytes.length];
+        System.arraycopy(descriptionBytes, 0, this.data, 0, descriptionBytes.length);
+        System.arraycopy(sequenceBytes, 0, this.data, descriptionBytes.length, sequenceBytes.length);
+        System.arraycopy(qualityBytes, 0, this.data, descriptionBytes.length + sequenceBytes.length, qualityBytes.length);
+        this.descriptionStart = 0;
+        this.descriptionEnd = descriptionBytes.length;
+        this.sequenceStart = this.descriptionEnd;
+        this.sequenceEnd = this.sequenceStart + sequenceBytes.length;
+        this.qualityStart = this.sequenceEnd;
+        this.qualityEnd = this.qualityStart + qualityBytes.length;
+        this.description = description;
+        this.sequence = sequence;
+        this.quality = quality;
     }
     
     /**
@@ -70,30 +87,7 @@ public class FastqRead {
      * @param fastqMap 
      */
     public FastqRead(HashMap<FastqParts, String> fastqMap){
-        this.parts = new HashMap(fastqMap);
-    }
-    
-    /**
-     * @param score FastqScores
-     * creates a new empty read
-     */
-    private FastqRead(FastqScores score){
-        this.parts = new HashMap();
-        this.fastqScore = score;
-    }
-    
-    /**
-     * creates a new read with only a description
-     * @param description String | the description of the fastq read
-     * @param score FastqScores
-     */
-    private FastqRead(String description, FastqScores score){
-        this.parts = new HashMap();
-        if (! description.startsWith("@")){
-            description = "@" + description;
-        }
-        this.parts.put(FastqParts.DESCRIPTION, description);
-        this.fastqScore = score;
+        this(valueOf(fastqMap, FastqParts.DESCRIPTION), valueOf(fastqMap, FastqParts.SEQUENCE), valueOf(fastqMap, FastqParts.QUALITY));
     }
     
     /**
@@ -104,13 +98,7 @@ public class FastqRead {
      * @param score FastqScore
      */
     public FastqRead(String description, String sequence, String quality, FastqScores score){
-        this.parts = new HashMap();
-        if (! description.startsWith("@")){
-            description = "@" + description;
-        }
-        this.parts.put(FastqParts.DESCRIPTION, description);
-        this.parts.put(FastqParts.SEQUENCE, sequence);
-        this.parts.put(FastqParts.QUALITY, quality);
+        this(description, sequence, quality);
         this.fastqScore = score;
     }
     
@@ -120,16 +108,88 @@ public class FastqRead {
      * @param score
      */
     public FastqRead(HashMap<FastqParts, String> fastqMap, FastqScores score){
-        this.parts = new HashMap(fastqMap);
+        this(fastqMap);
         this.fastqScore = score;
     }
     
+    /**
+     * creates a new fastq read on the given bytes, the bytes are not copied.
+     * <br> the description is the first line of the fastq read (normally with the @)
+     * @param data byte[] | the bytes that contain the read
+     * @param descriptionStart int | the first byte of the description
+     * @param descriptionEnd int | the end of the description (exclusive)
+     * @param sequenceStart int | the first byte of the sequence
+     * @param sequenceEnd int | the end of the sequence (exclusive)
+     * @param qualityStart int | the first byte of the quality
+     * @param qualityEnd int | the end of the quality (exclusive)
+     */
+    public FastqRead(byte[] data, int descriptionStart, int descriptionEnd, int sequenceStart, int sequenceEnd, int qualityStart, int qualityEnd){
+        if (descriptionStart < 0 || descriptionEnd < descriptionStart || sequenceStart < 0 || sequenceEnd < sequenceStart
+                || qualityStart < 0 || qualityEnd < qualityStart || Math.max(descriptionEnd, Math.max(sequenceEnd, qualityEnd)) > data.length){
+            throw new IndexOutOfBoundsException("The offsets of the fastq read are not in the data");
+        }
+        this.data = data;
+        this.descriptionStart = descriptionStart;
+        this.descriptionEnd = descriptionEnd;
+        this.sequenceStart = sequenceStart;
+        this.sequenceEnd = sequenceEnd;
+        this.qualityStart = qualityStart;
+        this.qualityEnd = qualityEnd;
+    }
+    
+    /**
+     * 
+     * @param fastqMap HashMap of FastqParts and String | the fastq read
+     * @param part FastqParts | the part to get
+     * @return String | the value of the part, or an empty String if the part is not in the map
+     */
+    private static String valueOf(HashMap<FastqParts, String> fastqMap, FastqParts part){
+        String value = fastqMap.get(part);
+        if (value == null){
+            return "";
+        }
+        return value;
+    }
+    
     /**
      * 
      * @return String | the sequence
      */
     public String getSequence(){
-        return this.parts.get(FastqParts.SEQUENCE);
+        if (this.sequence == null){
+            this.sequence = new String(this.data, this.sequenceStart, this.sequenceEnd - this.sequenceStart, FASTQ_CHARSET);
+        }
+        return this.sequence;
+    }
+    
+    /**
+     * the complement (reverse complement) of the sequence, only made once (until the read is trimmed)
+     * <br> the complement of the part start-end of the sequence is the part (length - end)-(length - start) of the complement
+     * @return String | the complement of the sequence
+     * @see BasePair#getComplementSequence(java.lang.String) 
+     */
+    public String getComplementSequence(){
+        if (this.complementSequence == null){
+            byte[] complement = new byte[this.getSequenceLength()];
+            BasePair.getComplementSequence(this.data, this.sequenceStart, this.sequenceEnd, complement, 0);
+            this.complementSequence = new String(complement, FASTQ_CHARSET);
+        }
+        return this.complementSequence;
+    }
+    
+    /**
+     * writes the complement of a part of the sequence in the given array, nothing is created
+     * @param start int | the first base of the part (first is 0)
+     * @param end int | the end of the part (exclusive)
+     * @param complement byte[] | the array for the complement
+     * @param complementStart int | the index in the complement array for the first base of the complement
+     * @throws IndexOutOfBoundsException if the part is not in the sequence, or the complement doesn't fit in the array
+     */
+    public void getComplementSequence(int start, int end, byte[] complement, int complementStart){
+        if (start < 0 || end < start || end > this.getSequenceLength()){
+            throw new IndexOutOfBoundsException("The part " + start + "-" + end + " is not in the sequence (length " + this.getSequenceLength() + ")");
+        }
+        BasePair.getComplementSequence(this.data, this.sequenceStart + start, this.sequenceStart + end, complement, complementStart);
     }
     
     /**
@@ -137,7 +197,14 @@ public class FastqRead {
      * @return String | the description 
      */
     public String getDescription(){
-        return this.parts.get(FastqParts.DESCRIPTION);
+        if (this.description == null){
+            String newDescription = new String(this.data, this.descriptionStart, this.descriptionEnd - this.descriptionStart, FASTQ_CHARSET);
+            if (! newDescription.startsWith("@")){
+                newDescription = "@" + newDescription;
+            }
+            this.description = newDescription;
+        }
+        return this.description;
     }
     
     /**
@@ -145,50 +212,100 @@ public class FastqRead {
      * @return String | the quality
      */
     public String getQuality(){
-        return this.parts.get(FastqParts.QUALITY);
+        if (this.quality == null){
+            this.quality = new String(this.data, this.qualityStart, this.qualityEnd - this.qualityStart, FASTQ_CHARSET);
+        }
+        return this.quality;
+    }
+    
+    /**
+     * 
+     * @return FastqScores | the score system of the quality
+     */
+    public FastqScores getFastqScore(){
+        return this.fastqScore;
     }
     
     /**
-     * set the given sequence as new
-     * @param newSequence String | may not be null or empty
+     * the bytes of this read, these may also contain other reads, so only use them with the offsets
+     * @return byte[] | the bytes that contain the read
      */
-    private void setSequence(String newSequence){
-        if (newSequence != null || ! newSequence.isEmpty()){
-            this.parts.put(FastqParts.SEQUENCE, newSequence);
-        }
+    public byte[] getData(){
+        return this.data;
     }
     
     /**
-     * set the given quality as new
-     * @param newQuality String | may not be null or empty
+     * 
+     * @return int | the index of the first base in the data
      */
-    private void setQuality(String newQuality){
-        if (newQuality != null || ! newQuality.isEmpty()){
-            this.parts.put(FastqParts.QUALITY, newQuality);
-        }
+    public int getSequenceStart(){
+        return this.sequenceStart;
     }
     
     /**
-     * set the givend description as new
-     * @param newDescription String | may not be null or empty
+     * 
+     * @return int | the number of bases of the read
      */
-    private void setDescription(String newDescription){
-        if (newDescription != null || newDescription.isEmpty()){
-            if (! newDescription.startsWith("@")){
-                newDescription = "@" + newDescription;
-            }
-            this.parts.put(FastqParts.DESCRIPTION, newDescription);
-        }
+    public int getSequenceLength(){
+        return this.sequenceEnd - this.sequenceStart;
+    }
+    
+    /**
+     * 
+     * @return int | the index of the first quality score in the data
+     */
+    public int getQualityStart(){
+        return this.qualityStart;
+    }
+    
+    /**
+     * 
+     * @return int | the number of quality scores of the read
+     */
+    public int getQualityLength(){
+        return this.qualityEnd - this.qualityStart;
     }
     
+    /**
+     * 
+     * @param index int | the index of the base (first is 0)
+     * @return byte | the base at the given index
+     */
+    public byte getBase(int index){
+        if (index < 0 || index >= this.getSequenceLength()){
+            throw new IndexOutOfBoundsException("Index " + index + " is not in the sequence (length " + this.getSequenceLength() + ")");
+        }
+        return this.data[this.sequenceStart + index];
+    }
+
+    /**
+     * changes the base at the given index, the base is changed in the data of this read
+     * @param index int | the index of the base (first is 0)
+     * @param base byte | the new base
+     */
+    public void setBase(int index, byte base){
+        if (index < 0 || index >= this.getSequenceLength()){
+            throw new IndexOutOfBoundsException("Index " + index + " is not in the sequence (length " + this.getSequenceLength() + ")");
+        }
+        this.data[this.sequenceStart + index] = base;
+        this.sequence = null;
+        this.complementSequence = null;
+    }
+
     /**
      * this method trims at the left of both sequence and quality
      * the given distance is the index of the first base to keep (first is 0)
      * @param distance int | the first base to keep
      */
     public void ltrim(int distance){
-        this.parts.put(FastqParts.SEQUENCE, this.parts.get(FastqParts.SEQUENCE).substring(distance));
-        this.parts.put(FastqParts.QUALITY, this.parts.get(FastqParts.QUALITY).substring(distance));
+        if (distance < 0 || distance > this.getSequenceLength() || distance > this.getQualityLength()){
+            throw new IndexOutOfBoundsException("Can't trim " + distance + " bases of a read of length " + this.getSequenceLength());
+        }
+        this.sequenceStart += distance;
+        this.qualityStart += distance;
+        this.sequence = null;
+        this.quality = null;
+        this.complementSequence = null;
     }
     
     /**
@@ -197,9 +314,73 @@ public class FastqRead {
      * @param distance int | the first base to delete
      */
     public void rtrim(int distance){
-        this.parts.put(FastqParts.SEQUENCE, this.parts.get(FastqParts.SEQUENCE).substring(0, distance));
-        this.parts.put(FastqParts.QUALITY, this.parts.get(FastqParts.QUALITY).substring(0, distance));
+        if (distance < 0 || distance > this.getSequenceLength() || distance > this.getQualityLength()){
+            throw new IndexOutOfBoundsException("Can't trim at " + distance + " of a read of length " + this.getSequenceLength());
+        }
+        this.sequenceEnd = this.sequenceStart + distance;
+        this.qualityEnd = this.qualityStart + distance;
+        this.sequence = null;
+        this.quality = null;
+        this.complementSequence = null;
+    }
+    
+    /**
+     * 
+     * @param base char | the base to search
+     * @param start int | the first base of the part to search in (first is 0)
+     * @param end int | the end of the part to search in (exclusive)
+     * @return true if the given base is in the given part of the sequence
+     */
+    public boolean containsBase(char base, int start, int end){
+        this.checkSlice(start, end);
+        for (int i = this.sequenceStart + start; i < this.sequenceStart + end; i++){
+            if (this.data[i] == base){
+                return true;
+            }
+        }
+        return false;
     }
     
+    /**
+     * writes this read as the 4 lines of a fastq read: the description, the sequence, the + line and the quality
+     * @param outputStream OutputStream | the stream to write to
+     * @throws IOException | if any error occures while writing
+     */
+    public void writeTo(OutputStream outputStream) throws IOException{
+        this.writeTo(outputStream, 0, this.getSequenceLength());
+    }
+    
+    /**
+     * writes a part of this read as the 4 lines of a fastq read: the description, the sequence, the + line and the quality
+     * <br> only the bases (and qualities) from start to end are written, the read itself is not changed
+     * @param outputStream OutputStream | the stream to write to
+     * @param start int | the first base to write (first is 0)
+     * @param end int | the end of the bases to write (exclusive)
+     * @throws IOException | if any error occures while writing
+     */
+    public void writeTo(OutputStream outputStream, int start, int end) throws IOException{
+        this.checkSlice(start, end);
+        if (this.descriptionEnd == this.descriptionStart || this.data[this.descriptionStart] != '@'){
+            outputStream.write('@');
+        }
+        outputStream.write(this.data, this.descriptionStart, this.descriptionEnd - this.descriptionStart);
+        outputStream.write(NEWLINE);
+        outputStream.write(this.data, this.sequenceStart + start, end - start);
+        outputStream.write(PLUS_LINE);
+        outputStream.write(this.data, this.qualityStart + start, end - start);
+        outputStream.write(NEWLINE);
+    }
+    
+    /**
+     * checks if the given part is in the sequence and the quality
+     * @param start int | the first base of the part
+     * @param end int | the end of the part (exclusive)
+     * @throws IndexOutOfBoundsException if the part is not in the read
+     */
+    private void checkSlice(int start, int end){
+        if (start < 0 || end < start || end > this.getSequenceLength() || end > this.getQualityLength()){
+            throw new IndexOutOfBoundsException("The part " + start + "-" + end + " is not in the read (length " + this.getSequenceLength() + ")");
+        }
+    }
     
 }
@@ -0,0 +1,245 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * a block of fastq reads, handed out by the readers in one go.
+ * <br> the batch is reused: a reader clears and refills it, so the reads may
+ * only be used until the next call to the reader.
+ * <br> a batch also has a data block, readers can store the bytes of the reads in it,
+ * so the reads of a batch don't need their own byte arrays.
+ * <br> the readers number the batches in the order of the file (the sequence number),
+ * so the output can be written in the order of the input.
+ * @author Koen Herten for the KU Leuven
+ */
+public class FastqReadBatch {
+    
+    /**
+     * the expected number of bytes of a fastq read, used for the initial size of the data block
+     */
+    private static final int EXPECTED_READ_BYTES = 256;
+    
+    private FastqRead[] reads;
+    private int size;
+    private byte[] data;
+    private int dataLength;
+    private long sequenceNumber;
+    
+    /**
+     * creates a new empty batch
+     * @param capacity int | the maximum number of reads in this batch
+     */
+    public FastqReadBatch(int capacity){
+        if (capacity < 1){
+            throw new IllegalArgumentException("The capacity of a FastqReadBatch must be at least 1");
+        }
+        this.reads = new FastqRead[capacity];
+        this.size = 0;
+        this.data = null;
+        this.dataLength = 0;
+        this.sequenceNumber = -1;
+    }
+    
+    /**
+     * 
+     * @return long | the number of this batch in the file (the first batch is 0), -1 if the reader doesn't number the batches
+     */
+    public long getSequenceNumber(){
+        return this.sequenceNumber;
+    }
+    
+    /**
+     * sets the number of this batch in the file, used by the readers
+     * @param sequenceNumber long | the number of this batch in the file (the first batch is 0)
+     */
+    public void setSequenceNumber(long sequenceNumber){
+        this.sequenceNumber = sequenceNumber;
+    }
+    
+    /**
+     * 
+     * @return int | the maximum number of reads in this batch
+     */
+    public int getCapacity(){
+        return this.reads.length;
+    }
+    
+    /**
+     * 
+     * @return int | the number of reads in this batch
+     */
+    public int size(){
+        return this.size;
+    }
+    
+    /**
+     * 
+     * @return true if there are no reads in this batch
+     */
+    public boolean isEmpty(){
+        return this.size == 0;
+    }
+    
+    /**
+     * 
+     * @return true if no read can be added anymore
+     */
+    public boolean isFull(){
+        return this.size == this.reads.length;
+    }
+    
+    /**
+     * 
+     * @param index int | the index of the read (0 to size - 1)
+     * @return FastqRead | the read at the given index
+     */
+    public FastqRead get(int index){
+        if (index >= this.size){
+            throw new IndexOutOfBoundsException("Index " + index + " is not in the batch (size " + this.size + ")");
+        }
+        return this.reads[index];
+    }
+    
+    /**
+     * adds the given read at the end of the batch
+     * @param read FastqRead | the read to add
+     */
+    public void add(FastqRead read){
+        if (this.isFull()){
+            throw new IndexOutOfBoundsException("The FastqReadBatch is full");
+        }
+        this.reads[this.size] = read;
+        this.size++;
+    }
+    
+    /**
+     * removes the reads after the given number of reads, the data block stays the same
+     * @param size int | the number of reads to keep
+     */
+    public void truncate(int size){
+        for (int i = size; i < this.size; i++){
+            this.reads[i] = null;
+        }
+        this.size = Math.min(this.size, size);
+    }
+    
+    /**
+     * the data block of this batch, the block is replaced by a bigger one when it is full
+     * <br> so the block must be asked again after appending data
+     * @return byte[] | the data block (only the first getDataLength() bytes are used)
+     */
+    public byte[] getData(){
+        if (this.data == null){
+            this.data = new byte[this.reads.length * EXPECTED_READ_BYTES];
+        }
+        return this.data;
+    }
+    
+    /**
+     * 
+     * @return int | the number of used bytes of the data block
+     */
+    public int getDataLength(){
+        return this.dataLength;
+    }
+    
+    /**
+     * copies the given bytes at the end of the data block
+     * <br> if the block is too small, the block is replaced by a bigger copy,
+     * reads that are already made on the old block stay valid.
+     * @param bytes byte[] | the bytes to append
+     * @param start int | the first byte to append
+     * @param end int | the end of the bytes to append (exclusive)
+     * @return int | the index of the first appended byte in the data block
+     */
+    public int appendData(byte[] bytes, int start, int end){
+        int length = end - start;
+        byte[] block = this.getData();
+        if (this.dataLength + length > block.length){
+            byte[] newBlock = new byte[Math.max(block.length * 2, this.dataLength + length)];
+            System.arraycopy(block, 0, newBlock, 0, this.dataLength);
+            this.data = newBlock;
+        }
+        System.arraycopy(bytes, start, this.data, this.dataLength, length);
+        int offset = this.dataLength;
+        this.dataLength += length;
+        return offset;
+    }
+    
+    /**
+     * copies the next bytes of the given buffer at the end of the data block
+     * <br> if the block is too small, the block is replaced by a bigger copy,
+     * reads that are already made on the old block stay valid.
+     * @param buffer ByteBuffer | the buffer to copy from, its position is moved over the copied bytes
+     * @param length int | the number of bytes to append
+     * @return int | the index of the first appended byte in the data block
+     */
+    public int appendData(ByteBuffer buffer, int length){
+        byte[] block = this.getData();
+        if (this.dataLength + length > block.length){
+            byte[] newBlock = new byte[Math.max(block.length * 2, this.dataLength + length)];
+            System.arraycopy(block, 0, newBlock, 0, this.dataLength);
+            this.data = newBlock;
+        }
+        buffer.get(this.data, this.dataLength, length);
+        int offset = this.dataLength;
+        this.dataLength += length;
+        return offset;
+    }
+    
+    /**
+     * exchanges the reads (and the capacity, data block and sequence number) of this batch with the given batch
+     * <br> no reads are copied, so a filled batch can be handed over without cost
+     * @param other FastqReadBatch | the batch to exchange the reads with
+     */
+    public void swap(FastqReadBatch other){
+        FastqRead[] otherReads = other.reads;
+        int otherSize = other.size;
+        byte[] otherData = other.data;
+        int otherDataLength = other.dataLength;
+        long otherSequenceNumber = other.sequenceNumber;
+        other.reads = this.reads;
+        other.size = this.size;
+        other.data = this.data;
+        other.dataLength = this.dataLength;
+        other.sequenceNumber = this.sequenceNumber;
+        this.reads = otherReads;
+        this.size = otherSize;
+        this.data = otherData;
+        this.dataLength = otherDataLength;
+        this.sequenceNumber = otherSequenceNumber;
+    }
+    
+    /**
+     * removes all reads from the batch, the capacity stays the same
+     * <br> the data block is reused for the next reads
+     */
+    public void clear(){
+        for (int i = 0; i < this.size; i++){
+            this.reads[i] = null;
+        }
+        this.size = 0;
+        this.dataLength = 0;
+        this.sequenceNumber = -1;
+    }
+    
+}
@@ -0,0 +1,57 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.fastq.model;
+
+/**
+ * a read pair: read 1 and read 2 of the same fragment
+ * @author Koen Herten for the KU Leuven
+ */
+public class FastqReadPair {
+    
+    private final FastqRead read1;
+    private final FastqRead read2;
+    
+    /**
+     * creates a new read pair
+     * @param read1 FastqRead | the read of the first fastq file
+     * @param read2 FastqRead | the read of the second fastq file
+     */
+    public FastqReadPair(FastqRead read1, FastqRead read2){
+        this.read1 = read1;
+        this.read2 = read2;
+    }
+    
+    /**
+     * 
+     * @return FastqRead | the read of the first fastq file
+     */
+    public FastqRead getRead1(){
+        return this.read1;
+    }
+    
+    /**
+     * 
+     * @return FastqRead | the read of the second fastq file
+     */
+    public FastqRead getRead2(){
+        return this.read2;
+    }
+    
+}
@@ -53,6 +53,7 @@ public class InfoFileParser {
      * <br> barcode
      * <br> enzyme
      * @param filename String | the name of the file
+     * <br> every sample gets its index in the returned list as index
      * @return an arrayList of all samples found in the file. Non found enzymes are skiped
      * @throws FileNotFoundException
      * @throws IOException 
@@ -74,6 +75,7 @@ public class InfoFileParser {
                         }
                         String barcode2 = null;
                         Sample newSample = new Sample(splitedLine[0], enzyme, enzyme2, splitedLine[1], barcode2);
+                        newSample.setIndex(sampleArrayList.size());
                         sampleArrayList.add(newSample);
                     }else if (splitedLine.length == 5){
                         Enzyme enzyme2 = enzyme;
@@ -85,6 +87,7 @@ public class InfoFileParser {
                             barcode2 = splitedLine[4];
                         }
                         Sample newSample = new Sample(splitedLine[0], enzyme, enzyme2, splitedLine[1], barcode2);
+                        newSample.setIndex(sampleArrayList.size());
                         sampleArrayList.add(newSample);
                     }else{
                         int mismatch = Integer.parseInt(splitedLine[5]);
@@ -97,10 +100,12 @@ public class InfoFileParser {
                             enzyme2 = this.enzymeCollection.getEnzyme(splitedLine[4]);
                         }
                         Sample newSample = new Sample(splitedLine[0], enzyme, enzyme2, splitedLine[1], barcode2, mismatch);
+                        newSample.setIndex(sampleArrayList.size());
                         sampleArrayList.add(newSample);
                     }
                 }else{
                     Sample newSample = new Sample(splitedLine[0], enzyme, splitedLine[1]);
+                    newSample.setIndex(sampleArrayList.size());
                     sampleArrayList.add(newSample);
                 }
             }
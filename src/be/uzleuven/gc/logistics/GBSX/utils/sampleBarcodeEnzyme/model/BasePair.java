@@ -108,40 +108,92 @@ public class BasePair {
         return base1List;
     }
     
+    /**
+     * the complement of every char below 256 (A-T, C-G, the IUPAC codes and [-]), other chars are their own complement
+     */
+    private static final char[] COMPLEMENTS = BasePair.createComplements();
+    
+    /**
+     * 
+     * @return char[] | the complement of every char below 256
+     */
+    private static char[] createComplements(){
+        char[] complements = new char[256];
+        for (char base = 0; base < complements.length; base++){
+            complements[base] = base;
+        }
+        String bases = "ACGTRYKMSWBDHVN[";
+        String complementBases = "TGCAYRMKSWVHDBN]";
+        for (int i = 0; i < bases.length(); i++){
+            char base = bases.charAt(i);
+            char complementBase = complementBases.charAt(i);
+            complements[base] = complementBase;
+            complements[complementBase] = base;
+            complements[Character.toLowerCase(base)] = Character.toLowerCase(complementBase);
+            complements[Character.toLowerCase(complementBase)] = Character.toLowerCase(base);
+        }
+        return complements;
+    }
+    
+    /**
+     * gives the complement of a base, lower case bases stay lower case
+     * @param base char | the base (A,C,G,T or the IUPAC codes R,Y,K,M,S,W,B,D,H,V,N)
+     * @return char | the complement of the base, or the base itself if it has no complement
+     */
+    public static char getComplement(char base){
+        if (base < BasePair.COMPLEMENTS.length){
+            return BasePair.COMPLEMENTS[base];
+        }
+        return base;
+    }
+    
     /**
      * creates the complement of the given DNA
+     * <br> the complement is the reverse of the sequence, with every base replaced by its complement (also the IUPAC codes)
      * @param sequence String | the sequence of DNA where the complement must be searched
      * @return the complement of the given DNA
+     * @see BasePair#getComplement(char) 
      */
     public static String getComplementSequence(String sequence){
-        String complementDNApiece = "";
-        //sequence = sequence.toUpperCase();
-        for (char base : sequence.toCharArray()){
-            switch (base){
-                case 'A': complementDNApiece = 'T' + complementDNApiece;
-                    break;
-                case 'T' : complementDNApiece = 'A' + complementDNApiece;
-                    break;
-                case 'G' : complementDNApiece = 'C' + complementDNApiece;
-                    break;
-                case 'C': complementDNApiece = 'G' + complementDNApiece;
-                    break;
-                case 'a': complementDNApiece = 't' + complementDNApiece;
-                    break;
-                case 't' : complementDNApiece = 'a' + complementDNApiece;
-                    break;
-                case 'g' : complementDNApiece = 'c' + complementDNApiece;
-                    break;
-                case 'c': complementDNApiece = 'g' + complementDNApiece;
-                    break;
-                case '[' : complementDNApiece = ']' + complementDNApiece;
-                    break;
-                case ']' : complementDNApiece = '[' + complementDNApiece;
-                    break;
-                default : complementDNApiece = base + complementDNApiece;
-                    break;
-            }
+        int length = sequence.length();
+        char[] complement = new char[length];
+        for (int i = 0; i < length; i++){
+            complement[length - 1 - i] = BasePair.getComplement(sequence.charAt(i));
+        }
+        return new String(complement);
+    }
+    
+    /**
+     * writes the complement of a part of the sequence in the given array, nothing is created
+     * @param sequence char[] | the sequence
+     * @param start int | the first base of the part
+     * @param end int | the end of the part (exclusive)
+     * @param complement char[] | the array for the complement (may not be the sequence array)
+     * @param complementStart int | the index in the complement array for the first base of the complement
+     * @throws IndexOutOfBoundsException if the part isn't in the sequence, or the complement doesn't fit in the array
+     * @see BasePair#getComplementSequence(java.lang.String) 
+     */
+    public static void getComplementSequence(char[] sequence, int start, int end, char[] complement, int complementStart){
+        int last = complementStart + end - start - 1;
+        for (int i = start; i < end; i++){
+            complement[last - (i - start)] = BasePair.getComplement(sequence[i]);
+        }
+    }
+    
+    /**
+     * writes the complement of a part of the sequence (one byte for every base, like a fastq file) in the given array, nothing is created
+     * @param sequence byte[] | the sequence
+     * @param start int | the first base of the part
+     * @param end int | the end of the part (exclusive)
+     * @param complement byte[] | the array for the complement (may not be the sequence array)
+     * @param complementStart int | the index in the complement array for the first base of the complement
+     * @throws IndexOutOfBoundsException if the part isn't in the sequence, or the complement doesn't fit in the array
+     * @see BasePair#getComplementSequence(java.lang.String) 
+     */
+    public static void getComplementSequence(byte[] sequence, int start, int end, byte[] complement, int complementStart){
+        int last = complementStart + end - start - 1;
+        for (int i = start; i < end; i++){
+            complement[last - (i - start)] = (byte) BasePair.COMPLEMENTS[sequence[i] & 0xFF];
         }
-        return complementDNApiece;
     }
 }
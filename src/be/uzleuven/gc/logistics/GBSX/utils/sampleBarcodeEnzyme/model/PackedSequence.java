@@ -0,0 +1,139 @@
+/*
+ * This is GBSX v1.0. A toolkit for experimental design and demultiplexing genotyping by sequencing experiments. \n *  \n * Copyright 2014 KU Leuven
+ * 
+ * 
+ * This file is part of GBSX.
+ *
+ * GBSX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GBSX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with GBSX.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model;
+
+/**
+ * a DNA sequence packed in 2 bits per base (A = 00, C = 01, G = 10, T = 11), 32 bases in a long.
+ * <br> an N is packed as 00 and marked in the N mask (the low bit of its 2 bits is set), so an N only equals an N.
+ * <br> sequences with other characters than A, C, G, T and N can't be packed.
+ * <br> with the packed sequences, up to 32 bases are compared at once: the mismatches are the
+ * bits of the XOR of both sequences, folded to 1 bit per base, and counted with a popcount.
+ * @author Koen Herten for the KU Leuven
+ */
+public class PackedSequence {
+    
+    /**
+     * the number of bases in 1 word (long)
+     */
+    public static final int BASES_PER_WORD = 32;
+    /**
+     * the low bit of every base
+     */
+    private static final long LOW_BITS = 0x5555555555555555L;
+    
+    private final long[] bases;
+    private final long[] nMask;
+    private final int length;
+    
+    /**
+     * creates a new packed sequence
+     * @param bases long[] | the packed bases
+     * @param nMask long[] | the N mask
+     * @param length int | the number of bases
+     */
+    private PackedSequence(long[] bases, long[] nMask, int length){
+        this.bases = bases;
+        this.nMask = nMask;
+        this.length = length;
+    }
+    
+    /**
+     * packs the given sequence
+     * @param sequence String | the DNA sequence
+     * @return PackedSequence | the packed sequence, or null if the sequence contains other characters than A, C, G, T and N
+     */
+    public static PackedSequence pack(String sequence){
+        int length = sequence.length();
+        int words = (length + BASES_PER_WORD - 1) / BASES_PER_WORD;
+        long[] bases = new long[words];
+        long[] nMask = new long[words];
+        for (int i = 0; i < length; i++){
+            long code;
+            switch (sequence.charAt(i)){
+                case 'A': code = 0; break;
+                case 'C': code = 1; break;
+                case 'G': code = 2; break;
+                case 'T': code = 3; break;
+                case 'N': 
+                    code = 0;
+                    nMask[i / BASES_PER_WORD] |= 1L << ((i % BASES_PER_WORD) * 2);
+                    break;
+                default: return null;
+            }
+            bases[i / BASES_PER_WORD] |= code << ((i % BASES_PER_WORD) * 2);
+        }
+        return new PackedSequence(bases, nMask, length);
+    }
+    
+    /**
+     * 
+     * @return int | the number of bases
+     */
+    public int length(){
+        return this.length;
+    }
+    
+    /**
+     * counts the mismatches between the given pattern and this sequence at the given location
+     * <br> the counting stops when more than maxMismatch mismatches are found
+     * @param start int | the location in this sequence where the pattern is compared (first base is 0)
+     * @param pattern PackedSequence | the pattern to compare, start + the length of the pattern may not be longer than this sequence
+     * @param maxMismatch int | the maximum allowed mismatches
+     * @return int | the number of mismatches, or a number higher than maxMismatch (not always the full count) if there are too many mismatches
+     */
+    public int countMismatches(int start, PackedSequence pattern, int maxMismatch){
+        if (start < 0 || start + pattern.length > this.length){
+            throw new IndexOutOfBoundsException("The pattern of length " + pattern.length + " at " + start + " is not in the sequence (length " + this.length + ")");
+        }
+        int mismatches = 0;
+        int remaining = pattern.length;
+        for (int word = 0; remaining > 0; word++){
+            int location = start + word * BASES_PER_WORD;
+            long difference = pattern.bases[word] ^ PackedSequence.window(this.bases, location);
+            long mismatchBits = ((difference | (difference >>> 1)) & LOW_BITS) | (pattern.nMask[word] ^ PackedSequence.window(this.nMask, location));
+            if (remaining < BASES_PER_WORD){
+                mismatchBits &= (1L << (remaining * 2)) - 1;
+            }
+            mismatches += Long.bitCount(mismatchBits);
+            if (mismatches > maxMismatch){
+                return mismatches;
+            }
+            remaining -= BASES_PER_WORD;
+        }
+        return mismatches;
+    }
+    
+    /**
+     * gives the (up to) 32 bases starting at the given location, the bases after the end are 0
+     * @param words long[] | the packed words
+     * @param start int | the first base
+     * @return long | the bases from start
+     */
+    private static long window(long[] words, int start){
+        int word = start / BASES_PER_WORD;
+        int shift = (start % BASES_PER_WORD) * 2;
+        long value = words[word] >>> shift;
+        if (shift != 0 && word + 1 < words.length){
+            value |= words[word + 1] << (64 - shift);
+        }
+        return value;
+    }
+    
+}
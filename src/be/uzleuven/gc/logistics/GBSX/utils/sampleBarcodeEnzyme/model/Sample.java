@@ -21,6 +21,7 @@ package be.uzleuven.gc.logistics.GBSX.utils.sampleBarcodeEnzyme.model;
 
 import be.uzleuven.gc.logistics.GBSX.utils.enzyme.model.Enzyme;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -40,6 +41,16 @@ public class Sample implements Comparable<Sample> {
     private final HashSet<String> possibleEnzymeSites;
     private final HashSet<String> possibleEnzyme2Sites;
     private int barcodeMismatches;
+    /**
+     * the packed barcodes and cutsites, packed once for the packed hammings distance
+     */
+    private PackedSequence packedBarcode;
+    private PackedSequence packedBarcode2;
+    private HashMap<String, PackedSequence> packedCutSites;
+    /**
+     * the dense index of the sample (0 to the number of samples), -1 if not set
+     */
+    private int index = -1;
     
     /**
      * 
@@ -73,6 +84,7 @@ public class Sample implements Comparable<Sample> {
         }
         //save the mismatches of the barcode
         this.barcodeMismatches = -1;
+        this.packSequences();
     }
     
     /**
@@ -109,6 +121,7 @@ public class Sample implements Comparable<Sample> {
         }
         //save the mismatches of the barcode
         this.barcodeMismatches = barcodeMismatches;
+        this.packSequences();
     }
     
     /**
@@ -144,6 +157,65 @@ public class Sample implements Comparable<Sample> {
         }
         //save the mismatches of the barcode
         this.barcodeMismatches = -1;
+        this.packSequences();
+    }
+    
+    /**
+     * packs the barcodes and the cutsites (of both enzymes) of this sample
+     */
+    private void packSequences(){
+        this.packedBarcode = PackedSequence.pack(this.barcode);
+        if (this.barcode2 != null){
+            this.packedBarcode2 = PackedSequence.pack(this.barcode2);
+        }
+        this.packedCutSites = new HashMap<String, PackedSequence>();
+        for (String enzymeSite : this.enzyme.getInitialCutSiteRemnant()){
+            this.packedCutSites.put(enzymeSite, PackedSequence.pack(enzymeSite));
+        }
+        for (String enzymeSite : this.enzyme2.getInitialCutSiteRemnant()){
+            this.packedCutSites.put(enzymeSite, PackedSequence.pack(enzymeSite));
+        }
+    }
+    
+    /**
+     * sets the dense index of this sample, so arrays can be used instead of maps of samples
+     * <br> every sample of 1 info file has a different index, from 0 to the number of samples
+     * @param index int | the index of the sample
+     */
+    public void setIndex(int index){
+        this.index = index;
+    }
+    
+    /**
+     * 
+     * @return int | the dense index of this sample, -1 if it isn't set
+     * @see Sample#setIndex(int) 
+     */
+    public int getIndex(){
+        return this.index;
+    }
+    
+    /**
+     * puts every sample of the collection on its index in an array
+     * <br> samples without an index, or with an index already taken by an other sample, are not in the array
+     * @param samples Collection of Sample | the samples
+     * @return Sample[] | an array with every sample on its index (null if no sample has that index)
+     * @see Sample#getIndex() 
+     */
+    public static Sample[] indexSamples(Collection<Sample> samples){
+        int size = 0;
+        for (Sample sample : samples){
+            if (sample.getIndex() >= size){
+                size = sample.getIndex() + 1;
+            }
+        }
+        Sample[] indexedSamples = new Sample[size];
+        for (Sample sample : samples){
+            if (sample.getIndex() >= 0 && indexedSamples[sample.getIndex()] == null){
+                indexedSamples[sample.getIndex()] = sample;
+            }
+        }
+        return indexedSamples;
     }
     
     /**
@@ -253,6 +325,31 @@ public class Sample implements Comparable<Sample> {
         return this.barcode;
     }
     
+    /**
+     * 
+     * @return PackedSequence | the packed barcode, null if the barcode can't be packed
+     */
+    public PackedSequence getPackedBarcode(){
+        return this.packedBarcode;
+    }
+    
+    /**
+     * 
+     * @return PackedSequence | the packed second barcode, null if there is no second barcode or if it can't be packed
+     */
+    public PackedSequence getPackedBarcodeSecond(){
+        return this.packedBarcode2;
+    }
+    
+    /**
+     * 
+     * @param cutSite String | a cutsite remnant of the enzyme or the second enzyme
+     * @return PackedSequence | the packed cutsite, null if it isn't a cutsite of the enzymes of this sample, or can't be packed
+     */
+    public PackedSequence getPackedCutSite(String cutSite){
+        return this.packedCutSites.get(cutSite);
+    }
+    
     /**
      * 
      * @return String | the second barcode used to identify the sample 